@@ -0,0 +1,58 @@
+package io.github.rscai.microservices.inventory.benchmark;
+
+import io.github.rscai.microservices.inventory.InventoryApplication;
+import io.github.rscai.microservices.inventory.model.InventoryItem;
+import io.github.rscai.microservices.inventory.repository.InventoryItemRepository;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+/**
+ * Boots the service against an embedded H2 database for benchmarks which call controllers and
+ * services in-process.
+ */
+final class BenchmarkApplication {
+
+  static final String PRODUCT_ID_PREFIX = "product";
+
+  private BenchmarkApplication() {
+  }
+
+  static ConfigurableApplicationContext start(String... properties) {
+    // benchmark threads are not the setup thread, share one security context between them
+    SecurityContextHolder.setStrategyName(SecurityContextHolder.MODE_GLOBAL);
+    SecurityContextHolder.getContext().setAuthentication(
+        new TestingAuthenticationToken("benchmark", null, "SCOPE_inventory.read",
+            "SCOPE_inventory.write"));
+    return new SpringApplicationBuilder(InventoryApplication.class).profiles("benchmark")
+        .properties(properties).run();
+  }
+
+  /**
+   * Bind a request to the calling thread, for code which builds links from the current request.
+   */
+  static void bindRequest(String requestUri) {
+    MockHttpServletRequest request = new MockHttpServletRequest("GET", requestUri);
+    RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+  }
+
+  static List<InventoryItem> createItems(ConfigurableApplicationContext context, int count) {
+    InventoryItemRepository repository = context.getBean(InventoryItemRepository.class);
+    List<InventoryItem> items = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      InventoryItem item = new InventoryItem();
+      item.setProductId(PRODUCT_ID_PREFIX + i);
+      item.setUnitPrice(BigDecimal.valueOf(12.34));
+      item.setQuantity(Integer.MAX_VALUE / 2);
+      items.add(item);
+    }
+    return repository.saveAll(items);
+  }
+}
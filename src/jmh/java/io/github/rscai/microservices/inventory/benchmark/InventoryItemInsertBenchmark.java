@@ -0,0 +1,70 @@
+package io.github.rscai.microservices.inventory.benchmark;
+
+import io.github.rscai.microservices.inventory.model.InventoryItem;
+import io.github.rscai.microservices.inventory.repository.InventoryItemRepository;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * Throughput of inserting batches of new items by id strategy. The table grows over the run, so
+ * later iterations show the cost of random inserts into a large id index. Run against MySQL with
+ * e.g. {@code -jvmArgs -Dspring.datasource.url=jdbc:mysql://...} for InnoDB's clustered index.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+public class InventoryItemInsertBenchmark {
+
+  private static final int BATCH_SIZE = 100;
+
+  @Param({"random", "time-ordered"})
+  private String strategy;
+
+  private ConfigurableApplicationContext context;
+  private InventoryItemRepository repository;
+  private long sequence;
+
+  @Setup
+  public void setUp() {
+    context = BenchmarkApplication.start("inventory.ids.strategy=" + strategy);
+    repository = context.getBean(InventoryItemRepository.class);
+  }
+
+  @TearDown
+  public void tearDown() {
+    context.close();
+  }
+
+  @Benchmark
+  public List<InventoryItem> upsert() {
+    List<InventoryItem> items = new ArrayList<>(BATCH_SIZE);
+    for (int i = 0; i < BATCH_SIZE; i++) {
+      InventoryItem item = new InventoryItem();
+      item.setProductId(BenchmarkApplication.PRODUCT_ID_PREFIX + sequence++);
+      item.setUnitPrice(BigDecimal.valueOf(12.34));
+      item.setQuantity(100);
+      items.add(item);
+    }
+    repository.upsertByProductId(items, new Date());
+    return items;
+  }
+}
@@ -0,0 +1,101 @@
+package io.github.rscai.microservices.inventory.benchmark;
+
+import io.github.rscai.microservices.inventory.controller.InventoryItemController;
+import io.github.rscai.microservices.inventory.model.InventoryItem;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.hateoas.EntityModel;
+import org.springframework.hateoas.PagedModel;
+
+/**
+ * Throughput of the read endpoints, called in-process without HTTP and serialization.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class InventoryItemReadBenchmark {
+
+  private static final int ITEM_COUNT = 1000;
+  private static final int SEARCH_SIZE = 20;
+
+  /**
+   * Cache size, 0 reads every item from the database.
+   */
+  @Param({"0", "10000"})
+  private int cacheSize;
+
+  private ConfigurableApplicationContext context;
+  private InventoryItemController controller;
+  private List<InventoryItem> items;
+  private int next;
+
+  @Setup
+  public void setUp() {
+    context = BenchmarkApplication.start("inventory.cache.maximum-size=" + cacheSize);
+    controller = context.getBean(InventoryItemController.class);
+    items = BenchmarkApplication.createItems(context, ITEM_COUNT);
+    BenchmarkApplication.bindRequest("/inventoryItems/search/productIdIn");
+  }
+
+  @TearDown
+  public void tearDown() {
+    context.close();
+  }
+
+  @Benchmark
+  public EntityModel<InventoryItem> getOne() {
+    next = (next + 1) % ITEM_COUNT;
+    return controller.getOne(items.get(next).getId());
+  }
+
+  /**
+   * The items of a cart fetched one request each, to compare with {@link #lookup()}.
+   */
+  @Benchmark
+  public void getOneByOne(Blackhole blackhole) {
+    next = (next + SEARCH_SIZE) % ITEM_COUNT;
+    for (int i = 0; i < SEARCH_SIZE; i++) {
+      blackhole.consume(controller.getOne(items.get((next + i) % ITEM_COUNT).getId()));
+    }
+  }
+
+  @Benchmark
+  public Map<String, Object> lookup() {
+    next = (next + SEARCH_SIZE) % ITEM_COUNT;
+    List<String> ids = new ArrayList<>(SEARCH_SIZE);
+    for (int i = 0; i < SEARCH_SIZE; i++) {
+      ids.add(items.get((next + i) % ITEM_COUNT).getId());
+    }
+    return controller.lookup(ids, null);
+  }
+
+  @Benchmark
+  public PagedModel<EntityModel<InventoryItem>> searchByProductId() {
+    next = (next + SEARCH_SIZE) % ITEM_COUNT;
+    List<String> productIds = new ArrayList<>(SEARCH_SIZE);
+    for (int i = 0; i < SEARCH_SIZE; i++) {
+      productIds.add(BenchmarkApplication.PRODUCT_ID_PREFIX + ((next + i) % ITEM_COUNT));
+    }
+    return controller.searchByProductId(productIds, PageRequest.of(0, SEARCH_SIZE));
+  }
+}
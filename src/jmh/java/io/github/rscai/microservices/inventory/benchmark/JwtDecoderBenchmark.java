@@ -0,0 +1,115 @@
+package io.github.rscai.microservices.inventory.benchmark;
+
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.crypto.RSASSASigner;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.KeyUse;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
+import com.nimbusds.jose.proc.JWSVerificationKeySelector;
+import com.nimbusds.jose.proc.SecurityContext;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import com.nimbusds.jwt.proc.DefaultJWTProcessor;
+import com.sun.net.httpserver.HttpServer;
+import io.github.rscai.microservices.inventory.service.CachingJwtDecoder;
+import io.github.rscai.microservices.inventory.service.JwtCacheProperties;
+import io.github.rscai.microservices.inventory.service.RefreshingJwkSource;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.NimbusJwtDecoder;
+
+/**
+ * Latency of decoding a bearer token reused by its client, with an RS256 key served by a local
+ * stand-in of the authorization server's JWK set endpoint.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JwtDecoderBenchmark {
+
+  /**
+   * Validated tokens kept, 0 verifies the signature on every decode.
+   */
+  @Param({"0", "10000"})
+  private long cacheSize;
+
+  private HttpServer jwkSetServer;
+  private RefreshingJwkSource jwkSource;
+  private JwtDecoder decoder;
+  private String token;
+
+  @Setup
+  public void setUp() throws IOException, JOSEException {
+    RSAKey key = new RSAKeyGenerator(2048).keyID("benchmark").keyUse(KeyUse.SIGNATURE)
+        .generate();
+    byte[] jwkSet = new JWKSet(key.toPublicJWK()).toString().getBytes(StandardCharsets.UTF_8);
+    jwkSetServer = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    jwkSetServer.createContext("/token_keys", exchange -> {
+      exchange.getResponseHeaders().add("Content-Type", "application/json");
+      exchange.sendResponseHeaders(200, jwkSet.length);
+      try (OutputStream body = exchange.getResponseBody()) {
+        body.write(jwkSet);
+      }
+    });
+    jwkSetServer.start();
+
+    JwtCacheProperties properties = new JwtCacheProperties();
+    properties.setMaximumSize(cacheSize);
+    jwkSource = new RefreshingJwkSource(String.format("http://localhost:%d/token_keys",
+        jwkSetServer.getAddress().getPort()), properties);
+    jwkSource.start();
+    DefaultJWTProcessor<SecurityContext> jwtProcessor = new DefaultJWTProcessor<>();
+    jwtProcessor.setJWSKeySelector(new JWSVerificationKeySelector<>(JWSAlgorithm.RS256,
+        jwkSource));
+    jwtProcessor.setJWTClaimsSetVerifier((claims, context) -> {
+    });
+    decoder = new CachingJwtDecoder(new NimbusJwtDecoder(jwtProcessor), properties,
+        new SimpleMeterRegistry());
+
+    JWTClaimsSet claims = new JWTClaimsSet.Builder().subject("benchmark")
+        .claim("scope", "inventory.read inventory.write")
+        .issueTime(new Date())
+        .expirationTime(new Date(System.currentTimeMillis() + TimeUnit.HOURS.toMillis(1)))
+        .build();
+    SignedJWT jwt = new SignedJWT(
+        new JWSHeader.Builder(JWSAlgorithm.RS256).keyID(key.getKeyID()).build(), claims);
+    jwt.sign(new RSASSASigner(key));
+    token = jwt.serialize();
+  }
+
+  @TearDown
+  public void tearDown() {
+    jwkSource.close();
+    jwkSetServer.stop(0);
+  }
+
+  @Benchmark
+  public Jwt decode() {
+    return decoder.decode(token);
+  }
+}
@@ -0,0 +1,100 @@
+package io.github.rscai.microservices.inventory.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectWriter;
+import io.github.rscai.microservices.inventory.controller.InventoryItemController;
+import io.github.rscai.microservices.inventory.model.InventoryItem;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.hateoas.CollectionModel;
+import org.springframework.hateoas.EntityModel;
+import org.springframework.hateoas.MediaTypes;
+import org.springframework.hateoas.server.EntityLinks;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerAdapter;
+
+/**
+ * Item pages with their self links, rendered to HAL as a request would, each invocation in a
+ * request of its own. Run with the GC profiler to compare allocation per page across commits:
+ * {@code ./gradlew jmh -PjmhArgs='LinkRenderingBenchmark -prof gc'}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LinkRenderingBenchmark {
+
+  @Param({"20", "500"})
+  private int size;
+
+  private ConfigurableApplicationContext context;
+  private InventoryItemController controller;
+  private EntityLinks entityLinks;
+  private ObjectWriter halWriter;
+  private List<InventoryItem> items;
+
+  @Setup
+  public void setUp() {
+    context = BenchmarkApplication.start();
+    controller = context.getBean(InventoryItemController.class);
+    entityLinks = context.getBean(EntityLinks.class);
+    for (HttpMessageConverter<?> converter : context.getBean(RequestMappingHandlerAdapter.class)
+        .getMessageConverters()) {
+      if (converter instanceof MappingJackson2HttpMessageConverter && converter
+          .getSupportedMediaTypes().contains(MediaTypes.HAL_JSON)) {
+        halWriter = ((MappingJackson2HttpMessageConverter) converter).getObjectMapper().writer();
+      }
+    }
+    if (halWriter == null) {
+      throw new IllegalStateException("No HAL message converter registered");
+    }
+    items = BenchmarkApplication.createItems(context, size);
+  }
+
+  @TearDown
+  public void tearDown() {
+    context.close();
+  }
+
+  /**
+   * The first page of the item listing, read from the database and rendered.
+   */
+  @Benchmark
+  public byte[] list() throws IOException {
+    BenchmarkApplication.bindRequest("/inventoryItems");
+    return halWriter.writeValueAsBytes(controller.list("", size));
+  }
+
+  /**
+   * The same page rendered with a link built by {@link EntityLinks} for each item, as the
+   * controllers did before resolving the collection href once per request; the baseline of
+   * {@link #list()}, plus its database read.
+   */
+  @Benchmark
+  public byte[] renderWithEntityLinks() throws IOException {
+    BenchmarkApplication.bindRequest("/inventoryItems");
+    List<EntityModel<InventoryItem>> models = new ArrayList<>(items.size());
+    for (InventoryItem item : items) {
+      models.add(new EntityModel<>(item,
+          entityLinks.linkToItemResource(InventoryItem.class, item.getId())));
+    }
+    return halWriter.writeValueAsBytes(new CollectionModel<>(models));
+  }
+}
@@ -0,0 +1,66 @@
+package io.github.rscai.microservices.inventory.benchmark;
+
+import io.github.rscai.microservices.inventory.model.InventoryItem;
+import io.github.rscai.microservices.inventory.model.InventoryItemQuantityChange;
+import io.github.rscai.microservices.inventory.service.InventoryItemQuantityChangeService;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * Latency of applying one quantity change batch, spread over 100 items, by batch size.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class QuantityChangeBenchmark {
+
+  private static final int ITEM_COUNT = 100;
+
+  @Param({"1", "10", "100", "1000"})
+  private int batchSize;
+
+  private ConfigurableApplicationContext context;
+  private InventoryItemQuantityChangeService quantityChangeService;
+  private List<InventoryItem> items;
+  private long sequence;
+
+  @Setup
+  public void setUp() {
+    context = BenchmarkApplication.start();
+    quantityChangeService = context.getBean(InventoryItemQuantityChangeService.class);
+    items = BenchmarkApplication.createItems(context, ITEM_COUNT);
+  }
+
+  @TearDown
+  public void tearDown() {
+    context.close();
+  }
+
+  @Benchmark
+  public List<InventoryItemQuantityChange> applyChanges() {
+    List<InventoryItemQuantityChange> changes = new ArrayList<>(batchSize);
+    for (int i = 0; i < batchSize; i++) {
+      long id = sequence++;
+      changes.add(new InventoryItemQuantityChange("benchmark-" + id,
+          items.get((int) (id % ITEM_COUNT)).getId(), -1, null));
+    }
+    return quantityChangeService.applyChanges(changes);
+  }
+}
@@ -0,0 +1,162 @@
+package io.github.rscai.microservices.inventory.benchmark;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import io.github.rscai.microservices.inventory.model.InventoryItem;
+import io.github.rscai.microservices.inventory.model.InventoryItemQuantityChange;
+import io.github.rscai.microservices.inventory.model.InventoryItemQuantityChangeAck;
+import io.github.rscai.microservices.inventory.model.InventoryItemQuantityChangeAck.Status;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.hateoas.EntityModel;
+import org.springframework.hateoas.Link;
+import org.springframework.hateoas.MediaTypes;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerAdapter;
+
+/**
+ * HAL serialization of inventory items, and JSON and CBOR (de)serialization of quantity change
+ * batches and their responses, with the object mappers the application registers for its message
+ * converters. Payload sizes per batch are printed on setup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SerializationBenchmark {
+
+  @Param({"1", "100"})
+  private int size;
+
+  private ConfigurableApplicationContext context;
+  private ObjectWriter halWriter;
+  private ObjectWriter jsonWriter;
+  private ObjectWriter cborWriter;
+  private ObjectReader changesReader;
+  private ObjectReader cborChangesReader;
+  private List<EntityModel<InventoryItem>> items;
+  private List<EntityModel<InventoryItemQuantityChange>> changeModels;
+  private List<InventoryItemQuantityChangeAck> acks;
+  private byte[] changesJson;
+  private byte[] changesCbor;
+
+  @Setup
+  public void setUp() throws IOException {
+    context = BenchmarkApplication.start();
+    ObjectMapper halObjectMapper = null;
+    ObjectMapper cborObjectMapper = null;
+    for (HttpMessageConverter<?> converter : context.getBean(RequestMappingHandlerAdapter.class)
+        .getMessageConverters()) {
+      if (converter instanceof MappingJackson2HttpMessageConverter && converter
+          .getSupportedMediaTypes().contains(MediaTypes.HAL_JSON)) {
+        halObjectMapper = ((MappingJackson2HttpMessageConverter) converter).getObjectMapper();
+      }
+      if (converter instanceof MappingJackson2CborHttpMessageConverter) {
+        cborObjectMapper = ((MappingJackson2CborHttpMessageConverter) converter).getObjectMapper();
+      }
+    }
+    if (halObjectMapper == null || cborObjectMapper == null) {
+      throw new IllegalStateException("No HAL or CBOR message converter registered");
+    }
+    halWriter = halObjectMapper.writer();
+    cborWriter = cborObjectMapper.writer();
+    ObjectMapper objectMapper = context.getBean(ObjectMapper.class);
+    jsonWriter = objectMapper.writer();
+    TypeReference<List<InventoryItemQuantityChange>> changesType =
+        new TypeReference<List<InventoryItemQuantityChange>>() {
+        };
+    changesReader = objectMapper.readerFor(changesType);
+    cborChangesReader = cborObjectMapper.readerFor(changesType);
+
+    items = new ArrayList<>(size);
+    List<InventoryItemQuantityChange> changes = new ArrayList<>(size);
+    changeModels = new ArrayList<>(size);
+    acks = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      InventoryItem item = new InventoryItem();
+      item.setId(String.format("%032x", i));
+      item.setProductId(BenchmarkApplication.PRODUCT_ID_PREFIX + i);
+      item.setQuantity(100);
+      item.setUnitPrice(BigDecimal.valueOf(12.34));
+      item.setCreatedAt(new Date());
+      item.setUpdatedAt(new Date());
+      items.add(new EntityModel<>(item,
+          new Link("http://localhost/inventoryItems/" + item.getId())));
+      InventoryItemQuantityChange change = new InventoryItemQuantityChange("order-" + i,
+          item.getId(), -1, new Date());
+      changes.add(change);
+      changeModels.add(new EntityModel<>(change,
+          new Link("http://localhost/inventoryItemQuantityChanges/" + change.getId())));
+      acks.add(new InventoryItemQuantityChangeAck(change.getId(), Status.APPLIED));
+    }
+    changesJson = objectMapper.writeValueAsBytes(changes);
+    changesCbor = cborWriter.writeValueAsBytes(changes);
+    System.out.printf("%nbatch of %d: request json %d bytes, cbor %d bytes; response hal %d"
+            + " bytes, minimal json %d bytes, minimal cbor %d bytes%n", size, changesJson.length,
+        changesCbor.length, serializeQuantityChangesHal().length,
+        serializeQuantityChangeAcksJson().length, serializeQuantityChangeAcksCbor().length);
+  }
+
+  @TearDown
+  public void tearDown() {
+    context.close();
+  }
+
+  @Benchmark
+  public byte[] serializeInventoryItems() throws IOException {
+    return halWriter.writeValueAsBytes(items);
+  }
+
+  @Benchmark
+  public byte[] serializeInventoryItemsCbor() throws IOException {
+    return cborWriter.writeValueAsBytes(items);
+  }
+
+  @Benchmark
+  public List<InventoryItemQuantityChange> deserializeQuantityChanges() throws IOException {
+    return changesReader.readValue(changesJson);
+  }
+
+  @Benchmark
+  public List<InventoryItemQuantityChange> deserializeQuantityChangesCbor() throws IOException {
+    return cborChangesReader.readValue(changesCbor);
+  }
+
+  @Benchmark
+  public byte[] serializeQuantityChangesHal() throws IOException {
+    return halWriter.writeValueAsBytes(changeModels);
+  }
+
+  @Benchmark
+  public byte[] serializeQuantityChangeAcksJson() throws IOException {
+    return jsonWriter.writeValueAsBytes(acks);
+  }
+
+  @Benchmark
+  public byte[] serializeQuantityChangeAcksCbor() throws IOException {
+    return cborWriter.writeValueAsBytes(acks);
+  }
+}
@@ -0,0 +1,210 @@
+package io.github.rscai.microservices.inventory.benchmark;
+
+import io.github.rscai.microservices.inventory.InventoryApplication;
+import io.github.rscai.microservices.inventory.model.InventoryItem;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+
+/**
+ * Drives the service over HTTP with many concurrent clients, once on Tomcat worker threads and
+ * once on virtual threads, and prints throughput and latency percentiles per mode and client
+ * count. Each client is a blocking loop of 90% item reads and 10% single quantity changes.
+ *
+ * <p>Arguments: client counts (default {@code 1000,5000}), seconds measured per run (default 30)
+ * and modes (default {@code platform,virtual}). The virtual mode needs a Java 21 runtime. Spring
+ * properties given as system properties, e.g. {@code -Dspring.datasource.url=...}, override the
+ * embedded H2 database of the benchmark profile.
+ */
+public final class WebLoadTest {
+
+  private static final int ITEM_COUNT = 1000;
+  private static final int WARMUP_SECONDS = 5;
+  private static final int READ_PERCENT = 90;
+  private static final String TOKEN = "load-test";
+  // latencies are recorded in buckets of 100 microseconds, up to 10 seconds
+  private static final int LATENCY_BUCKETS = 100_000;
+  private static final long LATENCY_BUCKET_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
+  private WebLoadTest() {
+  }
+
+  public static void main(String[] args) throws Exception {
+    int[] clientCounts = Arrays.stream((args.length > 0 ? args[0] : "1000,5000").split(","))
+        .mapToInt(Integer::parseInt).toArray();
+    int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 30;
+    String[] modes = (args.length > 2 ? args[2] : "platform,virtual").split(",");
+    int maxClients = Arrays.stream(clientCounts).max().orElse(0);
+    // keep one idle connection per client instead of the default 5
+    System.setProperty("http.maxConnections", String.valueOf(maxClients));
+
+    System.out.printf("%-9s %8s %12s %10s %10s %10s %8s%n", "mode", "clients", "requests/s",
+        "p50 ms", "p99 ms", "max ms", "errors");
+    for (String mode : modes) {
+      ConfigurableApplicationContext context = start("virtual".equals(mode), maxClients);
+      try {
+        int port = ((ServletWebServerApplicationContext) context).getWebServer().getPort();
+        List<InventoryItem> items = BenchmarkApplication.createItems(context, ITEM_COUNT);
+        for (int clients : clientCounts) {
+          Run run = new Run(port, items, clients);
+          run.execute(seconds);
+          System.out.printf("%-9s %8d %12.0f %10.1f %10.1f %10.1f %8d%n", mode, clients,
+              run.requests() / (double) seconds, run.percentile(0.5), run.percentile(0.99),
+              run.percentile(1.0), run.errors.get());
+        }
+      } finally {
+        context.close();
+      }
+    }
+  }
+
+  private static ConfigurableApplicationContext start(boolean virtualThreads, int maxClients) {
+    // every bearer token is accepted, token validation is not part of this test
+    JwtDecoder jwtDecoder = token -> Jwt.withTokenValue(token).header("alg", "none")
+        .subject("load-test").claim("scope", "inventory.read inventory.write").build();
+    return new SpringApplicationBuilder(InventoryApplication.class).profiles("benchmark")
+        .initializers(context -> context.getBeanFactory()
+            .registerSingleton("jwtDecoder", jwtDecoder))
+        .properties("inventory.web.virtual-threads=" + virtualThreads,
+            "server.tomcat.max-connections=" + (maxClients * 2),
+            "server.tomcat.accept-count=" + maxClients)
+        .run();
+  }
+
+  private static final class Run {
+
+    private final String baseUrl;
+    private final List<InventoryItem> items;
+    private final int clients;
+    private final AtomicLong errors = new AtomicLong();
+    private final AtomicLongArray latencies = new AtomicLongArray(LATENCY_BUCKETS);
+    private volatile boolean measuring;
+    private volatile boolean stopped;
+
+    Run(int port, List<InventoryItem> items, int clients) {
+      this.baseUrl = "http://localhost:" + port;
+      this.items = items;
+      this.clients = clients;
+    }
+
+    void execute(int seconds) throws InterruptedException {
+      CountDownLatch done = new CountDownLatch(clients);
+      for (int i = 0; i < clients; i++) {
+        Thread client = new Thread(() -> {
+          try {
+            runClient();
+          } finally {
+            done.countDown();
+          }
+        }, "load-client-" + i);
+        client.setDaemon(true);
+        client.start();
+      }
+      TimeUnit.SECONDS.sleep(WARMUP_SECONDS);
+      measuring = true;
+      TimeUnit.SECONDS.sleep(seconds);
+      measuring = false;
+      stopped = true;
+      done.await();
+    }
+
+    private void runClient() {
+      ThreadLocalRandom random = ThreadLocalRandom.current();
+      while (!stopped) {
+        String itemId = items.get(random.nextInt(items.size())).getId();
+        long start = System.nanoTime();
+        boolean succeeded = random.nextInt(100) < READ_PERCENT ? getItem(itemId)
+            : changeQuantity(itemId);
+        long latency = System.nanoTime() - start;
+        if (measuring) {
+          if (succeeded) {
+            latencies.incrementAndGet(
+                (int) Math.min(latency / LATENCY_BUCKET_NANOS, LATENCY_BUCKETS - 1));
+          } else {
+            errors.incrementAndGet();
+          }
+        }
+      }
+    }
+
+    private boolean getItem(String itemId) {
+      return send("GET", "/inventoryItems/" + itemId, null);
+    }
+
+    private boolean changeQuantity(String itemId) {
+      String body = String.format(
+          "[{\"id\":\"%s\",\"inventoryItemId\":\"%s\",\"quantityChange\":-1}]",
+          UUID.randomUUID(), itemId);
+      return send("POST", "/inventoryItemQuantityChanges", body);
+    }
+
+    private boolean send(String method, String path, String body) {
+      try {
+        HttpURLConnection connection = (HttpURLConnection) new URL(baseUrl + path)
+            .openConnection();
+        connection.setRequestMethod(method);
+        connection.setRequestProperty("Authorization", "Bearer " + TOKEN);
+        connection.setConnectTimeout(10_000);
+        connection.setReadTimeout(30_000);
+        if (body != null) {
+          connection.setDoOutput(true);
+          connection.setRequestProperty("Content-Type", "application/json");
+          try (OutputStream output = connection.getOutputStream()) {
+            output.write(body.getBytes(StandardCharsets.UTF_8));
+          }
+        }
+        int status = connection.getResponseCode();
+        // drain the body so the connection goes back to the keep-alive cache
+        try (InputStream input = status < 400 ? connection.getInputStream()
+            : connection.getErrorStream()) {
+          if (input != null) {
+            byte[] buffer = new byte[8192];
+            while (input.read(buffer) != -1) {
+              // discard
+            }
+          }
+        }
+        return status < 400;
+      } catch (IOException e) {
+        return false;
+      }
+    }
+
+    long requests() {
+      long total = 0;
+      for (int i = 0; i < LATENCY_BUCKETS; i++) {
+        total += latencies.get(i);
+      }
+      return total;
+    }
+
+    double percentile(double quantile) {
+      long total = requests();
+      long rank = (long) Math.ceil(total * quantile);
+      long seen = 0;
+      for (int i = 0; i < LATENCY_BUCKETS; i++) {
+        seen += latencies.get(i);
+        if (seen >= rank && seen > 0) {
+          return (i + 1) * LATENCY_BUCKET_NANOS / (double) TimeUnit.MILLISECONDS.toNanos(1);
+        }
+      }
+      return 0;
+    }
+  }
+}
@@ -0,0 +1,39 @@
+package io.github.rscai.microservices.inventory;
+
+import io.github.rscai.microservices.inventory.service.CacheInvalidationBus;
+import io.github.rscai.microservices.inventory.service.CacheInvalidationProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.cloud.client.discovery.DiscoveryClient;
+import org.springframework.cloud.client.serviceregistry.Registration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.util.StringUtils;
+
+/**
+ * Keeps the inventory item caches of all instances coherent: evictions are broadcast to the peers
+ * registered under the same service id and received on {@link CacheInvalidationBus#PATH}.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "inventory.cache-invalidation", name = "enabled",
+    havingValue = "true")
+@EnableConfigurationProperties(CacheInvalidationProperties.class)
+public class CacheInvalidationConfig {
+
+  @Bean(initMethod = "start", destroyMethod = "close")
+  public CacheInvalidationBus cacheInvalidationBus(DiscoveryClient discoveryClient,
+      ObjectProvider<Registration> registration, CacheInvalidationProperties properties,
+      Environment environment, MeterRegistry meterRegistry) {
+    if (!StringUtils.hasText(properties.getToken())) {
+      // the endpoint receiving invalidations is not behind bearer token authentication
+      throw new IllegalStateException("inventory.cache-invalidation.token is required");
+    }
+    String serviceId = StringUtils.hasText(properties.getServiceId()) ? properties.getServiceId()
+        : environment.getRequiredProperty("spring.application.name");
+    return new CacheInvalidationBus(discoveryClient, registration.getIfAvailable(), serviceId,
+        properties, meterRegistry);
+  }
+}
@@ -0,0 +1,37 @@
+package io.github.rscai.microservices.inventory;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.hateoas.mediatype.MessageResolver;
+import org.springframework.hateoas.mediatype.hal.CurieProvider;
+import org.springframework.hateoas.mediatype.hal.HalConfiguration;
+import org.springframework.hateoas.mediatype.hal.Jackson2HalModule;
+import org.springframework.hateoas.server.LinkRelationProvider;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+/**
+ * Serves {@code application/cbor}, a binary encoding of the JSON representations, for clients
+ * sending large quantity change batches. The converter replaces the one Spring MVC registers by
+ * default, so CBOR is mapped with the same Jackson settings as JSON, and links are rendered in HAL
+ * as {@code _links}, the way the HAL JSON converter renders them.
+ */
+@Configuration
+public class CborConfig {
+
+  @Bean
+  public MappingJackson2CborHttpMessageConverter cborHttpMessageConverter(
+      Jackson2ObjectMapperBuilder objectMapperBuilder, LinkRelationProvider linkRelationProvider,
+      ObjectProvider<CurieProvider> curieProvider, MessageResolver messageResolver,
+      ObjectProvider<HalConfiguration> halConfiguration) {
+    ObjectMapper objectMapper = objectMapperBuilder.factory(new CBORFactory()).build();
+    objectMapper.registerModule(new Jackson2HalModule());
+    objectMapper.setHandlerInstantiator(new Jackson2HalModule.HalHandlerInstantiator(
+        linkRelationProvider, curieProvider.getIfAvailable(() -> CurieProvider.NONE),
+        messageResolver, halConfiguration.getIfAvailable(HalConfiguration::new)));
+    return new MappingJackson2CborHttpMessageConverter(objectMapper);
+  }
+}
@@ -0,0 +1,35 @@
+package io.github.rscai.microservices.inventory;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+
+/**
+ * Pools of databases besides {@code spring.datasource}, e.g. shards and replicas, configured by
+ * {@code spring.datasource.hikari} like its pool.
+ */
+final class DataSources {
+
+  private DataSources() {
+  }
+
+  static HikariDataSource create(Binder binder, String poolName, String url, String username,
+      String password, String driverClassName) {
+    DataSourceBuilder<HikariDataSource> builder = DataSourceBuilder.create()
+        .type(HikariDataSource.class).url(url);
+    if (username != null) {
+      builder.username(username);
+    }
+    if (password != null) {
+      builder.password(password);
+    }
+    if (driverClassName != null) {
+      builder.driverClassName(driverClassName);
+    }
+    HikariDataSource dataSource = builder.build();
+    binder.bind("spring.datasource.hikari", Bindable.ofInstance(dataSource));
+    dataSource.setPoolName(poolName);
+    return dataSource;
+  }
+}
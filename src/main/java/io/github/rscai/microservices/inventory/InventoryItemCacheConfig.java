@@ -0,0 +1,29 @@
+package io.github.rscai.microservices.inventory;
+
+import io.github.rscai.microservices.inventory.repository.InventoryItemRepository;
+import io.github.rscai.microservices.inventory.service.CacheInvalidationBus;
+import io.github.rscai.microservices.inventory.service.InventoryItemCache;
+import io.github.rscai.microservices.inventory.service.InventoryItemCacheProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import javax.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@EnableConfigurationProperties(InventoryItemCacheProperties.class)
+public class InventoryItemCacheConfig {
+
+  @Bean
+  public InventoryItemCache inventoryItemCache(InventoryItemRepository inventoryItemRepository,
+      InventoryItemCacheProperties properties, ObjectProvider<CacheInvalidationBus> invalidationBus,
+      EntityManagerFactory entityManagerFactory, MeterRegistry meterRegistry) {
+    SessionFactory sessionFactory = entityManagerFactory.unwrap(SessionFactory.class);
+    return new InventoryItemCache(inventoryItemRepository, properties,
+        invalidationBus.getIfAvailable(),
+        sessionFactory.getSessionFactoryOptions().isSecondLevelCacheEnabled()
+            ? sessionFactory.getCache() : null, meterRegistry);
+  }
+}
@@ -0,0 +1,25 @@
+package io.github.rscai.microservices.inventory;
+
+import io.github.rscai.microservices.inventory.model.InventoryItemIdStrategy;
+import io.github.rscai.microservices.inventory.service.InventoryItemIdProperties;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@EnableConfigurationProperties(InventoryItemIdProperties.class)
+public class InventoryItemIdConfig {
+
+  @Bean
+  public InventoryItemIdStrategy inventoryItemIdStrategy(InventoryItemIdProperties properties) {
+    return properties.getStrategy();
+  }
+
+  @Bean
+  public HibernatePropertiesCustomizer inventoryItemIdHibernatePropertiesCustomizer(
+      InventoryItemIdStrategy strategy) {
+    return hibernateProperties -> hibernateProperties
+        .put(InventoryItemIdStrategy.SETTING, strategy.name());
+  }
+}
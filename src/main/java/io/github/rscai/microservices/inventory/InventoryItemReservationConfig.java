@@ -0,0 +1,33 @@
+package io.github.rscai.microservices.inventory;
+
+import io.github.rscai.microservices.inventory.repository.InventoryItemRepository;
+import io.github.rscai.microservices.inventory.repository.InventoryItemReservationRepository;
+import io.github.rscai.microservices.inventory.repository.Shards;
+import io.github.rscai.microservices.inventory.service.InventoryItemCache;
+import io.github.rscai.microservices.inventory.service.InventoryItemQuantityChangeService;
+import io.github.rscai.microservices.inventory.service.InventoryItemReservationService;
+import io.github.rscai.microservices.inventory.service.ReservationProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.transaction.PlatformTransactionManager;
+
+@Configuration
+@EnableConfigurationProperties(ReservationProperties.class)
+public class InventoryItemReservationConfig {
+
+  @Bean(initMethod = "start", destroyMethod = "close")
+  public InventoryItemReservationService inventoryItemReservationService(
+      InventoryItemRepository inventoryItemRepository,
+      InventoryItemReservationRepository reservationRepository,
+      InventoryItemQuantityChangeService quantityChangeService,
+      InventoryItemCache inventoryItemCache, PlatformTransactionManager transactionManager,
+      ReservationProperties properties, ObjectProvider<Shards> shards,
+      MeterRegistry meterRegistry) {
+    return new InventoryItemReservationService(inventoryItemRepository, reservationRepository,
+        quantityChangeService, inventoryItemCache, transactionManager, properties,
+        shards.getIfAvailable(), meterRegistry);
+  }
+}
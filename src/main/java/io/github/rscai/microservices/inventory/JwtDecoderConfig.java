@@ -0,0 +1,48 @@
+package io.github.rscai.microservices.inventory;
+
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.proc.JWSVerificationKeySelector;
+import com.nimbusds.jose.proc.SecurityContext;
+import com.nimbusds.jwt.proc.DefaultJWTProcessor;
+import io.github.rscai.microservices.inventory.service.CachingJwtDecoder;
+import io.github.rscai.microservices.inventory.service.JwtCacheProperties;
+import io.github.rscai.microservices.inventory.service.RefreshingJwkSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.security.oauth2.resource.OAuth2ResourceServerProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.NimbusJwtDecoder;
+
+/**
+ * Replaces the auto-configured {@link JwtDecoder}: keys come from a {@link RefreshingJwkSource}
+ * instead of being fetched on demand by a request thread, and validated tokens are cached.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "spring.security.oauth2.resourceserver.jwt", name = "jwk-set-uri")
+@ConditionalOnMissingBean(JwtDecoder.class)
+@EnableConfigurationProperties(JwtCacheProperties.class)
+public class JwtDecoderConfig {
+
+  @Bean(initMethod = "start", destroyMethod = "close")
+  public RefreshingJwkSource jwkSource(OAuth2ResourceServerProperties resourceServerProperties,
+      JwtCacheProperties properties) {
+    return new RefreshingJwkSource(resourceServerProperties.getJwt().getJwkSetUri(), properties);
+  }
+
+  @Bean
+  public JwtDecoder jwtDecoder(RefreshingJwkSource jwkSource,
+      OAuth2ResourceServerProperties resourceServerProperties, JwtCacheProperties properties,
+      MeterRegistry meterRegistry) {
+    DefaultJWTProcessor<SecurityContext> jwtProcessor = new DefaultJWTProcessor<>();
+    jwtProcessor.setJWSKeySelector(new JWSVerificationKeySelector<>(
+        JWSAlgorithm.parse(resourceServerProperties.getJwt().getJwsAlgorithm()), jwkSource));
+    // claims are checked by the JwtValidators of NimbusJwtDecoder
+    jwtProcessor.setJWTClaimsSetVerifier((claims, context) -> {
+    });
+    return new CachingJwtDecoder(new NimbusJwtDecoder(jwtProcessor), properties, meterRegistry);
+  }
+}
@@ -0,0 +1,94 @@
+package io.github.rscai.microservices.inventory;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.Arrays;
+import javax.sql.DataSource;
+import org.springframework.aop.framework.Advised;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.repository.Repository;
+import org.springframework.hateoas.server.core.DelegatingEntityLinks;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Times calls to the application's repositories ({@code inventory.repository}), to
+ * {@link org.springframework.hateoas.server.EntityLinks} ({@code inventory.links}) and to the
+ * {@link JwtDecoder} ({@code inventory.jwt.decode}), and counts statements per request
+ * ({@code inventory.request.statements}).
+ */
+@Configuration
+public class MetricsConfig {
+
+  private static final String APPLICATION_PACKAGE = MetricsConfig.class.getPackage().getName();
+
+  @Bean
+  public static BeanPostProcessor methodTimingPostProcessor(
+      ObjectProvider<MeterRegistry> meterRegistry) {
+    return new BeanPostProcessor() {
+      @Override
+      public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (bean instanceof Repository && bean instanceof Advised) {
+          Class<?> repositoryInterface = Arrays.stream(((Advised) bean).getProxiedInterfaces())
+              .filter(type -> type.getName().startsWith(APPLICATION_PACKAGE)).findFirst()
+              .orElse(null);
+          if (repositoryInterface != null) {
+            ((Advised) bean).addAdvice(0, new TimingInterceptor("inventory.repository",
+                repositoryInterface.getSimpleName(), meterRegistry));
+          }
+          return bean;
+        }
+        if (bean instanceof DelegatingEntityLinks) {
+          // keep the class, the EntityLinks plugin registry excludes DelegatingEntityLinks by type
+          return timed(bean, true,
+              new TimingInterceptor("inventory.links", "EntityLinks", meterRegistry));
+        }
+        if (bean instanceof JwtDecoder) {
+          return timed(bean, false,
+              new TimingInterceptor("inventory.jwt.decode", "JwtDecoder", meterRegistry));
+        }
+        return bean;
+      }
+    };
+  }
+
+  @Bean
+  @ConditionalOnProperty(prefix = "inventory.metrics", name = "statements-per-request",
+      havingValue = "true", matchIfMissing = true)
+  public static BeanPostProcessor requestStatementCountingPostProcessor() {
+    return new BeanPostProcessor() {
+      @Override
+      public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (bean instanceof DataSource && !(bean instanceof StatementCountingDataSource)) {
+          return new StatementCountingDataSource((DataSource) bean);
+        }
+        return bean;
+      }
+    };
+  }
+
+  @Bean
+  @ConditionalOnProperty(prefix = "inventory.metrics", name = "statements-per-request",
+      havingValue = "true", matchIfMissing = true)
+  public WebMvcConfigurer statementsPerRequestConfigurer(MeterRegistry meterRegistry) {
+    return new WebMvcConfigurer() {
+      @Override
+      public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(new StatementsPerRequestInterceptor(meterRegistry));
+      }
+    };
+  }
+
+  private static Object timed(Object bean, boolean proxyTargetClass,
+      TimingInterceptor interceptor) {
+    ProxyFactory proxyFactory = new ProxyFactory(bean);
+    proxyFactory.setProxyTargetClass(proxyTargetClass);
+    proxyFactory.addAdvice(interceptor);
+    return proxyFactory.getProxy();
+  }
+}
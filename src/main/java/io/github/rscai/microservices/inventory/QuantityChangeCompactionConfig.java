@@ -0,0 +1,20 @@
+package io.github.rscai.microservices.inventory;
+
+import io.github.rscai.microservices.inventory.service.QuantityChangeCompactionJob;
+import io.github.rscai.microservices.inventory.service.QuantityChangeCompactionProperties;
+import io.github.rscai.microservices.inventory.service.QuantityChangeCompactionService;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConditionalOnProperty(prefix = "inventory.compaction", name = "enabled", havingValue = "true")
+public class QuantityChangeCompactionConfig {
+
+  @Bean(initMethod = "start", destroyMethod = "close")
+  public QuantityChangeCompactionJob quantityChangeCompactionJob(
+      QuantityChangeCompactionService compactionService,
+      QuantityChangeCompactionProperties properties) {
+    return new QuantityChangeCompactionJob(compactionService, properties);
+  }
+}
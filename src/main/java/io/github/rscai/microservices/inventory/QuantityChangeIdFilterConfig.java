@@ -0,0 +1,24 @@
+package io.github.rscai.microservices.inventory;
+
+import io.github.rscai.microservices.inventory.repository.InventoryItemQuantityChangeRepository;
+import io.github.rscai.microservices.inventory.service.QuantityChangeIdFilter;
+import io.github.rscai.microservices.inventory.service.QuantityChangeIdFilterProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConditionalOnProperty(prefix = "inventory.id-filter", name = "enabled", havingValue = "true",
+    matchIfMissing = true)
+@EnableConfigurationProperties(QuantityChangeIdFilterProperties.class)
+public class QuantityChangeIdFilterConfig {
+
+  @Bean(initMethod = "start", destroyMethod = "close")
+  public QuantityChangeIdFilter quantityChangeIdFilter(
+      InventoryItemQuantityChangeRepository quantityChangeRepository,
+      QuantityChangeIdFilterProperties properties, MeterRegistry meterRegistry) {
+    return new QuantityChangeIdFilter(quantityChangeRepository, properties, meterRegistry);
+  }
+}
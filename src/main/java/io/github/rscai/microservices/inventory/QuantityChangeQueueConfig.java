@@ -0,0 +1,28 @@
+package io.github.rscai.microservices.inventory;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.github.rscai.microservices.inventory.repository.InventoryItemQuantityChangeBatchRepository;
+import io.github.rscai.microservices.inventory.service.InventoryItemQuantityChangeService;
+import io.github.rscai.microservices.inventory.service.QuantityChangeQueue;
+import io.github.rscai.microservices.inventory.service.QuantityChangeQueueProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConditionalOnProperty(prefix = "inventory.quantity-change-queue", name = "enabled",
+    havingValue = "true")
+@EnableConfigurationProperties(QuantityChangeQueueProperties.class)
+public class QuantityChangeQueueConfig {
+
+  @Bean(initMethod = "start", destroyMethod = "close")
+  public QuantityChangeQueue quantityChangeQueue(
+      InventoryItemQuantityChangeService quantityChangeService,
+      InventoryItemQuantityChangeBatchRepository batchRepository, ObjectMapper objectMapper,
+      QuantityChangeQueueProperties properties, MeterRegistry meterRegistry) {
+    return new QuantityChangeQueue(quantityChangeService, batchRepository, objectMapper,
+        properties, meterRegistry);
+  }
+}
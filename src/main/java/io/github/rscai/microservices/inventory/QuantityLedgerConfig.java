@@ -0,0 +1,40 @@
+package io.github.rscai.microservices.inventory;
+
+import io.github.rscai.microservices.inventory.repository.InventoryItemQuantityChangeRepository;
+import io.github.rscai.microservices.inventory.repository.InventoryItemRepository;
+import io.github.rscai.microservices.inventory.repository.Shards;
+import io.github.rscai.microservices.inventory.service.InventoryItemCache;
+import io.github.rscai.microservices.inventory.service.QuantityLedger;
+import io.github.rscai.microservices.inventory.service.QuantityLedgerProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.transaction.PlatformTransactionManager;
+
+@Configuration
+@ConditionalOnProperty(prefix = "inventory.ledger", name = "enabled", havingValue = "true")
+@EnableConfigurationProperties(QuantityLedgerProperties.class)
+public class QuantityLedgerConfig {
+
+  @Bean(initMethod = "start", destroyMethod = "close")
+  public QuantityLedger quantityLedger(InventoryItemRepository inventoryItemRepository,
+      InventoryItemQuantityChangeRepository quantityChangeRepository,
+      PlatformTransactionManager transactionManager, InventoryItemCache inventoryItemCache,
+      QuantityLedgerProperties properties, ObjectProvider<Shards> shards,
+      MeterRegistry meterRegistry, Environment environment) {
+    if (environment.getProperty("inventory.quantity-change.prevent-oversell", Boolean.class,
+        false)) {
+      // changes are accepted before their item is updated, against a quantity missing the
+      // changes still unapplied
+      throw new IllegalStateException(
+          "inventory.quantity-change.prevent-oversell can not be enabled with inventory.ledger");
+    }
+    return new QuantityLedger(inventoryItemRepository, quantityChangeRepository,
+        transactionManager, inventoryItemCache, properties, shards.getIfAvailable(),
+        meterRegistry);
+  }
+}
@@ -0,0 +1,71 @@
+package io.github.rscai.microservices.inventory;
+
+import io.github.rscai.microservices.inventory.controller.InventoryItemController;
+import io.github.rscai.microservices.inventory.repository.ReplicaRoutingDataSource;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+
+/**
+ * Lets GET requests to {@link InventoryItemController} read from replicas. A client carrying the
+ * time of its last write, handed out by {@link WrittenAtFilter} as the {@value #WRITTEN_AT} header
+ * or cookie, only reads from replicas which have replayed the primary up to that time, and
+ * otherwise from the primary, so it sees its own writes whichever instance serves it.
+ */
+class ReplicaReadInterceptor implements AsyncHandlerInterceptor {
+
+  static final String WRITTEN_AT = "Inventory-Written-At";
+
+  @Override
+  public boolean preHandle(HttpServletRequest request, HttpServletResponse response,
+      Object handler) {
+    if (isRead(request) && handler instanceof HandlerMethod
+        && ((HandlerMethod) handler).getBeanType() == InventoryItemController.class) {
+      ReplicaRoutingDataSource.allowReplicaReads(writtenAt(request));
+    }
+    return true;
+  }
+
+  @Override
+  public void afterConcurrentHandlingStarted(HttpServletRequest request,
+      HttpServletResponse response, Object handler) {
+    ReplicaRoutingDataSource.disallowReplicaReads();
+  }
+
+  @Override
+  public void afterCompletion(HttpServletRequest request, HttpServletResponse response,
+      Object handler, Exception ex) {
+    ReplicaRoutingDataSource.disallowReplicaReads();
+  }
+
+  static boolean isRead(HttpServletRequest request) {
+    return "GET".equals(request.getMethod()) || "HEAD".equals(request.getMethod());
+  }
+
+  /**
+   * @return the time of the client's last write, in epoch milliseconds, 0 if none is carried
+   */
+  private static long writtenAt(HttpServletRequest request) {
+    String value = request.getHeader(WRITTEN_AT);
+    if (value == null && request.getCookies() != null) {
+      for (Cookie cookie : request.getCookies()) {
+        if (WRITTEN_AT.equals(cookie.getName())) {
+          value = cookie.getValue();
+        }
+      }
+    }
+    if (value == null) {
+      return 0;
+    }
+    try {
+      return Long.parseLong(value);
+    } catch (NumberFormatException e) {
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+          String.format("%s must be epoch milliseconds", WRITTEN_AT), e);
+    }
+  }
+}
@@ -0,0 +1,116 @@
+package io.github.rscai.microservices.inventory;
+
+import io.github.rscai.microservices.inventory.repository.ReplicaRoutingDataSource;
+import io.github.rscai.microservices.inventory.service.ReplicationProperties;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import javax.sql.DataSource;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.core.env.Environment;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Puts the {@code spring.datasource} as primary behind a {@link ReplicaRoutingDataSource}, which
+ * serves reads of inventory item GET requests from replicas as allowed by
+ * {@link ReplicaReadInterceptor}, and hands clients of writes the time of their write by
+ * {@link WrittenAtFilter}. Connections handed out by the primary and by replicas are counted
+ * as {@code inventory.datasource.connections}.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "inventory.replication", name = "enabled", havingValue = "true")
+@EnableConfigurationProperties(ReplicationProperties.class)
+public class ReplicationConfig {
+
+  @Bean
+  public static BeanPostProcessor replicaRoutingDataSourcePostProcessor(Environment environment) {
+    return new ReplicaRoutingDataSourcePostProcessor(environment);
+  }
+
+  @Bean
+  public WebMvcConfigurer replicaReadConfigurer(ReplicationProperties properties) {
+    return new WebMvcConfigurer() {
+      @Override
+      public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(new ReplicaReadInterceptor());
+      }
+    };
+  }
+
+  @Bean
+  public FilterRegistrationBean<WrittenAtFilter> writtenAtFilter(
+      ReplicationProperties properties) {
+    return new FilterRegistrationBean<>(
+        new WrittenAtFilter(properties.getMaxLag(), properties.getHealthCheckInterval()));
+  }
+
+  @Bean
+  public MeterBinder replicaRoutingMetrics(DataSource dataSource) throws SQLException {
+    ReplicaRoutingDataSource routingDataSource = dataSource
+        .unwrap(ReplicaRoutingDataSource.class);
+    return registry -> {
+      FunctionCounter.builder("inventory.datasource.connections", routingDataSource,
+          ReplicaRoutingDataSource::getPrimaryConnections).tag("target", "primary")
+          .register(registry);
+      FunctionCounter.builder("inventory.datasource.connections", routingDataSource,
+          ReplicaRoutingDataSource::getReplicaConnections).tag("target", "replica")
+          .register(registry);
+      Gauge.builder("inventory.datasource.replicas.healthy", routingDataSource,
+          ReplicaRoutingDataSource::getHealthyReplicas).register(registry);
+    };
+  }
+
+  /**
+   * Wraps the data source before any other post processor, e.g. statement counting, sees it.
+   */
+  private static class ReplicaRoutingDataSourcePostProcessor implements BeanPostProcessor,
+      Ordered {
+
+    private final Environment environment;
+
+    ReplicaRoutingDataSourcePostProcessor(Environment environment) {
+      this.environment = environment;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+      if (!(bean instanceof DataSource) || bean instanceof ReplicaRoutingDataSource) {
+        return bean;
+      }
+      if (environment.getProperty("inventory.sharding.enabled", Boolean.class, false)) {
+        // replicas would serve the reads of every shard
+        throw new IllegalStateException("inventory.replication can not be enabled with sharding");
+      }
+      Binder binder = Binder.get(environment);
+      ReplicationProperties properties = binder
+          .bind("inventory.replication", ReplicationProperties.class)
+          .orElseGet(ReplicationProperties::new);
+      List<DataSource> replicas = new ArrayList<>();
+      for (ReplicationProperties.Replica replica : properties.getReplicas()) {
+        replicas.add(DataSources.create(binder, "inventory-replica-" + replicas.size(),
+            replica.getUrl(), replica.getUsername(), replica.getPassword(),
+            replica.getDriverClassName()));
+      }
+      ReplicaRoutingDataSource routingDataSource = new ReplicaRoutingDataSource(
+          (DataSource) bean, replicas, properties.getMaxLag());
+      routingDataSource.start(properties.getHealthCheckInterval());
+      return routingDataSource;
+    }
+
+    @Override
+    public int getOrder() {
+      return Ordered.HIGHEST_PRECEDENCE;
+    }
+  }
+}
@@ -0,0 +1,76 @@
+package io.github.rscai.microservices.inventory;
+
+import com.github.benmanes.caffeine.jcache.configuration.CaffeineConfiguration;
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+import io.github.rscai.microservices.inventory.model.InventoryItem;
+import io.github.rscai.microservices.inventory.repository.InventoryItemRepository;
+import io.github.rscai.microservices.inventory.service.SecondLevelCacheProperties;
+import io.github.rscai.microservices.inventory.service.SecondLevelCacheProperties.Region;
+import java.net.URI;
+import java.util.OptionalLong;
+import java.util.UUID;
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.hibernate.cache.spi.RegionFactory;
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Hibernate second-level cache on Caffeine through JCache. Regions are created up front with the
+ * configured bounds; Hibernate reports hits, misses and puts per region as
+ * {@code hibernate.second.level.cache.*} meters, and natural id and query cache totals as
+ * {@code hibernate.cache.natural.id.*} and {@code hibernate.cache.query.*}.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "inventory.second-level-cache", name = "enabled",
+    havingValue = "true")
+@EnableConfigurationProperties(SecondLevelCacheProperties.class)
+public class SecondLevelCacheConfig {
+
+  @Bean(destroyMethod = "close")
+  public CacheManager secondLevelCacheManager(SecondLevelCacheProperties properties) {
+    // a manager of its own, so contexts sharing the class loader do not share regions
+    CacheManager cacheManager = Caching
+        .getCachingProvider(CaffeineCachingProvider.class.getName())
+        .getCacheManager(URI.create("inventory-second-level-cache-" + UUID.randomUUID()),
+            getClass().getClassLoader());
+    createRegion(cacheManager, InventoryItem.CACHE_REGION, properties.getItems());
+    createRegion(cacheManager, InventoryItem.NATURAL_ID_CACHE_REGION, properties.getItems());
+    createRegion(cacheManager, InventoryItemRepository.QUERY_CACHE_REGION,
+        properties.getQueries());
+    createRegion(cacheManager, RegionFactory.DEFAULT_QUERY_RESULTS_REGION_UNQUALIFIED_NAME,
+        properties.getQueries());
+    // query results are checked against the last update of their tables, which must not be lost
+    // before the results expire
+    createRegion(cacheManager, RegionFactory.DEFAULT_UPDATE_TIMESTAMPS_REGION_UNQUALIFIED_NAME,
+        null);
+    return cacheManager;
+  }
+
+  @Bean
+  public HibernatePropertiesCustomizer secondLevelCacheCustomizer(CacheManager cacheManager) {
+    return hibernateProperties -> {
+      hibernateProperties.put(AvailableSettings.USE_SECOND_LEVEL_CACHE, "true");
+      hibernateProperties.put(AvailableSettings.USE_QUERY_CACHE, "true");
+      hibernateProperties.put(AvailableSettings.CACHE_REGION_FACTORY, "jcache");
+      hibernateProperties.put(ConfigSettings.CACHE_MANAGER, cacheManager);
+    };
+  }
+
+  private static void createRegion(CacheManager cacheManager, String name, Region region) {
+    CaffeineConfiguration<Object, Object> configuration = new CaffeineConfiguration<>();
+    if (region != null) {
+      configuration.setMaximumSize(OptionalLong.of(region.getMaximumSize()));
+      configuration.setExpireAfterWrite(OptionalLong.of(region.getTimeToLive().toNanos()));
+    }
+    // Hibernate caches disassembled state, copying it on every access is not needed
+    configuration.setStoreByValue(false);
+    configuration.setStatisticsEnabled(true);
+    cacheManager.createCache(name, configuration);
+  }
+}
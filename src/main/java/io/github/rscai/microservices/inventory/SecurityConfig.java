@@ -1,6 +1,8 @@
 package io.github.rscai.microservices.inventory;
 
+import io.github.rscai.microservices.inventory.service.CacheInvalidationBus;
 import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpMethod;
 import org.springframework.security.config.annotation.method.configuration.EnableGlobalMethodSecurity;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
@@ -16,6 +18,8 @@ public class SecurityConfig extends WebSecurityConfigurerAdapter {
     http
         .csrf().disable()
         .authorizeRequests()
+        // peers authenticate with the shared token of inventory.cache-invalidation
+        .antMatchers(HttpMethod.POST, CacheInvalidationBus.PATH).permitAll()
         .anyRequest().authenticated()
         .and()
         .oauth2ResourceServer()
@@ -0,0 +1,158 @@
+package io.github.rscai.microservices.inventory;
+
+import io.github.rscai.microservices.inventory.model.InventoryItemIdStrategy;
+import io.github.rscai.microservices.inventory.repository.ShardRoutingDataSource;
+import io.github.rscai.microservices.inventory.repository.ShardRoutingInterceptor;
+import io.github.rscai.microservices.inventory.repository.Shards;
+import io.github.rscai.microservices.inventory.service.InventoryItemIdProperties;
+import io.github.rscai.microservices.inventory.service.ShardingProperties;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import javax.sql.DataSource;
+import org.hibernate.boot.Metadata;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.engine.config.spi.ConfigurationService;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.integrator.spi.Integrator;
+import org.hibernate.jpa.boot.spi.IntegratorProvider;
+import org.hibernate.service.spi.SessionFactoryServiceRegistry;
+import org.hibernate.tool.schema.spi.SchemaManagementToolCoordinator;
+import org.springframework.aop.framework.Advised;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.core.env.Environment;
+import org.springframework.data.repository.Repository;
+
+/**
+ * Spreads storage over several databases: the {@code spring.datasource} becomes shard 0 of a
+ * {@link ShardRoutingDataSource}, repository calls are routed by {@link ShardRoutingInterceptor}
+ * and the schema is managed on every shard.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "inventory.sharding", name = "enabled", havingValue = "true")
+@EnableConfigurationProperties(ShardingProperties.class)
+public class ShardingConfig {
+
+  @Bean(destroyMethod = "close")
+  public Shards shards(ShardingProperties properties, Environment environment) {
+    if (environment.getProperty("inventory.compaction.enabled", Boolean.class, false)) {
+      // compaction relies on a sequence number order across all quantity changes
+      throw new IllegalStateException("inventory.compaction can not be enabled with sharding");
+    }
+    return new Shards(1 + properties.getShards().size());
+  }
+
+  @Bean
+  public HibernatePropertiesCustomizer shardingHibernatePropertiesCustomizer(Shards shards) {
+    return hibernateProperties -> {
+      // a session open in view must not keep the connection, and so the shard, of its first
+      // transaction for the next ones
+      hibernateProperties.put(AvailableSettings.CONNECTION_HANDLING,
+          "DELAYED_ACQUISITION_AND_RELEASE_AFTER_TRANSACTION");
+      hibernateProperties.put("hibernate.integrator_provider",
+          (IntegratorProvider) () -> Collections.singletonList(new ShardSchemaIntegrator(shards)));
+    };
+  }
+
+  @Bean
+  public static BeanPostProcessor shardRoutingDataSourcePostProcessor(Environment environment) {
+    return new ShardRoutingDataSourcePostProcessor(environment);
+  }
+
+  @Bean
+  public static BeanPostProcessor shardRoutingRepositoryPostProcessor(
+      ObjectProvider<Shards> shards, Environment environment) {
+    // bound here as post processors are created before configuration properties beans
+    InventoryItemIdStrategy idStrategy = Binder.get(environment)
+        .bind("inventory.ids", InventoryItemIdProperties.class)
+        .orElseGet(InventoryItemIdProperties::new).getStrategy();
+    return new BeanPostProcessor() {
+      @Override
+      public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (bean instanceof Repository && bean instanceof Advised) {
+          ((Advised) bean).addAdvice(0, new ShardRoutingInterceptor(shards, idStrategy));
+        }
+        return bean;
+      }
+    };
+  }
+
+  /**
+   * Wraps the data source before any other post processor, e.g. statement counting, sees it.
+   */
+  private static class ShardRoutingDataSourcePostProcessor implements BeanPostProcessor, Ordered {
+
+    private final Environment environment;
+
+    ShardRoutingDataSourcePostProcessor(Environment environment) {
+      this.environment = environment;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+      if (!(bean instanceof DataSource) || bean instanceof ShardRoutingDataSource) {
+        return bean;
+      }
+      Binder binder = Binder.get(environment);
+      List<ShardingProperties.Shard> shardProperties = binder
+          .bind("inventory.sharding.shards", Bindable.listOf(ShardingProperties.Shard.class))
+          .orElseGet(Collections::emptyList);
+      List<DataSource> shards = new ArrayList<>();
+      shards.add((DataSource) bean);
+      for (ShardingProperties.Shard properties : shardProperties) {
+        shards.add(DataSources.create(binder, "inventory-shard-" + shards.size(),
+            properties.getUrl(), properties.getUsername(), properties.getPassword(),
+            properties.getDriverClassName()));
+      }
+      return new ShardRoutingDataSource(shards);
+    }
+
+    @Override
+    public int getOrder() {
+      return Ordered.HIGHEST_PRECEDENCE;
+    }
+  }
+
+  /**
+   * Applies {@code spring.jpa.hibernate.ddl-auto} to shard 1 onwards as well; Hibernate itself only
+   * manages the schema of the shard it connects to unbound, shard 0.
+   */
+  private static class ShardSchemaIntegrator implements Integrator {
+
+    private final Shards shards;
+
+    ShardSchemaIntegrator(Shards shards) {
+      this.shards = shards;
+    }
+
+    @Override
+    public void integrate(Metadata metadata, SessionFactoryImplementor sessionFactory,
+        SessionFactoryServiceRegistry serviceRegistry) {
+      Map<?, ?> settings = serviceRegistry.getService(ConfigurationService.class).getSettings();
+      for (int shard = 1; shard < shards.count(); shard++) {
+        shards.on(shard, () -> {
+          // drops of create-drop are left to shard 0
+          SchemaManagementToolCoordinator.process(metadata, serviceRegistry, settings,
+              action -> {
+              });
+          return null;
+        });
+      }
+    }
+
+    @Override
+    public void disintegrate(SessionFactoryImplementor sessionFactory,
+        SessionFactoryServiceRegistry serviceRegistry) {
+    }
+  }
+}
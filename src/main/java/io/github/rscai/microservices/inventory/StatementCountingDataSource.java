@@ -0,0 +1,78 @@
+package io.github.rscai.microservices.inventory;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import javax.sql.DataSource;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+/**
+ * Counts statement executions, i.e. database round trips, of the current thread. A JDBC batch
+ * counts as one execution. Wraps the application's data sources unless
+ * {@code inventory.metrics.statements-per-request} is false.
+ */
+public class StatementCountingDataSource extends DelegatingDataSource implements AutoCloseable {
+
+  private static final ThreadLocal<long[]> EXECUTIONS = ThreadLocal.withInitial(() -> new long[1]);
+
+  StatementCountingDataSource(DataSource targetDataSource) {
+    super(targetDataSource);
+  }
+
+  /**
+   * @return executions of the current thread since the last reset
+   */
+  public static long executions() {
+    return EXECUTIONS.get()[0];
+  }
+
+  public static void reset() {
+    EXECUTIONS.get()[0] = 0;
+  }
+
+  @Override
+  public Connection getConnection() throws SQLException {
+    return proxy(Connection.class, super.getConnection());
+  }
+
+  @Override
+  public Connection getConnection(String username, String password) throws SQLException {
+    return proxy(Connection.class, super.getConnection(username, password));
+  }
+
+  /**
+   * Close the target, which the context would not find behind this wrapper otherwise.
+   */
+  @Override
+  public void close() throws Exception {
+    if (getTargetDataSource() instanceof AutoCloseable) {
+      ((AutoCloseable) getTargetDataSource()).close();
+    }
+  }
+
+  private static <T> T proxy(Class<T> type, T target) {
+    InvocationHandler handler = (proxy, method, args) -> {
+      Object result;
+      try {
+        result = method.invoke(target, args);
+      } catch (InvocationTargetException e) {
+        throw e.getCause();
+      }
+      if (method.getName().startsWith("execute")) {
+        EXECUTIONS.get()[0]++;
+      } else if (result instanceof PreparedStatement
+          && method.getName().equals("prepareStatement")) {
+        return proxy(PreparedStatement.class, (PreparedStatement) result);
+      } else if (result instanceof Statement && method.getName().equals("createStatement")) {
+        return proxy(Statement.class, (Statement) result);
+      }
+      return result;
+    };
+    return type.cast(Proxy.newProxyInstance(StatementCountingDataSource.class.getClassLoader(),
+        new Class[]{type}, handler));
+  }
+}
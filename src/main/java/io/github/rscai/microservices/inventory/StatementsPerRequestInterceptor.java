@@ -0,0 +1,46 @@
+package io.github.rscai.microservices.inventory;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+
+/**
+ * Records the statements executed by the request thread per request, by URI template. Work handed
+ * to other threads, e.g. change feed polls, is not counted.
+ */
+class StatementsPerRequestInterceptor implements HandlerInterceptor {
+
+  private final MeterRegistry meterRegistry;
+  private final ConcurrentMap<String, DistributionSummary> summaries = new ConcurrentHashMap<>();
+
+  StatementsPerRequestInterceptor(MeterRegistry meterRegistry) {
+    this.meterRegistry = meterRegistry;
+  }
+
+  @Override
+  public boolean preHandle(HttpServletRequest request, HttpServletResponse response,
+      Object handler) {
+    StatementCountingDataSource.reset();
+    return true;
+  }
+
+  @Override
+  public void afterCompletion(HttpServletRequest request, HttpServletResponse response,
+      Object handler, Exception ex) {
+    Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+    String uri = pattern == null ? "UNKNOWN" : pattern.toString();
+    DistributionSummary summary = summaries.get(uri);
+    if (summary == null) {
+      summary = summaries.computeIfAbsent(uri, key -> DistributionSummary
+          .builder("inventory.request.statements").tag("uri", key)
+          .description("statements executed by the request thread")
+          .publishPercentileHistogram().register(meterRegistry));
+    }
+    summary.record(StatementCountingDataSource.executions());
+  }
+}
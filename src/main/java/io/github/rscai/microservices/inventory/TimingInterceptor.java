@@ -0,0 +1,48 @@
+package io.github.rscai.microservices.inventory;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.lang.reflect.Method;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.beans.factory.ObjectProvider;
+
+/**
+ * Records each call in a timer tagged with the called method. Timers are registered on first
+ * call of their method and looked up by {@link Method} afterwards, so a call allocates nothing.
+ */
+class TimingInterceptor implements MethodInterceptor {
+
+  private final String name;
+  private final String component;
+  private final ObjectProvider<MeterRegistry> meterRegistry;
+  private final ConcurrentMap<Method, Timer> timers = new ConcurrentHashMap<>();
+
+  TimingInterceptor(String name, String component, ObjectProvider<MeterRegistry> meterRegistry) {
+    this.name = name;
+    this.component = component;
+    this.meterRegistry = meterRegistry;
+  }
+
+  @Override
+  public Object invoke(MethodInvocation invocation) throws Throwable {
+    Timer timer = timers.get(invocation.getMethod());
+    if (timer == null) {
+      timer = timers.computeIfAbsent(invocation.getMethod(), this::register);
+    }
+    long start = System.nanoTime();
+    try {
+      return invocation.proceed();
+    } finally {
+      timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+  }
+
+  private Timer register(Method method) {
+    return Timer.builder(name).tag("component", component).tag("method", method.getName())
+        .publishPercentileHistogram().register(meterRegistry.getObject());
+  }
+}
@@ -0,0 +1,48 @@
+package io.github.rscai.microservices.inventory;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Handles each request on its own virtual thread instead of Tomcat's bounded worker pool, so
+ * requests waiting on the database no longer hold one of {@code server.tomcat.max-threads}
+ * platform threads. Concurrent database work stays bounded by the connection pool.
+ *
+ * <p>The build targets Java 8, so the executor is looked up reflectively; enabling this mode on a
+ * runtime without virtual threads (before Java 21) fails at startup.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "inventory.web", name = "virtual-threads", havingValue = "true")
+public class VirtualThreadConfig implements DisposableBean {
+
+  // not a bean: an Executor bean would replace the applicationTaskExecutor of async requests
+  private final ExecutorService requestExecutor = newVirtualThreadPerTaskExecutor();
+
+  @Bean
+  public TomcatProtocolHandlerCustomizer<?> virtualThreadProtocolHandlerCustomizer() {
+    return protocolHandler -> protocolHandler.setExecutor(requestExecutor);
+  }
+
+  @Override
+  public void destroy() {
+    requestExecutor.shutdown();
+  }
+
+  private static ExecutorService newVirtualThreadPerTaskExecutor() {
+    try {
+      return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor")
+          .invoke(null);
+    } catch (NoSuchMethodException e) {
+      throw new IllegalStateException(
+          "inventory.web.virtual-threads requires a Java 21 or later runtime", e);
+    } catch (IllegalAccessException | InvocationTargetException e) {
+      throw new IllegalStateException("Fail to create virtual thread executor", e);
+    }
+  }
+}
@@ -0,0 +1,106 @@
+package io.github.rscai.microservices.inventory;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.time.Duration;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+/**
+ * Hands the client of a write request the time of its write, as the
+ * {@value ReplicaReadInterceptor#WRITTEN_AT} header and cookie, for its later reads to be routed by
+ * {@link ReplicaReadInterceptor}. The time is taken as the response is committed, once the
+ * handler's transactions are, and the cookie expires once any replica within {@code maxLag} has
+ * replayed the write for sure.
+ */
+class WrittenAtFilter extends OncePerRequestFilter {
+
+  private final int cookieMaxAgeSeconds;
+
+  WrittenAtFilter(Duration maxLag, Duration healthCheckInterval) {
+    // a replica's lag is measured once per health check interval
+    this.cookieMaxAgeSeconds = Math.toIntExact(
+        maxLag.plus(healthCheckInterval).plusMillis(999).getSeconds());
+  }
+
+  @Override
+  protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+      FilterChain filterChain) throws ServletException, IOException {
+    if (ReplicaReadInterceptor.isRead(request)) {
+      filterChain.doFilter(request, response);
+      return;
+    }
+    WrittenAtResponse writtenAtResponse = new WrittenAtResponse(request, response);
+    filterChain.doFilter(request, writtenAtResponse);
+    // a response without body is committed only now
+    writtenAtResponse.stamp();
+  }
+
+  private class WrittenAtResponse extends HttpServletResponseWrapper {
+
+    private final HttpServletRequest request;
+    private boolean stamped;
+
+    WrittenAtResponse(HttpServletRequest request, HttpServletResponse response) {
+      super(response);
+      this.request = request;
+    }
+
+    void stamp() {
+      if (stamped || isCommitted()) {
+        return;
+      }
+      stamped = true;
+      String writtenAt = Long.toString(System.currentTimeMillis());
+      setHeader(ReplicaReadInterceptor.WRITTEN_AT, writtenAt);
+      Cookie cookie = new Cookie(ReplicaReadInterceptor.WRITTEN_AT, writtenAt);
+      String contextPath = request.getContextPath();
+      cookie.setPath(contextPath.isEmpty() ? "/" : contextPath);
+      cookie.setMaxAge(cookieMaxAgeSeconds);
+      cookie.setHttpOnly(true);
+      addCookie(cookie);
+    }
+
+    @Override
+    public ServletOutputStream getOutputStream() throws IOException {
+      stamp();
+      return super.getOutputStream();
+    }
+
+    @Override
+    public PrintWriter getWriter() throws IOException {
+      stamp();
+      return super.getWriter();
+    }
+
+    @Override
+    public void flushBuffer() throws IOException {
+      stamp();
+      super.flushBuffer();
+    }
+
+    @Override
+    public void sendError(int sc) throws IOException {
+      stamp();
+      super.sendError(sc);
+    }
+
+    @Override
+    public void sendError(int sc, String msg) throws IOException {
+      stamp();
+      super.sendError(sc, msg);
+    }
+
+    @Override
+    public void sendRedirect(String location) throws IOException {
+      stamp();
+      super.sendRedirect(location);
+    }
+  }
+}
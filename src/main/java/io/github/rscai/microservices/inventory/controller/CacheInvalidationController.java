@@ -0,0 +1,49 @@
+package io.github.rscai.microservices.inventory.controller;
+
+import io.github.rscai.microservices.inventory.model.InventoryItemCacheInvalidation;
+import io.github.rscai.microservices.inventory.service.CacheInvalidationBus;
+import io.github.rscai.microservices.inventory.service.InventoryItemCache;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * Receives cache evictions broadcast by peer instances. Peers authenticate with the shared token
+ * of {@code inventory.cache-invalidation} rather than a bearer token.
+ */
+@RestController
+public class CacheInvalidationController {
+
+  @Autowired
+  private ObjectProvider<CacheInvalidationBus> invalidationBus;
+  @Autowired
+  private InventoryItemCache cache;
+
+  @PostMapping(value = CacheInvalidationBus.PATH, consumes = MediaType.APPLICATION_JSON_VALUE)
+  @ResponseStatus(HttpStatus.NO_CONTENT)
+  public void invalidate(
+      @RequestHeader(value = CacheInvalidationBus.TOKEN_HEADER, required = false) String token,
+      @RequestHeader(value = CacheInvalidationBus.ORIGIN_HEADER, required = false) String origin,
+      @RequestBody InventoryItemCacheInvalidation invalidation) {
+    CacheInvalidationBus bus = invalidationBus.getIfAvailable();
+    if (bus == null) {
+      throw new ResponseStatusException(HttpStatus.NOT_FOUND);
+    }
+    boolean fromPeer;
+    try {
+      fromPeer = bus.accept(token, origin);
+    } catch (SecurityException e) {
+      throw new ResponseStatusException(HttpStatus.FORBIDDEN, e.getMessage());
+    }
+    if (fromPeer) {
+      cache.evict(invalidation);
+    }
+  }
+}
@@ -0,0 +1,100 @@
+package io.github.rscai.microservices.inventory.controller;
+
+import io.github.rscai.microservices.inventory.model.InventoryItem;
+import io.github.rscai.microservices.inventory.model.InventoryItemQuantityChange;
+import io.github.rscai.microservices.inventory.service.ChangeFeedService;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.hateoas.CollectionModel;
+import org.springframework.hateoas.EntityModel;
+import org.springframework.hateoas.IanaLinkRelations;
+import org.springframework.hateoas.Link;
+import org.springframework.hateoas.server.EntityLinks;
+import org.springframework.hateoas.server.LinkBuilder;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+import org.springframework.web.util.UriComponentsBuilder;
+
+/**
+ * Long-poll change feeds. Every response carries a next link to poll for the following page, even
+ * when the page is empty.
+ */
+@RestController
+@PreAuthorize("hasAuthority('SCOPE_inventory.read')")
+public class ChangeFeedController {
+
+  private final EntityLinks entityLinks;
+  @Autowired
+  private ChangeFeedService changeFeedService;
+
+  public ChangeFeedController(EntityLinks entityLinks) {
+    this.entityLinks = entityLinks;
+  }
+
+  @GetMapping(value = "inventoryItemQuantityChanges/feed", produces = "application/hal+json")
+  public DeferredResult<CollectionModel<EntityModel<InventoryItemQuantityChange>>> quantityChanges(
+      @RequestParam(value = "after", defaultValue = "") String after,
+      @RequestParam(value = "size", defaultValue = "100") int size) {
+    // links are built on a poller thread, outside of the request
+    LinkBuilder changeLinks = entityLinks.linkFor(InventoryItemQuantityChange.class);
+    UriComponentsBuilder requestUri = ServletUriComponentsBuilder.fromCurrentRequest();
+    return changeFeedService.pollQuantityChanges(parsePositions(after), size,
+        page -> feedPage(page.getEntries().stream()
+                .map(change -> new EntityModel<>(change,
+                    changeLinks.slash(change.getId()).withSelfRel()))
+                .collect(Collectors.toList()), requestUri,
+            requestUri.cloneBuilder().replaceQueryParam("after", formatPositions(page.getNext()))));
+  }
+
+  /**
+   * Items in the order their updates committed, and tombstones of deleted items, without links.
+   */
+  @GetMapping(value = "inventoryItems/feed", produces = "application/hal+json")
+  public DeferredResult<CollectionModel<EntityModel<Object>>> items(
+      @RequestParam(value = "cursor", defaultValue = "") String cursor,
+      @RequestParam(value = "size", defaultValue = "100") int size) {
+    long[] after = parsePositions(cursor.isEmpty() ? "" : Cursors.decode(cursor));
+    LinkBuilder itemLinks = entityLinks.linkFor(InventoryItem.class);
+    UriComponentsBuilder requestUri = ServletUriComponentsBuilder.fromCurrentRequest();
+    return changeFeedService.pollItems(after, size, page -> feedPage(page.getEntries().stream()
+            .map(entry -> entry instanceof InventoryItem ? new EntityModel<>(entry,
+                itemLinks.slash(((InventoryItem) entry).getId()).withSelfRel())
+                // tombstones have no resource to link to
+                : new EntityModel<>(entry))
+            .collect(Collectors.toList()), requestUri,
+        requestUri.cloneBuilder()
+            .replaceQueryParam("cursor", Cursors.encode(formatPositions(page.getNext())))));
+  }
+
+  /**
+   * @return feed position per shard of a comma separated list
+   */
+  private static long[] parsePositions(String positions) {
+    if (positions.isEmpty()) {
+      return new long[0];
+    }
+    try {
+      return Arrays.stream(positions.split(",")).mapToLong(Long::parseLong).toArray();
+    } catch (NumberFormatException e) {
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid feed position", e);
+    }
+  }
+
+  private static String formatPositions(long[] positions) {
+    return Arrays.stream(positions).mapToObj(String::valueOf).collect(Collectors.joining(","));
+  }
+
+  private static <T> CollectionModel<EntityModel<T>> feedPage(List<EntityModel<T>> entries,
+      UriComponentsBuilder self, UriComponentsBuilder next) {
+    return new CollectionModel<>(entries, new Link(self.toUriString()),
+        new Link(next.toUriString(), IanaLinkRelations.NEXT));
+  }
+}
@@ -0,0 +1,40 @@
+package io.github.rscai.microservices.inventory.controller;
+
+import io.github.rscai.microservices.inventory.service.InventoryItemBulkService;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+import javax.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+@RestController
+@RequestMapping("inventoryItems/bulk")
+@PreAuthorize("hasAuthority('SCOPE_inventory.read')")
+public class InventoryItemBulkController {
+
+  private static final String AUTHORITY_INVENTORY_WRITE = "hasAuthority('SCOPE_inventory.write')";
+  private static final String APPLICATION_NDJSON = "application/x-ndjson";
+
+  @Autowired
+  private InventoryItemBulkService bulkService;
+
+  @PostMapping(consumes = APPLICATION_NDJSON, produces = MediaType.APPLICATION_JSON_VALUE)
+  @PreAuthorize(AUTHORITY_INVENTORY_WRITE)
+  public Map<String, Long> importItems(HttpServletRequest request) throws IOException {
+    return Collections.singletonMap("imported", bulkService.importItems(request.getInputStream()));
+  }
+
+  @GetMapping(produces = APPLICATION_NDJSON)
+  public ResponseEntity<StreamingResponseBody> exportItems() {
+    return ResponseEntity.ok().contentType(MediaType.parseMediaType(APPLICATION_NDJSON))
+        .body(bulkService::exportItems);
+  }
+}
@@ -2,13 +2,27 @@ package io.github.rscai.microservices.inventory.controller;
 
 import io.github.rscai.microservices.inventory.model.InventoryItem;
 import io.github.rscai.microservices.inventory.repository.InventoryItemRepository;
+import io.github.rscai.microservices.inventory.repository.Shards;
+import io.github.rscai.microservices.inventory.service.InventoryItemCache;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 import javax.validation.constraints.NotNull;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.web.PagedResourcesAssembler;
+import org.springframework.hateoas.CollectionModel;
 import org.springframework.hateoas.EntityModel;
+import org.springframework.hateoas.IanaLinkRelations;
 import org.springframework.hateoas.Link;
 import org.springframework.hateoas.PagedModel;
 import org.springframework.hateoas.server.EntityLinks;
@@ -27,6 +41,7 @@ import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
 @RestController
 @RequestMapping("inventoryItems")
@@ -36,23 +51,32 @@ import org.springframework.web.server.ResponseStatusException;
 public class InventoryItemController {
 
   private static final String AUTHORITY_INVENTORY_WRITE = "hasAuthority('SCOPE_inventory.write')";
+  private static final int MAX_KEYSET_PAGE_SIZE = 2000;
+  private static final int MAX_LOOKUP_KEYS = 1000;
 
-  private final EntityLinks entityLinks;
+  private final SelfLinks selfLinks;
   @Autowired
   private PagedResourcesAssembler<InventoryItem> pagedResourcesAssembler;
   @Autowired
   private InventoryItemRepository repository;
+  @Autowired
+  private InventoryItemCache cache;
+  @Autowired
+  private ObjectProvider<Shards> shards;
 
   public InventoryItemController(EntityLinks entityLinks) {
-    this.entityLinks = entityLinks;
+    this.selfLinks = new SelfLinks(entityLinks, InventoryItem.class);
   }
 
   @PostMapping(consumes = {MediaType.APPLICATION_JSON_VALUE, "application/hal+json"})
   @ResponseStatus(HttpStatus.CREATED)
   @PreAuthorize(AUTHORITY_INVENTORY_WRITE)
   public EntityModel<InventoryItem> create(@RequestBody InventoryItem entity) {
+    // ids are generated, never taken from the request
+    entity.setId(null);
     InventoryItem createdOne = repository.save(entity);
-    return new EntityModel<>(createdOne, itemLinks(createdOne));
+    cache.evict(createdOne);
+    return new EntityModel<>(createdOne, itemLink(createdOne));
   }
 
   @PutMapping(value = "{id}", consumes = {MediaType.APPLICATION_JSON_VALUE, "application/hal+json"})
@@ -62,9 +86,17 @@ public class InventoryItemController {
       @RequestBody InventoryItem entity) {
     InventoryItem existedOne = repository.findById(id)
         .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
+    Shards itemShards = shards.getIfAvailable();
+    if (itemShards != null
+        && itemShards.shardOfProduct(entity.getProductId()) != itemShards.shardOf(id)) {
+      // items are stored on the shard of their productId and do not move
+      throw new ResponseStatusException(HttpStatus.CONFLICT,
+          "productId belongs to another shard, delete the item and create it anew");
+    }
+    cache.evict(existedOne);
     existedOne.setProductId(entity.getProductId());
     existedOne.setUnitPrice(entity.getUnitPrice());
-    repository.save(existedOne);
+    cache.evict(repository.save(existedOne));
   }
 
   @DeleteMapping("{id}")
@@ -73,26 +105,116 @@ public class InventoryItemController {
   public void delete(@PathVariable("id") String id) {
     InventoryItem existedOne = repository.findById(id)
         .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
-    repository.delete(existedOne);
+    // the tombstone tells item feed consumers about the deletion
+    if (repository.deleteWithTombstone(existedOne, new Date()) == 0) {
+      throw new ResponseStatusException(HttpStatus.NOT_FOUND);
+    }
+    cache.evict(existedOne);
   }
 
-  @GetMapping(value = "{id}", produces = "application/hal+json")
+  @GetMapping(value = "{id}", produces = {"application/hal+json",
+      MediaType.APPLICATION_CBOR_VALUE})
   public EntityModel<InventoryItem> getOne(@PathVariable("id") String id) {
-    InventoryItem existedOne = repository.findById(id)
+    InventoryItem existedOne = cache.findById(id)
         .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
-    return new EntityModel<>(existedOne, itemLinks(existedOne));
+    return new EntityModel<>(existedOne, itemLink(existedOne));
+  }
+
+  /**
+   * Get an item by productId, without searching for its id first.
+   */
+  @GetMapping(value = "byProductId/{productId}", produces = {"application/hal+json",
+      MediaType.APPLICATION_CBOR_VALUE})
+  public EntityModel<InventoryItem> getByProductId(@PathVariable("productId") String productId) {
+    InventoryItem existedOne = cache.findByProductId(productId)
+        .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
+    return new EntityModel<>(existedOne, itemLink(existedOne));
   }
 
   @GetMapping(value = "search/productIdIn", produces = "application/hal+json")
   public PagedModel<EntityModel<InventoryItem>> searchByProductId(
       @RequestParam("productId") List<String> productIds, @NotNull Pageable pageable) {
-    Page<InventoryItem> pagedItems = repository.findByProductIdIn(productIds, pageable);
+    Page<InventoryItem> pagedItems = cache.findByProductIdIn(productIds, pageable);
     return pagedResourcesAssembler.toModel(pagedItems);
   }
 
-  private Link[] itemLinks(final InventoryItem item) {
-    return new Link[]{
-        entityLinks.linkToItemResource(InventoryItem.class, item.getId())
-    };
+  /**
+   * Look up items by id or by productId at once, without paging, count query or links. Items are
+   * keyed by the requested id or productId; requested keys without an item are listed as missing.
+   */
+  @GetMapping(value = "lookup", produces = {MediaType.APPLICATION_JSON_VALUE,
+      MediaType.APPLICATION_CBOR_VALUE})
+  public Map<String, Object> lookup(
+      @RequestParam(value = "id", required = false) List<String> ids,
+      @RequestParam(value = "productId", required = false) List<String> productIds) {
+    if ((ids == null) == (productIds == null)) {
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+          "either id or productId is required");
+    }
+    Set<String> keys = new LinkedHashSet<>(ids == null ? productIds : ids);
+    if (keys.size() > MAX_LOOKUP_KEYS) {
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+          String.format("at most %d keys can be looked up at once", MAX_LOOKUP_KEYS));
+    }
+    Map<String, InventoryItem> items = ids == null ? cache.findAllByProductId(keys)
+        : cache.findAllById(keys);
+    Map<String, InventoryItem> orderedItems = new LinkedHashMap<>();
+    List<String> missing = new ArrayList<>();
+    for (String key : keys) {
+      InventoryItem item = items.get(key);
+      if (item == null) {
+        missing.add(key);
+      } else {
+        orderedItems.put(key, item);
+      }
+    }
+    Map<String, Object> result = new LinkedHashMap<>();
+    result.put("items", orderedItems);
+    result.put("missing", missing);
+    return result;
+  }
+
+  /**
+   * List all items in id order. Each page seeks past the last id of the previous page, so pages
+   * cost the same at any depth and no count query is issued.
+   */
+  @GetMapping(produces = "application/hal+json")
+  public CollectionModel<EntityModel<InventoryItem>> list(
+      @RequestParam(value = "cursor", defaultValue = "") String cursor,
+      @RequestParam(value = "size", defaultValue = "20") int size) {
+    return keysetPage(size,
+        pageable -> repository.findByIdGreaterThanOrderByIdAsc(Cursors.decode(cursor), pageable));
+  }
+
+  @GetMapping(value = "search/productIdIn", params = "cursor", produces = "application/hal+json")
+  public CollectionModel<EntityModel<InventoryItem>> searchByProductIdAfter(
+      @RequestParam("productId") List<String> productIds, @RequestParam("cursor") String cursor,
+      @RequestParam(value = "size", defaultValue = "20") int size) {
+    return keysetPage(size, pageable -> repository.findByProductIdInAndIdGreaterThanOrderByIdAsc(
+        productIds, Cursors.decode(cursor), pageable));
+  }
+
+  private CollectionModel<EntityModel<InventoryItem>> keysetPage(int size,
+      Function<Pageable, List<InventoryItem>> query) {
+    if (size < 1 || size > MAX_KEYSET_PAGE_SIZE) {
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+          String.format("size must be between 1 and %d", MAX_KEYSET_PAGE_SIZE));
+    }
+    // one extra row tells whether there is a next page
+    List<InventoryItem> items = query.apply(PageRequest.of(0, size + 1));
+    CollectionModel<EntityModel<InventoryItem>> model = new CollectionModel<>(
+        items.stream().limit(size).map(item -> new EntityModel<>(item, itemLink(item)))
+            .collect(Collectors.toList()),
+        new Link(ServletUriComponentsBuilder.fromCurrentRequest().toUriString()));
+    if (items.size() > size) {
+      model.add(new Link(ServletUriComponentsBuilder.fromCurrentRequest()
+          .replaceQueryParam("cursor", Cursors.encode(items.get(size - 1).getId()))
+          .replaceQueryParam("size", size).toUriString(), IanaLinkRelations.NEXT));
+    }
+    return model;
+  }
+
+  private Link itemLink(final InventoryItem item) {
+    return selfLinks.of(item.getId());
   }
 }
@@ -1,20 +1,34 @@
 package io.github.rscai.microservices.inventory.controller;
 
-import io.github.rscai.microservices.inventory.model.InventoryItem;
 import io.github.rscai.microservices.inventory.model.InventoryItemQuantityChange;
-import io.github.rscai.microservices.inventory.repository.InventoryItemQuantityChangeRepository;
-import io.github.rscai.microservices.inventory.repository.InventoryItemRepository;
+import io.github.rscai.microservices.inventory.model.InventoryItemQuantityChangeAck;
+import io.github.rscai.microservices.inventory.model.InventoryItemQuantityChangeAck.Status;
+import io.github.rscai.microservices.inventory.model.InventoryItemQuantityChangeBatch;
+import io.github.rscai.microservices.inventory.service.InventoryItemQuantityChangeService;
+import io.github.rscai.microservices.inventory.service.QuantityChangeQueue;
+import java.net.URI;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.hateoas.EntityModel;
+import org.springframework.hateoas.IanaLinkRelations;
 import org.springframework.hateoas.Link;
 import org.springframework.hateoas.server.EntityLinks;
 import org.springframework.hateoas.server.ExposesResourceFor;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
@@ -25,46 +39,96 @@ import org.springframework.web.server.ResponseStatusException;
 @ExposesResourceFor(InventoryItemQuantityChange.class)
 public class InventoryItemQuantityChangeController {
 
+  private static final String AUTHORITY_INVENTORY_READ = "hasAuthority('SCOPE_inventory.read')";
   private static final String AUTHORITY_INVENTORY_WRITE = "hasAuthority('SCOPE_inventory.write')";
 
   private final EntityLinks entityLinks;
+  private final SelfLinks selfLinks;
   @Autowired
-  private InventoryItemRepository inventoryItemRepository;
+  private InventoryItemQuantityChangeService quantityChangeService;
   @Autowired
-  private InventoryItemQuantityChangeRepository quantityChangeRepository;
+  private ObjectProvider<QuantityChangeQueue> quantityChangeQueue;
 
-  public InventoryItemQuantityChangeController(
-      EntityLinks entityLinks) {
+  public InventoryItemQuantityChangeController(EntityLinks entityLinks) {
     this.entityLinks = entityLinks;
+    this.selfLinks = new SelfLinks(entityLinks, InventoryItemQuantityChange.class);
   }
 
-  @PostMapping
-  @ResponseStatus(HttpStatus.CREATED)
+  /**
+   * Apply a batch of quantity changes. With {@code Prefer: return=minimal} the response carries
+   * only the id and status of each change instead of the changes with their links.
+   *
+   * <p>With {@code Prefer: respond-async}, and the quantity change queue enabled, the batch is
+   * only queued: the response is {@code 202 Accepted} with the batch status, whose location can
+   * be polled until the batch is processed.
+   */
+  @PostMapping(produces = {"application/hal+json", MediaType.APPLICATION_JSON_VALUE,
+      MediaType.APPLICATION_CBOR_VALUE})
   @PreAuthorize(AUTHORITY_INVENTORY_WRITE)
-  public List<EntityModel<InventoryItemQuantityChange>> create(
-      @RequestBody List<InventoryItemQuantityChange> changes) {
-    List<EntityModel<InventoryItemQuantityChange>> processedChanges = new ArrayList<>();
-    for (final InventoryItemQuantityChange change : changes) {
-      if (quantityChangeRepository.existsById(change.getId())) {
-        processedChanges.add(new EntityModel<>(change, itemLinks(change)));
-        continue;
+  public ResponseEntity<?> create(@RequestBody List<InventoryItemQuantityChange> changes,
+      @RequestHeader(value = Preferences.PREFER, required = false) String prefer) {
+    QuantityChangeQueue queue = quantityChangeQueue.getIfAvailable();
+    if (queue != null && Preferences.contains(prefer, Preferences.RESPOND_ASYNC)) {
+      EntityModel<InventoryItemQuantityChangeBatch> batch = batchModel(queue.submit(changes));
+      return ResponseEntity.accepted().location(
+          URI.create(batch.getRequiredLink(IanaLinkRelations.SELF).getHref()))
+          .header(Preferences.PREFERENCE_APPLIED, Preferences.RESPOND_ASYNC).body(batch);
+    }
+    if (Preferences.contains(prefer, Preferences.RETURN_MINIMAL)) {
+      Set<String> appliedIds = new HashSet<>(quantityChangeService.applyNewChanges(changes));
+      List<InventoryItemQuantityChangeAck> acks = new ArrayList<>(changes.size());
+      for (InventoryItemQuantityChange change : changes) {
+        // a repeated id is applied once, by its first occurrence
+        acks.add(new InventoryItemQuantityChangeAck(change.getId(),
+            appliedIds.remove(change.getId()) ? Status.APPLIED : Status.DUPLICATE));
       }
-      InventoryItem item = inventoryItemRepository.findById(change.getInventoryItemId())
-          .orElseThrow(() -> new ResponseStatusException(
-              HttpStatus.CONFLICT,
-              String.format("Can not find inventory item %s", change.getInventoryItemId())));
-      item.setQuantity(item.getQuantity() + change.getQuantityChange());
-      inventoryItemRepository.save(item);
-
-      InventoryItemQuantityChange savedChange = quantityChangeRepository.save(change);
-      processedChanges.add(new EntityModel<>(savedChange, itemLinks(savedChange)));
+      return ResponseEntity.status(HttpStatus.CREATED)
+          .header(Preferences.PREFERENCE_APPLIED, Preferences.RETURN_MINIMAL).body(acks);
     }
-    return processedChanges;
+    return ResponseEntity.status(HttpStatus.CREATED)
+        .body(quantityChangeService.applyChanges(changes).stream()
+            .map(change -> new EntityModel<>(change, itemLink(change)))
+            .collect(Collectors.toList()));
+  }
+
+  /**
+   * Apply one quantity change to the item of the given productId, which replaces the change's
+   * {@code inventoryItemId}. The productId is resolved by the transaction applying the change,
+   * not through the item cache, which may be stale.
+   */
+  @PostMapping(value = "byProductId/{productId}", produces = {"application/hal+json",
+      MediaType.APPLICATION_JSON_VALUE})
+  @PreAuthorize(AUTHORITY_INVENTORY_WRITE)
+  @ResponseStatus(HttpStatus.CREATED)
+  public EntityModel<InventoryItemQuantityChange> createByProductId(
+      @PathVariable("productId") String productId,
+      @RequestBody InventoryItemQuantityChange change) {
+    return new EntityModel<>(quantityChangeService.applyChangeByProductId(productId, change),
+        itemLink(change));
+  }
+
+  /**
+   * Status of a batch accepted with {@code Prefer: respond-async}, available for a while after
+   * it has been processed.
+   */
+  @GetMapping(value = "batches/{id}", produces = {"application/hal+json",
+      MediaType.APPLICATION_JSON_VALUE})
+  @PreAuthorize(AUTHORITY_INVENTORY_READ)
+  public EntityModel<InventoryItemQuantityChangeBatch> batch(@PathVariable("id") String id) {
+    QuantityChangeQueue queue = quantityChangeQueue.getIfAvailable();
+    return (queue == null ? Optional.<InventoryItemQuantityChangeBatch>empty() : queue.status(id))
+        .map(this::batchModel)
+        .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND,
+            String.format("Can not find quantity change batch %s", id)));
+  }
+
+  private EntityModel<InventoryItemQuantityChangeBatch> batchModel(
+      InventoryItemQuantityChangeBatch batch) {
+    return new EntityModel<>(batch, entityLinks.linkFor(InventoryItemQuantityChange.class)
+        .slash("batches").slash(batch.getId()).withSelfRel());
   }
 
-  private Link[] itemLinks(final InventoryItemQuantityChange item) {
-    return new Link[]{
-        entityLinks.linkToItemResource(InventoryItemQuantityChange.class, item.getId())
-    };
+  private Link itemLink(final InventoryItemQuantityChange item) {
+    return selfLinks.of(item.getId());
   }
 }
@@ -0,0 +1,85 @@
+package io.github.rscai.microservices.inventory.controller;
+
+import io.github.rscai.microservices.inventory.model.InventoryItem;
+import io.github.rscai.microservices.inventory.model.InventoryItemReservation;
+import io.github.rscai.microservices.inventory.service.InventoryItemReservationService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.hateoas.EntityModel;
+import org.springframework.hateoas.server.EntityLinks;
+import org.springframework.hateoas.server.ExposesResourceFor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+@RestController
+@RequestMapping("inventoryItemReservations")
+@ExposesResourceFor(InventoryItemReservation.class)
+public class InventoryItemReservationController {
+
+  private static final String AUTHORITY_INVENTORY_READ = "hasAuthority('SCOPE_inventory.read')";
+  private static final String AUTHORITY_INVENTORY_WRITE = "hasAuthority('SCOPE_inventory.write')";
+
+  private final SelfLinks selfLinks;
+  private final SelfLinks itemLinks;
+  @Autowired
+  private InventoryItemReservationService reservationService;
+
+  public InventoryItemReservationController(EntityLinks entityLinks) {
+    this.selfLinks = new SelfLinks(entityLinks, InventoryItemReservation.class);
+    this.itemLinks = new SelfLinks(entityLinks, InventoryItem.class);
+  }
+
+  /**
+   * Hold units of an inventory item for {@code ttl}, after which they are available again unless
+   * the reservation has been confirmed.
+   */
+  @PostMapping(consumes = {MediaType.APPLICATION_JSON_VALUE, "application/hal+json"})
+  @ResponseStatus(HttpStatus.CREATED)
+  @PreAuthorize(AUTHORITY_INVENTORY_WRITE)
+  public EntityModel<InventoryItemReservation> create(
+      @RequestBody InventoryItemReservation reservation) {
+    return model(reservationService.reserve(reservation));
+  }
+
+  @GetMapping(value = "{id}", produces = {"application/hal+json",
+      MediaType.APPLICATION_JSON_VALUE})
+  @PreAuthorize(AUTHORITY_INVENTORY_READ)
+  public EntityModel<InventoryItemReservation> get(@PathVariable("id") String id) {
+    return reservationService.findById(id).map(this::model)
+        .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND,
+            String.format("Can not find reservation %s", id)));
+  }
+
+  /**
+   * Take the reserved units off the item's quantity.
+   */
+  @PostMapping(value = "{id}/confirm", produces = {"application/hal+json",
+      MediaType.APPLICATION_JSON_VALUE})
+  @PreAuthorize(AUTHORITY_INVENTORY_WRITE)
+  public EntityModel<InventoryItemReservation> confirm(@PathVariable("id") String id) {
+    return model(reservationService.confirm(id));
+  }
+
+  /**
+   * Make the reserved units available again before the reservation expires.
+   */
+  @PostMapping(value = "{id}/release", produces = {"application/hal+json",
+      MediaType.APPLICATION_JSON_VALUE})
+  @PreAuthorize(AUTHORITY_INVENTORY_WRITE)
+  public EntityModel<InventoryItemReservation> release(@PathVariable("id") String id) {
+    return model(reservationService.release(id));
+  }
+
+  private EntityModel<InventoryItemReservation> model(InventoryItemReservation reservation) {
+    return new EntityModel<>(reservation, selfLinks.of(reservation.getId()),
+        itemLinks.of(reservation.getInventoryItemId()).withRel("inventoryItem"));
+  }
+}
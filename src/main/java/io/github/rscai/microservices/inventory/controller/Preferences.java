@@ -0,0 +1,33 @@
+package io.github.rscai.microservices.inventory.controller;
+
+/**
+ * Reads the {@code Prefer} request header of RFC 7240.
+ */
+final class Preferences {
+
+  static final String PREFER = "Prefer";
+  static final String PREFERENCE_APPLIED = "Preference-Applied";
+  static final String RETURN_MINIMAL = "return=minimal";
+  static final String RESPOND_ASYNC = "respond-async";
+
+  private Preferences() {
+  }
+
+  /**
+   * @return whether the comma separated preferences contain the given one, ignoring case and
+   * parameters
+   */
+  static boolean contains(String prefer, String preference) {
+    if (prefer == null) {
+      return false;
+    }
+    for (String candidate : prefer.split(",")) {
+      int parameters = candidate.indexOf(';');
+      String token = (parameters < 0 ? candidate : candidate.substring(0, parameters)).trim();
+      if (token.equalsIgnoreCase(preference)) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
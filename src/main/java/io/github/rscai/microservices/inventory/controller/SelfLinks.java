@@ -0,0 +1,56 @@
+package io.github.rscai.microservices.inventory.controller;
+
+import org.springframework.hateoas.Link;
+import org.springframework.hateoas.server.EntityLinks;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+/**
+ * Self links of one resource type, appending the id to a collection href resolved once per
+ * request. {@link EntityLinks#linkToItemResource(Class, Object)} resolves the controller mapping
+ * and the current request again for every entity, which dominates the cost of large pages.
+ */
+final class SelfLinks {
+
+  private final EntityLinks entityLinks;
+  private final Class<?> type;
+  private final String attributeName;
+
+  SelfLinks(EntityLinks entityLinks, Class<?> type) {
+    this.entityLinks = entityLinks;
+    this.type = type;
+    this.attributeName = SelfLinks.class.getName() + "." + type.getName();
+  }
+
+  /**
+   * @return the same link as {@link EntityLinks#linkToItemResource(Class, Object)}
+   */
+  Link of(String id) {
+    RequestAttributes request = RequestContextHolder.getRequestAttributes();
+    if (request == null || !isUnreserved(id)) {
+      // ids needing encoding are rare, leave them to the link builder
+      return entityLinks.linkToItemResource(type, id);
+    }
+    String collectionHref = (String) request
+        .getAttribute(attributeName, RequestAttributes.SCOPE_REQUEST);
+    if (collectionHref == null) {
+      collectionHref = entityLinks.linkToCollectionResource(type).getHref();
+      request.setAttribute(attributeName, collectionHref, RequestAttributes.SCOPE_REQUEST);
+    }
+    return new Link(collectionHref + '/' + id);
+  }
+
+  private static boolean isUnreserved(String id) {
+    if (id == null || id.isEmpty()) {
+      return false;
+    }
+    for (int index = 0; index < id.length(); index++) {
+      char c = id.charAt(index);
+      if (!(c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c >= '0' && c <= '9' || c == '-'
+          || c == '.' || c == '_' || c == '~')) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
@@ -0,0 +1,23 @@
+package io.github.rscai.microservices.inventory.model;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import lombok.Data;
+
+/**
+ * Last feed position handed out by a change feed. Its row is locked while positions are handed
+ * out, so positions increase in the order the publishing transactions commit.
+ */
+@Data
+@Entity
+public class ChangeFeedWatermark {
+
+  public static final String QUANTITY_CHANGES = "inventoryItemQuantityChanges";
+  public static final String ITEMS = "inventoryItems";
+
+  @Id
+  private String feed;
+  @Column(nullable = false)
+  private long position;
+}
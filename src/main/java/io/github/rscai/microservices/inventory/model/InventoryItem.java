@@ -1,32 +1,61 @@
 package io.github.rscai.microservices.inventory.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonProperty.Access;
 import java.math.BigDecimal;
 import java.util.Date;
+import javax.persistence.Cacheable;
 import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
 import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.PreUpdate;
+import javax.persistence.Table;
 import javax.persistence.Temporal;
 import javax.persistence.TemporalType;
 import lombok.Data;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.hibernate.annotations.CreationTimestamp;
 import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.NaturalId;
+import org.hibernate.annotations.NaturalIdCache;
 import org.hibernate.annotations.UpdateTimestamp;
 import org.springframework.hateoas.server.core.Relation;
 
 @Data
 @Entity
+@Table(indexes = @Index(columnList = "feedPosition"))
 @Relation(collectionRelation = "inventoryItems")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = InventoryItem.CACHE_REGION)
+@NaturalIdCache(region = InventoryItem.NATURAL_ID_CACHE_REGION)
 public class InventoryItem {
 
+  /**
+   * Second-level cache regions of items by id and of item ids by productId, used when
+   * {@code inventory.second-level-cache.enabled}.
+   */
+  public static final String CACHE_REGION = "inventoryItems";
+  public static final String NATURAL_ID_CACHE_REGION = "inventoryItemIdsByProductId";
+
   @Id
   @GeneratedValue(generator = "system-uuid")
-  @GenericGenerator(name = "system-uuid", strategy = "uuid")
+  @GenericGenerator(name = "system-uuid",
+      strategy = "io.github.rscai.microservices.inventory.model.InventoryItemIdGenerator")
   private String id;
+  @NaturalId(mutable = true)
   @Column(nullable = false, unique = true)
   private String productId;
-  @Column(nullable = false)
+  // changed by atomic increments only, an update of the entity would overwrite concurrent ones
+  @Column(nullable = false, updatable = false)
   private int quantity;
+  // held by open reservations, see InventoryItemReservation
+  @Column(nullable = false, updatable = false)
+  @JsonProperty(access = Access.READ_ONLY)
+  private int reservedQuantity;
   @Column(nullable = false, scale = 2)
   private BigDecimal unitPrice;
   @Column(nullable = false, updatable = false)
@@ -37,4 +66,22 @@ public class InventoryItem {
   @Temporal(TemporalType.TIMESTAMP)
   @UpdateTimestamp
   private Date updatedAt;
+  // assigned once the item's last update has committed, see ChangeFeedWatermark; every update
+  // clears it, so the item feed reports the item again
+  @Column(insertable = false)
+  @JsonIgnore
+  private Long feedPosition;
+
+  /**
+   * @return quantity not held by open reservations, which may be promised to new orders
+   */
+  @JsonProperty(access = Access.READ_ONLY)
+  public int getAvailableQuantity() {
+    return quantity - reservedQuantity;
+  }
+
+  @PreUpdate
+  void clearFeedPosition() {
+    feedPosition = null;
+  }
 }
@@ -0,0 +1,22 @@
+package io.github.rscai.microservices.inventory.model;
+
+import java.util.ArrayList;
+import java.util.List;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Cache entries to evict on peer instances, coalesced from the changes committed by one instance.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class InventoryItemCacheInvalidation {
+
+  // items changed as a whole, e.g. updated or deleted
+  private List<String> ids = new ArrayList<>();
+  private List<String> productIds = new ArrayList<>();
+  // items whose quantity changed
+  private List<String> quantityIds = new ArrayList<>();
+}
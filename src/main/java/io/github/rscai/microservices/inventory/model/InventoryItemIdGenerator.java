@@ -0,0 +1,37 @@
+package io.github.rscai.microservices.inventory.model;
+
+import java.io.Serializable;
+import java.util.Properties;
+import org.hibernate.engine.config.spi.ConfigurationService;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.id.UUIDHexGenerator;
+import org.hibernate.service.ServiceRegistry;
+import org.hibernate.type.Type;
+
+/**
+ * Generates 32 hex digit UUIDs like the {@code uuid} strategy, or time-ordered ones when the
+ * {@link InventoryItemIdStrategy#SETTING} is {@code TIME_ORDERED}, but keeps an id assigned before
+ * the insert, e.g. to route the item to its shard.
+ */
+public class InventoryItemIdGenerator extends UUIDHexGenerator {
+
+  private InventoryItemIdStrategy strategy = InventoryItemIdStrategy.RANDOM;
+
+  @Override
+  public void configure(Type type, Properties params, ServiceRegistry serviceRegistry) {
+    super.configure(type, params, serviceRegistry);
+    strategy = serviceRegistry.getService(ConfigurationService.class).getSetting(
+        InventoryItemIdStrategy.SETTING,
+        value -> InventoryItemIdStrategy.valueOf(value.toString()), strategy);
+  }
+
+  @Override
+  public Serializable generate(SharedSessionContractImplementor session, Object object) {
+    Serializable id = session.getEntityPersister(null, object).getIdentifier(object, session);
+    if (id != null) {
+      return id;
+    }
+    return strategy == InventoryItemIdStrategy.TIME_ORDERED ? strategy.nextId()
+        : super.generate(session, object);
+  }
+}
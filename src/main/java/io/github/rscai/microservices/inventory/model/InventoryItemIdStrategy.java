@@ -0,0 +1,37 @@
+package io.github.rscai.microservices.inventory.model;
+
+import java.util.UUID;
+
+/**
+ * How new inventory items get their 32 hex digit id, whether by Hibernate, by shard routing or by
+ * bulk upserts.
+ */
+public enum InventoryItemIdStrategy {
+  /**
+   * Random UUIDs, spread evenly over the id index.
+   */
+  RANDOM {
+    @Override
+    public String nextId() {
+      return UUID.randomUUID().toString().replace("-", "");
+    }
+  },
+  /**
+   * Version 7 UUIDs, ordered by creation time.
+   */
+  TIME_ORDERED {
+    @Override
+    public String nextId() {
+      return TIME_ORDERED_IDS.next();
+    }
+  };
+
+  /**
+   * Hibernate setting naming the strategy of {@link InventoryItemIdGenerator}.
+   */
+  public static final String SETTING = "inventory.id_strategy";
+
+  private static final TimeOrderedIds TIME_ORDERED_IDS = new TimeOrderedIds();
+
+  public abstract String nextId();
+}
@@ -1,9 +1,16 @@
 package io.github.rscai.microservices.inventory.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonProperty.Access;
 import java.util.Date;
 import javax.persistence.Column;
 import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.Table;
 import javax.persistence.Temporal;
 import javax.persistence.TemporalType;
 import lombok.AllArgsConstructor;
@@ -15,9 +22,21 @@ import org.hibernate.annotations.CreationTimestamp;
 @NoArgsConstructor
 @AllArgsConstructor
 @Entity
+@Table(indexes = {
+    // named, so tables clustered by id before can be migrated to it, see README
+    @Index(name = "ux_inventory_item_quantity_change_id", columnList = "id", unique = true),
+    @Index(columnList = "createdAt"),
+    @Index(columnList = "inventoryItemId,createdAt"),
+    // covers the quantity sums per item after a snapshot's sequence number
+    @Index(columnList = "inventoryItemId,sequenceNumber,quantityChange"),
+    // finds the changes the quantity ledger has not written to their item yet
+    @Index(columnList = "applied,sequenceNumber"),
+    // finds the changes not handed a feed position yet, in sequence order
+    @Index(columnList = "feedPosition,sequenceNumber")})
 public class InventoryItemQuantityChange {
 
-  @Id
+  // chosen by the client, which may repeat a change under the same id
+  @Column(nullable = false, updatable = false)
   private String id;
   @Column(nullable = false)
   private String inventoryItemId;
@@ -28,4 +47,23 @@ public class InventoryItemQuantityChange {
   @CreationTimestamp
   @Temporal(TemporalType.TIMESTAMP)
   private Date createdAt;
+  // assigned by the database in insert order, read by change feed consumers; the primary key, so
+  // InnoDB appends rows to the clustered index and secondary indexes refer to rows by a bigint
+  @Id
+  @GeneratedValue(strategy = GenerationType.IDENTITY)
+  @JsonProperty(access = Access.READ_ONLY)
+  private Long sequenceNumber;
+  // assigned once the change has committed, see ChangeFeedWatermark
+  @Column(insertable = false, updatable = false)
+  @JsonIgnore
+  private Long feedPosition;
+  // false while the quantity ledger has not added the change to its item's quantity
+  @Column(nullable = false)
+  @JsonIgnore
+  private boolean applied = true;
+
+  public InventoryItemQuantityChange(String id, String inventoryItemId, int quantityChange,
+      Date createdAt) {
+    this(id, inventoryItemId, quantityChange, createdAt, null, null, true);
+  }
 }
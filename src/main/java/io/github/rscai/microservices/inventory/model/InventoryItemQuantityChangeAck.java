@@ -0,0 +1,29 @@
+package io.github.rscai.microservices.inventory.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Minimal acknowledgement of a submitted quantity change, returned instead of the change itself
+ * when the client prefers {@code return=minimal}.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class InventoryItemQuantityChangeAck {
+
+  private String id;
+  private Status status;
+
+  public enum Status {
+    /**
+     * Applied by this request.
+     */
+    APPLIED,
+    /**
+     * Processed before, or repeated earlier in the same batch; inventory is left untouched.
+     */
+    DUPLICATE
+  }
+}
@@ -0,0 +1,63 @@
+package io.github.rscai.microservices.inventory.model;
+
+import java.util.Date;
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.Table;
+import javax.persistence.Temporal;
+import javax.persistence.TemporalType;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Progress of a quantity change batch accepted for asynchronous processing. Stored, so any
+ * instance can answer for a batch queued by another.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(indexes = @Index(columnList = "completedAt"))
+public class InventoryItemQuantityChangeBatch {
+
+  public static final int MAX_FAILURE_LENGTH = 1000;
+
+  @Id
+  private String id;
+  @Column(nullable = false)
+  @Enumerated(EnumType.STRING)
+  private Status status;
+  @Column(nullable = false, updatable = false)
+  @Temporal(TemporalType.TIMESTAMP)
+  private Date acceptedAt;
+  @Temporal(TemporalType.TIMESTAMP)
+  private Date completedAt;
+  // count of submitted changes, and of those applied, found duplicate or failed
+  private int changes;
+  private int applied;
+  private int duplicates;
+  private int failed;
+  @Column(length = MAX_FAILURE_LENGTH)
+  private String failure;
+
+  public enum Status {
+    /**
+     * Durably queued, not processed yet.
+     */
+    QUEUED,
+    /**
+     * Every change is applied or found duplicate.
+     */
+    COMPLETED,
+    /**
+     * The batch could not be applied, e.g. for a change of an unknown item, or was given up after
+     * repeated failures; none of its changes are applied, unless the failure says otherwise.
+     */
+    FAILED
+  }
+}
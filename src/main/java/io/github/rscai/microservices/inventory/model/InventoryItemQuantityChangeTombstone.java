@@ -0,0 +1,27 @@
+package io.github.rscai.microservices.inventory.model;
+
+import java.util.Date;
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.Table;
+import javax.persistence.Temporal;
+import javax.persistence.TemporalType;
+import lombok.Data;
+
+/**
+ * Id of a compacted quantity change, kept for the idempotency window so a retried change is still
+ * recognized as processed.
+ */
+@Data
+@Entity
+@Table(indexes = @Index(columnList = "createdAt"))
+public class InventoryItemQuantityChangeTombstone {
+
+  @Id
+  private String id;
+  @Column(nullable = false, updatable = false)
+  @Temporal(TemporalType.TIMESTAMP)
+  private Date createdAt;
+}
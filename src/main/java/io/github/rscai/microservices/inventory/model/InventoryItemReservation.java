@@ -0,0 +1,93 @@
+package io.github.rscai.microservices.inventory.model;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonProperty.Access;
+import java.time.Duration;
+import java.util.Date;
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.Table;
+import javax.persistence.Temporal;
+import javax.persistence.TemporalType;
+import javax.persistence.Transient;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.UpdateTimestamp;
+import org.springframework.hateoas.server.core.Relation;
+
+/**
+ * Units of an inventory item held for a while, e.g. for a cart being checked out. The held units
+ * count in the item's {@code reservedQuantity} until the reservation is confirmed, which takes
+ * them off the item's quantity, or released, explicitly or by expiry, which makes them available
+ * again.
+ */
+@Data
+@NoArgsConstructor
+@Entity
+@Table(indexes = {@Index(columnList = "status,expiresAt"), @Index(columnList = "status,id"),
+    @Index(columnList = "inventoryItemId")})
+@Relation(collectionRelation = "inventoryItemReservations")
+public class InventoryItemReservation {
+
+  // assigned by the client, a retried reservation is recognized by it
+  @Id
+  private String id;
+  @Column(nullable = false, updatable = false)
+  private String inventoryItemId;
+  @Column(nullable = false, updatable = false)
+  private int quantity;
+  // how long the units are held, defaults to inventory.reservation.default-ttl
+  @Transient
+  @JsonProperty(access = Access.WRITE_ONLY)
+  private Duration ttl;
+  @Column(nullable = false)
+  @Enumerated(EnumType.STRING)
+  @JsonProperty(access = Access.READ_ONLY)
+  private Status status;
+  @Column(nullable = false, updatable = false)
+  @Temporal(TemporalType.TIMESTAMP)
+  @JsonProperty(access = Access.READ_ONLY)
+  private Date expiresAt;
+  @Column(nullable = false, updatable = false)
+  @Temporal(TemporalType.TIMESTAMP)
+  @CreationTimestamp
+  @JsonProperty(access = Access.READ_ONLY)
+  private Date createdAt;
+  @Column(nullable = false)
+  @Temporal(TemporalType.TIMESTAMP)
+  @UpdateTimestamp
+  @JsonProperty(access = Access.READ_ONLY)
+  private Date updatedAt;
+
+  public InventoryItemReservation(String id, String inventoryItemId, int quantity,
+      Duration ttl) {
+    this.id = id;
+    this.inventoryItemId = inventoryItemId;
+    this.quantity = quantity;
+    this.ttl = ttl;
+  }
+
+  public enum Status {
+    /**
+     * The units are held until the reservation expires.
+     */
+    RESERVED,
+    /**
+     * The units are taken off the item's quantity.
+     */
+    CONFIRMED,
+    /**
+     * The units are available again, released by the client.
+     */
+    RELEASED,
+    /**
+     * The units are available again, released as the reservation expired.
+     */
+    EXPIRED
+  }
+}
@@ -0,0 +1,28 @@
+package io.github.rscai.microservices.inventory.model;
+
+import java.util.Date;
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Temporal;
+import javax.persistence.TemporalType;
+import lombok.Data;
+
+/**
+ * Quantity of an inventory item as of {@code lastSequenceNumber}. Quantity changes up to that
+ * sequence number have been folded into the snapshot and removed from the change log.
+ */
+@Data
+@Entity
+public class InventoryItemSnapshot {
+
+  @Id
+  private String inventoryItemId;
+  @Column(nullable = false)
+  private int quantity;
+  @Column(nullable = false)
+  private long lastSequenceNumber;
+  @Column(nullable = false)
+  @Temporal(TemporalType.TIMESTAMP)
+  private Date updatedAt;
+}
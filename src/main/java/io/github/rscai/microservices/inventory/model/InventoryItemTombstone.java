@@ -0,0 +1,35 @@
+package io.github.rscai.microservices.inventory.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import java.util.Date;
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.Table;
+import javax.persistence.Temporal;
+import javax.persistence.TemporalType;
+import lombok.Data;
+import org.springframework.hateoas.server.core.Relation;
+
+/**
+ * Deleted inventory item, reported by the item feed.
+ */
+@Data
+@Entity
+@Table(indexes = @Index(columnList = "feedPosition"))
+@Relation(collectionRelation = "inventoryItemTombstones")
+public class InventoryItemTombstone {
+
+  @Id
+  private String id;
+  @Column(nullable = false)
+  private String productId;
+  @Column(nullable = false, updatable = false)
+  @Temporal(TemporalType.TIMESTAMP)
+  private Date deletedAt;
+  // assigned once the deletion has committed, see ChangeFeedWatermark
+  @Column(insertable = false, updatable = false)
+  @JsonIgnore
+  private Long feedPosition;
+}
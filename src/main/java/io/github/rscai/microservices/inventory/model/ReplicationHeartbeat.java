@@ -0,0 +1,22 @@
+package io.github.rscai.microservices.inventory.model;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import lombok.Data;
+
+/**
+ * Time, in epoch milliseconds, last written to the primary by a replica health check. Read back
+ * from a replica, it tells up to when the replica has replayed the primary.
+ */
+@Data
+@Entity
+public class ReplicationHeartbeat {
+
+  public static final int ID = 0;
+
+  @Id
+  private int id;
+  @Column(nullable = false)
+  private long beatAt;
+}
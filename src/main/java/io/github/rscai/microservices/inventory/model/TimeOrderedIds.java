@@ -0,0 +1,50 @@
+package io.github.rscai.microservices.inventory.model;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Generates version 7 UUIDs as 32 lowercase hex digits: a 48 bit millisecond timestamp, a 12 bit
+ * counter and 62 random bits. Ids of one generator increase strictly, in string as in time order,
+ * so they are appended to indexes on the id rather than inserted at random positions. More than
+ * 4096 ids in one millisecond borrow from the next millisecond.
+ */
+public class TimeOrderedIds {
+
+  private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+  private static final int COUNTER_BITS = 12;
+
+  private final LongSupplier clock;
+  // timestamp and counter of the last id
+  private final AtomicLong last = new AtomicLong();
+
+  public TimeOrderedIds() {
+    this(System::currentTimeMillis);
+  }
+
+  public TimeOrderedIds(LongSupplier clock) {
+    this.clock = clock;
+  }
+
+  public String next() {
+    long timeAndCounter = last.updateAndGet(previous -> Math.max(previous + 1,
+        clock.getAsLong() << COUNTER_BITS));
+    long timestamp = timeAndCounter >>> COUNTER_BITS;
+    long counter = timeAndCounter & ((1L << COUNTER_BITS) - 1);
+    long mostSignificantBits = timestamp << 16 | 0x7000L | counter;
+    long leastSignificantBits =
+        ThreadLocalRandom.current().nextLong() & 0x3fffffffffffffffL | 0x8000000000000000L;
+    char[] hex = new char[32];
+    toHex(mostSignificantBits, hex, 0);
+    toHex(leastSignificantBits, hex, 16);
+    return new String(hex);
+  }
+
+  private static void toHex(long value, char[] hex, int offset) {
+    for (int index = 15; index >= 0; index--) {
+      hex[offset + index] = HEX_DIGITS[(int) (value & 0xf)];
+      value >>>= 4;
+    }
+  }
+}
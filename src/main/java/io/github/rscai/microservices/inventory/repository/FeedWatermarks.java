@@ -0,0 +1,46 @@
+package io.github.rscai.microservices.inventory.repository;
+
+import java.util.List;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * Locks and advances the {@code ChangeFeedWatermark} rows. Publishers of a feed hold its row
+ * until they commit, so one publisher at a time hands out positions, above all positions handed
+ * out by publishers committed before.
+ */
+final class FeedWatermarks {
+
+  private static final String LOCK =
+      "select position from change_feed_watermark where feed = ? for update";
+  private static final String INSERT =
+      "insert into change_feed_watermark (feed, position) values (?, 0)";
+  private static final String ADVANCE =
+      "update change_feed_watermark set position = ? where feed = ?";
+
+  private FeedWatermarks() {
+  }
+
+  /**
+   * Lock the watermark of the feed for the current transaction, creating it on first use.
+   *
+   * @return the last position handed out
+   */
+  static long lock(JdbcTemplate jdbcTemplate, String feed) {
+    List<Long> positions = jdbcTemplate.queryForList(LOCK, Long.class, feed);
+    if (!positions.isEmpty()) {
+      return positions.get(0);
+    }
+    try {
+      jdbcTemplate.update(INSERT, feed);
+    } catch (DuplicateKeyException e) {
+      // created by a concurrent publisher, wait for it
+      return jdbcTemplate.queryForObject(LOCK, Long.class, feed);
+    }
+    return 0;
+  }
+
+  static void advance(JdbcTemplate jdbcTemplate, String feed, long position) {
+    jdbcTemplate.update(ADVANCE, position, feed);
+  }
+}
@@ -0,0 +1,20 @@
+package io.github.rscai.microservices.inventory.repository;
+
+import io.github.rscai.microservices.inventory.model.InventoryItemQuantityChangeBatch;
+import java.util.Date;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+@Repository
+public interface InventoryItemQuantityChangeBatchRepository extends
+    JpaRepository<InventoryItemQuantityChangeBatch, String> {
+
+  @Transactional
+  @Modifying
+  @Query("delete from InventoryItemQuantityChangeBatch b where b.completedAt < :completedBefore")
+  int deleteCompletedBefore(@Param("completedBefore") Date completedBefore);
+}
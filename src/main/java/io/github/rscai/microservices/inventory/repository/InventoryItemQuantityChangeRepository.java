@@ -1,11 +1,25 @@
 package io.github.rscai.microservices.inventory.repository;
 
 import io.github.rscai.microservices.inventory.model.InventoryItemQuantityChange;
+import java.util.Date;
+import java.util.List;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 @Repository
 public interface InventoryItemQuantityChangeRepository extends
-    JpaRepository<InventoryItemQuantityChange, String> {
+    JpaRepository<InventoryItemQuantityChange, Long>, InventoryItemQuantityChangeRepositoryCustom {
 
+  @Query("select c from InventoryItemQuantityChange c where c.feedPosition > :feedPosition"
+      + " order by c.feedPosition")
+  List<InventoryItemQuantityChange> findFeedPage(@Param("feedPosition") long feedPosition,
+      Pageable pageable);
+
+  @Query("select c.sequenceNumber from InventoryItemQuantityChange c"
+      + " where c.createdAt < :createdBefore order by c.sequenceNumber")
+  List<Long> findSequenceNumbersCreatedBefore(@Param("createdBefore") Date createdBefore,
+      Pageable pageable);
 }
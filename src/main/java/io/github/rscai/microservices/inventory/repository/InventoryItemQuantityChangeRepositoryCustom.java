@@ -0,0 +1,62 @@
+package io.github.rscai.microservices.inventory.repository;
+
+import io.github.rscai.microservices.inventory.model.InventoryItemQuantityChange;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
+
+public interface InventoryItemQuantityChangeRepositoryCustom {
+
+  /**
+   * Insert the given quantity changes in one JDBC batch. Every change must carry its
+   * {@code createdAt}.
+   */
+  void insertAll(Collection<InventoryItemQuantityChange> changes);
+
+  /**
+   * Lock the oldest changes not yet applied to their item, in sequence order.
+   *
+   * @return at most {@code limit} changes, with id, inventoryItemId and quantityChange
+   */
+  List<InventoryItemQuantityChange> lockUnapplied(int limit);
+
+  /**
+   * Mark the given changes as applied to their item.
+   */
+  void markApplied(Collection<String> ids);
+
+  /**
+   * @return count of changes not yet applied to their item
+   */
+  long countUnapplied();
+
+  /**
+   * @return sequence number of the oldest change not yet applied to its item, if any
+   */
+  Long findFirstUnappliedSequenceNumber();
+
+  /**
+   * Hand feed positions to committed changes without one, in sequence order, and advance the
+   * quantity change feed's watermark past them in the same transaction.
+   *
+   * @return count of changes handed a position, at most {@code limit}
+   */
+  int publishToFeed(int limit);
+
+  /**
+   * @return those of the given ids which are in the change log or among the tombstones of
+   * compacted changes
+   */
+  List<String> findExistingIds(Collection<String> ids);
+
+  /**
+   * @return count of ids in the change log and among the tombstones
+   */
+  long countProcessedIds();
+
+  /**
+   * Pass all ids of the change log and of the tombstones, read in pages of {@code pageSize} ids
+   * ordered by id.
+   */
+  void forEachProcessedId(int pageSize, Consumer<String> consumer);
+}
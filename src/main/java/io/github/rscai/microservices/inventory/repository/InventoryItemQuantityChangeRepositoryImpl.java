@@ -0,0 +1,150 @@
+package io.github.rscai.microservices.inventory.repository;
+
+import io.github.rscai.microservices.inventory.model.ChangeFeedWatermark;
+import io.github.rscai.microservices.inventory.model.InventoryItemQuantityChange;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
+
+public class InventoryItemQuantityChangeRepositoryImpl implements
+    InventoryItemQuantityChangeRepositoryCustom {
+
+  private static final String INSERT_CHANGE = "insert into inventory_item_quantity_change"
+      + " (id, inventory_item_id, quantity_change, created_at, applied) values (?, ?, ?, ?, ?)";
+  private static final String LOCK_UNAPPLIED = "select id, inventory_item_id, quantity_change"
+      + " from inventory_item_quantity_change where applied = false order by sequence_number"
+      + " for update";
+  private static final String MARK_APPLIED =
+      "update inventory_item_quantity_change set applied = true where id in (:ids)";
+  private static final String COUNT_UNAPPLIED =
+      "select count(*) from inventory_item_quantity_change where applied = false";
+  private static final String SELECT_FIRST_UNAPPLIED_SEQUENCE_NUMBER =
+      "select min(sequence_number) from inventory_item_quantity_change where applied = false";
+  private static final String SELECT_UNPUBLISHED = "select sequence_number"
+      + " from inventory_item_quantity_change where feed_position is null order by sequence_number";
+  private static final String SET_FEED_POSITION = "update inventory_item_quantity_change"
+      + " set feed_position = ? where sequence_number = ?";
+  private static final String SELECT_EXISTING_IDS =
+      "select id from inventory_item_quantity_change where id in (:ids)"
+          + " union all select id from inventory_item_quantity_change_tombstone where id in (:ids)";
+  private static final String COUNT_PROCESSED_IDS =
+      "select (select count(*) from inventory_item_quantity_change)"
+          + " + (select count(*) from inventory_item_quantity_change_tombstone)";
+  private static final String SELECT_CHANGE_IDS_AFTER =
+      "select id from inventory_item_quantity_change where id > ? order by id";
+  private static final String SELECT_TOMBSTONE_IDS_AFTER =
+      "select id from inventory_item_quantity_change_tombstone where id > ? order by id";
+
+  private final JdbcTemplate jdbcTemplate;
+  private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+  public InventoryItemQuantityChangeRepositoryImpl(JdbcTemplate jdbcTemplate) {
+    this.jdbcTemplate = jdbcTemplate;
+    this.namedParameterJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+  }
+
+  @Override
+  public void insertAll(Collection<InventoryItemQuantityChange> changes) {
+    if (changes.isEmpty()) {
+      return;
+    }
+    List<Object[]> batchArgs = new ArrayList<>(changes.size());
+    for (InventoryItemQuantityChange change : changes) {
+      batchArgs.add(new Object[]{change.getId(), change.getInventoryItemId(),
+          change.getQuantityChange(), new Timestamp(change.getCreatedAt().getTime()),
+          change.isApplied()});
+    }
+    jdbcTemplate.batchUpdate(INSERT_CHANGE, batchArgs);
+  }
+
+  @Override
+  public List<InventoryItemQuantityChange> lockUnapplied(int limit) {
+    JdbcTemplate limitedTemplate = new JdbcTemplate(jdbcTemplate.getDataSource());
+    limitedTemplate.setMaxRows(limit);
+    return limitedTemplate.query(LOCK_UNAPPLIED, (rs, rowNum) -> new InventoryItemQuantityChange(
+        rs.getString(1), rs.getString(2), rs.getInt(3), null, null, null, false));
+  }
+
+  @Override
+  public void markApplied(Collection<String> ids) {
+    if (!ids.isEmpty()) {
+      namedParameterJdbcTemplate.update(MARK_APPLIED, Collections.singletonMap("ids", ids));
+    }
+  }
+
+  @Override
+  public long countUnapplied() {
+    return jdbcTemplate.queryForObject(COUNT_UNAPPLIED, Long.class);
+  }
+
+  @Override
+  public Long findFirstUnappliedSequenceNumber() {
+    return jdbcTemplate.queryForObject(SELECT_FIRST_UNAPPLIED_SEQUENCE_NUMBER, Long.class);
+  }
+
+  @Override
+  @Transactional
+  public int publishToFeed(int limit) {
+    long position = FeedWatermarks.lock(jdbcTemplate, ChangeFeedWatermark.QUANTITY_CHANGES);
+    // read after the lock, so changes committed by then are seen
+    JdbcTemplate limitedTemplate = new JdbcTemplate(jdbcTemplate.getDataSource());
+    limitedTemplate.setMaxRows(limit);
+    List<Long> sequenceNumbers = limitedTemplate.queryForList(SELECT_UNPUBLISHED, Long.class);
+    if (sequenceNumbers.isEmpty()) {
+      return 0;
+    }
+    List<Object[]> batchArgs = new ArrayList<>(sequenceNumbers.size());
+    for (Long sequenceNumber : sequenceNumbers) {
+      batchArgs.add(new Object[]{++position, sequenceNumber});
+    }
+    jdbcTemplate.batchUpdate(SET_FEED_POSITION, batchArgs);
+    FeedWatermarks.advance(jdbcTemplate, ChangeFeedWatermark.QUANTITY_CHANGES, position);
+    return sequenceNumbers.size();
+  }
+
+  @Override
+  public List<String> findExistingIds(Collection<String> ids) {
+    if (ids.isEmpty()) {
+      return Collections.emptyList();
+    }
+    return namedParameterJdbcTemplate.queryForList(SELECT_EXISTING_IDS,
+        Collections.singletonMap("ids", ids), String.class);
+  }
+
+  @Override
+  public long countProcessedIds() {
+    return jdbcTemplate.queryForObject(COUNT_PROCESSED_IDS, Long.class);
+  }
+
+  @Override
+  public void forEachProcessedId(int pageSize, Consumer<String> consumer) {
+    JdbcTemplate pageTemplate = new JdbcTemplate(jdbcTemplate.getDataSource());
+    pageTemplate.setMaxRows(pageSize);
+    forEachIdAfter(pageTemplate, SELECT_CHANGE_IDS_AFTER, pageSize, consumer);
+    forEachIdAfter(pageTemplate, SELECT_TOMBSTONE_IDS_AFTER, pageSize, consumer);
+  }
+
+  /**
+   * Read ids page by page, each page starting after the last id of the previous one, so neither a
+   * cursor nor a connection is held across pages and no driver buffers more than a page.
+   */
+  private static void forEachIdAfter(JdbcTemplate pageTemplate, String sql, int pageSize,
+      Consumer<String> consumer) {
+    // ids are never empty
+    String after = "";
+    List<String> page;
+    do {
+      page = pageTemplate.queryForList(sql, String.class, after);
+      page.forEach(consumer);
+      if (!page.isEmpty()) {
+        after = page.get(page.size() - 1);
+      }
+    } while (page.size() == pageSize);
+  }
+}
@@ -1,15 +1,47 @@
 package io.github.rscai.microservices.inventory.repository;
 
 import io.github.rscai.microservices.inventory.model.InventoryItem;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import javax.persistence.QueryHint;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 
 @Repository
-public interface InventoryItemRepository extends JpaRepository<InventoryItem, String> {
+public interface InventoryItemRepository extends JpaRepository<InventoryItem, String>,
+    InventoryItemRepositoryCustom {
 
+  /**
+   * Second-level cache region of {@link #findByProductIdIn} results, used when
+   * {@code inventory.second-level-cache.enabled}.
+   */
+  String QUERY_CACHE_REGION = "inventoryItemQueries";
+
+  @QueryHints({@QueryHint(name = "org.hibernate.cacheable", value = "true"),
+      @QueryHint(name = "org.hibernate.cacheRegion", value = QUERY_CACHE_REGION)})
   Page<InventoryItem> findByProductIdIn(List<String> productIds, Pageable pageable);
+
+  List<InventoryItem> findAllByProductIdIn(Collection<String> productIds);
+
+  /**
+   * Look up the id of the item of the given productId in the database, never through a cache.
+   */
+  @Query("select i.id from InventoryItem i where i.productId = :productId")
+  Optional<String> findIdByProductId(@Param("productId") String productId);
+
+  List<InventoryItem> findByIdGreaterThanOrderByIdAsc(String id, Pageable pageable);
+
+  List<InventoryItem> findByProductIdInAndIdGreaterThanOrderByIdAsc(Collection<String> productIds,
+      String id, Pageable pageable);
+
+  @Query("select i from InventoryItem i where i.feedPosition > :feedPosition"
+      + " order by i.feedPosition")
+  List<InventoryItem> findFeedPage(@Param("feedPosition") long feedPosition, Pageable pageable);
 }
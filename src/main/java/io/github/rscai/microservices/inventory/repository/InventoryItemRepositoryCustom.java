@@ -0,0 +1,101 @@
+package io.github.rscai.microservices.inventory.repository;
+
+import io.github.rscai.microservices.inventory.model.InventoryItem;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+public interface InventoryItemRepositoryCustom {
+
+  /**
+   * Which quantity a negative delta of {@link #addQuantities} must not exceed. Positive deltas
+   * always apply.
+   */
+  enum OversellGuard {
+    /**
+     * Apply every delta.
+     */
+    NONE,
+    /**
+     * Skip an item whose quantity would drop below its reserved quantity, so units held for
+     * reservations stay available to their confirmation.
+     */
+    AVAILABLE,
+    /**
+     * Skip an item whose quantity would drop below zero; for confirmations, whose units were
+     * reserved and released for them already.
+     */
+    ON_HAND
+  }
+
+  /**
+   * Atomically add deltas to the quantities of the given inventory items in one JDBC batch. The
+   * database applies {@code quantity = quantity + delta}, so concurrent writers never lose updates
+   * and no row is locked longer than its own update statement.
+   *
+   * @param deltas          quantity delta keyed by inventory item id
+   * @param updatedAt       timestamp recorded as the items' last update
+   * @param oversellGuard   which items to skip for insufficient quantity
+   * @return update count per item in the iteration order of {@code deltas}; 0 means the item does
+   * not exist or, guarded, has insufficient quantity
+   */
+  int[] addQuantities(Map<String, Integer> deltas, Date updatedAt, OversellGuard oversellGuard);
+
+  /**
+   * Look up the item by its natural id. With the second-level cache enabled the productId is
+   * resolved through the natural id cache and the item read from the entity cache.
+   */
+  Optional<InventoryItem> findByProductId(String productId);
+
+  /**
+   * Atomically hold {@code quantity} units of the given item for a reservation, provided that
+   * many are not held by other reservations already.
+   *
+   * @return 1, or 0 if the item does not exist or has not enough available quantity
+   */
+  int reserveQuantity(String id, int quantity, Date updatedAt);
+
+  /**
+   * Atomically return {@code quantity} units held for a reservation to the available quantity.
+   *
+   * @return 1, or 0 if the item does not exist
+   */
+  int releaseQuantity(String id, int quantity, Date updatedAt);
+
+  /**
+   * Insert or update the given items by productId, overwriting quantity and unit price of existing
+   * ones: one query for existing productIds, then one JDBC batch of updates and one of inserts.
+   * The ids of existing and inserted items are set on the given items. When several items share a
+   * productId the last one wins. An existing item is not updated to a quantity below its reserved
+   * quantity.
+   *
+   * @return productIds of existing items left unchanged because of their reserved quantity
+   */
+  List<String> upsertByProductId(Collection<InventoryItem> items, Date updatedAt);
+
+  /**
+   * Delete the item and leave a tombstone for the item feed in one transaction.
+   *
+   * @return 1, or 0 if the item does not exist
+   */
+  int deleteWithTombstone(InventoryItem item, Date deletedAt);
+
+  /**
+   * Hand feed positions to committed items and tombstones without one and advance the item feed's
+   * watermark past them in the same transaction.
+   *
+   * @return count of items and tombstones handed a position, at most {@code limit}
+   */
+  int publishToFeed(int limit);
+
+  /**
+   * Stream every inventory item from a database cursor without materializing the result.
+   *
+   * @param fetchSize JDBC fetch size; MySQL only honours it with useCursorFetch=true in the URL,
+   *                  without it rows are streamed one at a time
+   */
+  void forEach(int fetchSize, Consumer<InventoryItem> consumer);
+}
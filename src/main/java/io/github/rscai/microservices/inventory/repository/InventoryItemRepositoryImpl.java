@@ -0,0 +1,271 @@
+package io.github.rscai.microservices.inventory.repository;
+
+import io.github.rscai.microservices.inventory.model.ChangeFeedWatermark;
+import io.github.rscai.microservices.inventory.model.InventoryItem;
+import io.github.rscai.microservices.inventory.model.InventoryItemIdStrategy;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Consumer;
+import javax.persistence.EntityManager;
+import org.hibernate.Session;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
+
+public class InventoryItemRepositoryImpl implements InventoryItemRepositoryCustom {
+
+  private static final String SELECT_BY_PRODUCT_ID =
+      "select i from InventoryItem i where i.productId = :productId";
+  // every update clears the feed position, so the item feed reports the item again
+  private static final String ADD_QUANTITY = "update inventory_item"
+      + " set quantity = quantity + ?, updated_at = ?, feed_position = null where id = ?";
+  private static final String ADD_QUANTITY_IF_AVAILABLE = ADD_QUANTITY
+      + " and (? >= 0 or quantity - reserved_quantity + ? >= 0)";
+  private static final String ADD_QUANTITY_IF_ON_HAND = ADD_QUANTITY
+      + " and (? >= 0 or quantity + ? >= 0)";
+  private static final String RESERVE_QUANTITY = "update inventory_item"
+      + " set reserved_quantity = reserved_quantity + ?, updated_at = ?, feed_position = null"
+      + " where id = ? and quantity - reserved_quantity >= ?";
+  private static final String RELEASE_QUANTITY = "update inventory_item"
+      + " set reserved_quantity = reserved_quantity - ?, updated_at = ?, feed_position = null"
+      + " where id = ?";
+  private static final String SELECT_IDS_BY_PRODUCT_ID =
+      "select product_id, id from inventory_item where product_id in (:productIds)";
+  private static final String UPDATE_ITEM = "update inventory_item"
+      + " set quantity = ?, unit_price = ?, updated_at = ?, feed_position = null"
+      + " where id = ? and reserved_quantity <= ?";
+  private static final String INSERT_ITEM = "insert into inventory_item"
+      + " (id, product_id, quantity, reserved_quantity, unit_price, created_at, updated_at)"
+      + " values (?, ?, ?, 0, ?, ?, ?)";
+  private static final String DELETE_SNAPSHOTS =
+      "delete from inventory_item_snapshot where inventory_item_id in (:ids)";
+  private static final String DELETE_ITEM = "delete from inventory_item where id = ?";
+  private static final String INSERT_TOMBSTONE = "insert into inventory_item_tombstone"
+      + " (id, product_id, deleted_at) values (?, ?, ?)";
+  private static final String SELECT_UNPUBLISHED_ITEMS =
+      "select id from inventory_item where feed_position is null";
+  private static final String SET_ITEM_FEED_POSITION =
+      "update inventory_item set feed_position = ? where id = ?";
+  private static final String SELECT_UNPUBLISHED_TOMBSTONES =
+      "select id from inventory_item_tombstone where feed_position is null";
+  private static final String SET_TOMBSTONE_FEED_POSITION =
+      "update inventory_item_tombstone set feed_position = ? where id = ?";
+  private static final String SELECT_ALL = "select id, product_id, quantity, reserved_quantity,"
+      + " unit_price, created_at, updated_at from inventory_item";
+
+  private final JdbcTemplate jdbcTemplate;
+  private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+  private final EntityManager entityManager;
+  private final InventoryItemIdStrategy idStrategy;
+  private final Shards shards;
+
+  public InventoryItemRepositoryImpl(JdbcTemplate jdbcTemplate, EntityManager entityManager,
+      InventoryItemIdStrategy idStrategy, ObjectProvider<Shards> shards) {
+    this.jdbcTemplate = jdbcTemplate;
+    this.namedParameterJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+    this.entityManager = entityManager;
+    this.idStrategy = idStrategy;
+    this.shards = shards.getIfAvailable();
+  }
+
+  @Override
+  @Transactional(readOnly = true)
+  public Optional<InventoryItem> findByProductId(String productId) {
+    Session session = entityManager.unwrap(Session.class);
+    if (session.getSessionFactory().getSessionFactoryOptions().isSecondLevelCacheEnabled()) {
+      return session.bySimpleNaturalId(InventoryItem.class).loadOptional(productId);
+    }
+    // resolving the natural id first would take a query of its own
+    return entityManager.createQuery(SELECT_BY_PRODUCT_ID, InventoryItem.class)
+        .setParameter("productId", productId).getResultList().stream().findFirst();
+  }
+
+  @Override
+  public int[] addQuantities(Map<String, Integer> deltas, Date updatedAt,
+      OversellGuard oversellGuard) {
+    if (deltas.isEmpty()) {
+      return new int[0];
+    }
+    boolean guarded = oversellGuard != OversellGuard.NONE;
+    Timestamp timestamp = new Timestamp(updatedAt.getTime());
+    List<Object[]> batchArgs = new ArrayList<>(deltas.size());
+    for (Map.Entry<String, Integer> entry : deltas.entrySet()) {
+      batchArgs.add(guarded
+          ? new Object[]{entry.getValue(), timestamp, entry.getKey(), entry.getValue(),
+              entry.getValue()}
+          : new Object[]{entry.getValue(), timestamp, entry.getKey()});
+    }
+    String sql = ADD_QUANTITY;
+    if (oversellGuard == OversellGuard.AVAILABLE) {
+      sql = ADD_QUANTITY_IF_AVAILABLE;
+    } else if (oversellGuard == OversellGuard.ON_HAND) {
+      sql = ADD_QUANTITY_IF_ON_HAND;
+    }
+    return jdbcTemplate.batchUpdate(sql, batchArgs);
+  }
+
+  @Override
+  public int reserveQuantity(String id, int quantity, Date updatedAt) {
+    return jdbcTemplate.update(RESERVE_QUANTITY, quantity, new Timestamp(updatedAt.getTime()), id,
+        quantity);
+  }
+
+  @Override
+  public int releaseQuantity(String id, int quantity, Date updatedAt) {
+    return jdbcTemplate.update(RELEASE_QUANTITY, quantity, new Timestamp(updatedAt.getTime()), id);
+  }
+
+  @Override
+  public List<String> upsertByProductId(Collection<InventoryItem> items, Date updatedAt) {
+    if (items.isEmpty()) {
+      return Collections.emptyList();
+    }
+    Map<String, InventoryItem> itemsByProductId = new LinkedHashMap<>();
+    for (InventoryItem item : items) {
+      itemsByProductId.put(item.getProductId(), item);
+    }
+    Map<String, String> existingIds = new HashMap<>();
+    namedParameterJdbcTemplate.query(SELECT_IDS_BY_PRODUCT_ID,
+        Collections.singletonMap("productIds", itemsByProductId.keySet()),
+        (ResultSet rs) -> {
+          existingIds.put(rs.getString(1), rs.getString(2));
+        });
+
+    Timestamp timestamp = new Timestamp(updatedAt.getTime());
+    List<String> updatedProductIds = new ArrayList<>();
+    List<Object[]> updateArgs = new ArrayList<>();
+    List<Object[]> insertArgs = new ArrayList<>();
+    for (InventoryItem item : itemsByProductId.values()) {
+      String existingId = existingIds.get(item.getProductId());
+      if (existingId != null) {
+        item.setId(existingId);
+        updatedProductIds.add(item.getProductId());
+        updateArgs.add(new Object[]{item.getQuantity(), item.getUnitPrice(), timestamp,
+            existingId, item.getQuantity()});
+      } else {
+        // like ShardRoutingInterceptor, a new item carries the shard of its productId in its id
+        item.setId(shards == null ? idStrategy.nextId()
+            : shards.withShardOf(idStrategy.nextId(), item.getProductId()));
+        item.setCreatedAt(updatedAt);
+        insertArgs.add(new Object[]{item.getId(), item.getProductId(), item.getQuantity(),
+            item.getUnitPrice(), timestamp, timestamp});
+      }
+      item.setUpdatedAt(updatedAt);
+    }
+    // items sharing a productId with a later one take over its id as well
+    for (InventoryItem item : items) {
+      item.setId(itemsByProductId.get(item.getProductId()).getId());
+    }
+    List<String> rejectedProductIds = new ArrayList<>();
+    if (!updateArgs.isEmpty()) {
+      int[] updateCounts = jdbcTemplate.batchUpdate(UPDATE_ITEM, updateArgs);
+      for (int i = 0; i < updateCounts.length; i++) {
+        if (updateCounts[i] == 0) {
+          rejectedProductIds.add(updatedProductIds.get(i));
+        }
+      }
+      // the quantity is overwritten, so snapshot plus later changes no longer add up to it
+      namedParameterJdbcTemplate.update(DELETE_SNAPSHOTS,
+          Collections.singletonMap("ids", existingIds.values()));
+    }
+    if (!insertArgs.isEmpty()) {
+      jdbcTemplate.batchUpdate(INSERT_ITEM, insertArgs);
+    }
+    return rejectedProductIds;
+  }
+
+  @Override
+  @Transactional
+  public int deleteWithTombstone(InventoryItem item, Date deletedAt) {
+    if (jdbcTemplate.update(DELETE_ITEM, item.getId()) == 0) {
+      return 0;
+    }
+    jdbcTemplate.update(INSERT_TOMBSTONE, item.getId(), item.getProductId(),
+        new Timestamp(deletedAt.getTime()));
+    return 1;
+  }
+
+  @Override
+  @Transactional
+  public int publishToFeed(int limit) {
+    long position = FeedWatermarks.lock(jdbcTemplate, ChangeFeedWatermark.ITEMS);
+    // read after the lock, so updates and deletions committed by then are seen
+    JdbcTemplate limitedTemplate = new JdbcTemplate(jdbcTemplate.getDataSource());
+    limitedTemplate.setMaxRows(limit);
+    List<String> itemIds = limitedTemplate.queryForList(SELECT_UNPUBLISHED_ITEMS, String.class);
+    List<String> tombstoneIds = Collections.emptyList();
+    if (itemIds.size() < limit) {
+      limitedTemplate.setMaxRows(limit - itemIds.size());
+      tombstoneIds = limitedTemplate.queryForList(SELECT_UNPUBLISHED_TOMBSTONES, String.class);
+    }
+    if (itemIds.isEmpty() && tombstoneIds.isEmpty()) {
+      return 0;
+    }
+    position = setFeedPositions(SET_ITEM_FEED_POSITION, itemIds, position);
+    position = setFeedPositions(SET_TOMBSTONE_FEED_POSITION, tombstoneIds, position);
+    FeedWatermarks.advance(jdbcTemplate, ChangeFeedWatermark.ITEMS, position);
+    return itemIds.size() + tombstoneIds.size();
+  }
+
+  /**
+   * @return the last position handed out
+   */
+  private long setFeedPositions(String sql, List<String> ids, long position) {
+    if (ids.isEmpty()) {
+      return position;
+    }
+    List<Object[]> batchArgs = new ArrayList<>(ids.size());
+    for (String id : ids) {
+      batchArgs.add(new Object[]{++position, id});
+    }
+    jdbcTemplate.batchUpdate(sql, batchArgs);
+    return position;
+  }
+
+  @Override
+  public void forEach(int fetchSize, Consumer<InventoryItem> consumer) {
+    JdbcTemplate streamingTemplate = new JdbcTemplate(jdbcTemplate.getDataSource());
+    streamingTemplate.setFetchSize(streamingFetchSize(fetchSize));
+    streamingTemplate.query(SELECT_ALL, (ResultSet rs) -> {
+      consumer.accept(mapItem(rs));
+    });
+  }
+
+  /**
+   * MySQL Connector/J reads the whole result into memory whatever the fetch size, unless the URL
+   * sets useCursorFetch=true; without it only Integer.MIN_VALUE streams, one row at a time.
+   */
+  private int streamingFetchSize(int fetchSize) {
+    return jdbcTemplate.execute((ConnectionCallback<Integer>) connection -> {
+      DatabaseMetaData metaData = connection.getMetaData();
+      boolean buffering = "MySQL".equals(metaData.getDatabaseProductName())
+          && !metaData.getURL().contains("useCursorFetch=true");
+      return buffering ? Integer.MIN_VALUE : fetchSize;
+    });
+  }
+
+  private static InventoryItem mapItem(ResultSet rs) throws SQLException {
+    InventoryItem item = new InventoryItem();
+    item.setId(rs.getString("id"));
+    item.setProductId(rs.getString("product_id"));
+    item.setQuantity(rs.getInt("quantity"));
+    item.setReservedQuantity(rs.getInt("reserved_quantity"));
+    item.setUnitPrice(rs.getBigDecimal("unit_price"));
+    item.setCreatedAt(rs.getTimestamp("created_at"));
+    item.setUpdatedAt(rs.getTimestamp("updated_at"));
+    return item;
+  }
+}
@@ -0,0 +1,17 @@
+package io.github.rscai.microservices.inventory.repository;
+
+import io.github.rscai.microservices.inventory.model.InventoryItemReservation;
+import io.github.rscai.microservices.inventory.model.InventoryItemReservation.Status;
+import java.util.Date;
+import java.util.List;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface InventoryItemReservationRepository extends
+    JpaRepository<InventoryItemReservation, String>, InventoryItemReservationRepositoryCustom {
+
+  List<InventoryItemReservation> findByStatusAndExpiresAtLessThanEqualOrderByExpiresAt(
+      Status status, Date expiresAt, Pageable pageable);
+}
@@ -0,0 +1,36 @@
+package io.github.rscai.microservices.inventory.repository;
+
+import io.github.rscai.microservices.inventory.model.InventoryItemReservation;
+import io.github.rscai.microservices.inventory.model.InventoryItemReservation.Status;
+import java.util.Date;
+import java.util.function.Consumer;
+
+public interface InventoryItemReservationRepositoryCustom {
+
+  /**
+   * Insert the given reservation, which must carry its status, expiry and timestamps.
+   */
+  void insert(InventoryItemReservation reservation);
+
+  /**
+   * Atomically move the given reservation from one status to another, so of concurrent
+   * transitions, e.g. a confirmation and an expiry, only one succeeds.
+   *
+   * @return 1, or 0 if the reservation does not exist or is not in status {@code from}
+   */
+  int transition(String id, Status from, Status to, Date updatedAt);
+
+  /**
+   * Atomically move the given reservation from {@link Status#RESERVED} to {@link Status#EXPIRED}
+   * if it has expired by {@code now}.
+   *
+   * @return 1, or 0 if the reservation does not exist, is not reserved or has not expired
+   */
+  int expire(String id, Date now);
+
+  /**
+   * Pass the id, item id, quantity and expiry of every reservation in the given status to the
+   * consumer, reading {@code batchSize} reservations at a time in id order.
+   */
+  void forEachByStatus(Status status, int batchSize, Consumer<InventoryItemReservation> consumer);
+}
@@ -0,0 +1,75 @@
+package io.github.rscai.microservices.inventory.repository;
+
+import io.github.rscai.microservices.inventory.model.InventoryItemReservation;
+import io.github.rscai.microservices.inventory.model.InventoryItemReservation.Status;
+import java.sql.Timestamp;
+import java.util.Date;
+import java.util.List;
+import java.util.function.Consumer;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+public class InventoryItemReservationRepositoryImpl implements
+    InventoryItemReservationRepositoryCustom {
+
+  private static final String INSERT_RESERVATION = "insert into inventory_item_reservation"
+      + " (id, inventory_item_id, quantity, status, expires_at, created_at, updated_at)"
+      + " values (?, ?, ?, ?, ?, ?, ?)";
+  private static final String TRANSITION = "update inventory_item_reservation"
+      + " set status = ?, updated_at = ? where id = ? and status = ?";
+  private static final String EXPIRE = TRANSITION + " and expires_at <= ?";
+  private static final String SELECT_BY_STATUS_AFTER = "select id, inventory_item_id, quantity,"
+      + " expires_at from inventory_item_reservation where status = ? and id > ? order by id";
+
+  private final JdbcTemplate jdbcTemplate;
+
+  public InventoryItemReservationRepositoryImpl(JdbcTemplate jdbcTemplate) {
+    this.jdbcTemplate = jdbcTemplate;
+  }
+
+  @Override
+  public void insert(InventoryItemReservation reservation) {
+    jdbcTemplate.update(INSERT_RESERVATION, reservation.getId(),
+        reservation.getInventoryItemId(), reservation.getQuantity(),
+        reservation.getStatus().name(), new Timestamp(reservation.getExpiresAt().getTime()),
+        new Timestamp(reservation.getCreatedAt().getTime()),
+        new Timestamp(reservation.getUpdatedAt().getTime()));
+  }
+
+  @Override
+  public int transition(String id, Status from, Status to, Date updatedAt) {
+    return jdbcTemplate.update(TRANSITION, to.name(), new Timestamp(updatedAt.getTime()), id,
+        from.name());
+  }
+
+  @Override
+  public int expire(String id, Date now) {
+    Timestamp timestamp = new Timestamp(now.getTime());
+    return jdbcTemplate.update(EXPIRE, Status.EXPIRED.name(), timestamp, id,
+        Status.RESERVED.name(), timestamp);
+  }
+
+  @Override
+  public void forEachByStatus(Status status, int batchSize,
+      Consumer<InventoryItemReservation> consumer) {
+    // pages by id rather than relying on the driver to stream, which MySQL does not by default
+    JdbcTemplate limitedTemplate = new JdbcTemplate(jdbcTemplate.getDataSource());
+    limitedTemplate.setMaxRows(batchSize);
+    String lastId = "";
+    List<InventoryItemReservation> batch;
+    do {
+      batch = limitedTemplate.query(SELECT_BY_STATUS_AFTER, (rs, rowNum) -> {
+        InventoryItemReservation reservation = new InventoryItemReservation();
+        reservation.setId(rs.getString("id"));
+        reservation.setInventoryItemId(rs.getString("inventory_item_id"));
+        reservation.setQuantity(rs.getInt("quantity"));
+        reservation.setStatus(status);
+        reservation.setExpiresAt(rs.getTimestamp("expires_at"));
+        return reservation;
+      }, status.name(), lastId);
+      batch.forEach(consumer);
+      if (!batch.isEmpty()) {
+        lastId = batch.get(batch.size() - 1).getId();
+      }
+    } while (batch.size() == batchSize);
+  }
+}
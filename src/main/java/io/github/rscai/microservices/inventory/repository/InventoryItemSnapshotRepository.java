@@ -0,0 +1,19 @@
+package io.github.rscai.microservices.inventory.repository;
+
+import io.github.rscai.microservices.inventory.model.InventoryItemSnapshot;
+import java.util.List;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface InventoryItemSnapshotRepository extends
+    JpaRepository<InventoryItemSnapshot, String>, InventoryItemSnapshotRepositoryCustom {
+
+  @Query("select s.inventoryItemId from InventoryItemSnapshot s"
+      + " where s.inventoryItemId > :inventoryItemId order by s.inventoryItemId")
+  List<String> findInventoryItemIdsAfter(@Param("inventoryItemId") String inventoryItemId,
+      Pageable pageable);
+}
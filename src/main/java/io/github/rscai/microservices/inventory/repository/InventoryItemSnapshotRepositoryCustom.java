@@ -0,0 +1,31 @@
+package io.github.rscai.microservices.inventory.repository;
+
+import java.util.Collection;
+import java.util.Date;
+
+public interface InventoryItemSnapshotRepositoryCustom {
+
+  /**
+   * Fold all quantity changes up to the given sequence number into per-item snapshots, keep their
+   * ids as tombstones and delete them from the change log. Must run in a transaction; the
+   * inventory items concerned are locked until it ends.
+   *
+   * @return count of compacted changes
+   */
+  int compactUpTo(long sequenceNumber, Date updatedAt);
+
+  /**
+   * Delete up to {@code limit} tombstones created before the given time.
+   *
+   * @return count of deleted tombstones
+   */
+  int deleteTombstonesCreatedBefore(Date createdBefore, int limit);
+
+  /**
+   * Set the quantity of the given items to their snapshot plus all later quantity changes. Items
+   * without snapshot are left as they are.
+   *
+   * @return count of updated items
+   */
+  int rebuildQuantities(Collection<String> inventoryItemIds, Date updatedAt);
+}
@@ -0,0 +1,143 @@
+package io.github.rscai.microservices.inventory.repository;
+
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+
+public class InventoryItemSnapshotRepositoryImpl implements InventoryItemSnapshotRepositoryCustom {
+
+  private static final String SUM_CHANGES_UP_TO = "select inventory_item_id,"
+      + " sum(quantity_change), max(sequence_number) from inventory_item_quantity_change"
+      + " where sequence_number <= ? group by inventory_item_id";
+  private static final String LOCK_ITEMS =
+      "select id, quantity from inventory_item where id in (:ids) order by id for update";
+  private static final String SELECT_SNAPSHOT_IDS = "select inventory_item_id"
+      + " from inventory_item_snapshot where inventory_item_id in (:ids)";
+  private static final String SUM_CHANGES_AFTER = "select inventory_item_id, sum(quantity_change)"
+      + " from inventory_item_quantity_change"
+      + " where sequence_number > :sequenceNumber and inventory_item_id in (:ids)"
+      + " and applied = true"
+      + " group by inventory_item_id";
+  private static final String UPDATE_SNAPSHOT = "update inventory_item_snapshot"
+      + " set quantity = quantity + ?, last_sequence_number = ?, updated_at = ?"
+      + " where inventory_item_id = ?";
+  private static final String INSERT_SNAPSHOT = "insert into inventory_item_snapshot"
+      + " (inventory_item_id, quantity, last_sequence_number, updated_at) values (?, ?, ?, ?)";
+  private static final String INSERT_TOMBSTONES =
+      "insert into inventory_item_quantity_change_tombstone (id, created_at)"
+          + " select id, created_at from inventory_item_quantity_change where sequence_number <= ?";
+  private static final String DELETE_CHANGES =
+      "delete from inventory_item_quantity_change where sequence_number <= ?";
+  private static final String SELECT_TOMBSTONES_CREATED_BEFORE =
+      "select id from inventory_item_quantity_change_tombstone where created_at < ?";
+  private static final String DELETE_TOMBSTONE =
+      "delete from inventory_item_quantity_change_tombstone where id = ?";
+  private static final String REBUILD_QUANTITIES = "update inventory_item set quantity = ("
+      + "select s.quantity + coalesce((select sum(c.quantity_change)"
+      + " from inventory_item_quantity_change c where c.inventory_item_id = s.inventory_item_id"
+      + " and c.sequence_number > s.last_sequence_number and c.applied = true), 0)"
+      + " from inventory_item_snapshot s where s.inventory_item_id = inventory_item.id),"
+      + " updated_at = :updatedAt, feed_position = null where id in (:ids) and exists (select 1"
+      + " from inventory_item_snapshot s where s.inventory_item_id = inventory_item.id)";
+
+  private final JdbcTemplate jdbcTemplate;
+  private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+  public InventoryItemSnapshotRepositoryImpl(JdbcTemplate jdbcTemplate) {
+    this.jdbcTemplate = jdbcTemplate;
+    this.namedParameterJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+  }
+
+  @Override
+  public int compactUpTo(long sequenceNumber, Date updatedAt) {
+    Map<String, long[]> compacted = new HashMap<>();
+    jdbcTemplate.query(SUM_CHANGES_UP_TO, (ResultSet rs) -> {
+      compacted.put(rs.getString(1), new long[]{rs.getLong(2), rs.getLong(3)});
+    }, sequenceNumber);
+    if (compacted.isEmpty()) {
+      return 0;
+    }
+
+    // lock the items first, so no quantity change of them commits while their base is computed
+    Map<String, Integer> quantities = new HashMap<>();
+    namedParameterJdbcTemplate.query(LOCK_ITEMS, new MapSqlParameterSource("ids",
+        compacted.keySet()), (ResultSet rs) -> {
+      quantities.put(rs.getString(1), rs.getInt(2));
+    });
+    // changes of deleted items are dropped without snapshot
+    Set<String> snapshotIds = quantities.isEmpty() ? new HashSet<>()
+        : new HashSet<>(namedParameterJdbcTemplate.queryForList(SELECT_SNAPSHOT_IDS,
+            new MapSqlParameterSource("ids", quantities.keySet()), String.class));
+    Set<String> newSnapshotIds = new HashSet<>(quantities.keySet());
+    newSnapshotIds.removeAll(snapshotIds);
+    Map<String, Long> laterChanges = new HashMap<>();
+    if (!newSnapshotIds.isEmpty()) {
+      namedParameterJdbcTemplate.query(SUM_CHANGES_AFTER,
+          new MapSqlParameterSource("sequenceNumber", sequenceNumber)
+              .addValue("ids", newSnapshotIds), (ResultSet rs) -> {
+            laterChanges.put(rs.getString(1), rs.getLong(2));
+          });
+    }
+
+    Timestamp timestamp = new Timestamp(updatedAt.getTime());
+    List<Object[]> updateArgs = new ArrayList<>();
+    List<Object[]> insertArgs = new ArrayList<>();
+    for (String itemId : quantities.keySet()) {
+      long[] sumAndLast = compacted.get(itemId);
+      if (snapshotIds.contains(itemId)) {
+        updateArgs.add(new Object[]{Math.toIntExact(sumAndLast[0]), sumAndLast[1], timestamp,
+            itemId});
+      } else {
+        // the item quantity includes every change, take back those after the compacted range
+        int quantity = Math.toIntExact(
+            quantities.get(itemId) - laterChanges.getOrDefault(itemId, 0L));
+        insertArgs.add(new Object[]{itemId, quantity, sumAndLast[1], timestamp});
+      }
+    }
+    if (!updateArgs.isEmpty()) {
+      jdbcTemplate.batchUpdate(UPDATE_SNAPSHOT, updateArgs);
+    }
+    if (!insertArgs.isEmpty()) {
+      jdbcTemplate.batchUpdate(INSERT_SNAPSHOT, insertArgs);
+    }
+    jdbcTemplate.update(INSERT_TOMBSTONES, sequenceNumber);
+    return jdbcTemplate.update(DELETE_CHANGES, sequenceNumber);
+  }
+
+  @Override
+  public int deleteTombstonesCreatedBefore(Date createdBefore, int limit) {
+    JdbcTemplate limitedTemplate = new JdbcTemplate(jdbcTemplate.getDataSource());
+    limitedTemplate.setMaxRows(limit);
+    List<String> ids = limitedTemplate.queryForList(SELECT_TOMBSTONES_CREATED_BEFORE,
+        String.class, new Timestamp(createdBefore.getTime()));
+    if (ids.isEmpty()) {
+      return 0;
+    }
+    List<Object[]> batchArgs = new ArrayList<>(ids.size());
+    for (String id : ids) {
+      batchArgs.add(new Object[]{id});
+    }
+    jdbcTemplate.batchUpdate(DELETE_TOMBSTONE, batchArgs);
+    return ids.size();
+  }
+
+  @Override
+  public int rebuildQuantities(Collection<String> inventoryItemIds, Date updatedAt) {
+    if (inventoryItemIds.isEmpty()) {
+      return 0;
+    }
+    return namedParameterJdbcTemplate.update(REBUILD_QUANTITIES,
+        new MapSqlParameterSource("ids", inventoryItemIds)
+            .addValue("updatedAt", new Timestamp(updatedAt.getTime())));
+  }
+}
@@ -0,0 +1,19 @@
+package io.github.rscai.microservices.inventory.repository;
+
+import io.github.rscai.microservices.inventory.model.InventoryItemTombstone;
+import java.util.List;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface InventoryItemTombstoneRepository extends
+    JpaRepository<InventoryItemTombstone, String> {
+
+  @Query("select t from InventoryItemTombstone t where t.feedPosition > :feedPosition"
+      + " order by t.feedPosition")
+  List<InventoryItemTombstone> findFeedPage(@Param("feedPosition") long feedPosition,
+      Pageable pageable);
+}
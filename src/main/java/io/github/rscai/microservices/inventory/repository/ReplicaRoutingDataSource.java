@@ -0,0 +1,284 @@
+package io.github.rscai.microservices.inventory.repository;
+
+import io.github.rscai.microservices.inventory.model.ReplicationHeartbeat;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import javax.sql.DataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Hands out connections of read-only transactions from replicas while replica reads are allowed
+ * on the current thread, and all others from the primary. Replicas take turns; one failing to hand
+ * out a connection is skipped until a health check reaches it again, and without a healthy replica
+ * reads go to the primary.
+ *
+ * <p>Each health check writes the current time as {@link ReplicationHeartbeat} to the primary and
+ * reads it back from every replica: the time read is how far the replica has replayed the primary,
+ * the difference its lag. A replica lagging more than {@code maxLag} is skipped, and so is one
+ * that has not replayed up to the time the reading thread requires, e.g. that of its client's last
+ * write. Times are compared across instances, whose clocks are assumed to be synchronized.
+ *
+ * <p>A connection is only fetched on its first statement, once its transaction is known to be
+ * read-only.
+ */
+public class ReplicaRoutingDataSource extends LazyConnectionDataSourceProxy implements
+    AutoCloseable {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(ReplicaRoutingDataSource.class);
+  private static final int HEALTH_CHECK_TIMEOUT_SECONDS = 1;
+  private static final String UPDATE_HEARTBEAT =
+      "update replication_heartbeat set beat_at = ? where id = ?";
+  private static final String INSERT_HEARTBEAT =
+      "insert into replication_heartbeat (id, beat_at) values (?, ?)";
+  private static final String SELECT_HEARTBEAT =
+      "select beat_at from replication_heartbeat where id = ?";
+  // the time, in epoch milliseconds, a replica must have replayed up to
+  private static final ThreadLocal<Long> REPLICA_READS = new ThreadLocal<>();
+
+  private final DataSource primary;
+  private final long maxLagMillis;
+  private final List<Replica> replicas = new ArrayList<>();
+  private final AtomicInteger nextReplica = new AtomicInteger();
+  private final AtomicLong primaryConnections = new AtomicLong();
+  private final AtomicLong replicaConnections = new AtomicLong();
+  private ScheduledExecutorService healthChecker;
+
+  public ReplicaRoutingDataSource(DataSource primary, List<DataSource> replicas,
+      Duration maxLag) {
+    this.primary = primary;
+    this.maxLagMillis = maxLag.toMillis();
+    for (int index = 0; index < replicas.size(); index++) {
+      this.replicas.add(new Replica(index, replicas.get(index)));
+    }
+    setTargetDataSource(new AbstractDataSource() {
+      @Override
+      public Connection getConnection() throws SQLException {
+        return route();
+      }
+
+      @Override
+      public Connection getConnection(String username, String password) throws SQLException {
+        return primary.getConnection(username, password);
+      }
+
+      // e.g. pool metrics unwrap the primary pool
+      @Override
+      public <T> T unwrap(Class<T> iface) throws SQLException {
+        return iface.isInstance(this) ? iface.cast(this) : primary.unwrap(iface);
+      }
+
+      @Override
+      public boolean isWrapperFor(Class<?> iface) throws SQLException {
+        return iface.isInstance(this) || primary.isWrapperFor(iface);
+      }
+    });
+    afterPropertiesSet();
+  }
+
+  /**
+   * Allow read-only transactions of the current thread to read from a replica which has replayed
+   * the primary up to the given time.
+   *
+   * @param replayedUpTo epoch milliseconds, e.g. of the client's last write; 0 for any replica
+   *                     within {@code maxLag}
+   */
+  public static void allowReplicaReads(long replayedUpTo) {
+    REPLICA_READS.set(replayedUpTo);
+  }
+
+  public static void disallowReplicaReads() {
+    REPLICA_READS.remove();
+  }
+
+  /**
+   * Run the action reading from the primary only, e.g. to cache what it reads.
+   */
+  public static <T> T onPrimary(Supplier<T> action) {
+    Long previous = REPLICA_READS.get();
+    REPLICA_READS.remove();
+    try {
+      return action.get();
+    } finally {
+      if (previous != null) {
+        REPLICA_READS.set(previous);
+      }
+    }
+  }
+
+  /**
+   * Check the replicas every {@code healthCheckInterval}, starting now.
+   */
+  public void start(Duration healthCheckInterval) {
+    healthChecker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "replica-health-check");
+      thread.setDaemon(true);
+      return thread;
+    });
+    healthChecker.scheduleWithFixedDelay(this::checkHealth, 0,
+        healthCheckInterval.toMillis(), TimeUnit.MILLISECONDS);
+  }
+
+  public long getPrimaryConnections() {
+    return primaryConnections.get();
+  }
+
+  public long getReplicaConnections() {
+    return replicaConnections.get();
+  }
+
+  /**
+   * @return count of replicas reachable and lagging no more than {@code maxLag}
+   */
+  public long getHealthyReplicas() {
+    return replicas.stream().filter(replica -> replica.serves(0)).count();
+  }
+
+  @Override
+  public void close() throws Exception {
+    if (healthChecker != null) {
+      healthChecker.shutdownNow();
+    }
+    for (Replica replica : replicas) {
+      if (replica.dataSource instanceof AutoCloseable) {
+        ((AutoCloseable) replica.dataSource).close();
+      }
+    }
+    if (primary instanceof AutoCloseable) {
+      ((AutoCloseable) primary).close();
+    }
+  }
+
+  private Connection route() throws SQLException {
+    Long replayedUpTo = REPLICA_READS.get();
+    if (replayedUpTo != null && TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+      for (int attempt = 0; attempt < replicas.size(); attempt++) {
+        Replica replica = replicas
+            .get(Math.floorMod(nextReplica.getAndIncrement(), replicas.size()));
+        if (!replica.serves(replayedUpTo)) {
+          continue;
+        }
+        try {
+          Connection connection = replica.dataSource.getConnection();
+          replicaConnections.incrementAndGet();
+          return connection;
+        } catch (SQLException | RuntimeException e) {
+          // e.g. a pool failing to start
+          replica.setHealthy(false, e);
+        }
+      }
+    }
+    Connection connection = primary.getConnection();
+    primaryConnections.incrementAndGet();
+    return connection;
+  }
+
+  private void checkHealth() {
+    long beatAt = System.currentTimeMillis();
+    boolean beaten;
+    try (Connection connection = primary.getConnection()) {
+      beat(connection, beatAt);
+      beaten = true;
+    } catch (SQLException | RuntimeException e) {
+      // e.g. before the schema is created; the replicas' lags are not measured this time
+      LOGGER.warn("Fail to write the replication heartbeat to the primary", e);
+      beaten = false;
+    }
+    for (Replica replica : replicas) {
+      try (Connection connection = replica.dataSource.getConnection()) {
+        boolean valid = connection.isValid(HEALTH_CHECK_TIMEOUT_SECONDS);
+        if (valid && beaten) {
+          replica.setReplayedUpTo(readHeartbeat(connection), beatAt, maxLagMillis);
+        }
+        replica.setHealthy(valid, null);
+      } catch (SQLException | RuntimeException e) {
+        replica.setHealthy(false, e);
+      }
+    }
+  }
+
+  private static void beat(Connection connection, long beatAt) throws SQLException {
+    try (PreparedStatement update = connection.prepareStatement(UPDATE_HEARTBEAT)) {
+      update.setLong(1, beatAt);
+      update.setInt(2, ReplicationHeartbeat.ID);
+      if (update.executeUpdate() > 0) {
+        return;
+      }
+    }
+    try (PreparedStatement insert = connection.prepareStatement(INSERT_HEARTBEAT)) {
+      insert.setInt(1, ReplicationHeartbeat.ID);
+      insert.setLong(2, beatAt);
+      insert.executeUpdate();
+    }
+  }
+
+  /**
+   * @return the last heartbeat replayed by the replica, 0 if none
+   */
+  private static long readHeartbeat(Connection connection) throws SQLException {
+    try (PreparedStatement select = connection.prepareStatement(SELECT_HEARTBEAT)) {
+      select.setInt(1, ReplicationHeartbeat.ID);
+      try (ResultSet resultSet = select.executeQuery()) {
+        return resultSet.next() ? resultSet.getLong(1) : 0;
+      }
+    }
+  }
+
+  private static class Replica {
+
+    private final int index;
+    private final DataSource dataSource;
+    private volatile boolean healthy = true;
+    // unknown until measured
+    private volatile long replayedUpTo;
+    private volatile boolean lagging = true;
+
+    Replica(int index, DataSource dataSource) {
+      this.index = index;
+      this.dataSource = dataSource;
+    }
+
+    void setHealthy(boolean healthy, Exception cause) {
+      if (this.healthy && !healthy) {
+        LOGGER.warn("Replica {} is unavailable, reading from the others", index, cause);
+      } else if (!this.healthy && healthy) {
+        LOGGER.info("Replica {} is available again", index);
+      }
+      this.healthy = healthy;
+    }
+
+    void setReplayedUpTo(long replayedUpTo, long now, long maxLagMillis) {
+      boolean lagging = now - replayedUpTo > maxLagMillis;
+      if (lagging && !this.lagging) {
+        LOGGER.warn("Replica {} lags {} ms behind the primary, reading from the others", index,
+            now - replayedUpTo);
+      } else if (!lagging && this.lagging) {
+        LOGGER.info("Replica {} has caught up with the primary", index);
+      }
+      this.replayedUpTo = replayedUpTo;
+      this.lagging = lagging;
+    }
+
+    /**
+     * @return whether the replica may serve reads requiring it to have replayed up to the given
+     * time
+     */
+    boolean serves(long requiredReplayedUpTo) {
+      return healthy && !lagging && replayedUpTo >= requiredReplayedUpTo;
+    }
+  }
+}
@@ -0,0 +1,46 @@
+package io.github.rscai.microservices.inventory.repository;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.sql.DataSource;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+/**
+ * Hands out connections of the shard bound by {@link Shards}, or of shard 0 if none is bound.
+ */
+public class ShardRoutingDataSource extends AbstractRoutingDataSource implements AutoCloseable {
+
+  private final List<DataSource> shards;
+
+  public ShardRoutingDataSource(List<DataSource> shards) {
+    this.shards = shards;
+    Map<Object, Object> targets = new HashMap<>();
+    for (int shard = 0; shard < shards.size(); shard++) {
+      targets.put(shard, shards.get(shard));
+    }
+    setTargetDataSources(targets);
+    setDefaultTargetDataSource(shards.get(0));
+    // a bound shard without data source is a bug, never fall back to shard 0 for it
+    setLenientFallback(false);
+    afterPropertiesSet();
+  }
+
+  public List<DataSource> getShards() {
+    return shards;
+  }
+
+  @Override
+  protected Object determineCurrentLookupKey() {
+    return Shards.current();
+  }
+
+  @Override
+  public void close() throws Exception {
+    for (DataSource shard : shards) {
+      if (shard instanceof AutoCloseable) {
+        ((AutoCloseable) shard).close();
+      }
+    }
+  }
+}
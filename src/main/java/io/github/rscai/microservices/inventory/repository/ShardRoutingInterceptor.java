@@ -0,0 +1,253 @@
+package io.github.rscai.microservices.inventory.repository;
+
+import io.github.rscai.microservices.inventory.model.InventoryItem;
+import io.github.rscai.microservices.inventory.model.InventoryItemIdStrategy;
+import io.github.rscai.microservices.inventory.model.InventoryItemQuantityChange;
+import io.github.rscai.microservices.inventory.model.InventoryItemQuantityChangeBatch;
+import io.github.rscai.microservices.inventory.model.InventoryItemReservation;
+import io.github.rscai.microservices.inventory.model.InventoryItemSnapshot;
+import java.lang.reflect.UndeclaredThrowableException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.aop.ProxyMethodInvocation;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.support.PropertyComparator;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Routes repository calls to the shards of the inventory items they concern. A call made while a
+ * shard is bound runs on that shard as it is. Otherwise calls by item id, entity or single
+ * productId run on the item's shard, calls by several productIds and listings fan out to all
+ * shards in parallel and merge their results, and calls over whole tables run on each shard in
+ * turn. Any other call can not be routed and fails.
+ */
+public class ShardRoutingInterceptor implements MethodInterceptor {
+
+  private static final Comparator<Object> BY_ID = new PropertyComparator<>("id", false, true);
+
+  private final ObjectProvider<Shards> shardsProvider;
+  private final InventoryItemIdStrategy idStrategy;
+  private volatile Shards shards;
+
+  public ShardRoutingInterceptor(ObjectProvider<Shards> shardsProvider,
+      InventoryItemIdStrategy idStrategy) {
+    this.shardsProvider = shardsProvider;
+    this.idStrategy = idStrategy;
+  }
+
+  @Override
+  public Object invoke(MethodInvocation invocation) throws Throwable {
+    if (Shards.current() != null) {
+      return invocation.proceed();
+    }
+    String method = invocation.getMethod().getName();
+    if (TransactionSynchronizationManager.isActualTransactionActive()) {
+      // the transaction is bound to one connection already, it can not follow the call elsewhere
+      throw new IllegalStateException(
+          String.format("%s in a transaction must run on a shard bound by Shards.on", method));
+    }
+    if (shards == null) {
+      shards = shardsProvider.getObject();
+    }
+    Object[] args = invocation.getArguments();
+    switch (method) {
+      case "findById":
+      case "existsById":
+      case "deleteById":
+        return shards.on(shards.shardOf((String) args[0]), () -> proceed(invocation));
+      case "save":
+      case "saveAndFlush":
+      case "delete":
+      case "deleteWithTombstone":
+        return shards.on(shards.shardOf(itemIdOf(args[0])), () -> proceed(invocation));
+      case "saveAll":
+      case "insertAll":
+        return concat(onGroups(invocation, (Iterable<?>) args[0], this::itemIdOf));
+      case "deleteInBatch":
+        onGroups(invocation, (Iterable<?>) args[0], this::itemIdOf);
+        return null;
+      case "findAllById":
+        return concat(onGroups(invocation, (Iterable<?>) args[0], id -> (String) id));
+      case "count":
+      case "countProcessedIds":
+        return shards.onEachShard(shard -> proceed(copy(invocation, args))).stream()
+            .mapToLong(count -> (Long) count).sum();
+      case "deleteCompletedBefore":
+        return shards.onEachShard(shard -> proceed(copy(invocation, args))).stream()
+            .mapToInt(deleted -> (Integer) deleted).sum();
+      case "deleteAll":
+        if (args.length == 1) {
+          onGroups(invocation, (Iterable<?>) args[0], this::itemIdOf);
+          return null;
+        }
+        shards.forEachShard(shard -> proceed(copy(invocation, args)));
+        return null;
+      case "deleteAllInBatch":
+      case "flush":
+      case "forEach":
+      case "forEachProcessedId":
+        // consumers need not be thread-safe
+        shards.forEachShard(shard -> proceed(copy(invocation, args)));
+        return null;
+      case "findAll":
+        if (args.length == 0) {
+          return concat(shards.onEachShard(shard -> proceed(copy(invocation, args))));
+        }
+        break;
+      case "findAllByProductIdIn":
+      case "findExistingIds":
+        return concat(shards.onEachShard(shard -> proceed(copy(invocation, args))));
+      case "findByProductId":
+        return shards.on(shards.shardOfProduct((String) args[0]), () -> proceed(invocation));
+      case "upsertByProductId":
+        return concat(onGroups(invocation, shards.groupByShardOfProduct((Collection<?>) args[0],
+            item -> ((InventoryItem) item).getProductId())));
+      case "findByProductIdIn":
+        return mergePages(invocation, args);
+      case "findByIdGreaterThanOrderByIdAsc":
+      case "findByProductIdInAndIdGreaterThanOrderByIdAsc":
+        return mergeOrdered(invocation, args, BY_ID);
+      default:
+        break;
+    }
+    throw new IllegalStateException(String.format("%s.%s can not be routed to a shard",
+        invocation.getMethod().getDeclaringClass().getSimpleName(), method));
+  }
+
+  private String itemIdOf(Object entity) {
+    if (entity instanceof InventoryItem) {
+      InventoryItem item = (InventoryItem) entity;
+      if (item.getId() == null) {
+        // the shard is written into the id, so a new item gets its id before the insert
+        item.setId(shards.withShardOf(idStrategy.nextId(), item.getProductId()));
+      } else if (shards.shardOf(item.getId()) != shards.shardOfProduct(item.getProductId())) {
+        // its productId would no longer be unique, nor found by findByProductId
+        throw new IllegalStateException(String.format(
+            "Inventory item %s can not move to the shard of productId %s", item.getId(),
+            item.getProductId()));
+      }
+      return item.getId();
+    }
+    if (entity instanceof InventoryItemQuantityChange) {
+      return ((InventoryItemQuantityChange) entity).getInventoryItemId();
+    }
+    if (entity instanceof InventoryItemReservation) {
+      return ((InventoryItemReservation) entity).getInventoryItemId();
+    }
+    if (entity instanceof InventoryItemSnapshot) {
+      return ((InventoryItemSnapshot) entity).getInventoryItemId();
+    }
+    if (entity instanceof InventoryItemQuantityChangeBatch) {
+      // a batch spans items, its status is kept on the shard its own id maps to
+      return ((InventoryItemQuantityChangeBatch) entity).getId();
+    }
+    throw new IllegalStateException(
+        String.format("%s can not be routed to a shard", entity.getClass().getSimpleName()));
+  }
+
+  /**
+   * Call with the first argument split by shard, on each shard concerned.
+   */
+  private List<Object> onGroups(MethodInvocation invocation, Iterable<?> values,
+      Function<Object, String> itemId) {
+    List<Object> all = new ArrayList<>();
+    values.forEach(all::add);
+    return onGroups(invocation, shards.groupByShard(all, itemId));
+  }
+
+  /**
+   * Call with the first argument replaced by each group, on the group's shard.
+   */
+  private List<Object> onGroups(MethodInvocation invocation,
+      Map<Integer, ? extends List<?>> groups) {
+    return shards.onShards(new ArrayList<>(groups.keySet()), shard -> {
+      Object[] args = invocation.getArguments().clone();
+      args[0] = groups.get(shard);
+      return proceed(copy(invocation, args));
+    });
+  }
+
+  /**
+   * Each shard returns the rows up to the end of the requested page, ordered by the requested sort
+   * and then by id; the page is cut from all of them.
+   */
+  private Page<Object> mergePages(MethodInvocation invocation, Object[] args) {
+    Pageable pageable = (Pageable) args[args.length - 1];
+    Sort sort = pageable.getSort().and(Sort.by("id"));
+    Object[] shardArgs = args.clone();
+    shardArgs[args.length - 1] = pageable.isPaged()
+        ? PageRequest.of(0, Math.toIntExact(pageable.getOffset()) + pageable.getPageSize(), sort)
+        : pageable;
+    List<Object> rows = new ArrayList<>();
+    long total = 0;
+    for (Object page : shards.onEachShard(shard -> proceed(copy(invocation, shardArgs)))) {
+      rows.addAll(((Page<?>) page).getContent());
+      total += ((Page<?>) page).getTotalElements();
+    }
+    rows.sort(comparator(sort));
+    return new PageImpl<>(pageable.isPaged() ? slice(rows, pageable) : rows, pageable, total);
+  }
+
+  private List<Object> mergeOrdered(MethodInvocation invocation, Object[] args,
+      Comparator<Object> order) {
+    Pageable pageable = (Pageable) args[args.length - 1];
+    Object[] shardArgs = args.clone();
+    shardArgs[args.length - 1] = PageRequest
+        .of(0, Math.toIntExact(pageable.getOffset()) + pageable.getPageSize());
+    List<Object> rows = concat(shards.onEachShard(shard -> proceed(copy(invocation, shardArgs))));
+    rows.sort(order);
+    return slice(rows, pageable);
+  }
+
+  private static Comparator<Object> comparator(Sort sort) {
+    Comparator<Object> comparator = null;
+    for (Sort.Order order : sort) {
+      Comparator<Object> next = new PropertyComparator<>(order.getProperty(),
+          order.isIgnoreCase(), order.isAscending());
+      comparator = comparator == null ? next : comparator.thenComparing(next);
+    }
+    return comparator;
+  }
+
+  private static List<Object> slice(List<Object> rows, Pageable pageable) {
+    int from = (int) Math.min(rows.size(), pageable.getOffset());
+    int to = Math.min(rows.size(), from + pageable.getPageSize());
+    return new ArrayList<>(rows.subList(from, to));
+  }
+
+  private static List<Object> concat(List<Object> results) {
+    List<Object> all = new ArrayList<>();
+    for (Object result : results) {
+      all.addAll((Collection<?>) result);
+    }
+    return all;
+  }
+
+  /**
+   * @return a copy of the invocation to proceed once more, e.g. on another shard
+   */
+  private static MethodInvocation copy(MethodInvocation invocation, Object[] args) {
+    return ((ProxyMethodInvocation) invocation).invocableClone(args);
+  }
+
+  private static Object proceed(MethodInvocation invocation) {
+    try {
+      return invocation.proceed();
+    } catch (RuntimeException | Error e) {
+      throw e;
+    } catch (Throwable e) {
+      throw new UndeclaredThrowableException(e);
+    }
+  }
+}
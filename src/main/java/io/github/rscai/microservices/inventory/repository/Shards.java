@@ -0,0 +1,213 @@
+package io.github.rscai.microservices.inventory.repository;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.IntConsumer;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+
+/**
+ * Shards of the inventory storage. An inventory item, its quantity changes and its snapshot live
+ * on the shard its productId hashes to; shard 0 is {@code spring.datasource}. While a shard is
+ * bound to the current thread, connections, and so transactions, go to that shard.
+ *
+ * <p>The shard of a new item is written into hex digits 18 and 19 of its id, so calls by item id
+ * are routed without a lookup, and a productId is unique across shards as it can only be stored on
+ * one. ProductIds are hashed modulo the number of shards, so adding a shard moves existing items.
+ */
+public class Shards {
+
+  private static final ThreadLocal<Integer> CURRENT = new ThreadLocal<>();
+  // position and length of the shard in item ids, after the UUID variant digit
+  private static final int SHARD_DIGITS_START = 17;
+  private static final int SHARD_DIGITS = 2;
+  private static final int MAX_COUNT = 1 << (4 * SHARD_DIGITS);
+
+  private final int count;
+  private final ExecutorService fanOutExecutor;
+
+  public Shards(int count) {
+    if (count > MAX_COUNT) {
+      throw new IllegalArgumentException(String.format("At most %d shards", MAX_COUNT));
+    }
+    this.count = count;
+    if (count > 1) {
+      AtomicInteger threads = new AtomicInteger();
+      this.fanOutExecutor = Executors.newFixedThreadPool(count - 1, runnable -> {
+        Thread thread = new Thread(runnable, "shard-fan-out-" + threads.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+      });
+    } else {
+      this.fanOutExecutor = null;
+    }
+  }
+
+  /**
+   * @return the shard bound to the current thread, {@code null} if none
+   */
+  public static Integer current() {
+    return CURRENT.get();
+  }
+
+  public int count() {
+    return count;
+  }
+
+  /**
+   * @return the shard written into the item id; an id not made by {@link #withShardOf}, e.g. one
+   * made up by a client, is hashed to a shard instead
+   */
+  public int shardOf(String itemId) {
+    if (count == 1) {
+      return 0;
+    }
+    if (itemId.length() > SHARD_DIGITS_START + SHARD_DIGITS) {
+      int shard = 0;
+      for (int index = SHARD_DIGITS_START; index < SHARD_DIGITS_START + SHARD_DIGITS; index++) {
+        shard = shard << 4 | Character.digit(itemId.charAt(index), 16);
+      }
+      if (shard >= 0 && shard < count) {
+        return shard;
+      }
+    }
+    return Math.floorMod(itemId.hashCode(), count);
+  }
+
+  public int shardOfProduct(String productId) {
+    // a missing productId is left to the not null constraint of the shard
+    return count == 1 ? 0 : Math.floorMod(Objects.hashCode(productId), count);
+  }
+
+  /**
+   * @param id a new 32 hex digit item id
+   * @return the id with the shard of the productId written into it
+   */
+  public String withShardOf(String id, String productId) {
+    char[] digits = id.toCharArray();
+    int shard = shardOfProduct(productId);
+    for (int index = SHARD_DIGITS_START + SHARD_DIGITS - 1; index >= SHARD_DIGITS_START;
+        index--) {
+      digits[index] = Character.forDigit(shard & 0xf, 16);
+      shard >>>= 4;
+    }
+    return new String(digits);
+  }
+
+  /**
+   * @return the given values by the shard of their item id, in shard order
+   */
+  public <T> Map<Integer, List<T>> groupByShard(Collection<T> values,
+      Function<T, String> itemId) {
+    Map<Integer, List<T>> groups = new TreeMap<>();
+    for (T value : values) {
+      groups.computeIfAbsent(shardOf(itemId.apply(value)), shard -> new ArrayList<>()).add(value);
+    }
+    return groups;
+  }
+
+  /**
+   * @return the given values by the shard of their productId, in shard order
+   */
+  public <T> Map<Integer, List<T>> groupByShardOfProduct(Collection<T> values,
+      Function<T, String> productId) {
+    Map<Integer, List<T>> groups = new TreeMap<>();
+    for (T value : values) {
+      groups.computeIfAbsent(shardOfProduct(productId.apply(value)), shard -> new ArrayList<>())
+          .add(value);
+    }
+    return groups;
+  }
+
+  /**
+   * Run the action with the given shard bound to the current thread.
+   */
+  public <T> T on(int shard, Supplier<T> action) {
+    Integer previous = CURRENT.get();
+    CURRENT.set(shard);
+    try {
+      return action.get();
+    } finally {
+      if (previous == null) {
+        CURRENT.remove();
+      } else {
+        CURRENT.set(previous);
+      }
+    }
+  }
+
+  /**
+   * Run the action on every shard, one after another on the current thread.
+   */
+  public void forEachShard(IntConsumer action) {
+    for (int shard = 0; shard < count; shard++) {
+      final int current = shard;
+      on(shard, () -> {
+        action.accept(current);
+        return null;
+      });
+    }
+  }
+
+  /**
+   * Run the action on every shard in parallel.
+   *
+   * @return results in shard order
+   */
+  public <T> List<T> onEachShard(IntFunction<T> action) {
+    List<Integer> all = new ArrayList<>(count);
+    for (int shard = 0; shard < count; shard++) {
+      all.add(shard);
+    }
+    return onShards(all, action);
+  }
+
+  /**
+   * Run the action on the given shards in parallel; the first shard runs on the current thread.
+   *
+   * @return results in the order of the given shards
+   */
+  public <T> List<T> onShards(List<Integer> shards, IntFunction<T> action) {
+    List<Future<T>> futures = new ArrayList<>(shards.size());
+    for (int shard : shards.subList(Math.min(1, shards.size()), shards.size())) {
+      futures.add(fanOutExecutor.submit(() -> on(shard, () -> action.apply(shard))));
+    }
+    List<T> results = new ArrayList<>(shards.size());
+    if (!shards.isEmpty()) {
+      results.add(on(shards.get(0), () -> action.apply(shards.get(0))));
+    }
+    for (Future<T> future : futures) {
+      try {
+        results.add(future.get());
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IllegalStateException("Interrupted while waiting for shards", e);
+      } catch (ExecutionException e) {
+        if (e.getCause() instanceof RuntimeException) {
+          throw (RuntimeException) e.getCause();
+        }
+        if (e.getCause() instanceof Error) {
+          throw (Error) e.getCause();
+        }
+        throw new IllegalStateException(e.getCause());
+      }
+    }
+    return results;
+  }
+
+  public void close() {
+    if (fanOutExecutor != null) {
+      fanOutExecutor.shutdownNow();
+    }
+  }
+}
@@ -0,0 +1,77 @@
+package io.github.rscai.microservices.inventory.service;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Thread-safe Bloom filter of strings. {@link #mightContain(String)} never returns false for a
+ * value that has been put.
+ */
+class BloomFilter {
+
+  private final AtomicLongArray words;
+  private final long bitCount;
+  private final int hashCount;
+  private final LongAdder insertions = new LongAdder();
+
+  BloomFilter(long expectedInsertions, double falsePositiveProbability) {
+    long bits = (long) Math.ceil(-expectedInsertions * Math.log(falsePositiveProbability)
+        / (Math.log(2) * Math.log(2)));
+    int wordCount = Math.toIntExact(Math.max(1, (bits + 63) / 64));
+    this.words = new AtomicLongArray(wordCount);
+    this.bitCount = wordCount * 64L;
+    this.hashCount = Math.max(1,
+        (int) Math.round((double) bitCount / Math.max(1, expectedInsertions) * Math.log(2)));
+  }
+
+  void put(String value) {
+    long hash = hash(value);
+    long increment = (hash >>> 32) | 1;
+    for (int i = 0; i < hashCount; i++) {
+      long index = ((hash + i * increment) & Long.MAX_VALUE) % bitCount;
+      words.getAndAccumulate((int) (index >>> 6), 1L << index, (word, mask) -> word | mask);
+    }
+    insertions.increment();
+  }
+
+  boolean mightContain(String value) {
+    long hash = hash(value);
+    long increment = (hash >>> 32) | 1;
+    for (int i = 0; i < hashCount; i++) {
+      long index = ((hash + i * increment) & Long.MAX_VALUE) % bitCount;
+      if ((words.get((int) (index >>> 6)) & (1L << index)) == 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * @return false positive probability expected at the current number of insertions
+   */
+  double expectedFalsePositiveProbability() {
+    return Math.pow(1 - Math.exp(-hashCount * (double) insertions.sum() / bitCount), hashCount);
+  }
+
+  long sizeInBytes() {
+    return bitCount / 8;
+  }
+
+  /**
+   * 64-bit FNV-1a over the UTF-16 code units, followed by the MurmurHash3 finalizer to spread
+   * the bits.
+   */
+  private static long hash(String value) {
+    long hash = 0xcbf29ce484222325L;
+    for (int i = 0; i < value.length(); i++) {
+      hash ^= value.charAt(i);
+      hash *= 0x100000001b3L;
+    }
+    hash ^= hash >>> 33;
+    hash *= 0xff51afd7ed558ccdL;
+    hash ^= hash >>> 33;
+    hash *= 0xc4ceb9fe1a85ec53L;
+    hash ^= hash >>> 33;
+    return hash;
+  }
+}
@@ -0,0 +1,189 @@
+package io.github.rscai.microservices.inventory.service;
+
+import io.github.rscai.microservices.inventory.model.InventoryItemCacheInvalidation;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.discovery.DiscoveryClient;
+import org.springframework.cloud.client.serviceregistry.Registration;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestTemplate;
+
+/**
+ * Broadcasts evictions of the {@link InventoryItemCache} to the peer instances found in the
+ * discovery registry. Evictions are coalesced per key and sent every {@code flushInterval}, or
+ * once {@code maxBatchSize} keys are pending, as one message per peer.
+ *
+ * <p>Delivery is best effort: a peer which is unreachable, or not registered yet, misses the
+ * message and serves its cached entries until they expire after the cache's time-to-live.
+ */
+public class CacheInvalidationBus {
+
+  public static final String PATH = "/cacheInvalidations";
+  public static final String TOKEN_HEADER = "X-Cache-Invalidation-Token";
+  public static final String ORIGIN_HEADER = "X-Cache-Invalidation-Origin";
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(CacheInvalidationBus.class);
+
+  private final DiscoveryClient discoveryClient;
+  private final Registration registration;
+  private final String serviceId;
+  private final CacheInvalidationProperties properties;
+  private final byte[] token;
+  private final RestTemplate restTemplate;
+  // identifies this instance in its messages, so it ignores those the registry routes back to it
+  private final String origin = UUID.randomUUID().toString();
+  private final AtomicBoolean flushRequested = new AtomicBoolean();
+  private final Counter sentMessages;
+  private final Counter failedMessages;
+  private final Counter receivedMessages;
+  private final DistributionSummary messageKeys;
+  private Set<String> pendingIds = new LinkedHashSet<>();
+  private Set<String> pendingProductIds = new LinkedHashSet<>();
+  private Set<String> pendingQuantityIds = new LinkedHashSet<>();
+  private ScheduledExecutorService scheduler;
+
+  public CacheInvalidationBus(DiscoveryClient discoveryClient, Registration registration,
+      String serviceId, CacheInvalidationProperties properties, MeterRegistry meterRegistry) {
+    this.discoveryClient = discoveryClient;
+    this.registration = registration;
+    this.serviceId = serviceId;
+    this.properties = properties;
+    this.token = properties.getToken().getBytes(StandardCharsets.UTF_8);
+    SimpleClientHttpRequestFactory requestFactory = new SimpleClientHttpRequestFactory();
+    requestFactory.setConnectTimeout((int) properties.getConnectTimeout().toMillis());
+    requestFactory.setReadTimeout((int) properties.getReadTimeout().toMillis());
+    this.restTemplate = new RestTemplate(requestFactory);
+    this.sentMessages = meterRegistry
+        .counter("inventory.cache.invalidation.messages", "result", "sent");
+    this.failedMessages = meterRegistry
+        .counter("inventory.cache.invalidation.messages", "result", "failed");
+    this.receivedMessages = meterRegistry
+        .counter("inventory.cache.invalidation.messages", "result", "received");
+    this.messageKeys = DistributionSummary.builder("inventory.cache.invalidation.keys")
+        .description("keys per sent invalidation message").register(meterRegistry);
+  }
+
+  public void start() {
+    scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "cache-invalidation-bus");
+      thread.setDaemon(true);
+      return thread;
+    });
+    long interval = properties.getFlushInterval().toMillis();
+    scheduler.scheduleWithFixedDelay(this::flushQuietly, interval, interval,
+        TimeUnit.MILLISECONDS);
+  }
+
+  public void close() {
+    scheduler.shutdownNow();
+    flushQuietly();
+  }
+
+  /**
+   * Queue evictions of the given keys for the peers.
+   */
+  public void publish(Collection<String> ids, Collection<String> productIds,
+      Collection<String> quantityIds) {
+    int pendingKeys;
+    synchronized (this) {
+      pendingIds.addAll(ids);
+      pendingProductIds.addAll(productIds);
+      pendingQuantityIds.addAll(quantityIds);
+      pendingKeys = pendingIds.size() + pendingProductIds.size() + pendingQuantityIds.size();
+    }
+    if (pendingKeys >= properties.getMaxBatchSize() && scheduler != null
+        && flushRequested.compareAndSet(false, true)) {
+      scheduler.execute(this::flushQuietly);
+    }
+  }
+
+  /**
+   * @return whether a received invalidation carrying the given token and origin comes from a peer
+   * and is to be applied; a wrong token is rejected
+   * @throws SecurityException if the token is not the shared one
+   */
+  public boolean accept(String token, String origin) {
+    if (token == null
+        || !MessageDigest.isEqual(this.token, token.getBytes(StandardCharsets.UTF_8))) {
+      throw new SecurityException("Invalid cache invalidation token");
+    }
+    if (this.origin.equals(origin)) {
+      return false;
+    }
+    receivedMessages.increment();
+    return true;
+  }
+
+  /**
+   * Send the pending evictions to every peer.
+   */
+  public void flush() {
+    flushRequested.set(false);
+    InventoryItemCacheInvalidation invalidation;
+    synchronized (this) {
+      if (pendingIds.isEmpty() && pendingProductIds.isEmpty() && pendingQuantityIds.isEmpty()) {
+        return;
+      }
+      invalidation = new InventoryItemCacheInvalidation(new ArrayList<>(pendingIds),
+          new ArrayList<>(pendingProductIds), new ArrayList<>(pendingQuantityIds));
+      pendingIds = new LinkedHashSet<>();
+      pendingProductIds = new LinkedHashSet<>();
+      pendingQuantityIds = new LinkedHashSet<>();
+    }
+    HttpHeaders headers = new HttpHeaders();
+    headers.setContentType(MediaType.APPLICATION_JSON);
+    headers.set(TOKEN_HEADER, properties.getToken());
+    headers.set(ORIGIN_HEADER, origin);
+    HttpEntity<InventoryItemCacheInvalidation> message = new HttpEntity<>(invalidation, headers);
+    for (ServiceInstance peer : peers()) {
+      try {
+        restTemplate.postForLocation(peer.getUri().resolve(PATH), message);
+        sentMessages.increment();
+      } catch (RestClientException e) {
+        failedMessages.increment();
+        LOGGER.warn("Fail to send cache invalidation to {}: {}", peer.getUri(), e.toString());
+      }
+    }
+    messageKeys.record(invalidation.getIds().size() + invalidation.getProductIds().size()
+        + invalidation.getQuantityIds().size());
+  }
+
+  private List<ServiceInstance> peers() {
+    List<ServiceInstance> peers = new ArrayList<>();
+    for (ServiceInstance instance : discoveryClient.getInstances(serviceId)) {
+      if (registration == null || instance.getInstanceId() == null
+          || !instance.getInstanceId().equals(registration.getInstanceId())) {
+        peers.add(instance);
+      }
+    }
+    return peers;
+  }
+
+  private void flushQuietly() {
+    try {
+      flush();
+    } catch (RuntimeException e) {
+      LOGGER.warn("Fail to broadcast cache invalidations", e);
+    }
+  }
+}
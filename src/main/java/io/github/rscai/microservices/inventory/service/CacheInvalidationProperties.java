@@ -0,0 +1,35 @@
+package io.github.rscai.microservices.inventory.service;
+
+import java.time.Duration;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Data
+@ConfigurationProperties("inventory.cache-invalidation")
+public class CacheInvalidationProperties {
+
+  /**
+   * Broadcast evictions of the inventory item cache to the other instances of the service found
+   * in the discovery registry, and apply theirs.
+   */
+  private boolean enabled = false;
+  /**
+   * Service id of the peers in the registry; {@code spring.application.name} by default.
+   */
+  private String serviceId;
+  /**
+   * Secret shared by all instances, sent with each invalidation instead of a bearer token.
+   */
+  private String token;
+  /**
+   * Delay in which evictions are coalesced per item before being sent, which bounds how long a
+   * peer may serve a stale item.
+   */
+  private Duration flushInterval = Duration.ofMillis(100);
+  /**
+   * Number of pending keys after which evictions are sent without waiting for the flush interval.
+   */
+  private int maxBatchSize = 1000;
+  private Duration connectTimeout = Duration.ofSeconds(1);
+  private Duration readTimeout = Duration.ofSeconds(2);
+}
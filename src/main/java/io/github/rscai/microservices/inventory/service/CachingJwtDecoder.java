@@ -0,0 +1,83 @@
+package io.github.rscai.microservices.inventory.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtException;
+
+/**
+ * Keeps successfully decoded and validated tokens, keyed by the SHA-256 of the token, so a client
+ * reusing its token is verified once rather than on every request. A token is kept no longer than
+ * until its exp, and at most {@code timeToLive}; rejected tokens are not kept.
+ */
+public class CachingJwtDecoder implements JwtDecoder {
+
+  private final JwtDecoder delegate;
+  private final Cache<String, Jwt> validatedTokens;
+
+  public CachingJwtDecoder(JwtDecoder delegate, JwtCacheProperties properties,
+      MeterRegistry meterRegistry) {
+    this.delegate = delegate;
+    long timeToLiveNanos = properties.getTimeToLive().toNanos();
+    this.validatedTokens = Caffeine.newBuilder().maximumSize(properties.getMaximumSize())
+        .expireAfter(new Expiry<String, Jwt>() {
+          @Override
+          public long expireAfterCreate(String key, Jwt jwt, long currentTime) {
+            Instant expiresAt = jwt.getExpiresAt();
+            if (expiresAt == null) {
+              return timeToLiveNanos;
+            }
+            // saturates rather than overflows for an exp centuries ahead
+            long untilExpiry = TimeUnit.MILLISECONDS.toNanos(
+                expiresAt.toEpochMilli() - System.currentTimeMillis());
+            return Math.max(0, Math.min(untilExpiry, timeToLiveNanos));
+          }
+
+          @Override
+          public long expireAfterUpdate(String key, Jwt jwt, long currentTime,
+              long currentDuration) {
+            return currentDuration;
+          }
+
+          @Override
+          public long expireAfterRead(String key, Jwt jwt, long currentTime,
+              long currentDuration) {
+            return currentDuration;
+          }
+        })
+        .recordStats().build();
+    CaffeineCacheMetrics.monitor(meterRegistry, validatedTokens, "validatedTokens");
+  }
+
+  @Override
+  public Jwt decode(String token) throws JwtException {
+    String key = hash(token);
+    Jwt jwt = validatedTokens.getIfPresent(key);
+    if (jwt != null && (jwt.getExpiresAt() == null || Instant.now().isBefore(jwt.getExpiresAt()))) {
+      return jwt;
+    }
+    jwt = delegate.decode(token);
+    validatedTokens.put(key, jwt);
+    return jwt;
+  }
+
+  private static String hash(String token) {
+    try {
+      byte[] digest = MessageDigest.getInstance("SHA-256")
+          .digest(token.getBytes(StandardCharsets.US_ASCII));
+      return Base64.getEncoder().encodeToString(digest);
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-256 is not available", e);
+    }
+  }
+}
@@ -0,0 +1,36 @@
+package io.github.rscai.microservices.inventory.service;
+
+import java.time.Duration;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Data
+@ConfigurationProperties("inventory.feed")
+public class ChangeFeedProperties {
+
+  /**
+   * Maximum number of entries returned per poll.
+   */
+  private int maxPageSize = 500;
+  /**
+   * How long a poll waits for new entries before returning an empty page.
+   */
+  private Duration maxWait = Duration.ofSeconds(30);
+  /**
+   * Delay between database queries of a waiting poll, and between runs of the publisher handing
+   * feed positions to newly committed entries.
+   */
+  private Duration pollInterval = Duration.ofMillis(500);
+  /**
+   * Maximum number of entries handed feed positions per transaction.
+   */
+  private int publishBatchSize = 1000;
+  /**
+   * Maximum number of concurrently waiting polls; further polls are rejected with 503.
+   */
+  private int maxWaitingPolls = 200;
+  /**
+   * Threads querying the database on behalf of waiting polls.
+   */
+  private int pollerThreads = 2;
+}
@@ -0,0 +1,290 @@
+package io.github.rscai.microservices.inventory.service;
+
+import io.github.rscai.microservices.inventory.model.InventoryItem;
+import io.github.rscai.microservices.inventory.model.InventoryItemQuantityChange;
+import io.github.rscai.microservices.inventory.model.InventoryItemTombstone;
+import io.github.rscai.microservices.inventory.repository.InventoryItemQuantityChangeRepository;
+import io.github.rscai.microservices.inventory.repository.InventoryItemRepository;
+import io.github.rscai.microservices.inventory.repository.InventoryItemTombstoneRepository;
+import io.github.rscai.microservices.inventory.repository.Shards;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.IntSupplier;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+import javax.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * Long-poll feeds of quantity changes and of items, the latter including tombstones of deleted
+ * items.
+ *
+ * <p>Entries are served in the order of their feed position. Positions are not taken from
+ * sequence numbers or timestamps, which a slow transaction may commit below entries already
+ * served; they are handed to committed entries by a publisher holding the feed's watermark row,
+ * see {@link io.github.rscai.microservices.inventory.model.ChangeFeedWatermark}, so an entry
+ * committed later always gets a higher position. An updated item is handed a new position. The
+ * publisher runs every {@code pollInterval} while polls are waiting.
+ *
+ * <p>Consumers pull one page at a time and only ask for the next page after handling the previous
+ * one, so nothing is buffered for a slow consumer. A waiting poll holds no request thread and no
+ * entries, only a permit out of {@code maxWaitingPolls}; the database is queried by a small fixed
+ * pool of poller threads.
+ *
+ * <p>With {@link Shards}, positions are handed out per shard and a consumer's position is one
+ * position per shard.
+ */
+@Service
+@EnableConfigurationProperties(ChangeFeedProperties.class)
+public class ChangeFeedService {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(ChangeFeedService.class);
+
+  private final InventoryItemQuantityChangeRepository quantityChangeRepository;
+  private final InventoryItemRepository inventoryItemRepository;
+  private final InventoryItemTombstoneRepository tombstoneRepository;
+  private final ChangeFeedProperties properties;
+  private final Shards shards;
+  private final Semaphore waitingPolls;
+  private final ScheduledExecutorService poller;
+
+  public ChangeFeedService(InventoryItemQuantityChangeRepository quantityChangeRepository,
+      InventoryItemRepository inventoryItemRepository,
+      InventoryItemTombstoneRepository tombstoneRepository, ChangeFeedProperties properties,
+      ObjectProvider<Shards> shards) {
+    this.quantityChangeRepository = quantityChangeRepository;
+    this.inventoryItemRepository = inventoryItemRepository;
+    this.tombstoneRepository = tombstoneRepository;
+    this.properties = properties;
+    this.shards = shards.getIfAvailable();
+    this.waitingPolls = new Semaphore(properties.getMaxWaitingPolls());
+    AtomicInteger threadCount = new AtomicInteger();
+    this.poller = Executors.newScheduledThreadPool(properties.getPollerThreads(), runnable -> {
+      Thread thread = new Thread(runnable, "change-feed-poller-" + threadCount.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+    long interval = properties.getPollInterval().toMillis();
+    poller.scheduleWithFixedDelay(this::publish, interval, interval, TimeUnit.MILLISECONDS);
+  }
+
+  @PreDestroy
+  public void close() {
+    poller.shutdownNow();
+  }
+
+  /**
+   * Wait for quantity changes with a feed position greater than the given one.
+   *
+   * @param afterPositions position per shard; empty to start from the beginning
+   * @param mapper         converts the page into the response; called on a poller thread
+   */
+  public <R> DeferredResult<R> pollQuantityChanges(long[] afterPositions, int size,
+      Function<FeedPage<InventoryItemQuantityChange>, R> mapper) {
+    return poll(afterPositions, size, quantityChangeRepository::findFeedPage,
+        InventoryItemQuantityChange::getFeedPosition, mapper);
+  }
+
+  /**
+   * Wait for items, or tombstones of deleted items, with a feed position greater than the given
+   * one. Entries are {@link InventoryItem}s and {@link InventoryItemTombstone}s.
+   *
+   * @param afterPositions position per shard; empty to start from the beginning
+   * @param mapper         converts the page into the response; called on a poller thread
+   */
+  public <R> DeferredResult<R> pollItems(long[] afterPositions, int size,
+      Function<FeedPage<Object>, R> mapper) {
+    return poll(afterPositions, size, this::findItemFeedPage, ChangeFeedService::positionOf,
+        mapper);
+  }
+
+  private List<Object> findItemFeedPage(long afterPosition, Pageable pageable) {
+    List<Object> entries = new ArrayList<>(
+        inventoryItemRepository.findFeedPage(afterPosition, pageable));
+    entries.addAll(tombstoneRepository.findFeedPage(afterPosition, pageable));
+    entries.sort((a, b) -> Long.compare(positionOf(a), positionOf(b)));
+    return entries.subList(0, Math.min(entries.size(), pageable.getPageSize()));
+  }
+
+  private static long positionOf(Object entry) {
+    return entry instanceof InventoryItem ? ((InventoryItem) entry).getFeedPosition()
+        : ((InventoryItemTombstone) entry).getFeedPosition();
+  }
+
+  private <T, R> DeferredResult<R> poll(long[] afterPositions, int size,
+      BiFunction<Long, Pageable, List<T>> query, ToLongFunction<T> positionOf,
+      Function<FeedPage<T>, R> mapper) {
+    if (size < 1 || size > properties.getMaxPageSize()) {
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+          String.format("size must be between 1 and %d", properties.getMaxPageSize()));
+    }
+    int shardCount = shards == null ? 1 : shards.count();
+    long[] after = afterPositions.length == 0 ? new long[shardCount] : afterPositions;
+    if (after.length != shardCount) {
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+          String.format("expected a position for each of %d shards", shardCount));
+    }
+    if (!waitingPolls.tryAcquire()) {
+      throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE,
+          "Too many waiting change feed polls");
+    }
+    // backstop only, the poll itself answers with an empty page once maxWait is over
+    DeferredResult<R> result = new DeferredResult<>(properties.getMaxWait().toMillis() * 2,
+        (Supplier<R>) () -> mapper.apply(new FeedPage<>(Collections.emptyList(), after)));
+    PendingPoll<T, R> pendingPoll = new PendingPoll<>(result,
+        () -> fetch(after, PageRequest.of(0, size), query, positionOf), mapper,
+        System.nanoTime() + properties.getMaxWait().toNanos());
+    try {
+      poller.execute(pendingPoll);
+    } catch (RejectedExecutionException e) {
+      waitingPolls.release();
+      throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE,
+          "Change feed is shutting down", e);
+    }
+    return result;
+  }
+
+  private <T> FeedPage<T> fetch(long[] after, Pageable pageable,
+      BiFunction<Long, Pageable, List<T>> query, ToLongFunction<T> positionOf) {
+    if (shards == null) {
+      List<T> entries = query.apply(after[0], pageable);
+      return new FeedPage<>(entries, entries.isEmpty() ? after
+          : new long[]{positionOf.applyAsLong(entries.get(entries.size() - 1))});
+    }
+    List<List<T>> pages = shards.onEachShard(shard -> query.apply(after[shard], pageable));
+    // the shards' pages are taken from in turn, so what is taken of each page is a prefix of it
+    List<T> entries = new ArrayList<>(pageable.getPageSize());
+    long[] next = after.clone();
+    for (int index = 0; entries.size() < pageable.getPageSize(); index++) {
+      boolean taken = false;
+      for (int shard = 0; shard < pages.size() && entries.size() < pageable.getPageSize();
+          shard++) {
+        if (index < pages.get(shard).size()) {
+          T entry = pages.get(shard).get(index);
+          entries.add(entry);
+          next[shard] = positionOf.applyAsLong(entry);
+          taken = true;
+        }
+      }
+      if (!taken) {
+        break;
+      }
+    }
+    return new FeedPage<>(entries, next);
+  }
+
+  /**
+   * Hand feed positions to entries committed since the last run, on every shard.
+   */
+  private void publish() {
+    if (waitingPolls.availablePermits() == properties.getMaxWaitingPolls()) {
+      return;
+    }
+    try {
+      if (shards == null) {
+        publishAll();
+      } else {
+        shards.forEachShard(shard -> publishAll());
+      }
+    } catch (RuntimeException e) {
+      LOGGER.warn("Fail to publish change feed entries", e);
+    }
+  }
+
+  private void publishAll() {
+    int batchSize = properties.getPublishBatchSize();
+    drain(() -> quantityChangeRepository.publishToFeed(batchSize), batchSize);
+    drain(() -> inventoryItemRepository.publishToFeed(batchSize), batchSize);
+  }
+
+  private static void drain(IntSupplier publishBatch, int batchSize) {
+    boolean more = true;
+    while (more) {
+      // a full batch, there may be more
+      more = publishBatch.getAsInt() == batchSize;
+    }
+  }
+
+  /**
+   * Entries of a page, and the position per shard to poll for the following page.
+   */
+  public static final class FeedPage<T> {
+
+    private final List<T> entries;
+    private final long[] next;
+
+    FeedPage(List<T> entries, long[] next) {
+      this.entries = entries;
+      this.next = next;
+    }
+
+    public List<T> getEntries() {
+      return entries;
+    }
+
+    public long[] getNext() {
+      return next.clone();
+    }
+  }
+
+  /**
+   * Queries until there are entries or the deadline is over, then releases its permit.
+   */
+  private class PendingPoll<T, R> implements Runnable {
+
+    private final DeferredResult<R> result;
+    private final Supplier<FeedPage<T>> fetch;
+    private final Function<FeedPage<T>, R> mapper;
+    private final long deadline;
+
+    PendingPoll(DeferredResult<R> result, Supplier<FeedPage<T>> fetch,
+        Function<FeedPage<T>, R> mapper, long deadline) {
+      this.result = result;
+      this.fetch = fetch;
+      this.mapper = mapper;
+      this.deadline = deadline;
+    }
+
+    @Override
+    public void run() {
+      if (result.isSetOrExpired()) {
+        waitingPolls.release();
+        return;
+      }
+      R response;
+      try {
+        FeedPage<T> page = fetch.get();
+        if (page.getEntries().isEmpty() && System.nanoTime() - deadline < 0) {
+          poller.schedule(this, properties.getPollInterval().toMillis(), TimeUnit.MILLISECONDS);
+          return;
+        }
+        response = mapper.apply(page);
+      } catch (RuntimeException e) {
+        waitingPolls.release();
+        result.setErrorResult(e);
+        return;
+      }
+      // release first, so the consumer's next poll finds the permit available
+      waitingPolls.release();
+      result.setResult(response);
+    }
+  }
+}
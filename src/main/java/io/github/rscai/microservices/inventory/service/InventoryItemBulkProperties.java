@@ -0,0 +1,19 @@
+package io.github.rscai.microservices.inventory.service;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Data
+@ConfigurationProperties("inventory.bulk")
+public class InventoryItemBulkProperties {
+
+  /**
+   * Number of imported items upserted per transaction.
+   */
+  private int importBatchSize = 1000;
+  /**
+   * JDBC fetch size of the export cursor. MySQL only honours it with useCursorFetch=true in the
+   * datasource URL; without it the export streams one row at a time.
+   */
+  private int exportFetchSize = 1000;
+}
@@ -0,0 +1,126 @@
+package io.github.rscai.microservices.inventory.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import io.github.rscai.microservices.inventory.model.InventoryItem;
+import io.github.rscai.microservices.inventory.repository.InventoryItemRepository;
+import io.github.rscai.microservices.inventory.repository.Shards;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * Imports and exports inventory items as newline-delimited JSON, holding at most one import batch
+ * in memory regardless of the payload size.
+ */
+@Service
+@EnableConfigurationProperties(InventoryItemBulkProperties.class)
+public class InventoryItemBulkService {
+
+  private final InventoryItemRepository inventoryItemRepository;
+  private final InventoryItemCache inventoryItemCache;
+  private final TransactionTemplate transactionTemplate;
+  private final ObjectMapper objectMapper;
+  private final InventoryItemBulkProperties properties;
+  private final Shards shards;
+
+  public InventoryItemBulkService(InventoryItemRepository inventoryItemRepository,
+      InventoryItemCache inventoryItemCache, PlatformTransactionManager transactionManager,
+      ObjectMapper objectMapper, InventoryItemBulkProperties properties,
+      ObjectProvider<Shards> shards) {
+    this.inventoryItemRepository = inventoryItemRepository;
+    this.inventoryItemCache = inventoryItemCache;
+    this.transactionTemplate = new TransactionTemplate(transactionManager);
+    this.objectMapper = objectMapper;
+    this.properties = properties;
+    this.shards = shards.getIfAvailable();
+  }
+
+  /**
+   * Upsert every item of the given stream by productId, {@code importBatchSize} items per
+   * transaction. Batches committed before a failure stay committed; with {@link Shards} each
+   * batch is upserted in one transaction per shard, in shard order.
+   *
+   * @return count of imported items
+   */
+  public long importItems(InputStream input) throws IOException {
+    long imported = 0;
+    try (MappingIterator<InventoryItem> iterator = objectMapper.readerFor(InventoryItem.class)
+        .readValues(input)) {
+      List<InventoryItem> batch = new ArrayList<>(properties.getImportBatchSize());
+      while (iterator.hasNextValue()) {
+        batch.add(iterator.nextValue());
+        if (batch.size() >= properties.getImportBatchSize()) {
+          imported += upsert(batch);
+          batch.clear();
+        }
+      }
+      imported += upsert(batch);
+    }
+    return imported;
+  }
+
+  /**
+   * Write every item to the given stream, one JSON document per line.
+   */
+  public void exportItems(OutputStream output) throws IOException {
+    try (SequenceWriter writer = objectMapper.writer()
+        .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET).withRootValueSeparator("\n")
+        .writeValues(output)) {
+      long[] exported = {0};
+      inventoryItemRepository.forEach(properties.getExportFetchSize(), item -> {
+        try {
+          writer.write(item);
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+        exported[0]++;
+      });
+      writer.flush();
+      // the separator only goes between items, terminate the last line unless there is none
+      if (exported[0] > 0) {
+        output.write('\n');
+      }
+    }
+    output.flush();
+  }
+
+  private int upsert(List<InventoryItem> batch) {
+    if (batch.isEmpty()) {
+      return 0;
+    }
+    if (shards == null) {
+      upsertInTransaction(batch);
+    } else {
+      shards.groupByShardOfProduct(batch, InventoryItem::getProductId).forEach(
+          (shard, shardBatch) -> shards.on(shard, () -> upsertInTransaction(shardBatch)));
+    }
+    batch.forEach(inventoryItemCache::evict);
+    return batch.size();
+  }
+
+  private Void upsertInTransaction(List<InventoryItem> batch) {
+    return transactionTemplate.execute(status -> {
+      List<String> rejectedProductIds =
+          inventoryItemRepository.upsertByProductId(batch, new Date());
+      if (!rejectedProductIds.isEmpty()) {
+        throw new ResponseStatusException(HttpStatus.CONFLICT, String.format(
+            "Quantity below reserved quantity for productIds %s", rejectedProductIds));
+      }
+      return null;
+    });
+  }
+}
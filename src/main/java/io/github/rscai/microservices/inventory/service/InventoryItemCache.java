@@ -0,0 +1,319 @@
+package io.github.rscai.microservices.inventory.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.github.rscai.microservices.inventory.model.InventoryItem;
+import io.github.rscai.microservices.inventory.model.InventoryItemCacheInvalidation;
+import io.github.rscai.microservices.inventory.repository.InventoryItemRepository;
+import io.github.rscai.microservices.inventory.repository.ReplicaRoutingDataSource;
+import io.github.rscai.microservices.inventory.service.InventoryItemCacheProperties.QuantityReads;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import org.springframework.beans.support.PropertyComparator;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+
+/**
+ * Read-through cache of inventory items by id, plus an index from productId to item id. Both are
+ * bounded by size and time-to-live. Cached items are shared between requests and must not be
+ * modified.
+ *
+ * <p>A single item is loaded through the cache, atomically with evictions of it. Items loaded by
+ * productId or in bulk are only cached if no eviction happened since their load started, as they
+ * may have been read before the evicted change was committed.
+ *
+ * <p>With strict quantity reads, items are loaded from the primary database even where replica
+ * reads are allowed, so an evicted item is not cached again from a lagging replica.
+ *
+ * <p>With a {@link CacheInvalidationBus}, evictions are broadcast to the peer instances too.
+ *
+ * <p>With the Hibernate second-level cache, evictions cover its item, productId and query
+ * regions as well, since writes through JDBC bypass it. Quantity changes evict the item region
+ * whatever the quantity reads, its time-to-live being independent of this cache's.
+ */
+public class InventoryItemCache {
+
+  /**
+   * Maximum number of keys in the {@code IN} list of one lookup query.
+   */
+  public static final int LOOKUP_CHUNK_SIZE = 500;
+
+  // both null when maximum-size is 0, every read then goes to the repository
+  private final Cache<String, InventoryItem> itemsById;
+  private final Cache<String, String> idsByProductId;
+  private final InventoryItemRepository repository;
+  private final QuantityReads quantityReads;
+  private final boolean loadFromPrimary;
+  private final CacheInvalidationBus invalidationBus;
+  private final org.hibernate.Cache secondLevelCache;
+  // incremented before each eviction, so a load overlapping it does not cache what it read
+  private final AtomicLong evictions = new AtomicLong();
+
+  public InventoryItemCache(InventoryItemRepository repository,
+      InventoryItemCacheProperties properties, CacheInvalidationBus invalidationBus,
+      org.hibernate.Cache secondLevelCache, MeterRegistry meterRegistry) {
+    this.repository = repository;
+    this.invalidationBus = invalidationBus;
+    this.secondLevelCache = secondLevelCache;
+    this.quantityReads = properties.getQuantityReads();
+    this.loadFromPrimary =
+        quantityReads == QuantityReads.STRICT && properties.getMaximumSize() > 0;
+    if (properties.getMaximumSize() > 0) {
+      // a Caffeine cache of size 0 still holds entries until its maintenance evicts them
+      this.itemsById = newCache(properties);
+      this.idsByProductId = newCache(properties);
+      CaffeineCacheMetrics.monitor(meterRegistry, itemsById, "inventoryItems");
+      CaffeineCacheMetrics.monitor(meterRegistry, idsByProductId, "inventoryItemIdsByProductId");
+    } else {
+      this.itemsById = null;
+      this.idsByProductId = null;
+    }
+  }
+
+  private static <V> Cache<String, V> newCache(InventoryItemCacheProperties properties) {
+    return Caffeine.newBuilder().maximumSize(properties.getMaximumSize())
+        .expireAfterWrite(properties.getTimeToLive().toNanos(), TimeUnit.NANOSECONDS)
+        .recordStats().build();
+  }
+
+  public Optional<InventoryItem> findById(String id) {
+    if (itemsById == null) {
+      return repository.findById(id);
+    }
+    return Optional.ofNullable(
+        itemsById.get(id, key -> load(() -> repository.findById(key).orElse(null))));
+  }
+
+  /**
+   * Resolve the productId through the index and the item cache; on a miss, load the item by
+   * productId with one query and cache both.
+   */
+  public Optional<InventoryItem> findByProductId(String productId) {
+    if (idsByProductId == null) {
+      return repository.findByProductId(productId);
+    }
+    String id = idsByProductId.getIfPresent(productId);
+    if (id != null) {
+      Optional<InventoryItem> item = findById(id);
+      if (item.isPresent() && productId.equals(item.get().getProductId())) {
+        return item;
+      }
+      // the item has been deleted or moved to another productId since it was indexed
+      idsByProductId.invalidate(productId);
+    }
+    long generation = evictions.get();
+    Optional<InventoryItem> item = load(() -> repository.findByProductId(productId));
+    item.ifPresent(loaded -> cache(loaded, generation));
+    return item;
+  }
+
+  /**
+   * Serve the page from cache when every productId is indexed and every indexed item is cached;
+   * otherwise query the database and index the returned items.
+   */
+  public Page<InventoryItem> findByProductIdIn(List<String> productIds, Pageable pageable) {
+    if (idsByProductId == null) {
+      return repository.findByProductIdIn(productIds, pageable);
+    }
+    Set<String> distinctProductIds = new LinkedHashSet<>(productIds);
+    Map<String, String> ids = idsByProductId.getAllPresent(distinctProductIds);
+    if (ids.size() == distinctProductIds.size()) {
+      Map<String, InventoryItem> items = itemsById.getAllPresent(ids.values());
+      if (items.size() == ids.size() && items.values().stream()
+          .allMatch(item -> item.getId().equals(ids.get(item.getProductId())))) {
+        return toPage(new ArrayList<>(items.values()), pageable);
+      }
+    }
+    long generation = evictions.get();
+    Page<InventoryItem> page = repository.findByProductIdIn(productIds, pageable);
+    page.forEach(item -> putIfNotEvicted(idsByProductId, item.getProductId(), item.getId(),
+        generation));
+    return page;
+  }
+
+  /**
+   * Look up items by id. Cached items are served from memory; the others are loaded with one
+   * {@code IN} query per {@link #LOOKUP_CHUNK_SIZE} ids and cached.
+   *
+   * @return the found items by id
+   */
+  public Map<String, InventoryItem> findAllById(Collection<String> ids) {
+    Map<String, InventoryItem> items = new HashMap<>(getAllPresent(itemsById, ids));
+    List<String> uncachedIds = ids.stream().filter(id -> !items.containsKey(id)).distinct()
+        .collect(Collectors.toList());
+    for (List<String> chunk : chunks(uncachedIds)) {
+      long generation = evictions.get();
+      for (InventoryItem item : load(() -> repository.findAllById(chunk))) {
+        putIfNotEvicted(itemsById, item.getId(), item, generation);
+        items.put(item.getId(), item);
+      }
+    }
+    return items;
+  }
+
+  /**
+   * Look up items by productId. Indexed productIds are resolved like {@link #findAllById}; the
+   * others, and those whose item has been deleted or moved since it was indexed, are loaded with
+   * one {@code IN} query per {@link #LOOKUP_CHUNK_SIZE} productIds.
+   *
+   * @return the found items by productId
+   */
+  public Map<String, InventoryItem> findAllByProductId(Collection<String> productIds) {
+    Map<String, String> ids = getAllPresent(idsByProductId, productIds);
+    Map<String, InventoryItem> indexedItems = findAllById(ids.values());
+    Map<String, InventoryItem> items = new HashMap<>();
+    List<String> unresolvedProductIds = new ArrayList<>();
+    for (String productId : new LinkedHashSet<>(productIds)) {
+      InventoryItem item = ids.containsKey(productId) ? indexedItems.get(ids.get(productId)) : null;
+      if (item != null && productId.equals(item.getProductId())) {
+        items.put(productId, item);
+      } else {
+        unresolvedProductIds.add(productId);
+      }
+    }
+    invalidateAll(idsByProductId, unresolvedProductIds);
+    for (List<String> chunk : chunks(unresolvedProductIds)) {
+      long generation = evictions.get();
+      for (InventoryItem item : load(() -> repository.findAllByProductIdIn(chunk))) {
+        cache(item, generation);
+        items.put(item.getProductId(), item);
+      }
+    }
+    return items;
+  }
+
+  public void evict(InventoryItem item) {
+    evictions.incrementAndGet();
+    invalidateAll(itemsById, Collections.singleton(item.getId()));
+    invalidateAll(idsByProductId, Collections.singleton(item.getProductId()));
+    evictSecondLevel(Collections.singleton(item.getId()), true);
+    if (invalidationBus != null) {
+      invalidationBus.publish(Collections.singleton(item.getId()),
+          Collections.singleton(item.getProductId()), Collections.emptySet());
+    }
+  }
+
+  /**
+   * Called once quantity changes of the given items are committed.
+   */
+  public void evictQuantities(Collection<String> ids) {
+    if (quantityReads == QuantityReads.STRICT) {
+      evictions.incrementAndGet();
+      invalidateAll(itemsById, ids);
+    }
+    evictSecondLevel(ids, false);
+    if (invalidationBus != null
+        && (quantityReads == QuantityReads.STRICT || secondLevelCache != null)) {
+      invalidationBus.publish(Collections.emptySet(), Collections.emptySet(), ids);
+    }
+  }
+
+  /**
+   * Apply evictions broadcast by a peer, without broadcasting them again.
+   */
+  public void evict(InventoryItemCacheInvalidation invalidation) {
+    evictions.incrementAndGet();
+    invalidateAll(itemsById, invalidation.getIds());
+    invalidateAll(idsByProductId, invalidation.getProductIds());
+    if (quantityReads == QuantityReads.STRICT) {
+      invalidateAll(itemsById, invalidation.getQuantityIds());
+    }
+    evictSecondLevel(invalidation.getIds(), !invalidation.getProductIds().isEmpty());
+    evictSecondLevel(invalidation.getQuantityIds(), false);
+  }
+
+  /**
+   * Cached query results hold item ids only, so items changed in place need their item entries
+   * evicted; inserted, deleted or renamed items need the productId and query regions evicted.
+   * Hibernate evicts those regions as a whole.
+   */
+  private void evictSecondLevel(Collection<String> ids, boolean productIdsChanged) {
+    if (secondLevelCache == null) {
+      return;
+    }
+    for (String id : ids) {
+      secondLevelCache.evictEntityData(InventoryItem.class, id);
+    }
+    if (productIdsChanged) {
+      secondLevelCache.evictNaturalIdData(InventoryItem.class);
+      secondLevelCache.evictQueryRegion(InventoryItemRepository.QUERY_CACHE_REGION);
+    }
+  }
+
+  private void cache(InventoryItem item, long generation) {
+    putIfNotEvicted(idsByProductId, item.getProductId(), item.getId(), generation);
+    putIfNotEvicted(itemsById, item.getId(), item, generation);
+  }
+
+  /**
+   * Cache the value loaded since the given generation, unless an eviction happened meanwhile. The
+   * check runs under the entry's lock, which an eviction of the entry waits for, so an eviction
+   * either prevents the put or removes what it put.
+   */
+  private <V> void putIfNotEvicted(Cache<String, V> cache, String key, V value,
+      long generation) {
+    if (cache == null) {
+      return;
+    }
+    cache.asMap().compute(key, (ignored, cached) -> evictions.get() == generation ? value
+        : cached);
+  }
+
+  private static <V> Map<String, V> getAllPresent(Cache<String, V> cache,
+      Collection<String> keys) {
+    return cache == null ? Collections.emptyMap() : cache.getAllPresent(keys);
+  }
+
+  private static <V> void invalidateAll(Cache<String, V> cache, Collection<String> keys) {
+    if (cache != null) {
+      cache.invalidateAll(keys);
+    }
+  }
+
+  private <T> T load(Supplier<T> loader) {
+    return loadFromPrimary ? ReplicaRoutingDataSource.onPrimary(loader) : loader.get();
+  }
+
+  private static List<List<String>> chunks(List<String> keys) {
+    List<List<String>> chunks = new ArrayList<>();
+    for (int from = 0; from < keys.size(); from += LOOKUP_CHUNK_SIZE) {
+      chunks.add(keys.subList(from, Math.min(from + LOOKUP_CHUNK_SIZE, keys.size())));
+    }
+    return chunks;
+  }
+
+  private static Page<InventoryItem> toPage(List<InventoryItem> items, Pageable pageable) {
+    Comparator<InventoryItem> comparator = null;
+    for (Sort.Order order : pageable.getSort()) {
+      Comparator<InventoryItem> next = new PropertyComparator<>(order.getProperty(),
+          order.isIgnoreCase(), order.isAscending());
+      comparator = comparator == null ? next : comparator.thenComparing(next);
+    }
+    if (comparator != null) {
+      items.sort(comparator);
+    }
+    if (pageable.isUnpaged()) {
+      return new PageImpl<>(items, pageable, items.size());
+    }
+    int fromIndex = (int) Math.min(pageable.getOffset(), items.size());
+    int toIndex = Math.min(fromIndex + pageable.getPageSize(), items.size());
+    return new PageImpl<>(new ArrayList<>(items.subList(fromIndex, toIndex)), pageable,
+        items.size());
+  }
+}
@@ -0,0 +1,32 @@
+package io.github.rscai.microservices.inventory.service;
+
+import java.time.Duration;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Data
+@ConfigurationProperties("inventory.cache")
+public class InventoryItemCacheProperties {
+
+  /**
+   * Maximum number of cached inventory items, and of cached productId index entries; 0 builds no
+   * cache, so every read goes to the database.
+   */
+  private long maximumSize = 10000;
+  /**
+   * Time after which a cached entry is reloaded from the database.
+   */
+  private Duration timeToLive = Duration.ofMinutes(10);
+  private QuantityReads quantityReads = QuantityReads.STRICT;
+
+  public enum QuantityReads {
+    /**
+     * Quantity changes evict the cached item, reads always see the committed quantity.
+     */
+    STRICT,
+    /**
+     * Quantity changes keep the cached item, reads may see a quantity up to time-to-live old.
+     */
+    BOUNDED
+  }
+}
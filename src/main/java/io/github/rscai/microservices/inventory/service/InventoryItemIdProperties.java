@@ -0,0 +1,16 @@
+package io.github.rscai.microservices.inventory.service;
+
+import io.github.rscai.microservices.inventory.model.InventoryItemIdStrategy;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Data
+@ConfigurationProperties("inventory.ids")
+public class InventoryItemIdProperties {
+
+  /**
+   * Strategy of ids of new inventory items. Ids keep their format either way, so the strategy can
+   * be changed at any time; existing items keep their ids.
+   */
+  private InventoryItemIdStrategy strategy = InventoryItemIdStrategy.RANDOM;
+}
@@ -0,0 +1,337 @@
+package io.github.rscai.microservices.inventory.service;
+
+import io.github.rscai.microservices.inventory.model.InventoryItem;
+import io.github.rscai.microservices.inventory.model.InventoryItemQuantityChange;
+import io.github.rscai.microservices.inventory.repository.InventoryItemQuantityChangeRepository;
+import io.github.rscai.microservices.inventory.repository.InventoryItemRepository;
+import io.github.rscai.microservices.inventory.repository.InventoryItemRepositoryCustom.OversellGuard;
+import io.github.rscai.microservices.inventory.repository.Shards;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import javax.persistence.EntityManager;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * Applies batches of quantity changes set-wise: one query to find already processed change ids,
+ * one query to load the referenced inventory items, then one JDBC batch of atomic quantity
+ * increments and one of change inserts, all in a single transaction.
+ *
+ * <p>When a {@link QuantityLedger} is configured only the change log is written synchronously,
+ * with the changes marked unapplied for the ledger to add them to their items.
+ *
+ * <p>When a {@link QuantityChangeIdFilter} is configured, only change ids it might contain are
+ * looked up.
+ *
+ * <p>Items are updated, and so locked, in id order, so batches sharing items wait for each other
+ * instead of deadlocking. A transaction failing on a lock anyway, e.g. on a lock wait timeout, is
+ * retried after a jittered backoff.
+ *
+ * <p>With {@link Shards}, the changes of each shard are applied in a transaction of their own, in
+ * shard order. A batch spanning shards may then be applied partially: when the changes of a shard
+ * are rejected, those of the shards before have been committed, which the rejection reports. A
+ * retry of the batch skips them by id.
+ */
+@Service
+public class InventoryItemQuantityChangeService {
+
+  private static final Runnable NOTHING_TO_RESOLVE = () -> {
+  };
+
+  private final InventoryItemRepository inventoryItemRepository;
+  private final InventoryItemQuantityChangeRepository quantityChangeRepository;
+  private final EntityManager entityManager;
+  private final boolean preventOversell;
+  private final int lockRetries;
+  private final Duration lockRetryBackoff;
+  private final QuantityLedger quantityLedger;
+  private final InventoryItemCache inventoryItemCache;
+  private final QuantityChangeIdFilter idFilter;
+  private final TransactionTemplate transactionTemplate;
+  private final Shards shards;
+  private final DistributionSummary batchSizes;
+  private final DistributionSummary batchItems;
+  private final Counter lockRetryCounter;
+  private final Timer lockWaitTimer;
+
+  public InventoryItemQuantityChangeService(InventoryItemRepository inventoryItemRepository,
+      InventoryItemQuantityChangeRepository quantityChangeRepository,
+      EntityManager entityManager,
+      @Value("${inventory.quantity-change.prevent-oversell:false}") boolean preventOversell,
+      @Value("${inventory.quantity-change.lock-retries:3}") int lockRetries,
+      @Value("${inventory.quantity-change.lock-retry-backoff:20ms}") Duration lockRetryBackoff,
+      ObjectProvider<QuantityLedger> quantityLedger, InventoryItemCache inventoryItemCache,
+      ObjectProvider<QuantityChangeIdFilter> idFilter,
+      PlatformTransactionManager transactionManager, ObjectProvider<Shards> shards,
+      MeterRegistry meterRegistry) {
+    this.inventoryItemRepository = inventoryItemRepository;
+    this.quantityChangeRepository = quantityChangeRepository;
+    this.entityManager = entityManager;
+    this.preventOversell = preventOversell;
+    this.lockRetries = lockRetries;
+    this.lockRetryBackoff = lockRetryBackoff;
+    this.quantityLedger = quantityLedger.getIfAvailable();
+    this.inventoryItemCache = inventoryItemCache;
+    this.idFilter = idFilter.getIfAvailable();
+    this.transactionTemplate = new TransactionTemplate(transactionManager);
+    this.shards = shards.getIfAvailable();
+    this.batchSizes = DistributionSummary.builder("inventory.quantity_change.batch.size")
+        .description("quantity changes per applied batch").publishPercentileHistogram()
+        .register(meterRegistry);
+    this.batchItems = DistributionSummary.builder("inventory.quantity_change.batch.items")
+        .description("distinct inventory items per applied batch").publishPercentileHistogram()
+        .register(meterRegistry);
+    this.lockRetryCounter = Counter.builder("inventory.quantity_change.lock.retries")
+        .description("batch transactions retried after failing on a row lock")
+        .register(meterRegistry);
+    this.lockWaitTimer = Timer.builder("inventory.quantity_change.lock.wait")
+        .description("time to lock and update the items of a batch").publishPercentileHistogram()
+        .register(meterRegistry);
+  }
+
+  /**
+   * Apply the given changes. Changes whose id has been processed already, or which repeat an id
+   * earlier in the same batch, are returned as-is without touching inventory.
+   *
+   * @return the changes in request order
+   */
+  public List<InventoryItemQuantityChange> applyChanges(
+      final List<InventoryItemQuantityChange> changes) {
+    applyNewChanges(changes);
+    return changes;
+  }
+
+  /**
+   * Apply one change to the item of the given productId, which replaces the change's
+   * {@code inventoryItemId}. The productId is resolved in the transaction applying the change, not
+   * through a cache, so the change can not go to an item deleted or renamed meanwhile.
+   *
+   * @return the change
+   */
+  public InventoryItemQuantityChange applyChangeByProductId(final String productId,
+      final InventoryItemQuantityChange change) {
+    List<InventoryItemQuantityChange> changes = Collections.singletonList(change);
+    Runnable resolve = () -> change.setInventoryItemId(inventoryItemRepository
+        .findIdByProductId(productId).orElseThrow(() -> new ResponseStatusException(
+            HttpStatus.NOT_FOUND,
+            String.format("Can not find inventory item of product %s", productId))));
+    if (shards == null) {
+      applyOnShard(changes, resolve);
+    } else {
+      shards.on(shards.shardOfProduct(productId), () -> applyOnShard(changes, resolve));
+    }
+    return change;
+  }
+
+  /**
+   * Apply the given changes like {@link #applyChanges(List)}.
+   *
+   * @return ids of the changes applied by this call, without the ones processed before
+   */
+  public Set<String> applyNewChanges(final List<InventoryItemQuantityChange> changes) {
+    if (shards == null) {
+      return applyOnShard(changes, NOTHING_TO_RESOLVE);
+    }
+    Set<String> appliedIds = new LinkedHashSet<>();
+    for (Map.Entry<Integer, List<InventoryItemQuantityChange>> shardChanges : shards
+        .groupByShard(changes, InventoryItemQuantityChange::getInventoryItemId).entrySet()) {
+      try {
+        appliedIds.addAll(shards.on(shardChanges.getKey(),
+            () -> applyOnShard(shardChanges.getValue(), NOTHING_TO_RESOLVE)));
+      } catch (ResponseStatusException e) {
+        if (appliedIds.isEmpty()) {
+          throw e;
+        }
+        throw new ResponseStatusException(e.getStatus(), String.format(
+            "%s; changes %s on other shards have been applied", e.getReason(), appliedIds), e);
+      }
+    }
+    return appliedIds;
+  }
+
+  /**
+   * @param resolve completes the changes within each transaction applying them
+   */
+  private Set<String> applyOnShard(final List<InventoryItemQuantityChange> changes,
+      Runnable resolve) {
+    for (int attempt = 1; ; attempt++) {
+      try {
+        return applyFiltered(changes, resolve);
+      } catch (PessimisticLockingFailureException e) {
+        if (attempt > lockRetries
+            || TransactionSynchronizationManager.isActualTransactionActive()) {
+          // the caller's transaction is rollback-only now, a retry could not commit
+          throw e;
+        }
+        lockRetryCounter.increment();
+        backOff(attempt, e);
+      }
+    }
+  }
+
+  private Set<String> applyFiltered(final List<InventoryItemQuantityChange> changes,
+      Runnable resolve) {
+    if (idFilter == null) {
+      return transactionTemplate.execute(status -> {
+        resolve.run();
+        return apply(changes, false);
+      });
+    }
+    try {
+      return transactionTemplate.execute(status -> {
+        resolve.run();
+        return apply(changes, true);
+      });
+    } catch (DuplicateKeyException e) {
+      if (TransactionSynchronizationManager.isActualTransactionActive()) {
+        // the caller's transaction is rollback-only now, a retry could not commit
+        throw e;
+      }
+      // an id taken for new by the filter has been processed, e.g. by another instance
+      idFilter.recordMiss();
+      return transactionTemplate.execute(status -> {
+        resolve.run();
+        return apply(changes, false);
+      });
+    }
+  }
+
+  private Set<String> apply(final List<InventoryItemQuantityChange> changes,
+      boolean filterIds) {
+    if (changes.isEmpty()) {
+      return Collections.emptySet();
+    }
+    Set<String> changeIds = changes.stream().map(InventoryItemQuantityChange::getId)
+        .collect(Collectors.toSet());
+    Set<String> processedIds = new HashSet<>(filterIds
+        ? idFilter.findExistingIds(changeIds, quantityChangeRepository::findExistingIds)
+        : quantityChangeRepository.findExistingIds(changeIds));
+
+    Map<String, InventoryItemQuantityChange> newChanges = new LinkedHashMap<>();
+    for (InventoryItemQuantityChange change : changes) {
+      if (!processedIds.contains(change.getId())) {
+        newChanges.putIfAbsent(change.getId(), change);
+      }
+    }
+    if (newChanges.isEmpty()) {
+      return Collections.emptySet();
+    }
+
+    // in id order, so concurrent batches lock shared items in the same order
+    Map<String, Integer> deltas = new TreeMap<>();
+    for (InventoryItemQuantityChange change : newChanges.values()) {
+      deltas.merge(change.getInventoryItemId(), change.getQuantityChange(), Integer::sum);
+    }
+    batchSizes.record(newChanges.size());
+    batchItems.record(deltas.size());
+    Map<String, InventoryItem> items = new HashMap<>();
+    for (InventoryItem item : inventoryItemRepository.findAllById(deltas.keySet())) {
+      items.put(item.getId(), item);
+    }
+    for (String itemId : deltas.keySet()) {
+      if (!items.containsKey(itemId)) {
+        throw new ResponseStatusException(
+            HttpStatus.CONFLICT,
+            String.format("Can not find inventory item %s", itemId));
+      }
+    }
+
+    // JDBC writes bypass the persistence context: push pending entity state first and detach
+    // the loaded items afterwards so nobody sharing this context reads a stale quantity
+    entityManager.flush();
+    Date now = new Date();
+    if (quantityLedger == null) {
+      addQuantities(deltas, now, oversellGuardOf(newChanges.keySet()));
+      TransactionSynchronizationManager
+          .registerSynchronization(new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCommit() {
+              inventoryItemCache.evictQuantities(deltas.keySet());
+            }
+          });
+    }
+    newChanges.values().forEach(change -> {
+      change.setCreatedAt(now);
+      change.setApplied(quantityLedger == null);
+    });
+    if (idFilter != null) {
+      idFilter.add(newChanges.keySet());
+    }
+    quantityChangeRepository.insertAll(newChanges.values().stream()
+        .sorted(Comparator.comparing(InventoryItemQuantityChange::getId))
+        .collect(Collectors.toList()));
+    items.values().forEach(entityManager::detach);
+    return newChanges.keySet();
+  }
+
+  /**
+   * Sleep a random time of up to {@code lockRetryBackoff} doubled per attempt, so retries of
+   * colliding batches spread out.
+   */
+  private void backOff(int attempt, PessimisticLockingFailureException cause) {
+    long maxMillis = lockRetryBackoff.toMillis() << Math.min(attempt - 1, 10);
+    try {
+      Thread.sleep(ThreadLocalRandom.current().nextLong(maxMillis + 1));
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw cause;
+    }
+  }
+
+  /**
+   * A confirmation takes units its reservation has just released, so only changes by anyone else
+   * must leave the reserved quantity in place.
+   */
+  private OversellGuard oversellGuardOf(Set<String> changeIds) {
+    if (!preventOversell) {
+      return OversellGuard.NONE;
+    }
+    return changeIds.stream()
+        .allMatch(id -> id.startsWith(InventoryItemReservationService.CHANGE_ID_PREFIX))
+        ? OversellGuard.ON_HAND : OversellGuard.AVAILABLE;
+  }
+
+  private void addQuantities(Map<String, Integer> deltas, Date now, OversellGuard oversellGuard) {
+    long start = System.nanoTime();
+    int[] updateCounts;
+    try {
+      updateCounts = inventoryItemRepository.addQuantities(deltas, now, oversellGuard);
+    } finally {
+      lockWaitTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+    int index = 0;
+    for (String itemId : deltas.keySet()) {
+      if (updateCounts[index++] == 0) {
+        throw new ResponseStatusException(
+            HttpStatus.CONFLICT,
+            String.format("Insufficient quantity of inventory item %s", itemId));
+      }
+    }
+  }
+}
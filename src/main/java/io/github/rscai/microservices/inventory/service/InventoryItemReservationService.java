@@ -0,0 +1,381 @@
+package io.github.rscai.microservices.inventory.service;
+
+import io.github.rscai.microservices.inventory.model.InventoryItemQuantityChange;
+import io.github.rscai.microservices.inventory.model.InventoryItemReservation;
+import io.github.rscai.microservices.inventory.model.InventoryItemReservation.Status;
+import io.github.rscai.microservices.inventory.repository.InventoryItemRepository;
+import io.github.rscai.microservices.inventory.repository.InventoryItemReservationRepository;
+import io.github.rscai.microservices.inventory.repository.Shards;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * Reserves units of inventory items for a while. A reservation adds its units to the item's
+ * {@code reservedQuantity} in the same transaction as it is inserted, so the available quantity of
+ * an item is read from its row alone. Confirming a reservation applies a quantity change of its
+ * units and releases them; releasing or expiring it only releases them. Every transition is a
+ * conditional update of the reservation's status, so of concurrent ones, e.g. a confirmation and
+ * an expiry, exactly one takes effect.
+ *
+ * <p>Expiries are tracked in memory by a {@link TimerWheel}, loaded from the reservation table on
+ * start and fed by the reservations made on this instance. A periodic sweep of the table expires
+ * those no instance tracks, e.g. of an instance that went down.
+ *
+ * <p>With a {@link QuantityLedger} the quantity change of a confirmation is written behind, so the
+ * available quantity of its item reads too high until the ledger is flushed.
+ *
+ * <p>With {@link Shards}, a reservation lives on the shard of its item; a reservation looked up by
+ * id alone is searched on every shard.
+ */
+public class InventoryItemReservationService {
+
+  /**
+   * Prefix of the id of the quantity change applied by confirming a reservation.
+   */
+  public static final String CHANGE_ID_PREFIX = "reservation:";
+
+  private static final Logger LOGGER =
+      LoggerFactory.getLogger(InventoryItemReservationService.class);
+
+  private final InventoryItemRepository inventoryItemRepository;
+  private final InventoryItemReservationRepository reservationRepository;
+  private final InventoryItemQuantityChangeService quantityChangeService;
+  private final InventoryItemCache inventoryItemCache;
+  private final TransactionTemplate transactionTemplate;
+  private final ReservationProperties properties;
+  private final Shards shards;
+  private final TimerWheel<String, InventoryItemReservation> timers;
+  private final Map<Status, Counter> transitions = new EnumMap<>(Status.class);
+  private final Timer expiryLag;
+  private ScheduledExecutorService reaper;
+
+  public InventoryItemReservationService(InventoryItemRepository inventoryItemRepository,
+      InventoryItemReservationRepository reservationRepository,
+      InventoryItemQuantityChangeService quantityChangeService,
+      InventoryItemCache inventoryItemCache, PlatformTransactionManager transactionManager,
+      ReservationProperties properties, Shards shards, MeterRegistry meterRegistry) {
+    this.inventoryItemRepository = inventoryItemRepository;
+    this.reservationRepository = reservationRepository;
+    this.quantityChangeService = quantityChangeService;
+    this.inventoryItemCache = inventoryItemCache;
+    this.transactionTemplate = new TransactionTemplate(transactionManager);
+    this.properties = properties;
+    this.shards = shards;
+    this.timers = new TimerWheel<>(properties.getTick().toMillis(), properties.getWheelSize(),
+        System.currentTimeMillis());
+    for (Status status : Status.values()) {
+      transitions.put(status, Counter.builder("inventory.reservation.transitions")
+          .tag("status", status.name().toLowerCase())
+          .description("reservations moved to the status").register(meterRegistry));
+    }
+    this.expiryLag = Timer.builder("inventory.reservation.expiry.lag")
+        .description("time from the expiry of a reservation to releasing its units")
+        .publishPercentileHistogram().register(meterRegistry);
+    Gauge.builder("inventory.reservation.timers", timers, TimerWheel::size)
+        .description("reservations whose expiry is tracked by this instance")
+        .register(meterRegistry);
+  }
+
+  /**
+   * Track the expiry of every open reservation, then start reaping.
+   */
+  public void start() {
+    if (shards == null) {
+      track();
+    } else {
+      shards.forEachShard(shard -> track());
+    }
+    reaper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "reservation-reaper");
+      thread.setDaemon(true);
+      return thread;
+    });
+    long tick = properties.getTick().toMillis();
+    reaper.scheduleAtFixedRate(this::reapQuietly, tick, tick, TimeUnit.MILLISECONDS);
+    long sweepInterval = properties.getSweepInterval().toMillis();
+    reaper.scheduleWithFixedDelay(this::sweepQuietly, sweepInterval, sweepInterval,
+        TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Stop reaping. Open reservations are tracked again on the next start.
+   */
+  public void close() {
+    if (reaper != null) {
+      reaper.shutdownNow();
+    }
+  }
+
+  /**
+   * Hold the requested units. A reservation whose id is taken already is returned as-is, so a
+   * retried request does not hold the units twice.
+   *
+   * @return the reservation
+   */
+  public InventoryItemReservation reserve(InventoryItemReservation request) {
+    if (request.getId() == null || request.getInventoryItemId() == null) {
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+          "Reservations need an id and an inventoryItemId");
+    }
+    if (request.getQuantity() <= 0) {
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+          "Reservations need a positive quantity");
+    }
+    Duration ttl = request.getTtl() == null ? properties.getDefaultTtl() : request.getTtl();
+    if (ttl.isNegative() || ttl.isZero() || ttl.compareTo(properties.getMaxTtl()) > 0) {
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+          String.format("Reservation ttl must be positive and at most %s",
+              properties.getMaxTtl()));
+    }
+    return onShardOf(request.getInventoryItemId(), () -> {
+      try {
+        return transactionTemplate.execute(status -> insert(request, ttl));
+      } catch (DuplicateKeyException e) {
+        // reserved concurrently under the same id
+        return reservationRepository.findById(request.getId()).orElseThrow(() -> e);
+      }
+    });
+  }
+
+  public Optional<InventoryItemReservation> findById(String id) {
+    if (shards == null) {
+      return reservationRepository.findById(id);
+    }
+    return shards.onEachShard(shard -> reservationRepository.findById(id)).stream()
+        .filter(Optional::isPresent).findFirst().orElse(Optional.empty());
+  }
+
+  /**
+   * Take the units of the given reservation off its item's quantity. Confirming a confirmed
+   * reservation returns it as-is.
+   *
+   * @return the confirmed reservation
+   */
+  public InventoryItemReservation confirm(String id) {
+    InventoryItemReservation reservation = find(id);
+    if (reservation.getStatus() == Status.CONFIRMED) {
+      return reservation;
+    }
+    return onShardOf(reservation.getInventoryItemId(),
+        () -> transactionTemplate.execute(status -> {
+          Date now = new Date();
+          if (reservation.getStatus() == Status.RESERVED
+              && !reservation.getExpiresAt().after(now)) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT,
+                String.format("Reservation %s has expired", id));
+          }
+          transition(reservation, Status.CONFIRMED, now);
+          quantityChangeService.applyNewChanges(Collections.singletonList(
+              new InventoryItemQuantityChange(CHANGE_ID_PREFIX + id,
+                  reservation.getInventoryItemId(), -reservation.getQuantity(), null)));
+          return withStatus(reservation, Status.CONFIRMED, now);
+        }));
+  }
+
+  /**
+   * Make the units of the given reservation available again. Releasing a released or expired
+   * reservation returns it as-is.
+   *
+   * @return the released reservation
+   */
+  public InventoryItemReservation release(String id) {
+    InventoryItemReservation reservation = find(id);
+    if (reservation.getStatus() == Status.RELEASED
+        || reservation.getStatus() == Status.EXPIRED) {
+      return reservation;
+    }
+    return onShardOf(reservation.getInventoryItemId(),
+        () -> transactionTemplate.execute(status -> {
+          Date now = new Date();
+          transition(reservation, Status.RELEASED, now);
+          return withStatus(reservation, Status.RELEASED, now);
+        }));
+  }
+
+  /**
+   * Expire the given reservations due by now, in a transaction each.
+   *
+   * @return count of reservations expired by this call
+   */
+  int expire(List<InventoryItemReservation> reservations) {
+    int expired = 0;
+    for (InventoryItemReservation reservation : reservations) {
+      try {
+        if (onShardOf(reservation.getInventoryItemId(), () -> expire(reservation))) {
+          expired++;
+        }
+      } catch (RuntimeException e) {
+        // left to the sweep
+        LOGGER.warn("Fail to expire reservation {}", reservation.getId(), e);
+      }
+    }
+    return expired;
+  }
+
+  /**
+   * Expire the reservations due by now which are in the table; on every shard with
+   * {@link Shards}.
+   *
+   * @return count of reservations expired by this call
+   */
+  int sweep() {
+    if (shards == null) {
+      return sweepShard();
+    }
+    int[] expired = new int[1];
+    shards.forEachShard(shard -> expired[0] += sweepShard());
+    return expired[0];
+  }
+
+  private InventoryItemReservation insert(InventoryItemReservation request, Duration ttl) {
+    Optional<InventoryItemReservation> existing = reservationRepository.findById(request.getId());
+    if (existing.isPresent()) {
+      return existing.get();
+    }
+    Date now = new Date();
+    if (inventoryItemRepository.reserveQuantity(request.getInventoryItemId(),
+        request.getQuantity(), now) == 0) {
+      throw new ResponseStatusException(HttpStatus.CONFLICT,
+          inventoryItemRepository.existsById(request.getInventoryItemId())
+              ? String.format("Insufficient available quantity of inventory item %s",
+              request.getInventoryItemId())
+              : String.format("Can not find inventory item %s", request.getInventoryItemId()));
+    }
+    InventoryItemReservation reservation = new InventoryItemReservation(request.getId(),
+        request.getInventoryItemId(), request.getQuantity(), null);
+    reservation.setStatus(Status.RESERVED);
+    reservation.setExpiresAt(new Date(now.getTime() + ttl.toMillis()));
+    reservation.setCreatedAt(now);
+    reservation.setUpdatedAt(now);
+    reservationRepository.insert(reservation);
+    afterCommit(reservation, Status.RESERVED);
+    return reservation;
+  }
+
+  private void transition(InventoryItemReservation reservation, Status to, Date now) {
+    if (reservationRepository.transition(reservation.getId(), Status.RESERVED, to, now) == 0) {
+      // confirmed, released or expired since it has been read
+      throw new ResponseStatusException(HttpStatus.CONFLICT,
+          String.format("Reservation %s is not reserved anymore", reservation.getId()));
+    }
+    inventoryItemRepository.releaseQuantity(reservation.getInventoryItemId(),
+        reservation.getQuantity(), now);
+    afterCommit(reservation, to);
+  }
+
+  private boolean expire(InventoryItemReservation reservation) {
+    Boolean expired = transactionTemplate.execute(status -> {
+      Date now = new Date();
+      if (reservationRepository.expire(reservation.getId(), now) == 0) {
+        // confirmed or released meanwhile, or expired by another instance
+        return false;
+      }
+      inventoryItemRepository.releaseQuantity(reservation.getInventoryItemId(),
+          reservation.getQuantity(), now);
+      afterCommit(reservation, Status.EXPIRED);
+      expiryLag.record(Math.max(0, now.getTime() - reservation.getExpiresAt().getTime()),
+          TimeUnit.MILLISECONDS);
+      return true;
+    });
+    return Boolean.TRUE.equals(expired);
+  }
+
+  private void afterCommit(InventoryItemReservation reservation, Status status) {
+    TransactionSynchronizationManager
+        .registerSynchronization(new TransactionSynchronizationAdapter() {
+          @Override
+          public void afterCommit() {
+            if (status == Status.RESERVED) {
+              timers.schedule(reservation.getId(), reservation,
+                  reservation.getExpiresAt().getTime());
+            } else {
+              timers.cancel(reservation.getId());
+            }
+            inventoryItemCache
+                .evictQuantities(Collections.singleton(reservation.getInventoryItemId()));
+            transitions.get(status).increment();
+          }
+        });
+  }
+
+  private InventoryItemReservation find(String id) {
+    return findById(id).orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND,
+        String.format("Can not find reservation %s", id)));
+  }
+
+  private void track() {
+    reservationRepository.forEachByStatus(Status.RESERVED, properties.getSweepBatchSize(),
+        reservation -> timers.schedule(reservation.getId(), reservation,
+            reservation.getExpiresAt().getTime()));
+  }
+
+  private int sweepShard() {
+    int expired = 0;
+    List<InventoryItemReservation> due;
+    do {
+      due = reservationRepository.findByStatusAndExpiresAtLessThanEqualOrderByExpiresAt(
+          Status.RESERVED, new Date(), PageRequest.of(0, properties.getSweepBatchSize()));
+      int expiredNow = expire(due);
+      if (expiredNow == 0) {
+        // the rest failed, retried on the next sweep
+        break;
+      }
+      expired += expiredNow;
+    } while (due.size() == properties.getSweepBatchSize());
+    return expired;
+  }
+
+  private void reapQuietly() {
+    try {
+      expire(timers.advance(System.currentTimeMillis()));
+    } catch (RuntimeException e) {
+      LOGGER.warn("Fail to reap expired reservations", e);
+    }
+  }
+
+  private void sweepQuietly() {
+    try {
+      sweep();
+    } catch (RuntimeException e) {
+      LOGGER.warn("Fail to sweep expired reservations", e);
+    }
+  }
+
+  private <T> T onShardOf(String itemId, Supplier<T> action) {
+    return shards == null ? action.get() : shards.on(shards.shardOf(itemId), action);
+  }
+
+  private static InventoryItemReservation withStatus(InventoryItemReservation reservation,
+      Status status, Date updatedAt) {
+    InventoryItemReservation copy = new InventoryItemReservation(reservation.getId(),
+        reservation.getInventoryItemId(), reservation.getQuantity(), null);
+    copy.setStatus(status);
+    copy.setExpiresAt(reservation.getExpiresAt());
+    copy.setCreatedAt(reservation.getCreatedAt());
+    copy.setUpdatedAt(updatedAt);
+    return copy;
+  }
+}
@@ -0,0 +1,29 @@
+package io.github.rscai.microservices.inventory.service;
+
+import java.time.Duration;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Data
+@ConfigurationProperties("inventory.jwt")
+public class JwtCacheProperties {
+
+  /**
+   * Maximum number of validated tokens kept, 0 verifies every token.
+   */
+  private long maximumSize = 10000;
+  /**
+   * Upper bound of the time a validated token is kept; a token is never kept beyond its exp.
+   */
+  private Duration timeToLive = Duration.ofMinutes(5);
+  /**
+   * Interval of the background JWK set refresh.
+   */
+  private Duration jwkSetRefreshInterval = Duration.ofMinutes(5);
+  /**
+   * Minimum time between refreshes made by requests with tokens signed with an unknown key.
+   */
+  private Duration jwkSetMinimumRefreshInterval = Duration.ofSeconds(30);
+  private Duration jwkSetConnectTimeout = Duration.ofSeconds(5);
+  private Duration jwkSetReadTimeout = Duration.ofSeconds(5);
+}
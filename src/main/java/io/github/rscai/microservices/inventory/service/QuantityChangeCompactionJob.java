@@ -0,0 +1,46 @@
+package io.github.rscai.microservices.inventory.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.scheduling.support.CronTrigger;
+
+/**
+ * Runs compaction and tombstone purging on the configured cron schedule.
+ */
+public class QuantityChangeCompactionJob {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(QuantityChangeCompactionJob.class);
+
+  private final QuantityChangeCompactionService compactionService;
+  private final QuantityChangeCompactionProperties properties;
+  private ThreadPoolTaskScheduler scheduler;
+
+  public QuantityChangeCompactionJob(QuantityChangeCompactionService compactionService,
+      QuantityChangeCompactionProperties properties) {
+    this.compactionService = compactionService;
+    this.properties = properties;
+  }
+
+  public void start() {
+    scheduler = new ThreadPoolTaskScheduler();
+    scheduler.setThreadNamePrefix("quantity-change-compaction-");
+    scheduler.setDaemon(true);
+    scheduler.initialize();
+    scheduler.schedule(this::runQuietly, new CronTrigger(properties.getCron()));
+  }
+
+  public void close() {
+    scheduler.shutdown();
+  }
+
+  private void runQuietly() {
+    try {
+      long compacted = compactionService.compact();
+      long purged = compactionService.purgeTombstones();
+      LOGGER.info("Compacted {} quantity changes, purged {} tombstones", compacted, purged);
+    } catch (RuntimeException e) {
+      LOGGER.warn("Fail to compact quantity changes", e);
+    }
+  }
+}
@@ -0,0 +1,32 @@
+package io.github.rscai.microservices.inventory.service;
+
+import java.time.Duration;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Data
+@ConfigurationProperties("inventory.compaction")
+public class QuantityChangeCompactionProperties {
+
+  /**
+   * Run compaction on {@code cron}.
+   */
+  private boolean enabled = false;
+  private String cron = "0 0 3 * * *";
+  /**
+   * Quantity changes older than this are folded into item snapshots.
+   */
+  private Duration retention = Duration.ofDays(7);
+  /**
+   * Ids of compacted changes are remembered this long after the change was created.
+   */
+  private Duration idempotencyWindow = Duration.ofDays(30);
+  /**
+   * Changes, tombstones or snapshots handled per transaction.
+   */
+  private int chunkSize = 1000;
+  /**
+   * Pause between two chunks, to leave room for regular traffic.
+   */
+  private Duration chunkPause = Duration.ofMillis(100);
+}
@@ -0,0 +1,155 @@
+package io.github.rscai.microservices.inventory.service;
+
+import io.github.rscai.microservices.inventory.repository.InventoryItemQuantityChangeRepository;
+import io.github.rscai.microservices.inventory.repository.InventoryItemSnapshotRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.util.Date;
+import java.util.List;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Keeps the quantity change log short. Changes older than the retention are folded into per-item
+ * snapshots and leave only their id behind as a tombstone, which is deleted in turn once the
+ * idempotency window is over. Every step works in chunks of {@code chunkSize} rows per
+ * transaction, so item rows are never locked for long.
+ *
+ * <p>Snapshots are based on the item quantities in the database. With the {@link QuantityLedger}
+ * enabled the ledger is flushed before each chunk, and compaction stops short of the first change
+ * it has not applied yet.
+ */
+@Service
+@EnableConfigurationProperties(QuantityChangeCompactionProperties.class)
+public class QuantityChangeCompactionService {
+
+  private final InventoryItemQuantityChangeRepository quantityChangeRepository;
+  private final InventoryItemSnapshotRepository snapshotRepository;
+  private final TransactionTemplate transactionTemplate;
+  private final ObjectProvider<QuantityLedger> quantityLedger;
+  private final InventoryItemCache inventoryItemCache;
+  private final QuantityChangeCompactionProperties properties;
+  private final Timer compactionTimer;
+  private final Counter compactedChanges;
+
+  public QuantityChangeCompactionService(
+      InventoryItemQuantityChangeRepository quantityChangeRepository,
+      InventoryItemSnapshotRepository snapshotRepository,
+      PlatformTransactionManager transactionManager, ObjectProvider<QuantityLedger> quantityLedger,
+      InventoryItemCache inventoryItemCache, QuantityChangeCompactionProperties properties,
+      MeterRegistry meterRegistry) {
+    this.quantityChangeRepository = quantityChangeRepository;
+    this.snapshotRepository = snapshotRepository;
+    this.transactionTemplate = new TransactionTemplate(transactionManager);
+    // item quantities and later changes must be read as committed after the item lock is granted
+    this.transactionTemplate.setIsolationLevel(TransactionDefinition.ISOLATION_READ_COMMITTED);
+    this.quantityLedger = quantityLedger;
+    this.inventoryItemCache = inventoryItemCache;
+    this.properties = properties;
+    this.compactionTimer = meterRegistry.timer("inventory.compaction");
+    this.compactedChanges = meterRegistry.counter("inventory.compaction.changes");
+  }
+
+  /**
+   * Fold quantity changes older than the retention into snapshots.
+   *
+   * @return count of compacted changes
+   */
+  public long compact() {
+    return compactionTimer.record(() -> {
+      Date createdBefore = new Date(
+          System.currentTimeMillis() - properties.getRetention().toMillis());
+      long total = 0;
+      while (true) {
+        quantityLedger.ifAvailable(QuantityLedger::flush);
+        List<Long> sequenceNumbers = quantityChangeRepository.findSequenceNumbersCreatedBefore(
+            createdBefore, PageRequest.of(0, properties.getChunkSize()));
+        if (sequenceNumbers.isEmpty()) {
+          return total;
+        }
+        long upTo = sequenceNumbers.get(sequenceNumbers.size() - 1);
+        Long firstUnapplied = quantityChangeRepository.findFirstUnappliedSequenceNumber();
+        if (firstUnapplied != null && firstUnapplied <= upTo) {
+          // the item quantities do not include the unapplied change yet
+          upTo = firstUnapplied - 1;
+          if (upTo < sequenceNumbers.get(0)) {
+            return total;
+          }
+        }
+        long compactUpTo = upTo;
+        int compacted = transactionTemplate
+            .execute(status -> snapshotRepository.compactUpTo(compactUpTo, new Date()));
+        compactedChanges.increment(compacted);
+        total += compacted;
+        if (sequenceNumbers.size() < properties.getChunkSize()
+            || compactUpTo < sequenceNumbers.get(sequenceNumbers.size() - 1)) {
+          return total;
+        }
+        pause();
+      }
+    });
+  }
+
+  /**
+   * Forget ids of compacted changes created before the idempotency window.
+   *
+   * @return count of deleted tombstones
+   */
+  public long purgeTombstones() {
+    Date createdBefore = new Date(
+        System.currentTimeMillis() - properties.getIdempotencyWindow().toMillis());
+    long total = 0;
+    while (true) {
+      int deleted = transactionTemplate.execute(status -> snapshotRepository
+          .deleteTombstonesCreatedBefore(createdBefore, properties.getChunkSize()));
+      total += deleted;
+      if (deleted < properties.getChunkSize()) {
+        return total;
+      }
+      pause();
+    }
+  }
+
+  /**
+   * Recompute the quantity of every item with a snapshot from the snapshot and the later changes,
+   * e.g. after item quantities were overwritten. Changes the quantity ledger has not applied yet
+   * are left to the ledger.
+   *
+   * @return count of updated items
+   */
+  public long rebuildQuantities() {
+    String after = "";
+    long total = 0;
+    while (true) {
+      quantityLedger.ifAvailable(QuantityLedger::flush);
+      List<String> itemIds = snapshotRepository
+          .findInventoryItemIdsAfter(after, PageRequest.of(0, properties.getChunkSize()));
+      if (itemIds.isEmpty()) {
+        return total;
+      }
+      total += transactionTemplate
+          .execute(status -> snapshotRepository.rebuildQuantities(itemIds, new Date()));
+      inventoryItemCache.evictQuantities(itemIds);
+      if (itemIds.size() < properties.getChunkSize()) {
+        return total;
+      }
+      after = itemIds.get(itemIds.size() - 1);
+      pause();
+    }
+  }
+
+  private void pause() {
+    try {
+      Thread.sleep(properties.getChunkPause().toMillis());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted between chunks", e);
+    }
+  }
+}
@@ -0,0 +1,150 @@
+package io.github.rscai.microservices.inventory.service;
+
+import io.github.rscai.microservices.inventory.repository.InventoryItemQuantityChangeRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Bloom filter of processed quantity change ids, so that ids which are certainly new skip the
+ * database lookup. Only possible hits are looked up.
+ *
+ * <p>The filter only knows ids processed by this instance since its last rebuild, plus those in
+ * the database at rebuild. An id processed by another instance meanwhile is taken for new; the
+ * insert of its change then fails on the primary key and the caller has to retry without filter.
+ */
+public class QuantityChangeIdFilter {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(QuantityChangeIdFilter.class);
+
+  private final InventoryItemQuantityChangeRepository quantityChangeRepository;
+  private final QuantityChangeIdFilterProperties properties;
+  private final Timer rebuildTimer;
+  private final Counter negatives;
+  private final Counter truePositives;
+  private final Counter falsePositives;
+  private final Counter misses;
+  private volatile BloomFilter filter;
+  private volatile BloomFilter rebuilding;
+  private ScheduledExecutorService scheduler;
+
+  public QuantityChangeIdFilter(InventoryItemQuantityChangeRepository quantityChangeRepository,
+      QuantityChangeIdFilterProperties properties, MeterRegistry meterRegistry) {
+    this.quantityChangeRepository = quantityChangeRepository;
+    this.properties = properties;
+    this.rebuildTimer = meterRegistry.timer("inventory.idfilter.rebuild");
+    this.negatives = meterRegistry.counter("inventory.idfilter.checks", "result", "negative");
+    this.truePositives = meterRegistry
+        .counter("inventory.idfilter.checks", "result", "true_positive");
+    this.falsePositives = meterRegistry
+        .counter("inventory.idfilter.checks", "result", "false_positive");
+    this.misses = meterRegistry.counter("inventory.idfilter.misses");
+    Gauge.builder("inventory.idfilter.expected.fpp", this,
+        idFilter -> idFilter.filter == null ? 1
+            : idFilter.filter.expectedFalsePositiveProbability())
+        .description("false positive probability expected at the current fill")
+        .register(meterRegistry);
+    Gauge.builder("inventory.idfilter.memory", this,
+        idFilter -> idFilter.filter == null ? 0 : idFilter.filter.sizeInBytes())
+        .baseUnit("bytes").register(meterRegistry);
+  }
+
+  /**
+   * Build the filter from the database, then rebuild it every {@code rebuildInterval} to drop
+   * purged ids and to resize it to the grown change log.
+   */
+  public void start() {
+    rebuild();
+    long interval = properties.getRebuildInterval().toMillis();
+    scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "quantity-change-id-filter-rebuild");
+      thread.setDaemon(true);
+      return thread;
+    });
+    scheduler.scheduleWithFixedDelay(this::rebuildQuietly, interval, interval,
+        TimeUnit.MILLISECONDS);
+  }
+
+  public void close() {
+    scheduler.shutdownNow();
+  }
+
+  /**
+   * @param lookup finds which of the given ids are processed
+   * @return the processed ones of the given ids, looking up only those the filter might contain
+   */
+  public List<String> findExistingIds(Collection<String> ids,
+      Function<Collection<String>, List<String>> lookup) {
+    BloomFilter current = filter;
+    if (current == null) {
+      return lookup.apply(ids);
+    }
+    List<String> candidates = ids.stream().filter(current::mightContain)
+        .collect(Collectors.toList());
+    negatives.increment(ids.size() - candidates.size());
+    if (candidates.isEmpty()) {
+      return Collections.emptyList();
+    }
+    List<String> existingIds = lookup.apply(candidates);
+    truePositives.increment(existingIds.size());
+    falsePositives.increment(candidates.size() - existingIds.size());
+    return existingIds;
+  }
+
+  /**
+   * Record ids about to be processed. Ids of a transaction which rolls back stay in the filter and
+   * only cost a needless lookup.
+   */
+  public void add(Collection<String> ids) {
+    BloomFilter current = filter;
+    BloomFilter next = rebuilding;
+    if (current != null) {
+      ids.forEach(current::put);
+    }
+    if (next != null) {
+      ids.forEach(next::put);
+    }
+  }
+
+  /**
+   * Record that an id taken for new has been processed already.
+   */
+  public void recordMiss() {
+    misses.increment();
+  }
+
+  public synchronized void rebuild() {
+    rebuildTimer.record(() -> {
+      long capacity = Math.max(properties.getMinimumCapacity(),
+          quantityChangeRepository.countProcessedIds() * 2);
+      BloomFilter next = new BloomFilter(capacity, properties.getFalsePositiveProbability());
+      // ids added during the scan go to both filters
+      rebuilding = next;
+      try {
+        quantityChangeRepository.forEachProcessedId(properties.getPageSize(), next::put);
+        filter = next;
+      } finally {
+        rebuilding = null;
+      }
+    });
+  }
+
+  private void rebuildQuietly() {
+    try {
+      rebuild();
+    } catch (RuntimeException e) {
+      LOGGER.warn("Fail to rebuild quantity change id filter", e);
+    }
+  }
+}
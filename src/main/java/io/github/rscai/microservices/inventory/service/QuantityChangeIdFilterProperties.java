@@ -0,0 +1,27 @@
+package io.github.rscai.microservices.inventory.service;
+
+import java.time.Duration;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Data
+@ConfigurationProperties("inventory.id-filter")
+public class QuantityChangeIdFilterProperties {
+
+  /**
+   * Skip the database lookup of quantity change ids the filter knows to be new.
+   */
+  private boolean enabled = true;
+  private double falsePositiveProbability = 0.01;
+  /**
+   * The filter is sized for twice the ids known at rebuild, but for at least this many. It takes
+   * about 1.2 bytes per id of capacity at a false positive probability of 0.01; while a rebuild
+   * runs, the current and the next filter are both held, so twice that.
+   */
+  private long minimumCapacity = 1_000_000;
+  private Duration rebuildInterval = Duration.ofHours(1);
+  /**
+   * Ids read per query of the id scan at rebuild.
+   */
+  private int pageSize = 10000;
+}
@@ -0,0 +1,632 @@
+package io.github.rscai.microservices.inventory.service;
+
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import io.github.rscai.microservices.inventory.model.InventoryItemQuantityChange;
+import io.github.rscai.microservices.inventory.model.InventoryItemQuantityChangeBatch;
+import io.github.rscai.microservices.inventory.model.InventoryItemQuantityChangeBatch.Status;
+import io.github.rscai.microservices.inventory.repository.InventoryItemQuantityChangeBatchRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * Accepts quantity change batches into a local write-ahead log and applies them in the background.
+ * A batch is acknowledged once its log entry is forced to disk; on startup every batch still in
+ * the log and not processed yet is queued again, and the change ids keep batches applied before a
+ * crash from being applied twice. The status of a batch is stored, see
+ * {@link InventoryItemQuantityChangeBatch}, so any instance can answer for it.
+ *
+ * <p>Changes are partitioned by item id over the drain workers, so the changes of an item are
+ * applied in acceptance order. A batch is applied as a whole, in one
+ * {@link InventoryItemQuantityChangeService#applyNewChanges(List)} call: one spread over several
+ * partitions is applied by the last of their workers to reach it, the others wait for it. A worker
+ * coalesces the queued batches of its partition alone into calls of up to {@code drainBatchSize}
+ * changes. When such a call is rejected, e.g. for an unknown item, the batches are applied one by
+ * one so only the offending one fails. Any other failure is retried, batch by batch, up to
+ * {@code maxAttempts} times; then the batch fails and is appended to the dead letter file
+ * {@value #DEAD_LETTERS} of the log directory, to be resubmitted once the cause is fixed.
+ *
+ * <p>The log is split into segments of about {@code segmentSize}; a segment is deleted once all
+ * of its batches are processed.
+ */
+public class QuantityChangeQueue {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(QuantityChangeQueue.class);
+  private static final String SEGMENT_PREFIX = "segment-";
+  private static final String SEGMENT_SUFFIX = ".ndjson";
+  private static final String DEAD_LETTERS = "dead-letters.ndjson";
+  private static final long POLL_TIMEOUT_MILLIS = 100;
+  private static final long PURGE_INTERVAL_MILLIS = 60000;
+
+  private final InventoryItemQuantityChangeService quantityChangeService;
+  private final InventoryItemQuantityChangeBatchRepository batchRepository;
+  private final ObjectWriter entryWriter;
+  private final ObjectReader entryReader;
+  private final QuantityChangeQueueProperties properties;
+  private final Path directory;
+  private final List<BlockingQueue<Piece>> partitions = new ArrayList<>();
+  private final AtomicLong depth = new AtomicLong();
+  private final Counter drained;
+  private final Counter drainFailures;
+  private final Counter deadLettered;
+  private final Timer lag;
+  private Segment segment;
+  private long nextSegmentNumber;
+  private ExecutorService workers;
+  private ScheduledExecutorService purger;
+  private volatile boolean running;
+
+  public QuantityChangeQueue(InventoryItemQuantityChangeService quantityChangeService,
+      InventoryItemQuantityChangeBatchRepository batchRepository, ObjectMapper objectMapper,
+      QuantityChangeQueueProperties properties, MeterRegistry meterRegistry) {
+    this.quantityChangeService = quantityChangeService;
+    this.batchRepository = batchRepository;
+    this.entryWriter = objectMapper.writerFor(Entry.class)
+        .without(SerializationFeature.INDENT_OUTPUT);
+    this.entryReader = objectMapper.readerFor(Entry.class);
+    this.properties = properties;
+    this.directory = Paths.get(properties.getDirectory());
+    for (int index = 0; index < properties.getWorkers(); index++) {
+      partitions.add(new LinkedBlockingQueue<>());
+    }
+    this.drained = Counter.builder("inventory.quantity_change.queue.drained")
+        .description("queued quantity changes processed").register(meterRegistry);
+    this.drainFailures = Counter.builder("inventory.quantity_change.queue.drain.failures")
+        .description("drains failed and retried").register(meterRegistry);
+    this.deadLettered = Counter.builder("inventory.quantity_change.queue.dead_lettered")
+        .description("batches given up after maxAttempts failed drains")
+        .register(meterRegistry);
+    this.lag = Timer.builder("inventory.quantity_change.queue.lag")
+        .description("time from accepting a batch to processing all of its changes")
+        .publishPercentileHistogram().register(meterRegistry);
+    Gauge.builder("inventory.quantity_change.queue.depth", depth, AtomicLong::get)
+        .description("accepted quantity changes not processed yet").register(meterRegistry);
+  }
+
+  /**
+   * Queue the batches left in the log, then start draining.
+   */
+  public synchronized void start() throws IOException {
+    Files.createDirectories(directory);
+    List<Path> segmentPaths;
+    try (Stream<Path> paths = Files.list(directory)) {
+      segmentPaths = paths.filter(QuantityChangeQueue::isSegment).sorted()
+          .collect(Collectors.toList());
+    }
+    int recovered = 0;
+    for (Path path : segmentPaths) {
+      Segment recoveredSegment = new Segment(path, null);
+      recoveredSegment.sealed = true;
+      recovered += recover(recoveredSegment);
+      if (recoveredSegment.outstanding == 0) {
+        Files.delete(path);
+      }
+      nextSegmentNumber = Math.max(nextSegmentNumber, segmentNumber(path) + 1);
+    }
+    if (recovered > 0) {
+      LOGGER.info("Queued {} quantity change batches left in {}", recovered, directory);
+    }
+    segment = openSegment();
+    running = true;
+    AtomicInteger threads = new AtomicInteger();
+    workers = Executors.newFixedThreadPool(partitions.size(), runnable -> {
+      Thread thread = new Thread(runnable, "quantity-change-queue-" + threads.getAndIncrement());
+      thread.setDaemon(true);
+      return thread;
+    });
+    partitions.forEach(partition -> workers.execute(() -> drain(partition)));
+    purger = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "quantity-change-queue-purger");
+      thread.setDaemon(true);
+      return thread;
+    });
+    purger.scheduleWithFixedDelay(this::purge, 0, PURGE_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Stop draining. Batches not processed yet stay in the log for the next start.
+   */
+  public void close() throws IOException {
+    synchronized (this) {
+      running = false;
+    }
+    purger.shutdownNow();
+    workers.shutdown();
+    try {
+      if (!workers.awaitTermination(properties.getRetryInterval().toMillis() * 2,
+          TimeUnit.MILLISECONDS)) {
+        workers.shutdownNow();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    synchronized (this) {
+      // a submit forcing the segment meanwhile finds it closed, and relies on this force
+      segment.channel.force(false);
+      segment.channel.close();
+    }
+  }
+
+  /**
+   * Durably log the given changes and queue them.
+   *
+   * @return the status of the queued batch
+   */
+  public InventoryItemQuantityChangeBatch submit(List<InventoryItemQuantityChange> changes) {
+    for (InventoryItemQuantityChange change : changes) {
+      if (change.getId() == null || change.getInventoryItemId() == null) {
+        throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+            "Quantity changes need an id and an inventoryItemId");
+      }
+    }
+    if (!running) {
+      throw closed();
+    }
+    Entry entry = new Entry(UUID.randomUUID().toString(), new Date(), changes);
+    InventoryItemQuantityChangeBatch queued = queuedStatus(entry);
+    // stored before the batch is logged, so it is there once the batch is processed; one left by
+    // a failure in between belongs to a batch never acknowledged, whose id is known to nobody
+    batchRepository.save(queued);
+    FileChannel channel;
+    try {
+      byte[] line = entryWriter.writeValueAsBytes(entry);
+      synchronized (this) {
+        if (!running) {
+          throw closed();
+        }
+        if (segment.size >= properties.getSegmentSize().toBytes()) {
+          roll();
+        }
+        segment.size += append(segment.channel, line);
+        channel = segment.channel;
+        // queued in log order, so the changes of an item are applied in acceptance order
+        enqueue(entry, segment);
+      }
+      // forced outside of the lock, so concurrent submits share a force; a batch drained before
+      // its force completes is applied once all the same, as its retry is a duplicate
+      channel.force(false);
+    } catch (ClosedChannelException e) {
+      // the segment has been rolled over, or the queue closed, meanwhile; either forced it when
+      // closing it
+      return queued;
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return queued;
+  }
+
+  /**
+   * @return the status of the given batch, while queued and for {@code statusRetention} after
+   * being processed
+   */
+  public Optional<InventoryItemQuantityChangeBatch> status(String batchId) {
+    return batchRepository.findById(batchId);
+  }
+
+  private static ResponseStatusException closed() {
+    return new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE,
+        "Quantity change queue is closed");
+  }
+
+  private static InventoryItemQuantityChangeBatch queuedStatus(Entry entry) {
+    return new InventoryItemQuantityChangeBatch(entry.getBatchId(), Status.QUEUED,
+        entry.getAcceptedAt(), null, entry.getChanges().size(), 0, 0, 0, null);
+  }
+
+  private int recover(Segment recoveredSegment) throws IOException {
+    List<Entry> entries = new ArrayList<>();
+    try (MappingIterator<Entry> values = entryReader.readValues(recoveredSegment.path.toFile())) {
+      while (values.hasNextValue()) {
+        entries.add(values.nextValue());
+      }
+    } catch (IOException | RuntimeException e) {
+      // an entry torn by a crash was never acknowledged; it is always the last of its segment
+      LOGGER.warn("Skip the rest of quantity change queue segment {}", recoveredSegment.path, e);
+    }
+    Map<String, InventoryItemQuantityChangeBatch> statuses = batchRepository
+        .findAllById(entries.stream().map(Entry::getBatchId).collect(Collectors.toList()))
+        .stream().collect(Collectors.toMap(InventoryItemQuantityChangeBatch::getId,
+            Function.identity()));
+    int recovered = 0;
+    for (Entry entry : entries) {
+      InventoryItemQuantityChangeBatch status = statuses.get(entry.getBatchId());
+      if (status != null && status.getCompletedAt() != null) {
+        // processed, while others of its segment were not
+        continue;
+      }
+      if (status == null) {
+        batchRepository.save(queuedStatus(entry));
+      }
+      enqueue(entry, recoveredSegment);
+      recovered++;
+    }
+    return recovered;
+  }
+
+  private void enqueue(Entry entry, Segment target) {
+    Map<Integer, List<InventoryItemQuantityChange>> pieces = entry.getChanges().stream()
+        .collect(Collectors.groupingBy(
+            change -> Math.floorMod(change.getInventoryItemId().hashCode(), partitions.size())));
+    if (pieces.isEmpty()) {
+      pieces.put(0, Collections.emptyList());
+    }
+    Batch batch = new Batch(entry, target, pieces.size());
+    target.outstanding++;
+    depth.addAndGet(entry.getChanges().size());
+    pieces.forEach((partition, changes) -> partitions.get(partition)
+        .add(new Piece(batch, changes)));
+  }
+
+  private void drain(BlockingQueue<Piece> partition) {
+    List<Batch> batches = new ArrayList<>();
+    while (running) {
+      try {
+        Piece first = partition.poll(POLL_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        if (first == null) {
+          continue;
+        }
+        if (first.batch.shared()) {
+          applyShared(first.batch);
+          continue;
+        }
+        batches.add(first.batch);
+        int size = first.changes.size();
+        // only this worker takes from its partition, so the peeked piece is the one polled
+        for (Piece next = partition.peek(); next != null && !next.batch.shared()
+            && size + next.changes.size() <= properties.getDrainBatchSize();
+            next = partition.peek()) {
+          batches.add(partition.poll().batch);
+          size += next.changes.size();
+        }
+        applyWithRetries(batches);
+        batches.clear();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      }
+    }
+  }
+
+  /**
+   * Apply a batch spread over several partitions once every one of them has reached it, so the
+   * changes of each item are still applied in acceptance order.
+   */
+  private void applyShared(Batch batch) throws InterruptedException {
+    if (batch.arrive()) {
+      applyWithRetries(Collections.singletonList(batch));
+      return;
+    }
+    // every partition queues batches in log order, so the last of them reaches it in the end
+    boolean completed = false;
+    while (running && !completed) {
+      completed = batch.completed.await(POLL_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  /**
+   * Apply the given batches together, or, after a failure other than a rejection, one by one, each
+   * retried up to {@code maxAttempts} times. Returns early when the queue is closed.
+   */
+  private void applyWithRetries(List<Batch> batches) throws InterruptedException {
+    if (batches.size() > 1) {
+      try {
+        apply(batches);
+        return;
+      } catch (RuntimeException e) {
+        drainFailures.increment();
+        LOGGER.warn("Fail to drain quantity changes, retry batch by batch", e);
+      }
+    }
+    for (Batch batch : batches) {
+      int attempts = 0;
+      RuntimeException failure = null;
+      while (!batch.isCompleted()) {
+        if (!running) {
+          return;
+        }
+        try {
+          if (attempts >= properties.getMaxAttempts() && !batch.processed) {
+            deadLetter(batch, attempts, failure);
+          }
+          apply(Collections.singletonList(batch));
+        } catch (RuntimeException e) {
+          attempts++;
+          failure = e;
+          drainFailures.increment();
+          LOGGER.warn("Fail to drain quantity change batch {}, attempt {}, retry in {}", batch.id,
+              attempts, properties.getRetryInterval(), e);
+          Thread.sleep(properties.getRetryInterval().toMillis());
+        }
+      }
+    }
+  }
+
+  private void apply(List<Batch> batches) {
+    List<Batch> unprocessed = batches.stream().filter(batch -> !batch.processed)
+        .collect(Collectors.toList());
+    if (!unprocessed.isEmpty()) {
+      applyChanges(unprocessed);
+    }
+    batches.forEach(this::complete);
+  }
+
+  private void applyChanges(List<Batch> batches) {
+    List<InventoryItemQuantityChange> changes = new ArrayList<>();
+    batches.forEach(batch -> changes.addAll(batch.changes));
+    Set<String> appliedIds;
+    try {
+      appliedIds = new HashSet<>(quantityChangeService.applyNewChanges(changes));
+    } catch (ResponseStatusException | DataIntegrityViolationException e) {
+      if (batches.size() > 1) {
+        // the batch at fault must not fail those coalesced with it
+        batches.stream().filter(batch -> !batch.processed)
+            .forEach(batch -> applyChanges(Collections.singletonList(batch)));
+      } else {
+        process(batches.get(0), Collections.emptySet(), e instanceof ResponseStatusException
+            ? ((ResponseStatusException) e).getReason() : e.getMessage());
+      }
+      return;
+    }
+    batches.forEach(batch -> process(batch, appliedIds, null));
+  }
+
+  private void process(Batch batch, Set<String> appliedIds, String failure) {
+    for (InventoryItemQuantityChange change : batch.changes) {
+      if (failure != null) {
+        batch.failed++;
+      } else if (appliedIds.remove(change.getId())) {
+        // a repeated id is applied once, by its first occurrence
+        batch.applied++;
+      } else {
+        batch.duplicates++;
+      }
+    }
+    batch.failure = failure;
+    batch.processed = true;
+    depth.addAndGet(-batch.changes.size());
+    drained.increment(batch.changes.size());
+  }
+
+  private void deadLetter(Batch batch, int attempts, RuntimeException failure) {
+    try {
+      byte[] line = entryWriter.writeValueAsBytes(
+          new Entry(batch.id, batch.acceptedAt, batch.changes));
+      synchronized (this) {
+        try (FileChannel channel = FileChannel.open(directory.resolve(DEAD_LETTERS),
+            StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+          append(channel, line);
+          channel.force(false);
+        }
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    deadLettered.increment();
+    LOGGER.error("Give up quantity change batch {} after {} attempts, appended it to {}",
+        batch.id, attempts, directory.resolve(DEAD_LETTERS), failure);
+    process(batch, Collections.emptySet(), String.format(
+        "Given up after %d failed attempts, dead-lettered: %s", attempts, failure));
+  }
+
+  /**
+   * Store the status of a processed batch and release its log entry.
+   */
+  private void complete(Batch batch) {
+    if (batch.isCompleted()) {
+      return;
+    }
+    Date completedAt = new Date();
+    batch.completedAt = completedAt;
+    batchRepository.save(batch.toStatus());
+    lag.record(completedAt.getTime() - batch.acceptedAt.getTime(), TimeUnit.MILLISECONDS);
+    release(batch.segment);
+    batch.completed.countDown();
+  }
+
+  private void purge() {
+    try {
+      batchRepository.deleteCompletedBefore(new Date(
+          System.currentTimeMillis() - properties.getStatusRetention().toMillis()));
+    } catch (RuntimeException e) {
+      LOGGER.warn("Fail to purge quantity change batch statuses", e);
+    }
+  }
+
+  private synchronized void release(Segment target) {
+    target.outstanding--;
+    if (target.sealed && target.outstanding == 0) {
+      delete(target);
+    }
+  }
+
+  private void roll() throws IOException {
+    Segment sealed = segment;
+    sealed.channel.force(false);
+    sealed.channel.close();
+    sealed.sealed = true;
+    segment = openSegment();
+    if (sealed.outstanding == 0) {
+      delete(sealed);
+    }
+  }
+
+  private Segment openSegment() throws IOException {
+    Path path = directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, nextSegmentNumber++,
+        SEGMENT_SUFFIX));
+    return new Segment(path, FileChannel.open(path, StandardOpenOption.CREATE_NEW,
+        StandardOpenOption.WRITE, StandardOpenOption.APPEND));
+  }
+
+  /**
+   * @return count of bytes written, the line and its line feed
+   */
+  private static int append(FileChannel channel, byte[] line) throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate(line.length + 1);
+    buffer.put(line).put((byte) '\n').flip();
+    int written = 0;
+    while (buffer.hasRemaining()) {
+      written += channel.write(buffer);
+    }
+    return written;
+  }
+
+  private static void delete(Segment target) {
+    try {
+      Files.deleteIfExists(target.path);
+    } catch (IOException e) {
+      LOGGER.warn("Fail to delete processed quantity change queue segment {}", target.path, e);
+    }
+  }
+
+  private static boolean isSegment(Path path) {
+    String name = path.getFileName().toString();
+    return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+  }
+
+  private static long segmentNumber(Path path) {
+    String name = path.getFileName().toString();
+    return Long.parseLong(
+        name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+  }
+
+  /**
+   * A line of the log.
+   */
+  @Data
+  @NoArgsConstructor
+  @AllArgsConstructor
+  static class Entry {
+
+    private String batchId;
+    private Date acceptedAt;
+    private List<InventoryItemQuantityChange> changes;
+  }
+
+  /**
+   * A log file; its counters are guarded by the queue.
+   */
+  private static class Segment {
+
+    private final Path path;
+    private final FileChannel channel;
+    private long size;
+    private int outstanding;
+    private boolean sealed;
+
+    Segment(Path path, FileChannel channel) {
+      this.path = path;
+      this.channel = channel;
+    }
+  }
+
+  /**
+   * A queued batch, applied by one worker at a time.
+   */
+  private static class Batch {
+
+    private final String id;
+    private final Date acceptedAt;
+    private final List<InventoryItemQuantityChange> changes;
+    private final Segment segment;
+    // partitions yet to reach the batch
+    private final AtomicInteger pendingPartitions;
+    private final CountDownLatch completed = new CountDownLatch(1);
+    private final boolean shared;
+    private volatile boolean processed;
+    private int applied;
+    private int duplicates;
+    private int failed;
+    private String failure;
+    private Date completedAt;
+
+    Batch(Entry entry, Segment segment, int partitions) {
+      this.id = entry.getBatchId();
+      this.acceptedAt = entry.getAcceptedAt();
+      this.changes = entry.getChanges();
+      this.segment = segment;
+      this.pendingPartitions = new AtomicInteger(partitions);
+      this.shared = partitions > 1;
+    }
+
+    boolean shared() {
+      return shared;
+    }
+
+    /**
+     * @return whether the calling partition is the last one to reach the batch
+     */
+    boolean arrive() {
+      return pendingPartitions.decrementAndGet() == 0;
+    }
+
+    boolean isCompleted() {
+      return completed.getCount() == 0;
+    }
+
+    InventoryItemQuantityChangeBatch toStatus() {
+      Status status = failed > 0 ? Status.FAILED : Status.COMPLETED;
+      int maxLength = InventoryItemQuantityChangeBatch.MAX_FAILURE_LENGTH;
+      String reason = failure == null || failure.length() <= maxLength ? failure
+          : failure.substring(0, maxLength);
+      return new InventoryItemQuantityChangeBatch(id, status, acceptedAt, completedAt,
+          changes.size(), applied, duplicates, failed, reason);
+    }
+  }
+
+  /**
+   * The changes of a batch falling into one partition.
+   */
+  private static class Piece {
+
+    private final Batch batch;
+    private final List<InventoryItemQuantityChange> changes;
+
+    Piece(Batch batch, List<InventoryItemQuantityChange> changes) {
+      this.batch = batch;
+      this.changes = changes;
+    }
+  }
+}
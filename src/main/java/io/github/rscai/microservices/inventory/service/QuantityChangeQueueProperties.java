@@ -0,0 +1,50 @@
+package io.github.rscai.microservices.inventory.service;
+
+import java.time.Duration;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+@Data
+@ConfigurationProperties("inventory.quantity-change-queue")
+public class QuantityChangeQueueProperties {
+
+  /**
+   * Accept quantity change batches sent with {@code Prefer: respond-async} into a local
+   * write-ahead log and apply them in the background.
+   */
+  private boolean enabled = false;
+  /**
+   * Directory of the write-ahead log segments; batches found there on startup are applied again.
+   */
+  private String directory = "quantity-change-queue";
+  /**
+   * Size after which appends go to a new segment. A segment is deleted once all of its batches
+   * are processed.
+   */
+  private DataSize segmentSize = DataSize.ofMegabytes(64);
+  /**
+   * Count of drain workers; the changes of an item are always drained by the same worker, in
+   * acceptance order.
+   */
+  private int workers = 4;
+  /**
+   * Maximum number of queued changes coalesced into one applied batch.
+   */
+  private int drainBatchSize = 500;
+  /**
+   * Delay before a drain failing on anything but a rejection, e.g. an unavailable database, is
+   * retried.
+   */
+  private Duration retryInterval = Duration.ofSeconds(1);
+  /**
+   * Failed attempts after which a batch is given up, marked failed and appended to the dead letter
+   * file of the directory. With {@code retryInterval}, bounds how long a database outage is ridden
+   * out before batches are given up.
+   */
+  private int maxAttempts = 60;
+  /**
+   * How long the stored status of a processed batch can be read, from any instance.
+   */
+  private Duration statusRetention = Duration.ofHours(1);
+}
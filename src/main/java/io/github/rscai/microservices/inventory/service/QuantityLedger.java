@@ -0,0 +1,193 @@
+package io.github.rscai.microservices.inventory.service;
+
+import io.github.rscai.microservices.inventory.model.InventoryItemQuantityChange;
+import io.github.rscai.microservices.inventory.repository.InventoryItemQuantityChangeRepository;
+import io.github.rscai.microservices.inventory.repository.InventoryItemRepository;
+import io.github.rscai.microservices.inventory.repository.InventoryItemRepositoryCustom.OversellGuard;
+import io.github.rscai.microservices.inventory.repository.Shards;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Writes quantity changes behind to inventory_item. The changes of an acknowledged batch are
+ * logged as unapplied in the batch's transaction; a background flush locks unapplied changes,
+ * adds them to their items as one increment per item and marks them applied, all in one
+ * transaction. Writers only insert change rows, so hot items do not contend on row locks, and a
+ * delta is never held only in memory: changes left unapplied by a crash are applied by the next
+ * flush of any instance, the first one right on startup.
+ *
+ * <p>With {@link Shards}, each shard is flushed in transactions of its own.
+ */
+public class QuantityLedger {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(QuantityLedger.class);
+
+  private final InventoryItemRepository inventoryItemRepository;
+  private final InventoryItemQuantityChangeRepository quantityChangeRepository;
+  private final TransactionTemplate transactionTemplate;
+  private final InventoryItemCache inventoryItemCache;
+  private final QuantityLedgerProperties properties;
+  private final Shards shards;
+  private final Timer flushTimer;
+  private final Counter flushFailures;
+  private final Counter flushedChanges;
+  // unapplied changes left by the last flush
+  private final AtomicLong pendingChanges = new AtomicLong();
+  private ScheduledExecutorService scheduler;
+
+  public QuantityLedger(InventoryItemRepository inventoryItemRepository,
+      InventoryItemQuantityChangeRepository quantityChangeRepository,
+      PlatformTransactionManager transactionManager, InventoryItemCache inventoryItemCache,
+      QuantityLedgerProperties properties, Shards shards, MeterRegistry meterRegistry) {
+    this.inventoryItemRepository = inventoryItemRepository;
+    this.quantityChangeRepository = quantityChangeRepository;
+    this.transactionTemplate = new TransactionTemplate(transactionManager);
+    this.inventoryItemCache = inventoryItemCache;
+    this.properties = properties;
+    this.shards = shards;
+    this.flushTimer = meterRegistry.timer("inventory.ledger.flush");
+    this.flushFailures = meterRegistry.counter("inventory.ledger.flush.failures");
+    this.flushedChanges = meterRegistry.counter("inventory.ledger.flush.changes");
+    Gauge.builder("inventory.ledger.pending.changes", pendingChanges, AtomicLong::get)
+        .description("changes not yet written to their item as of the last flush")
+        .register(meterRegistry);
+  }
+
+  public void start() {
+    long interval = properties.getFlushInterval().toMillis();
+    scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "quantity-ledger-flush");
+      thread.setDaemon(true);
+      return thread;
+    });
+    // the first flush applies the changes left unapplied by a previous run
+    scheduler.scheduleWithFixedDelay(this::flushQuietly, 0, interval, TimeUnit.MILLISECONDS);
+  }
+
+  public void close() {
+    scheduler.shutdown();
+    try {
+      scheduler.awaitTermination(properties.getFlushInterval().toMillis() * 2,
+          TimeUnit.MILLISECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    flushQuietly();
+  }
+
+  /**
+   * Write all unapplied changes to their items, at most {@code flushBatchSize} changes per
+   * transaction. A failed transaction leaves its changes unapplied for the next flush.
+   */
+  public synchronized void flush() {
+    flushTimer.record(() -> {
+      if (shards == null) {
+        pendingChanges.set(flushShard());
+        return;
+      }
+      // a failed shard must not keep the other shards from being flushed
+      RuntimeException failure = null;
+      long pending = 0;
+      for (int shard = 0; shard < shards.count(); shard++) {
+        try {
+          pending += shards.on(shard, this::flushShard);
+        } catch (RuntimeException e) {
+          if (failure == null) {
+            failure = e;
+          } else {
+            failure.addSuppressed(e);
+          }
+        }
+      }
+      pendingChanges.set(pending);
+      if (failure != null) {
+        throw failure;
+      }
+    });
+  }
+
+  private void flushQuietly() {
+    try {
+      flush();
+    } catch (RuntimeException e) {
+      LOGGER.warn("Fail to flush quantity ledger", e);
+    }
+  }
+
+  /**
+   * @return count of unapplied changes left
+   */
+  private long flushShard() {
+    while (true) {
+      List<String> itemIds = new ArrayList<>();
+      int[] lockedAndApplied;
+      try {
+        lockedAndApplied = transactionTemplate.execute(status -> writeBatch(itemIds));
+      } catch (RuntimeException e) {
+        flushFailures.increment();
+        throw e;
+      }
+      flushedChanges.increment(lockedAndApplied[1]);
+      if (!itemIds.isEmpty()) {
+        inventoryItemCache.evictQuantities(itemIds);
+      }
+      if (lockedAndApplied[0] < properties.getFlushBatchSize()
+          && lockedAndApplied[1] == lockedAndApplied[0]) {
+        return quantityChangeRepository.countUnapplied();
+      }
+    }
+  }
+
+  /**
+   * @return count of the locked changes and of the applied ones, which are fewer when an item
+   * delta would overflow
+   */
+  private int[] writeBatch(List<String> itemIds) {
+    List<InventoryItemQuantityChange> changes = quantityChangeRepository
+        .lockUnapplied(properties.getFlushBatchSize());
+    // in id order, like quantity change batches, so both lock shared items in the same order
+    Map<String, Long> deltas = new TreeMap<>();
+    List<String> appliedIds = new ArrayList<>(changes.size());
+    for (InventoryItemQuantityChange change : changes) {
+      long delta = deltas.getOrDefault(change.getInventoryItemId(), 0L)
+          + change.getQuantityChange();
+      if (delta != (int) delta) {
+        // this change and the later ones are written by the next round
+        break;
+      }
+      deltas.put(change.getInventoryItemId(), delta);
+      appliedIds.add(change.getId());
+    }
+    if (appliedIds.isEmpty()) {
+      return new int[]{0, 0};
+    }
+    Map<String, Integer> increments = new TreeMap<>();
+    deltas.forEach((itemId, delta) -> increments.put(itemId, (int) (long) delta));
+    int[] updateCounts = inventoryItemRepository.addQuantities(increments, new Date(),
+        OversellGuard.NONE);
+    int index = 0;
+    for (String itemId : increments.keySet()) {
+      if (updateCounts[index++] == 0) {
+        LOGGER.warn("Drop pending delta of deleted inventory item {}", itemId);
+      }
+    }
+    quantityChangeRepository.markApplied(appliedIds);
+    itemIds.addAll(increments.keySet());
+    return new int[]{changes.size(), appliedIds.size()};
+  }
+}
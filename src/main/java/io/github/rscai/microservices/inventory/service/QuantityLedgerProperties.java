@@ -0,0 +1,24 @@
+package io.github.rscai.microservices.inventory.service;
+
+import java.time.Duration;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Data
+@ConfigurationProperties("inventory.ledger")
+public class QuantityLedgerProperties {
+
+  /**
+   * Write quantity changes behind to inventory_item. Changes are persisted as unapplied before a
+   * batch is acknowledged and applied by the next flush, even after a restart.
+   */
+  private boolean enabled = false;
+  /**
+   * Delay between two write-behind flushes, which bounds how stale a read quantity can be.
+   */
+  private Duration flushInterval = Duration.ofSeconds(1);
+  /**
+   * Maximum number of changes applied by one flush transaction.
+   */
+  private int flushBatchSize = 500;
+}
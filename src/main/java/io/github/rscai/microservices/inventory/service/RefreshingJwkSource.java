@@ -0,0 +1,116 @@
+package io.github.rscai.microservices.inventory.service;
+
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.JWKSelector;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.source.JWKSource;
+import com.nimbusds.jose.proc.SecurityContext;
+import java.text.ParseException;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestTemplate;
+
+/**
+ * JWK set fetched from {@code jwk-set-uri} on a background thread, so token verification does not
+ * wait for the authorization server. The set is refreshed on a fixed interval, and when a token
+ * names a key the current set does not contain, e.g. after key rotation, once more by the request
+ * verifying it: at most once per {@code jwkSetMinimumRefreshInterval}, and requests arriving during
+ * that refresh wait for it rather than fetching again.
+ */
+public class RefreshingJwkSource implements JWKSource<SecurityContext> {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(RefreshingJwkSource.class);
+
+  private final String jwkSetUri;
+  private final JwtCacheProperties properties;
+  private final RestTemplate restTemplate;
+  private final Object refreshLock = new Object();
+  private volatile JWKSet jwkSet = new JWKSet();
+  private volatile long lastRefreshNanos;
+  private ScheduledExecutorService scheduler;
+
+  public RefreshingJwkSource(String jwkSetUri, JwtCacheProperties properties) {
+    this.jwkSetUri = jwkSetUri;
+    this.properties = properties;
+    SimpleClientHttpRequestFactory requestFactory = new SimpleClientHttpRequestFactory();
+    requestFactory.setConnectTimeout((int) properties.getJwkSetConnectTimeout().toMillis());
+    requestFactory.setReadTimeout((int) properties.getJwkSetReadTimeout().toMillis());
+    this.restTemplate = new RestTemplate(requestFactory);
+  }
+
+  /**
+   * Fetch the JWK set once, then schedule the periodic refresh. An unreachable authorization
+   * server does not fail startup; tokens are rejected until a refresh succeeds.
+   */
+  public void start() {
+    scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "jwk-set-refresh");
+      thread.setDaemon(true);
+      return thread;
+    });
+    refreshQuietly();
+    long interval = properties.getJwkSetRefreshInterval().toMillis();
+    scheduler.scheduleWithFixedDelay(this::refreshQuietly, interval, interval,
+        TimeUnit.MILLISECONDS);
+  }
+
+  public void close() {
+    scheduler.shutdownNow();
+  }
+
+  @Override
+  public List<JWK> get(JWKSelector jwkSelector, SecurityContext context) {
+    JWKSet current = jwkSet;
+    List<JWK> keys = jwkSelector.select(current);
+    if (keys.isEmpty() && refreshForUnknownKey(current)) {
+      keys = jwkSelector.select(jwkSet);
+    }
+    return keys;
+  }
+
+  /**
+   * Fetch and replace the JWK set.
+   */
+  public void refresh() {
+    // a failed fetch counts as an attempt too, so an unreachable endpoint is not hammered
+    try {
+      jwkSet = JWKSet.parse(restTemplate.getForObject(jwkSetUri, String.class));
+    } catch (ParseException e) {
+      throw new IllegalStateException(String.format("Invalid JWK set from %s", jwkSetUri), e);
+    } finally {
+      lastRefreshNanos = System.nanoTime();
+    }
+  }
+
+  /**
+   * @param stale the set which lacks the key
+   * @return whether the set has been replaced since
+   */
+  private boolean refreshForUnknownKey(JWKSet stale) {
+    synchronized (refreshLock) {
+      if (jwkSet != stale) {
+        return true;
+      }
+      long sinceLastRefresh = System.nanoTime() - lastRefreshNanos;
+      if (sinceLastRefresh < properties.getJwkSetMinimumRefreshInterval().toNanos()) {
+        return false;
+      }
+      refreshQuietly();
+      return jwkSet != stale;
+    }
+  }
+
+  private void refreshQuietly() {
+    try {
+      refresh();
+    } catch (RestClientException | IllegalStateException e) {
+      LOGGER.warn("Fail to refresh JWK set from {}", jwkSetUri, e);
+    }
+  }
+}
@@ -0,0 +1,43 @@
+package io.github.rscai.microservices.inventory.service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Data
+@ConfigurationProperties("inventory.replication")
+public class ReplicationProperties {
+
+  /**
+   * Serve the read-only transactions of inventory item GET requests from the given replicas of
+   * {@code spring.datasource}.
+   */
+  private boolean enabled = false;
+  /**
+   * Read replicas, used in turn. Pools take the settings of {@code spring.datasource.hikari}.
+   */
+  private List<Replica> replicas = new ArrayList<>();
+  /**
+   * Replication lag tolerated: a replica lagging more, as measured by the health checks, serves
+   * no reads. Clients carrying the time of their last write, see the {@code Inventory-Written-At}
+   * header and cookie, only read from replicas which have replayed it.
+   */
+  private Duration maxLag = Duration.ofSeconds(2);
+  /**
+   * Delay between two health checks; a replica failing to hand out a connection is skipped until
+   * a check reaches it again. Each check writes a heartbeat to the primary and measures how far
+   * each replica has replayed it.
+   */
+  private Duration healthCheckInterval = Duration.ofSeconds(5);
+
+  @Data
+  public static class Replica {
+
+    private String url;
+    private String username;
+    private String password;
+    private String driverClassName;
+  }
+}
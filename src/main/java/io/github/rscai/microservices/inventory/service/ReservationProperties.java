@@ -0,0 +1,38 @@
+package io.github.rscai.microservices.inventory.service;
+
+import java.time.Duration;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Data
+@ConfigurationProperties("inventory.reservation")
+public class ReservationProperties {
+
+  /**
+   * How long a reservation holds its units when the request gives no {@code ttl}.
+   */
+  private Duration defaultTtl = Duration.ofMinutes(15);
+  /**
+   * Longest {@code ttl} a reservation may ask for.
+   */
+  private Duration maxTtl = Duration.ofHours(24);
+  /**
+   * Granularity of the expiry timer wheel; reservations expire up to one tick late.
+   */
+  private Duration tick = Duration.ofMillis(100);
+  /**
+   * Slots per wheel of the expiry timer wheel; the lowest wheel spans {@code tick} times
+   * {@code wheelSize}, each wheel above {@code wheelSize} times more.
+   */
+  private int wheelSize = 512;
+  /**
+   * Interval of the sweep expiring reservations no timer of this instance tracks, e.g. those of
+   * an instance that went down.
+   */
+  private Duration sweepInterval = Duration.ofMinutes(1);
+  /**
+   * Reservations expired per sweep query, also the batch size of loading the reservations to
+   * track on startup.
+   */
+  private int sweepBatchSize = 500;
+}
@@ -0,0 +1,45 @@
+package io.github.rscai.microservices.inventory.service;
+
+import java.time.Duration;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Data
+@ConfigurationProperties("inventory.second-level-cache")
+public class SecondLevelCacheProperties {
+
+  /**
+   * Cache inventory items, their ids by productId and productIdIn search results in the Hibernate
+   * second-level cache.
+   */
+  private boolean enabled;
+  /**
+   * Bounds of the item region and of the productId region.
+   */
+  private Region items = new Region(10000, Duration.ofMinutes(10));
+  /**
+   * Bounds of the query result regions.
+   */
+  private Region queries = new Region(1000, Duration.ofMinutes(1));
+
+  @Data
+  public static class Region {
+
+    /**
+     * Maximum number of entries in the region.
+     */
+    private long maximumSize;
+    /**
+     * Time after which an entry is dropped and reloaded from the database.
+     */
+    private Duration timeToLive;
+
+    public Region() {
+    }
+
+    public Region(long maximumSize, Duration timeToLive) {
+      this.maximumSize = maximumSize;
+      this.timeToLive = timeToLive;
+    }
+  }
+}
@@ -0,0 +1,31 @@
+package io.github.rscai.microservices.inventory.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Data
+@ConfigurationProperties("inventory.sharding")
+public class ShardingProperties {
+
+  /**
+   * Spread inventory items, with their quantity changes, over {@code spring.datasource} and the
+   * given shards by productId.
+   */
+  private boolean enabled = false;
+  /**
+   * Databases of shard 1 onwards; shard 0 is {@code spring.datasource}. Pools take the settings of
+   * {@code spring.datasource.hikari}.
+   */
+  private List<Shard> shards = new ArrayList<>();
+
+  @Data
+  public static class Shard {
+
+    private String url;
+    private String username;
+    private String password;
+    private String driverClassName;
+  }
+}
@@ -0,0 +1,188 @@
+package io.github.rscai.microservices.inventory.service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Hierarchical timing wheel: deadlines are rounded up to ticks and kept in buckets of wheels of
+ * {@code wheelSize} slots, each wheel spanning {@code wheelSize} times the span of the one below.
+ * Scheduling and cancelling take constant time; advancing the clock by a tick expires one bucket
+ * of the lowest wheel and, once per revolution of a wheel, cascades one bucket of the wheel above
+ * into the ones below. Wheels are added as deadlines further out are scheduled.
+ *
+ * <p>Values are kept by key, scheduling a key again moves its deadline. Deadlines are met at tick
+ * granularity, never early.
+ */
+public class TimerWheel<K, V> {
+
+  private final long tickMillis;
+  private final int wheelSize;
+  private final List<List<Set<Entry<K, V>>>> wheels = new ArrayList<>();
+  private final Map<K, Entry<K, V>> entries = new HashMap<>();
+  // last tick whose deadlines have been expired
+  private long currentTick;
+
+  public TimerWheel(long tickMillis, int wheelSize, long nowMillis) {
+    if (tickMillis <= 0 || wheelSize < 2) {
+      throw new IllegalArgumentException("tick must be positive and wheel size at least 2");
+    }
+    this.tickMillis = tickMillis;
+    this.wheelSize = wheelSize;
+    this.currentTick = nowMillis / tickMillis;
+  }
+
+  /**
+   * Schedule the value to expire at the given deadline, replacing the key's earlier schedule.
+   */
+  public synchronized void schedule(K key, V value, long deadlineMillis) {
+    cancel(key);
+    // rounded up, so a value never expires before its deadline
+    Entry<K, V> entry = new Entry<>(key, value, (deadlineMillis + tickMillis - 1) / tickMillis);
+    entries.put(key, entry);
+    place(entry, null);
+  }
+
+  /**
+   * @return whether the key was scheduled
+   */
+  public synchronized boolean cancel(K key) {
+    Entry<K, V> entry = entries.remove(key);
+    if (entry == null) {
+      return false;
+    }
+    if (entry.bucket != null) {
+      entry.bucket.remove(entry);
+    }
+    return true;
+  }
+
+  /**
+   * Advance the clock to the given time.
+   *
+   * @return values whose deadline has passed, in deadline order at tick granularity
+   */
+  public synchronized List<V> advance(long nowMillis) {
+    List<V> expired = new ArrayList<>();
+    long targetTick = nowMillis / tickMillis;
+    while (currentTick < targetTick) {
+      if (entries.isEmpty()) {
+        // nothing to cascade or expire on the way
+        currentTick = targetTick;
+        break;
+      }
+      currentTick++;
+      cascade(expired);
+      List<Set<Entry<K, V>>> lowest = wheels.isEmpty() ? null : wheels.get(0);
+      if (lowest != null) {
+        expire(lowest, (int) (currentTick % wheelSize), expired);
+      }
+    }
+    return expired;
+  }
+
+  public synchronized int size() {
+    return entries.size();
+  }
+
+  /**
+   * Move the buckets of higher wheels whose span starts at the current tick into lower wheels,
+   * top down, so an entry cascading twice in one tick ends up in the lowest wheel.
+   */
+  private void cascade(List<V> expired) {
+    int level = 1;
+    long span = wheelSize;
+    while (level < wheels.size() && currentTick % span == 0) {
+      level++;
+      if (span > Long.MAX_VALUE / wheelSize) {
+        break;
+      }
+      span *= wheelSize;
+    }
+    for (int upper = level - 1; upper >= 1; upper--) {
+      long upperSpan = span(upper);
+      Set<Entry<K, V>> bucket = wheels.get(upper)
+          .get((int) ((currentTick / upperSpan) % wheelSize));
+      if (bucket.isEmpty()) {
+        continue;
+      }
+      List<Entry<K, V>> cascading = new ArrayList<>(bucket);
+      bucket.clear();
+      for (Entry<K, V> entry : cascading) {
+        place(entry, expired);
+      }
+    }
+  }
+
+  private void expire(List<Set<Entry<K, V>>> wheel, int slot, List<V> expired) {
+    Set<Entry<K, V>> bucket = wheel.get(slot);
+    if (bucket.isEmpty()) {
+      return;
+    }
+    for (Entry<K, V> entry : bucket) {
+      entries.remove(entry.key);
+      entry.bucket = null;
+      expired.add(entry.value);
+    }
+    bucket.clear();
+  }
+
+  /**
+   * Put the entry in the lowest wheel whose span covers its remaining ticks. An entry due by the
+   * current tick expires right away when advancing, else on the next advance.
+   */
+  private void place(Entry<K, V> entry, List<V> expired) {
+    long remaining = entry.deadlineTick - currentTick;
+    if (remaining <= 0) {
+      if (expired != null) {
+        entries.remove(entry.key);
+        entry.bucket = null;
+        expired.add(entry.value);
+        return;
+      }
+      // due already: the next tick expires it
+      remaining = 1;
+    }
+    int level = 0;
+    long span = 1;
+    while (remaining >= span * wheelSize) {
+      span *= wheelSize;
+      level++;
+    }
+    while (wheels.size() <= level) {
+      List<Set<Entry<K, V>>> wheel = new ArrayList<>(wheelSize);
+      for (int slot = 0; slot < wheelSize; slot++) {
+        wheel.add(new LinkedHashSet<>());
+      }
+      wheels.add(wheel);
+    }
+    long tick = Math.max(entry.deadlineTick, currentTick + 1);
+    entry.bucket = wheels.get(level).get((int) ((tick / span) % wheelSize));
+    entry.bucket.add(entry);
+  }
+
+  private long span(int level) {
+    long span = 1;
+    for (int index = 0; index < level; index++) {
+      span *= wheelSize;
+    }
+    return span;
+  }
+
+  private static class Entry<K, V> {
+
+    private final K key;
+    private final V value;
+    private final long deadlineTick;
+    private Set<Entry<K, V>> bucket;
+
+    Entry(K key, V value, long deadlineTick) {
+      this.key = key;
+      this.value = value;
+      this.deadlineTick = deadlineTick;
+    }
+  }
+}
@@ -0,0 +1,122 @@
+package io.github.rscai.microservices.inventory;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.comparesEqualTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+
+import io.github.rscai.microservices.inventory.model.InventoryItem;
+import io.github.rscai.microservices.inventory.model.InventoryItemQuantityChange;
+import io.github.rscai.microservices.inventory.repository.InventoryItemRepository;
+import io.github.rscai.microservices.inventory.service.InventoryItemCache;
+import io.github.rscai.microservices.inventory.service.InventoryItemQuantityChangeService;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Supplier;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * Two in-process instances on a database of their own, finding each other through the simple
+ * discovery client standing in for the Eureka registry.
+ */
+public class CacheInvalidationConfigTest {
+
+  private static final long TIMEOUT_MILLIS = 5000;
+
+  private static ConfigurableApplicationContext first;
+  private static ConfigurableApplicationContext second;
+
+  @BeforeAll
+  public static void startInstances() throws IOException {
+    int firstPort = freePort();
+    int secondPort = freePort();
+    first = start(firstPort, firstPort, secondPort);
+    second = start(secondPort, firstPort, secondPort);
+  }
+
+  @AfterAll
+  public static void stopInstances() {
+    second.close();
+    first.close();
+  }
+
+  @Test
+  public void testChangesOnOneInstanceEvictTheCacheOfTheOther() throws Exception {
+    InventoryItemRepository repository = first.getBean(InventoryItemRepository.class);
+    InventoryItemCache firstCache = first.getBean(InventoryItemCache.class);
+    InventoryItemCache secondCache = second.getBean(InventoryItemCache.class);
+    InventoryItem item = new InventoryItem();
+    item.setProductId("productA");
+    item.setUnitPrice(BigDecimal.valueOf(12.34));
+    item.setQuantity(100);
+    String itemId = repository.save(item).getId();
+    try {
+      assertThat(secondCache.findById(itemId).get().getUnitPrice(),
+          comparesEqualTo(BigDecimal.valueOf(12.34)));
+
+      // as InventoryItemController.update does on the first instance
+      InventoryItem updated = repository.findById(itemId).get();
+      updated.setUnitPrice(BigDecimal.valueOf(56.78));
+      firstCache.evict(repository.save(updated));
+
+      assertThat(eventually(() -> secondCache.findById(itemId).get().getUnitPrice(),
+          BigDecimal.valueOf(56.78)), comparesEqualTo(BigDecimal.valueOf(56.78)));
+
+      first.getBean(InventoryItemQuantityChangeService.class).applyChanges(Collections
+          .singletonList(new InventoryItemQuantityChange("order1-a", itemId, -10, null)));
+
+      assertThat(eventually(() -> secondCache.findById(itemId).get().getQuantity(), 90), is(90));
+      assertThat(first.getBean(MeterRegistry.class).get("inventory.cache.invalidation.messages")
+          .tag("result", "sent").counter().count(), greaterThan(0.0));
+      assertThat(second.getBean(MeterRegistry.class).get("inventory.cache.invalidation.messages")
+          .tag("result", "received").counter().count(), greaterThan(0.0));
+    } finally {
+      repository.deleteAll();
+    }
+  }
+
+  private static <T extends Comparable<T>> T eventually(Supplier<T> read, T expected)
+      throws InterruptedException {
+    long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+    T value = read.get();
+    while (value.compareTo(expected) != 0 && System.currentTimeMillis() < deadline) {
+      Thread.sleep(20);
+      value = read.get();
+    }
+    return value;
+  }
+
+  private static ConfigurableApplicationContext start(int port, int... instancePorts) {
+    List<String> properties = new ArrayList<>();
+    properties.add("server.port=" + port);
+    properties.add("spring.datasource.url=jdbc:h2:mem:inventory-peers;DB_CLOSE_ON_EXIT=FALSE");
+    properties.add("spring.cloud.discovery.enabled=true");
+    properties.add("eureka.client.enabled=false");
+    properties.add("spring.jmx.enabled=false");
+    properties.add("inventory.cache-invalidation.enabled=true");
+    properties.add("inventory.cache-invalidation.token=secret");
+    properties.add("inventory.cache-invalidation.flush-interval=20ms");
+    for (int index = 0; index < instancePorts.length; index++) {
+      properties.add(String.format(
+          "spring.cloud.discovery.client.simple.instances.inventory[%d].uri=http://localhost:%d",
+          index, instancePorts[index]));
+    }
+    return new SpringApplicationBuilder(InventoryApplication.class).profiles("test")
+        .properties(properties.toArray(new String[0])).run();
+  }
+
+  private static int freePort() throws IOException {
+    try (ServerSocket socket = new ServerSocket(0)) {
+      return socket.getLocalPort();
+    }
+  }
+}
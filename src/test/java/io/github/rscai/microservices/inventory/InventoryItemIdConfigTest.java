@@ -0,0 +1,49 @@
+package io.github.rscai.microservices.inventory;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+
+import io.github.rscai.microservices.inventory.model.InventoryItem;
+import io.github.rscai.microservices.inventory.repository.InventoryItemRepository;
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.Date;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+@ActiveProfiles("test")
+@SpringBootTest(properties = "inventory.ids.strategy=time-ordered")
+public class InventoryItemIdConfigTest {
+
+  @Autowired
+  private InventoryItemRepository itemRepository;
+
+  @AfterEach
+  public void tearDown() {
+    itemRepository.deleteAll();
+  }
+
+  @Test
+  public void testNewItemsGetTimeOrderedIds() {
+    String savedId = itemRepository.save(item("productA")).getId();
+    InventoryItem upserted = item("productB");
+    itemRepository.upsertByProductId(Collections.singletonList(upserted), new Date());
+
+    assertThat(savedId.length(), is(32));
+    assertThat(savedId.charAt(12), is('7'));
+    assertThat(upserted.getId().charAt(12), is('7'));
+    assertThat(upserted.getId().compareTo(savedId), greaterThan(0));
+  }
+
+  private static InventoryItem item(String productId) {
+    InventoryItem item = new InventoryItem();
+    item.setProductId(productId);
+    item.setUnitPrice(BigDecimal.valueOf(12.34));
+    item.setQuantity(100);
+    return item;
+  }
+}
@@ -0,0 +1,76 @@
+package io.github.rscai.microservices.inventory;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import io.github.rscai.microservices.inventory.model.InventoryItem;
+import io.github.rscai.microservices.inventory.repository.InventoryItemRepository;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.math.BigDecimal;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+@ActiveProfiles("test")
+@SpringBootTest
+@AutoConfigureMockMvc
+public class MetricsConfigTest {
+
+  private static final String SCOPE_INVENTORY_READ = "SCOPE_inventory.read";
+
+  @Autowired
+  private InventoryItemRepository itemRepository;
+  @Autowired
+  private MeterRegistry meterRegistry;
+  @Autowired
+  private MockMvc mvc;
+
+  @AfterEach
+  public void tearDown() {
+    itemRepository.deleteAll();
+  }
+
+  @Test
+  public void testRepositoryCallsAreTimed() {
+    InventoryItem item = new InventoryItem();
+    item.setProductId("productA");
+    item.setUnitPrice(BigDecimal.valueOf(123.45));
+    item.setQuantity(100);
+    item = itemRepository.save(item);
+    itemRepository.findById(item.getId());
+    itemRepository.findById(item.getId());
+
+    Timer timer = meterRegistry.find("inventory.repository")
+        .tags("component", "InventoryItemRepository", "method", "findById").timer();
+    assertThat(timer, notNullValue());
+    assertThat(timer.count(), greaterThanOrEqualTo(2L));
+  }
+
+  @Test
+  @WithMockUser(username = "inventory_read", authorities = {SCOPE_INVENTORY_READ})
+  public void testStatementsPerRequestAreRecorded() throws Exception {
+    InventoryItem item = new InventoryItem();
+    item.setProductId("productB");
+    item.setUnitPrice(BigDecimal.valueOf(456.78));
+    item.setQuantity(200);
+    item = itemRepository.save(item);
+
+    mvc.perform(get("/inventoryItems/" + item.getId())).andExpect(status().isOk());
+
+    DistributionSummary summary = meterRegistry.find("inventory.request.statements")
+        .tag("uri", "/inventoryItems/{id}").summary();
+    assertThat(summary, notNullValue());
+    assertThat(summary.count(), greaterThanOrEqualTo(1L));
+    assertThat(summary.max(), greaterThanOrEqualTo(1.0));
+  }
+}
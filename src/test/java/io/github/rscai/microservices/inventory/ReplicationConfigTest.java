@@ -0,0 +1,126 @@
+package io.github.rscai.microservices.inventory;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.cookie;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import io.github.rscai.microservices.inventory.model.InventoryItem;
+import io.github.rscai.microservices.inventory.repository.InventoryItemRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.math.BigDecimal;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.RequestPostProcessor;
+
+/**
+ * Replica 0 is unreachable, replica 1 is the test database through a pool of its own, so it has
+ * replayed every write by the next health check.
+ */
+@ActiveProfiles("test")
+@SpringBootTest(properties = {
+    "inventory.replication.enabled=true",
+    "inventory.replication.replicas[0].url=jdbc:h2:tcp://localhost:1/unreachable",
+    "inventory.replication.replicas[0].username=sa",
+    "inventory.replication.replicas[1].url=jdbc:h2:mem:inventory;DB_CLOSE_ON_EXIT=FALSE",
+    "inventory.replication.replicas[1].username=sa",
+    "inventory.replication.max-lag=1m",
+    "inventory.replication.health-check-interval=100ms"})
+@AutoConfigureMockMvc
+public class ReplicationConfigTest {
+
+  private static final String SCOPE_INVENTORY_READ = "SCOPE_inventory.read";
+  private static final String SCOPE_INVENTORY_WRITE = "SCOPE_inventory.write";
+  private static final String WRITTEN_AT = "Inventory-Written-At";
+  private static final long TIMEOUT_MILLIS = 10000;
+  private static final RequestPostProcessor READER = user("reader")
+      .authorities(() -> SCOPE_INVENTORY_READ);
+  private static final RequestPostProcessor WRITER = user("writer")
+      .authorities(() -> SCOPE_INVENTORY_READ, () -> SCOPE_INVENTORY_WRITE);
+
+  @Autowired
+  private InventoryItemRepository itemRepository;
+  @Autowired
+  private MeterRegistry meterRegistry;
+  @Autowired
+  private MockMvc mvc;
+
+  private InventoryItem item;
+
+  @BeforeEach
+  public void setUp() {
+    item = new InventoryItem();
+    item.setProductId("productA");
+    item.setUnitPrice(BigDecimal.valueOf(123.45));
+    item.setQuantity(100);
+    item = itemRepository.save(item);
+  }
+
+  @AfterEach
+  public void tearDown() {
+    itemRepository.deleteAll();
+  }
+
+  @Test
+  public void testReadsGoToReplicaWhichReplayedClientsWrite() throws Exception {
+    // the replica's lag is known after the first health check writing a heartbeat
+    long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+    while (healthyReplicas() < 1 && System.currentTimeMillis() < deadline) {
+      Thread.sleep(20);
+    }
+    assertThat(healthyReplicas(), is(1.0));
+    double replicaConnections = connections("replica");
+    mvc.perform(get("/inventoryItems/search/productIdIn").param("productId", "productA")
+        .with(READER)).andExpect(status().isOk());
+    mvc.perform(get("/inventoryItems/search/productIdIn").param("productId", "productA")
+        .with(READER)).andExpect(status().isOk());
+
+    assertThat(connections("replica"), greaterThan(replicaConnections));
+
+    String writtenAt = mvc.perform(put("/inventoryItems/{id}", item.getId()).with(WRITER)
+        .contentType(MediaType.APPLICATION_JSON)
+        .content("{\"productId\":\"productA\",\"unitPrice\":99.99}"))
+        .andExpect(status().isNoContent())
+        .andExpect(cookie().value(WRITTEN_AT, notNullValue(String.class)))
+        .andReturn().getResponse().getHeader(WRITTEN_AT);
+    replicaConnections = connections("replica");
+    double primaryConnections = connections("primary");
+    // a write no replica has replayed yet
+    mvc.perform(get("/inventoryItems/search/productIdIn").param("productId", "productA")
+        .header(WRITTEN_AT, Long.parseLong(writtenAt) + 60000).with(WRITER))
+        .andExpect(status().isOk());
+
+    assertThat(connections("replica"), is(replicaConnections));
+    assertThat(connections("primary"), greaterThan(primaryConnections));
+
+    deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+    while (connections("replica") == replicaConnections
+        && System.currentTimeMillis() < deadline) {
+      mvc.perform(get("/inventoryItems/search/productIdIn").param("productId", "productA")
+          .header(WRITTEN_AT, writtenAt).with(WRITER)).andExpect(status().isOk());
+      Thread.sleep(20);
+    }
+    assertThat(connections("replica"), greaterThan(replicaConnections));
+  }
+
+  private double healthyReplicas() {
+    return meterRegistry.get("inventory.datasource.replicas.healthy").gauge().value();
+  }
+
+  private double connections(String target) {
+    return meterRegistry.get("inventory.datasource.connections").tag("target", target)
+        .functionCounter().count();
+  }
+}
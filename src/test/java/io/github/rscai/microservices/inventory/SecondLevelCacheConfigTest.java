@@ -0,0 +1,131 @@
+package io.github.rscai.microservices.inventory;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+import io.github.rscai.microservices.inventory.model.InventoryItem;
+import io.github.rscai.microservices.inventory.model.InventoryItemQuantityChange;
+import io.github.rscai.microservices.inventory.repository.InventoryItemRepository;
+import io.github.rscai.microservices.inventory.service.InventoryItemBulkService;
+import io.github.rscai.microservices.inventory.service.InventoryItemQuantityChangeService;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.io.ByteArrayInputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.stream.Collectors;
+import javax.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.context.ActiveProfiles;
+
+/**
+ * The inventory item cache is disabled, so every read reaches the repository.
+ */
+@ActiveProfiles("test")
+@SpringBootTest(properties = {
+    "inventory.second-level-cache.enabled=true",
+    "inventory.cache.maximum-size=0",
+    "inventory.metrics.hibernate-statistics=true"})
+public class SecondLevelCacheConfigTest {
+
+  @Autowired
+  private InventoryItemRepository itemRepository;
+  @Autowired
+  private InventoryItemQuantityChangeService quantityChangeService;
+  @Autowired
+  private InventoryItemBulkService bulkService;
+  @Autowired
+  private EntityManagerFactory entityManagerFactory;
+  @Autowired
+  private MeterRegistry meterRegistry;
+
+  private Statistics statistics;
+  private InventoryItem item;
+
+  @BeforeEach
+  public void setUp() {
+    statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    item = new InventoryItem();
+    item.setProductId("productA");
+    item.setUnitPrice(BigDecimal.valueOf(123.45));
+    item.setQuantity(100);
+    item = itemRepository.save(item);
+    statistics.clear();
+  }
+
+  @AfterEach
+  public void tearDown() {
+    itemRepository.deleteAll();
+  }
+
+  @Test
+  public void testInventoryItemCacheIsNotBuilt() {
+    assertThat(meterRegistry.find("cache.size").tag("cache", "inventoryItems").gauge(),
+        is(nullValue()));
+  }
+
+  @Test
+  public void testItemsAreReadFromSecondLevelCache() {
+    itemRepository.findById(item.getId());
+    itemRepository.findById(item.getId());
+
+    assertThat(statistics.getDomainDataRegionStatistics(InventoryItem.CACHE_REGION)
+        .getHitCount(), greaterThan(0L));
+  }
+
+  @Test
+  public void testProductIdsAreResolvedFromNaturalIdCache() {
+    itemRepository.findByProductId("productA");
+    itemRepository.findByProductId("productA");
+
+    assertThat(statistics.getNaturalIdCacheHitCount(), greaterThan(0L));
+    assertThat(itemRepository.findByProductId("productA").get().getId(), is(item.getId()));
+  }
+
+  @Test
+  public void testProductIdInResultsAreReadFromQueryCache() {
+    itemRepository.findByProductIdIn(Collections.singletonList("productA"), Pageable.unpaged());
+    itemRepository.findByProductIdIn(Collections.singletonList("productA"), Pageable.unpaged());
+
+    assertThat(statistics.getQueryCacheHitCount(), greaterThan(0L));
+  }
+
+  @Test
+  public void testQuantityChangesEvictCachedItem() {
+    assertThat(itemRepository.findById(item.getId()).get().getQuantity(), is(100));
+
+    quantityChangeService.applyChanges(Collections
+        .singletonList(new InventoryItemQuantityChange("order1-a", item.getId(), -10, null)));
+
+    assertThat(itemRepository.findById(item.getId()).get().getQuantity(), is(90));
+    assertThat(itemRepository.findByProductIdIn(Collections.singletonList("productA"),
+        Pageable.unpaged()).getContent().get(0).getQuantity(), is(90));
+  }
+
+  @Test
+  public void testImportedItemsEvictCachedQueryResults() throws Exception {
+    assertThat(itemRepository.findByProductIdIn(Arrays.asList("productA", "productB"),
+        Pageable.unpaged()).getTotalElements(), is(1L));
+    assertThat(itemRepository.findByProductId("productB").isPresent(), is(false));
+
+    bulkService.importItems(new ByteArrayInputStream(
+        "{\"productId\":\"productB\",\"unitPrice\":5.5,\"quantity\":10}\n"
+            .getBytes(StandardCharsets.UTF_8)));
+
+    assertThat(itemRepository.findByProductIdIn(Arrays.asList("productA", "productB"),
+        Pageable.unpaged()).getContent().stream().map(InventoryItem::getProductId)
+        .sorted().collect(Collectors.toList()), contains("productA", "productB"));
+    assertThat(itemRepository.findByProductId("productB").isPresent(), is(true));
+  }
+}
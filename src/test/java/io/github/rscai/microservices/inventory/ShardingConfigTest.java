@@ -0,0 +1,201 @@
+package io.github.rscai.microservices.inventory;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import io.github.rscai.microservices.inventory.model.InventoryItem;
+import io.github.rscai.microservices.inventory.model.InventoryItemQuantityChange;
+import io.github.rscai.microservices.inventory.repository.InventoryItemQuantityChangeRepository;
+import io.github.rscai.microservices.inventory.repository.InventoryItemRepository;
+import io.github.rscai.microservices.inventory.repository.Shards;
+import io.github.rscai.microservices.inventory.service.InventoryItemBulkService;
+import io.github.rscai.microservices.inventory.service.InventoryItemQuantityChangeService;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.web.server.ResponseStatusException;
+
+@ActiveProfiles("test")
+@SpringBootTest(properties = {
+    "inventory.sharding.enabled=true",
+    "inventory.sharding.shards[0].url=jdbc:h2:mem:inventory-shard1;DB_CLOSE_ON_EXIT=FALSE",
+    "inventory.sharding.shards[0].username=sa",
+    "inventory.sharding.shards[1].url=jdbc:h2:mem:inventory-shard2;DB_CLOSE_ON_EXIT=FALSE",
+    "inventory.sharding.shards[1].username=sa"})
+public class ShardingConfigTest {
+
+  private static final int ITEM_COUNT = 12;
+
+  @Autowired
+  private Shards shards;
+  @Autowired
+  private InventoryItemRepository itemRepository;
+  @Autowired
+  private InventoryItemQuantityChangeRepository quantityChangeRepository;
+  @Autowired
+  private InventoryItemQuantityChangeService quantityChangeService;
+  @Autowired
+  private InventoryItemBulkService bulkService;
+
+  private List<InventoryItem> items;
+
+  @BeforeEach
+  public void setUp() {
+    items = new ArrayList<>();
+    for (int i = 0; i < ITEM_COUNT; i++) {
+      InventoryItem item = new InventoryItem();
+      item.setProductId(String.format("product%02d", i));
+      item.setUnitPrice(BigDecimal.valueOf(10.5));
+      item.setQuantity(100);
+      items.add(itemRepository.save(item));
+    }
+  }
+
+  @AfterEach
+  public void tearDown() {
+    itemRepository.deleteAll();
+    quantityChangeRepository.deleteAll();
+  }
+
+  @Test
+  public void testItemsAreStoredOnTheShardOfTheirId() {
+    assertThat(shards.count(), is(3));
+    int usedShards = 0;
+    for (int shard = 0; shard < shards.count(); shard++) {
+      final int current = shard;
+      long expected = items.stream()
+          .filter(item -> shards.shardOf(item.getId()) == current).count();
+      assertThat(shards.on(shard, () -> itemRepository.count()), is(expected));
+      usedShards += expected > 0 ? 1 : 0;
+    }
+    assertThat(usedShards, greaterThan(1));
+    assertThat(itemRepository.count(), is((long) ITEM_COUNT));
+    for (InventoryItem item : items) {
+      assertThat(shards.shardOf(item.getId()), is(shards.shardOfProduct(item.getProductId())));
+      assertThat(itemRepository.findById(item.getId()).isPresent(), is(true));
+      assertThat(itemRepository.findByProductId(item.getProductId()).get().getId(),
+          is(item.getId()));
+    }
+    assertThat(itemRepository.findAllById(
+        items.stream().map(InventoryItem::getId).collect(Collectors.toList())).size(),
+        is(ITEM_COUNT));
+  }
+
+  @Test
+  public void testProductIdsAreUniqueAcrossShards() {
+    InventoryItem duplicate = new InventoryItem();
+    duplicate.setProductId(items.get(0).getProductId());
+    duplicate.setUnitPrice(BigDecimal.valueOf(10.5));
+    duplicate.setQuantity(100);
+
+    assertThrows(DataIntegrityViolationException.class, () -> itemRepository.save(duplicate));
+  }
+
+  @Test
+  public void testRejectedBatchReportsChangesAppliedOnOtherShards() {
+    Comparator<InventoryItem> byShard = Comparator.comparing(item -> shards.shardOf(item.getId()));
+    InventoryItem firstShardItem = Collections.min(items, byShard);
+    // an item id of the last shard in use, but without an item
+    String missingItemId = shards.withShardOf(UUID.randomUUID().toString().replace("-", ""),
+        Collections.max(items, byShard).getProductId());
+    List<InventoryItemQuantityChange> changes = Arrays.asList(
+        new InventoryItemQuantityChange("order1-a", firstShardItem.getId(), -10, null),
+        new InventoryItemQuantityChange("order1-b", missingItemId, -10, null));
+
+    ResponseStatusException rejection = assertThrows(ResponseStatusException.class,
+        () -> quantityChangeService.applyChanges(changes));
+
+    assertThat(rejection.getStatus(), is(HttpStatus.CONFLICT));
+    assertThat(rejection.getReason(), containsString("order1-a"));
+    assertThat(itemRepository.findById(firstShardItem.getId()).get().getQuantity(), is(90));
+    // a retry without the rejected change does not apply the committed one again
+    quantityChangeService.applyChanges(changes.subList(0, 1));
+    assertThat(itemRepository.findById(firstShardItem.getId()).get().getQuantity(), is(90));
+  }
+
+  @Test
+  public void testApplyChangesAcrossShards() {
+    List<InventoryItemQuantityChange> changes = new ArrayList<>();
+    for (InventoryItem item : items) {
+      changes.add(new InventoryItemQuantityChange("order1-" + item.getProductId(), item.getId(),
+          -10, null));
+    }
+    quantityChangeService.applyChanges(changes);
+    quantityChangeService.applyChanges(changes);
+
+    for (InventoryItem item : items) {
+      assertThat(itemRepository.findById(item.getId()).get().getQuantity(), is(90));
+      String changeId = "order1-" + item.getProductId();
+      assertThat(shards.on(shards.shardOf(item.getId()), () -> quantityChangeRepository
+          .findExistingIds(Collections.singletonList(changeId))), contains(changeId));
+    }
+  }
+
+  @Test
+  public void testBulkImportUpsertsOnTheShardOfEachProduct() throws IOException {
+    StringBuilder lines = new StringBuilder();
+    List<String> productIds = new ArrayList<>();
+    for (int i = 0; i < ITEM_COUNT * 2; i++) {
+      // half of them existing, half new
+      String productId = String.format("product%02d", i);
+      productIds.add(productId);
+      lines.append(String.format("{\"productId\":\"%s\",\"quantity\":7,\"unitPrice\":1.5}\n",
+          productId));
+    }
+
+    long imported = bulkService.importItems(
+        new ByteArrayInputStream(lines.toString().getBytes(StandardCharsets.UTF_8)));
+
+    assertThat(imported, is((long) ITEM_COUNT * 2));
+    assertThat(itemRepository.count(), is((long) ITEM_COUNT * 2));
+    for (String productId : productIds) {
+      InventoryItem item = itemRepository.findByProductId(productId).get();
+      assertThat(shards.shardOf(item.getId()), is(shards.shardOfProduct(productId)));
+      assertThat(item.getQuantity(), is(7));
+    }
+    for (InventoryItem item : items) {
+      assertThat(itemRepository.findByProductId(item.getProductId()).get().getId(),
+          is(item.getId()));
+    }
+  }
+
+  @Test
+  public void testPagesMergeAllShards() {
+    List<String> productIds = Arrays.asList("product01", "product02", "product03", "product05",
+        "product08", "product13");
+
+    Page<InventoryItem> page = itemRepository
+        .findByProductIdIn(productIds, PageRequest.of(1, 2, Sort.by("productId").descending()));
+
+    assertThat(page.getTotalElements(), is(5L));
+    assertThat(page.getContent().stream().map(InventoryItem::getProductId)
+        .collect(Collectors.toList()), contains("product03", "product02"));
+    List<InventoryItem> firstItems = itemRepository
+        .findByIdGreaterThanOrderByIdAsc("", PageRequest.of(0, 5));
+    assertThat(firstItems.stream().map(InventoryItem::getId).collect(Collectors.toList()),
+        contains(items.stream().map(InventoryItem::getId).sorted().limit(5).toArray()));
+  }
+}
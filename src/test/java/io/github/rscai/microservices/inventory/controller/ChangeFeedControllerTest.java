@@ -0,0 +1,217 @@
+package io.github.rscai.microservices.inventory.controller;
+
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.springframework.restdocs.mockmvc.MockMvcRestDocumentation.document;
+import static org.springframework.restdocs.mockmvc.RestDocumentationRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.github.rscai.microservices.inventory.RestDocsMockMvcConfiguration;
+import io.github.rscai.microservices.inventory.model.InventoryItem;
+import io.github.rscai.microservices.inventory.model.InventoryItemQuantityChange;
+import io.github.rscai.microservices.inventory.repository.InventoryItemQuantityChangeRepository;
+import io.github.rscai.microservices.inventory.repository.InventoryItemRepository;
+import io.github.rscai.microservices.inventory.repository.InventoryItemTombstoneRepository;
+import io.github.rscai.microservices.inventory.service.InventoryItemQuantityChangeService;
+import java.math.BigDecimal;
+import java.net.URI;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.concurrent.CountDownLatch;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.restdocs.AutoConfigureRestDocs;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
+import org.springframework.context.annotation.Import;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.ResultActions;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+@ActiveProfiles("test")
+@Import(RestDocsMockMvcConfiguration.class)
+@SpringBootTest(webEnvironment = WebEnvironment.RANDOM_PORT, properties = {
+    "inventory.feed.max-wait=1s",
+    "inventory.feed.poll-interval=50ms", "inventory.feed.max-waiting-polls=1"})
+@AutoConfigureMockMvc
+@AutoConfigureRestDocs
+public class ChangeFeedControllerTest {
+
+  private static final String APPLICATION_HAL = "application/hal+json";
+  private static final String SCOPE_INVENTORY_READ = "SCOPE_inventory.read";
+
+  @Autowired
+  private MockMvc mvc;
+  @Autowired
+  private ObjectMapper objectMapper;
+  @Autowired
+  private InventoryItemRepository itemRepository;
+  @Autowired
+  private InventoryItemQuantityChangeRepository quantityChangeRepository;
+  @Autowired
+  private InventoryItemTombstoneRepository tombstoneRepository;
+  @Autowired
+  private InventoryItemQuantityChangeService quantityChangeService;
+  @Autowired
+  private PlatformTransactionManager transactionManager;
+
+  private String itemIdA;
+  private String itemIdB;
+
+  @BeforeEach
+  public void setUp() {
+    itemIdA = createItem("productA", 100);
+    itemIdB = createItem("productB", 200);
+    createItem("productC", 300);
+  }
+
+  @AfterEach
+  public void tearDown() {
+    itemRepository.deleteAll();
+    quantityChangeRepository.deleteAll();
+    tombstoneRepository.deleteAll();
+  }
+
+  @Test
+  @WithMockUser(username = "inventory_read", authorities = {SCOPE_INVENTORY_READ})
+  public void testQuantityChangeFeed() throws Exception {
+    quantityChangeService.applyChanges(Arrays.asList(
+        new InventoryItemQuantityChange("order1-a", itemIdA, -10, null),
+        new InventoryItemQuantityChange("order1-b", itemIdB, -20, null)));
+
+    String firstPage = poll(
+        get("/inventoryItemQuantityChanges/feed?after={after}&size={size}", 0, 10))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$._embedded.inventoryItemQuantityChanges", hasSize(2)))
+        .andExpect(jsonPath("$._embedded.inventoryItemQuantityChanges[0].id", is("order1-a")))
+        .andExpect(jsonPath("$._embedded.inventoryItemQuantityChanges[1].id", is("order1-b")))
+        .andExpect(jsonPath("$._links.next.href", notNullValue()))
+        .andDo(document("inventoryItemQuantityChange/feed"))
+        .andReturn().getResponse().getContentAsString();
+
+    // nothing new: the poll waits, and holds the only permit while waiting
+    MvcResult waiting = mvc.perform(get(nextOf(firstPage)).accept(APPLICATION_HAL))
+        .andExpect(request().asyncStarted()).andReturn();
+    mvc.perform(get("/inventoryItemQuantityChanges/feed").accept(APPLICATION_HAL))
+        .andExpect(status().isServiceUnavailable());
+    String emptyPage = mvc.perform(asyncDispatch(waiting))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$._embedded").doesNotExist())
+        .andReturn().getResponse().getContentAsString();
+
+    quantityChangeService.applyChanges(Arrays.asList(
+        new InventoryItemQuantityChange("order2-a", itemIdA, 5, null)));
+
+    poll(get(nextOf(emptyPage)))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$._embedded.inventoryItemQuantityChanges", hasSize(1)))
+        .andExpect(jsonPath("$._embedded.inventoryItemQuantityChanges[0].id", is("order2-a")));
+  }
+
+  @Test
+  @WithMockUser(username = "inventory_read", authorities = {SCOPE_INVENTORY_READ})
+  public void testQuantityChangeCommittedLateIsNotSkipped() throws Exception {
+    CountDownLatch inserted = new CountDownLatch(1);
+    CountDownLatch commit = new CountDownLatch(1);
+    // inserts the lower sequence number, but commits after a later change has been served
+    Thread slowWriter = new Thread(() -> new TransactionTemplate(transactionManager)
+        .execute(status -> {
+          quantityChangeRepository.insertAll(Collections.singletonList(
+              new InventoryItemQuantityChange("slow-a", itemIdA, -1, new Date())));
+          inserted.countDown();
+          try {
+            commit.await();
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+          return null;
+        }));
+    slowWriter.start();
+    inserted.await();
+    quantityChangeService.applyChanges(Collections.singletonList(
+        new InventoryItemQuantityChange("fast-b", itemIdB, -1, null)));
+
+    String firstPage = poll(get("/inventoryItemQuantityChanges/feed"))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$._embedded.inventoryItemQuantityChanges", hasSize(1)))
+        .andExpect(jsonPath("$._embedded.inventoryItemQuantityChanges[0].id", is("fast-b")))
+        .andReturn().getResponse().getContentAsString();
+    commit.countDown();
+    slowWriter.join();
+
+    poll(get(nextOf(firstPage)))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$._embedded.inventoryItemQuantityChanges", hasSize(1)))
+        .andExpect(jsonPath("$._embedded.inventoryItemQuantityChanges[0].id", is("slow-a")));
+  }
+
+  @Test
+  @WithMockUser(username = "inventory_read", authorities = {SCOPE_INVENTORY_READ})
+  public void testItemFeed() throws Exception {
+    String firstPage = poll(get("/inventoryItems/feed?size={size}", 2))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$._embedded.inventoryItems", hasSize(2)))
+        .andDo(document("inventoryItem/feed"))
+        .andReturn().getResponse().getContentAsString();
+
+    String secondPage = poll(get(nextOf(firstPage)))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$._embedded.inventoryItems", hasSize(1)))
+        .andReturn().getResponse().getContentAsString();
+
+    quantityChangeService.applyChanges(Arrays.asList(
+        new InventoryItemQuantityChange("order1-a", itemIdA, -10, null)));
+
+    String thirdPage = poll(get(nextOf(secondPage)))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$._embedded.inventoryItems", hasSize(1)))
+        .andExpect(jsonPath("$._embedded.inventoryItems[0].id", is(itemIdA)))
+        .andExpect(jsonPath("$._embedded.inventoryItems[0].quantity", is(90)))
+        .andReturn().getResponse().getContentAsString();
+
+    itemRepository.deleteWithTombstone(itemRepository.findById(itemIdB).get(), new Date());
+
+    poll(get(nextOf(thirdPage)))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$._embedded.inventoryItems").doesNotExist())
+        .andExpect(jsonPath("$._embedded.inventoryItemTombstones", hasSize(1)))
+        .andExpect(jsonPath("$._embedded.inventoryItemTombstones[0].id", is(itemIdB)))
+        .andExpect(jsonPath("$._embedded.inventoryItemTombstones[0].productId", is("productB")));
+
+    mvc.perform(get("/inventoryItems/feed?cursor={cursor}", "not base64!")
+        .accept(APPLICATION_HAL))
+        .andExpect(status().isBadRequest());
+  }
+
+  private ResultActions poll(MockHttpServletRequestBuilder builder) throws Exception {
+    MvcResult result = mvc.perform(builder.accept(APPLICATION_HAL))
+        .andExpect(request().asyncStarted()).andReturn();
+    return mvc.perform(asyncDispatch(result));
+  }
+
+  private URI nextOf(String page) throws Exception {
+    return URI.create(objectMapper.readTree(page).at("/_links/next/href").asText());
+  }
+
+  private String createItem(String productId, int quantity) {
+    InventoryItem item = new InventoryItem();
+    item.setProductId(productId);
+    item.setUnitPrice(BigDecimal.valueOf(123.45));
+    item.setQuantity(quantity);
+    return itemRepository.save(item).getId();
+  }
+}
@@ -0,0 +1,99 @@
+package io.github.rscai.microservices.inventory.controller;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.springframework.restdocs.mockmvc.MockMvcRestDocumentation.document;
+import static org.springframework.restdocs.mockmvc.RestDocumentationRequestBuilders.get;
+import static org.springframework.restdocs.mockmvc.RestDocumentationRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import io.github.rscai.microservices.inventory.RestDocsMockMvcConfiguration;
+import io.github.rscai.microservices.inventory.model.InventoryItem;
+import io.github.rscai.microservices.inventory.repository.InventoryItemRepository;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.restdocs.AutoConfigureRestDocs;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
+import org.springframework.context.annotation.Import;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+@ActiveProfiles("test")
+@Import(RestDocsMockMvcConfiguration.class)
+@SpringBootTest(webEnvironment = WebEnvironment.RANDOM_PORT)
+@AutoConfigureMockMvc
+@AutoConfigureRestDocs
+public class InventoryItemBulkControllerTest {
+
+  private static final String ENDPOINT = "/inventoryItems/bulk";
+  private static final String APPLICATION_NDJSON = "application/x-ndjson";
+  private static final String SCOPE_INVENTORY_READ = "SCOPE_inventory.read";
+  private static final String SCOPE_INVENTORY_WRITE = "SCOPE_inventory.write";
+
+  @Autowired
+  private InventoryItemRepository inventoryItemRepository;
+  @Autowired
+  private MockMvc mvc;
+
+  @AfterEach
+  public void tearDown() {
+    inventoryItemRepository.deleteAll();
+  }
+
+  @Test
+  @WithMockUser(username = "inventory_ops", authorities = {SCOPE_INVENTORY_READ,
+      SCOPE_INVENTORY_WRITE})
+  public void testImportAndExport() throws Exception {
+    mvc.perform(post(ENDPOINT).contentType(APPLICATION_NDJSON)
+        .content("{\"productId\":\"productA\",\"quantity\":100,\"unitPrice\":123.45}\n"
+            + "{\"productId\":\"productB\",\"quantity\":200,\"unitPrice\":456.78}\n"))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.imported", is(2)))
+        .andDo(document("inventoryItem/bulkImport"));
+
+    mvc.perform(post(ENDPOINT).contentType(APPLICATION_NDJSON)
+        .content("{\"productId\":\"productB\",\"quantity\":250,\"unitPrice\":456.78}\n"
+            + "{\"productId\":\"productC\",\"quantity\":300,\"unitPrice\":789.01}\n"))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.imported", is(2)));
+
+    assertThat(inventoryItemRepository.count(), is(3L));
+    assertThat(inventoryItemRepository.findByProductId("productB")
+        .map(InventoryItem::getQuantity).orElse(-1), is(250));
+
+    MvcResult result = mvc.perform(get(ENDPOINT).accept(APPLICATION_NDJSON))
+        .andExpect(request().asyncStarted()).andReturn();
+    String exported = mvc.perform(asyncDispatch(result))
+        .andExpect(status().isOk())
+        .andDo(document("inventoryItem/bulkExport"))
+        .andReturn().getResponse().getContentAsString();
+
+    assertThat(exported.endsWith("\n"), is(true));
+    List<String> lines = Arrays.asList(exported.split("\n"));
+    assertThat(lines, hasSize(3));
+    assertThat(lines.stream().filter(String::isEmpty).count(), is(0L));
+  }
+
+  @Test
+  @WithMockUser(username = "inventory_ops", authorities = {SCOPE_INVENTORY_READ})
+  public void testExportOfNoItemsIsEmpty() throws Exception {
+    MvcResult result = mvc.perform(get(ENDPOINT).accept(APPLICATION_NDJSON))
+        .andExpect(request().asyncStarted()).andReturn();
+    String exported = mvc.perform(asyncDispatch(result))
+        .andExpect(status().isOk())
+        .andReturn().getResponse().getContentAsString();
+
+    assertThat(exported, is(""));
+  }
+}
@@ -1,6 +1,8 @@
 package io.github.rscai.microservices.inventory.controller;
 
 import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.endsWith;
 import static org.hamcrest.Matchers.hasSize;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.notNullValue;
@@ -25,6 +27,9 @@ import io.github.rscai.microservices.inventory.RestDocsMockMvcConfiguration;
 import io.github.rscai.microservices.inventory.model.InventoryItem;
 import io.github.rscai.microservices.inventory.repository.InventoryItemRepository;
 import java.math.BigDecimal;
+import java.net.URI;
+import java.util.List;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
@@ -236,6 +241,120 @@ public class InventoryItemControllerTest {
             pageResponseFields()));
   }
 
+  @Test
+  @WithMockUser(username = "inventory_read", authorities = {SCOPE_INVENTORY_READ})
+  public void testGetByProductId() throws Exception {
+    // a productId of its own, not indexed by the item cache in earlier tests
+    InventoryItem item = new InventoryItem();
+    item.setProductId("P654321");
+    item.setUnitPrice(BigDecimal.valueOf(65.43));
+    item.setQuantity(21);
+    String itemId = inventoryItemRepository.save(item).getId();
+
+    mvc.perform(get(ENDPOINT + "/byProductId/{productId}", "P654321").accept(APPLICATION_HAL))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.id", is(itemId)))
+        .andExpect(jsonPath("$.quantity", is(21)))
+        .andExpect(jsonPath("$._links.self.href", endsWith(ENDPOINT + "/" + itemId)))
+        .andDo(document("inventoryItem/getByProductId", itemLinks(),
+            pathParameters(parameterWithName("productId").description("product's id")),
+            itemResponseField()));
+
+    mvc.perform(get(ENDPOINT + "/byProductId/{productId}", "unknown").accept(APPLICATION_HAL))
+        .andExpect(status().isNotFound());
+  }
+
+  @Test
+  @WithMockUser(username = "inventory_read", authorities = {SCOPE_INVENTORY_READ})
+  public void testLookup() throws Exception {
+    mvc.perform(get(ENDPOINT + "/lookup?id={id1}&id={id2}&id={id3}", itemIdA, itemIdB, "unknown")
+        .accept(MediaType.APPLICATION_JSON))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.items['" + itemIdA + "'].productId", is(PRODUCT_ID_A)))
+        .andExpect(jsonPath("$.items['" + itemIdB + "'].quantity", is(200)))
+        .andExpect(jsonPath("$.missing", contains("unknown")))
+        .andDo(document("inventoryItem/lookup", requestParameters(
+            parameterWithName("id").description("inventory item ids, or productId instead")),
+            lookupResponseFields()));
+
+    // the second lookup resolves indexed productIds from cache
+    for (int i = 0; i < 2; i++) {
+      mvc.perform(get(ENDPOINT + "/lookup?productId={productId1}&productId={productId2}",
+          PRODUCT_ID_B, PRODUCT_ID_C).accept(MediaType.APPLICATION_JSON))
+          .andExpect(status().isOk())
+          .andExpect(jsonPath("$.items['" + PRODUCT_ID_B + "'].id", is(itemIdB)))
+          .andExpect(jsonPath("$.items['" + PRODUCT_ID_C + "'].id", is(itemIdC)))
+          .andExpect(jsonPath("$.missing", hasSize(0)));
+    }
+
+    mvc.perform(get(ENDPOINT + "/lookup").accept(MediaType.APPLICATION_JSON))
+        .andExpect(status().isBadRequest());
+  }
+
+  @Test
+  @WithMockUser(username = "inventory_read", authorities = {SCOPE_INVENTORY_READ})
+  public void testListByCursor() throws Exception {
+    List<String> ids = Stream.of(itemIdA, itemIdB, itemIdC).sorted().collect(Collectors.toList());
+
+    String firstPage = mvc.perform(get(ENDPOINT + "?size={size}", 2).accept(APPLICATION_HAL))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$._embedded.inventoryItems", hasSize(2)))
+        .andExpect(jsonPath("$._embedded.inventoryItems[0].id", is(ids.get(0))))
+        .andExpect(jsonPath("$._embedded.inventoryItems[1].id", is(ids.get(1))))
+        .andExpect(jsonPath("$._embedded.inventoryItems[0]._links.self.href",
+            endsWith("/inventoryItems/" + ids.get(0))))
+        .andExpect(jsonPath("$._embedded.inventoryItems[1]._links.self.href",
+            endsWith("/inventoryItems/" + ids.get(1))))
+        .andExpect(jsonPath("$._links.next.href", notNullValue()))
+        .andDo(document("inventoryItem/list", cursorRequestParameters(), cursorPageLinks(),
+            cursorPageResponseFields()))
+        .andReturn().getResponse().getContentAsString();
+
+    mvc.perform(get(URI.create(objectMapper.readTree(firstPage).at("/_links/next/href").asText()))
+        .accept(APPLICATION_HAL))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$._embedded.inventoryItems", hasSize(1)))
+        .andExpect(jsonPath("$._embedded.inventoryItems[0].id", is(ids.get(2))))
+        .andExpect(jsonPath("$._links.next").doesNotExist());
+
+    mvc.perform(get(ENDPOINT + "?cursor={cursor}", "not base64!").accept(APPLICATION_HAL))
+        .andExpect(status().isBadRequest());
+  }
+
+  @Test
+  @WithMockUser(username = "inventory_read", authorities = {SCOPE_INVENTORY_READ})
+  public void testSearchByProductIdInByCursor() throws Exception {
+    String lowerId = itemIdA.compareTo(itemIdC) < 0 ? itemIdA : itemIdC;
+    String higherId = itemIdA.compareTo(itemIdC) < 0 ? itemIdC : itemIdA;
+
+    String firstPage = mvc.perform(get(ENDPOINT
+            + "/search/productIdIn?productId={productId1}&productId={productId2}&cursor=&size={size}",
+        PRODUCT_ID_A, PRODUCT_ID_C, 1)
+        .accept(APPLICATION_HAL))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$._embedded.inventoryItems", hasSize(1)))
+        .andExpect(jsonPath("$._embedded.inventoryItems[0].id", is(lowerId)))
+        .andDo(document("inventory/search/productIdByCursor", cursorRequestParameters(
+            parameterWithName("productId").description("product's unique identifier")),
+            cursorPageLinks(), cursorPageResponseFields()))
+        .andReturn().getResponse().getContentAsString();
+
+    mvc.perform(get(URI.create(objectMapper.readTree(firstPage).at("/_links/next/href").asText()))
+        .accept(APPLICATION_HAL))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$._embedded.inventoryItems", hasSize(1)))
+        .andExpect(jsonPath("$._embedded.inventoryItems[0].id", is(higherId)))
+        .andExpect(jsonPath("$._links.next").doesNotExist());
+  }
+
+  private static RequestParametersSnippet cursorRequestParameters(
+      ParameterDescriptor... descriptors) {
+    return requestParameters(parameterWithName("cursor").optional()
+            .description("opaque token from the next link; empty for the first page"),
+        parameterWithName("size").optional().description("page size, 20 by default"))
+        .and(descriptors);
+  }
+
   private static RequestParametersSnippet pageRequestParameters(
       ParameterDescriptor... descriptors) {
     return requestParameters(parameterWithName("page").description("0-based page index"),
@@ -252,6 +371,8 @@ public class InventoryItemControllerTest {
     return PayloadDocumentation.requestFields(fieldWithPath("id").ignored(),
         fieldWithPath("productId").type(JsonFieldType.STRING).description("product's id"),
         fieldWithPath("quantity").type(JsonFieldType.NUMBER).description("inventory quantity"),
+        fieldWithPath("reservedQuantity").ignored(),
+        fieldWithPath("availableQuantity").ignored(),
         fieldWithPath("unitPrice").type(JsonFieldType.NUMBER).description("unit price"),
         fieldWithPath("createdAt").type("Date").description("the timestamp when record created")
             .optional(),
@@ -264,6 +385,10 @@ public class InventoryItemControllerTest {
         fieldWithPath("id").optional().type(JsonFieldType.STRING).description("unique identifier"),
         fieldWithPath("productId").type(JsonFieldType.STRING).description("product's id"),
         fieldWithPath("quantity").type(JsonFieldType.NUMBER).description("inventory quantity"),
+        fieldWithPath("reservedQuantity").type(JsonFieldType.NUMBER)
+            .description("quantity held by open reservations"),
+        fieldWithPath("availableQuantity").type(JsonFieldType.NUMBER)
+            .description("quantity not held by open reservations"),
         fieldWithPath("unitPrice").type(JsonFieldType.NUMBER).description("unit price"),
         fieldWithPath("createdAt").type("Date").description("the timestamp when record created"),
         fieldWithPath("updatedAt").type("Date").description("the timestamp when record updated"),
@@ -277,6 +402,27 @@ public class InventoryItemControllerTest {
         .and(descriptors);
   }
 
+  private LinksSnippet cursorPageLinks() {
+    return HypermediaDocumentation.links(halLinks(),
+        linkWithRel("self").description("self link"),
+        linkWithRel("next").optional().description("next page, absent on the last page"));
+  }
+
+  private ResponseFieldsSnippet lookupResponseFields() {
+    return PayloadDocumentation
+        .responseFields(subsectionWithPath("items").type(JsonFieldType.OBJECT)
+                .description("found inventory items by requested id or productId"),
+            fieldWithPath("missing").type(JsonFieldType.ARRAY)
+                .description("requested ids or productIds without inventory item"));
+  }
+
+  private ResponseFieldsSnippet cursorPageResponseFields() {
+    return PayloadDocumentation
+        .responseFields(subsectionWithPath("_links").description("links to other resources"),
+            subsectionWithPath("_embedded.inventoryItems").type(JsonFieldType.ARRAY)
+                .description("inventoryItem collection"));
+  }
+
   private ResponseFieldsSnippet pageResponseFields(FieldDescriptor... descriptors) {
     return PayloadDocumentation
         .responseFields(subsectionWithPath("_links").description("links to other resources"),
@@ -0,0 +1,164 @@
+package io.github.rscai.microservices.inventory.controller;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.springframework.restdocs.mockmvc.MockMvcRestDocumentation.document;
+import static org.springframework.restdocs.mockmvc.RestDocumentationRequestBuilders.get;
+import static org.springframework.restdocs.mockmvc.RestDocumentationRequestBuilders.post;
+import static org.springframework.restdocs.payload.PayloadDocumentation.fieldWithPath;
+import static org.springframework.restdocs.payload.PayloadDocumentation.responseFields;
+import static org.springframework.restdocs.payload.PayloadDocumentation.subsectionWithPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.github.rscai.microservices.inventory.RestDocsMockMvcConfiguration;
+import io.github.rscai.microservices.inventory.model.InventoryItem;
+import io.github.rscai.microservices.inventory.model.InventoryItemQuantityChange;
+import io.github.rscai.microservices.inventory.model.InventoryItemQuantityChangeBatch;
+import io.github.rscai.microservices.inventory.model.InventoryItemQuantityChangeBatch.Status;
+import io.github.rscai.microservices.inventory.repository.InventoryItemQuantityChangeRepository;
+import io.github.rscai.microservices.inventory.repository.InventoryItemRepository;
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Date;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.restdocs.AutoConfigureRestDocs;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
+import org.springframework.restdocs.payload.JsonFieldType;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+/**
+ * Not transactional like {@link InventoryItemQuantityChangeControllerTest}: queued batches are
+ * applied by workers, which must see the items of the test.
+ */
+@ActiveProfiles("test")
+@Import(RestDocsMockMvcConfiguration.class)
+@SpringBootTest(webEnvironment = WebEnvironment.RANDOM_PORT, properties = {
+    "inventory.quantity-change-queue.enabled=true",
+    "inventory.quantity-change-queue.directory=build/quantity-change-queue-controller-test"})
+@AutoConfigureMockMvc
+@AutoConfigureRestDocs
+public class InventoryItemQuantityChangeAsyncControllerTest {
+
+  private static final String COLLECTION_ENDPOINT = "/inventoryItemQuantityChanges";
+  private static final String BATCH_ENDPOINT = "/inventoryItemQuantityChanges/batches/{id}";
+  private static final String APPLICATION_HAL = "application/hal+json";
+  private static final String SCOPE_INVENTORY_READ = "SCOPE_inventory.read";
+  private static final String SCOPE_INVENTORY_WRITE = "SCOPE_inventory.write";
+  private static final long TIMEOUT_MILLIS = 10000;
+
+  @Autowired
+  private MockMvc mvc;
+  @Autowired
+  private ObjectMapper objectMapper;
+  @Autowired
+  private InventoryItemRepository itemRepository;
+  @Autowired
+  private InventoryItemQuantityChangeRepository quantityChangeRepository;
+
+  private String itemIdA;
+  private String itemIdB;
+
+  @BeforeEach
+  public void setUp() {
+    itemIdA = createItem("productA", 100);
+    itemIdB = createItem("productB", 200);
+  }
+
+  @AfterEach
+  public void tearDown() {
+    itemRepository.deleteAll();
+    quantityChangeRepository.deleteAll();
+  }
+
+  @Test
+  @WithMockUser(username = "inventory_write", authorities = {SCOPE_INVENTORY_READ,
+      SCOPE_INVENTORY_WRITE})
+  public void testCreateQuantityChangeAsync() throws Exception {
+    InventoryItemQuantityChange changeA = new InventoryItemQuantityChange(
+        String.format("inventorytest-order34567-%s", itemIdA), itemIdA, -10, new Date());
+    InventoryItemQuantityChange changeB = new InventoryItemQuantityChange(
+        String.format("inventorytest-order34567-%s", itemIdB), itemIdB, -20, new Date());
+
+    String response = mvc.perform(post(COLLECTION_ENDPOINT).accept(APPLICATION_HAL)
+        .contentType(MediaType.APPLICATION_JSON).header("Prefer", "respond-async")
+        .content(objectMapper.writeValueAsString(Arrays.asList(changeA, changeB, changeB))))
+        .andExpect(status().isAccepted())
+        .andExpect(header().string("Preference-Applied", "respond-async"))
+        .andExpect(header().exists("Location"))
+        .andExpect(jsonPath("$.changes", is(3)))
+        .andDo(document("inventoryItemQuantityChange/createAsync"))
+        .andReturn().getResponse().getContentAsString();
+    String batchId = objectMapper.readValue(response, InventoryItemQuantityChangeBatch.class)
+        .getId();
+
+    long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+    InventoryItemQuantityChangeBatch batch = batch(batchId);
+    while (batch.getStatus() == Status.QUEUED && System.currentTimeMillis() < deadline) {
+      Thread.sleep(20);
+      batch = batch(batchId);
+    }
+    assertThat(batch.getStatus(), is(Status.COMPLETED));
+    assertThat(batch.getApplied(), is(2));
+    assertThat(batch.getDuplicates(), is(1));
+    mvc.perform(get(BATCH_ENDPOINT, batchId).accept(APPLICATION_HAL))
+        .andExpect(status().isOk())
+        .andDo(document("inventoryItemQuantityChange/batch", responseFields(
+            fieldWithPath("id").type(JsonFieldType.STRING).description("batch id"),
+            fieldWithPath("status").type(JsonFieldType.STRING)
+                .description("QUEUED, COMPLETED or FAILED"),
+            fieldWithPath("acceptedAt").type("Date").description("when the batch was queued"),
+            fieldWithPath("completedAt").type("Date").optional()
+                .description("when the last change was processed"),
+            fieldWithPath("changes").type(JsonFieldType.NUMBER).description("submitted changes"),
+            fieldWithPath("applied").type(JsonFieldType.NUMBER)
+                .description("changes applied by this batch"),
+            fieldWithPath("duplicates").type(JsonFieldType.NUMBER)
+                .description("changes processed before or repeated in the batch"),
+            fieldWithPath("failed").type(JsonFieldType.NUMBER)
+                .description("changes that could not be applied"),
+            fieldWithPath("failure").type(JsonFieldType.STRING).optional()
+                .description("reason of the first failure"),
+            subsectionWithPath("_links").description("links to other resources"))));
+
+    assertThat(quantityOf(itemIdA), is(90));
+    assertThat(quantityOf(itemIdB), is(180));
+  }
+
+  @Test
+  @WithMockUser(username = "inventory_read", authorities = {SCOPE_INVENTORY_READ})
+  public void testUnknownBatchIsNotFound() throws Exception {
+    mvc.perform(get(BATCH_ENDPOINT, "unknown").accept(APPLICATION_HAL))
+        .andExpect(status().isNotFound());
+  }
+
+  private InventoryItemQuantityChangeBatch batch(String batchId) throws Exception {
+    return objectMapper.readValue(mvc.perform(get(BATCH_ENDPOINT, batchId).accept(APPLICATION_HAL))
+        .andExpect(status().isOk()).andReturn().getResponse().getContentAsString(),
+        InventoryItemQuantityChangeBatch.class);
+  }
+
+  private String createItem(String productId, int quantity) {
+    InventoryItem item = new InventoryItem();
+    item.setProductId(productId);
+    item.setUnitPrice(BigDecimal.valueOf(123.45));
+    item.setQuantity(quantity);
+    return itemRepository.save(item).getId();
+  }
+
+  private int quantityOf(String itemId) {
+    return itemRepository.findById(itemId)
+        .orElseThrow(() -> new AssertionError("inventoryItem not found")).getQuantity();
+  }
+}
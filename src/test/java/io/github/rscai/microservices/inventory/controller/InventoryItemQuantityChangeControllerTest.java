@@ -1,20 +1,32 @@
 package io.github.rscai.microservices.inventory.controller;
 
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.endsWith;
 import static org.hamcrest.Matchers.is;
 import static org.springframework.restdocs.mockmvc.MockMvcRestDocumentation.document;
 import static org.springframework.restdocs.mockmvc.RestDocumentationRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
 import io.github.rscai.microservices.inventory.RestDocsMockMvcConfiguration;
 import io.github.rscai.microservices.inventory.model.InventoryItem;
 import io.github.rscai.microservices.inventory.model.InventoryItemQuantityChange;
+import io.github.rscai.microservices.inventory.model.InventoryItemQuantityChangeAck;
+import io.github.rscai.microservices.inventory.model.InventoryItemQuantityChangeAck.Status;
 import io.github.rscai.microservices.inventory.repository.InventoryItemQuantityChangeRepository;
 import io.github.rscai.microservices.inventory.repository.InventoryItemRepository;
+import io.github.rscai.microservices.inventory.service.InventoryItemCache;
 import java.math.BigDecimal;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
+import java.util.List;
 import javax.transaction.Transactional;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
@@ -54,6 +66,8 @@ public class InventoryItemQuantityChangeControllerTest {
   private InventoryItemRepository itemRepository;
   @Autowired
   private InventoryItemQuantityChangeRepository quantityChangeRepository;
+  @Autowired
+  private InventoryItemCache inventoryItemCache;
 
   private String itemIdA;
   private String itemIdB;
@@ -136,4 +150,125 @@ public class InventoryItemQuantityChangeControllerTest {
             .orElseThrow(() -> new AssertionError("inventoryItem not found")).getQuantity(),
         is(270));
   }
+
+  @Test
+  @WithMockUser(username = "inventory_read", authorities = {SCOPE_INVENTORY_READ,
+      SCOPE_INVENTORY_WRITE})
+  public void testCreateQuantityChangeWithMinimalReturn() throws Exception {
+    ObjectMapper cborMapper = new ObjectMapper(new CBORFactory());
+    InventoryItemQuantityChange changeA = new InventoryItemQuantityChange(
+        String.format("inventorytest-order23456-%s", itemIdA), itemIdA, -10, new Date());
+    InventoryItemQuantityChange changeB = new InventoryItemQuantityChange(
+        String.format("inventorytest-order23456-%s", itemIdB), itemIdB, -20, new Date());
+
+    mvc.perform(post(COLLECTION_ENDPOINT).accept(MediaType.APPLICATION_JSON)
+        .contentType(MediaType.APPLICATION_JSON).header("Prefer", "return=minimal")
+        .content(objectMapper.writeValueAsString(Collections.singletonList(changeA))))
+        .andExpect(status().isCreated())
+        .andExpect(jsonPath("$[0].id", is(changeA.getId())))
+        .andExpect(jsonPath("$[0].status", is("APPLIED")))
+        .andDo(document("inventoryItemQuantityChange/createMinimal"));
+
+    byte[] response = mvc.perform(post(COLLECTION_ENDPOINT).accept(MediaType.APPLICATION_CBOR)
+        .contentType(MediaType.APPLICATION_CBOR).header("Prefer", "return=minimal")
+        .content(cborMapper.writeValueAsBytes(Arrays.asList(changeA, changeB, changeB))))
+        .andExpect(status().isCreated())
+        .andExpect(header().string("Preference-Applied", "return=minimal"))
+        .andReturn().getResponse().getContentAsByteArray();
+
+    List<InventoryItemQuantityChangeAck> acks = cborMapper.readValue(response,
+        new TypeReference<List<InventoryItemQuantityChangeAck>>() {
+        });
+    assertThat(acks, contains(
+        new InventoryItemQuantityChangeAck(changeA.getId(), Status.DUPLICATE),
+        new InventoryItemQuantityChangeAck(changeB.getId(), Status.APPLIED),
+        new InventoryItemQuantityChangeAck(changeB.getId(), Status.DUPLICATE)));
+    assertThat(
+        itemRepository.findById(itemIdA)
+            .orElseThrow(() -> new AssertionError("inventoryItem not found")).getQuantity(),
+        is(90));
+    assertThat(
+        itemRepository.findById(itemIdB)
+            .orElseThrow(() -> new AssertionError("inventoryItem not found")).getQuantity(),
+        is(180));
+  }
+
+  @Test
+  @WithMockUser(username = "inventory_write", authorities = {SCOPE_INVENTORY_READ,
+      SCOPE_INVENTORY_WRITE})
+  public void testCreateQuantityChangeInCborRendersHalLinks() throws Exception {
+    ObjectMapper cborMapper = new ObjectMapper(new CBORFactory());
+    InventoryItemQuantityChange change = new InventoryItemQuantityChange(
+        String.format("inventorytest-order34567-%s", itemIdA), itemIdA, -10, new Date());
+
+    byte[] response = mvc.perform(post(COLLECTION_ENDPOINT).accept(MediaType.APPLICATION_CBOR)
+        .contentType(MediaType.APPLICATION_CBOR)
+        .content(cborMapper.writeValueAsBytes(Collections.singletonList(change))))
+        .andExpect(status().isCreated())
+        .andReturn().getResponse().getContentAsByteArray();
+
+    JsonNode created = cborMapper.readTree(response).get(0);
+    assertThat(created.get("id").asText(), is(change.getId()));
+    assertThat(created.has("links"), is(false));
+    assertThat(created.path("_links").path("self").path("href").asText(),
+        endsWith(COLLECTION_ENDPOINT + "/" + change.getId()));
+  }
+
+  @Test
+  @WithMockUser(username = "inventory_write", authorities = {SCOPE_INVENTORY_READ,
+      SCOPE_INVENTORY_WRITE})
+  public void testCreateQuantityChangeByProductId() throws Exception {
+    // a productId of its own, not indexed by the item cache in earlier tests
+    InventoryItem item = new InventoryItem();
+    item.setProductId("P654321");
+    item.setUnitPrice(BigDecimal.valueOf(65.43));
+    item.setQuantity(21);
+    String itemId = itemRepository.save(item).getId();
+    InventoryItemQuantityChange change = new InventoryItemQuantityChange(
+        "inventorytest-order12345-P654321", null, -1, null);
+
+    mvc.perform(post(COLLECTION_ENDPOINT + "/byProductId/{productId}", "P654321")
+        .accept(APPLICATION_HAL).contentType(MediaType.APPLICATION_JSON)
+        .content(objectMapper.writeValueAsString(change)))
+        .andExpect(status().isCreated())
+        .andExpect(jsonPath("$.inventoryItemId", is(itemId)))
+        .andDo(document("inventoryItemQuantityChange/createByProductId"));
+
+    assertThat(itemRepository.findById(itemId)
+        .orElseThrow(() -> new AssertionError("inventoryItem not found")).getQuantity(), is(20));
+    mvc.perform(post(COLLECTION_ENDPOINT + "/byProductId/{productId}", "unknown")
+        .accept(APPLICATION_HAL).contentType(MediaType.APPLICATION_JSON)
+        .content(objectMapper.writeValueAsString(change)))
+        .andExpect(status().isNotFound());
+  }
+
+  @Test
+  @WithMockUser(username = "inventory_write", authorities = {SCOPE_INVENTORY_READ,
+      SCOPE_INVENTORY_WRITE})
+  public void testCreateQuantityChangeByProductIdIgnoresStaleCache() throws Exception {
+    InventoryItem replaced = new InventoryItem();
+    replaced.setProductId("P765432");
+    replaced.setUnitPrice(BigDecimal.valueOf(76.54));
+    replaced.setQuantity(32);
+    replaced = itemRepository.save(replaced);
+    inventoryItemCache.findByProductId("P765432");
+    // replaced behind the cache's back, e.g. by another instance
+    itemRepository.delete(replaced);
+    itemRepository.flush();
+    InventoryItem item = new InventoryItem();
+    item.setProductId("P765432");
+    item.setUnitPrice(BigDecimal.valueOf(76.54));
+    item.setQuantity(32);
+    String itemId = itemRepository.save(item).getId();
+
+    mvc.perform(post(COLLECTION_ENDPOINT + "/byProductId/{productId}", "P765432")
+        .accept(APPLICATION_HAL).contentType(MediaType.APPLICATION_JSON)
+        .content(objectMapper.writeValueAsString(new InventoryItemQuantityChange(
+            "inventorytest-order12346-P765432", null, -2, null))))
+        .andExpect(status().isCreated())
+        .andExpect(jsonPath("$.inventoryItemId", is(itemId)));
+
+    assertThat(itemRepository.findById(itemId)
+        .orElseThrow(() -> new AssertionError("inventoryItem not found")).getQuantity(), is(30));
+  }
 }
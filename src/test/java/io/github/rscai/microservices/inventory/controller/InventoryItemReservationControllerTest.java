@@ -0,0 +1,145 @@
+package io.github.rscai.microservices.inventory.controller;
+
+import static org.hamcrest.Matchers.is;
+import static org.springframework.restdocs.mockmvc.MockMvcRestDocumentation.document;
+import static org.springframework.restdocs.mockmvc.RestDocumentationRequestBuilders.get;
+import static org.springframework.restdocs.mockmvc.RestDocumentationRequestBuilders.post;
+import static org.springframework.restdocs.payload.PayloadDocumentation.fieldWithPath;
+import static org.springframework.restdocs.payload.PayloadDocumentation.responseFields;
+import static org.springframework.restdocs.payload.PayloadDocumentation.subsectionWithPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import io.github.rscai.microservices.inventory.RestDocsMockMvcConfiguration;
+import io.github.rscai.microservices.inventory.model.InventoryItem;
+import io.github.rscai.microservices.inventory.repository.InventoryItemQuantityChangeRepository;
+import io.github.rscai.microservices.inventory.repository.InventoryItemRepository;
+import io.github.rscai.microservices.inventory.repository.InventoryItemReservationRepository;
+import java.math.BigDecimal;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.restdocs.AutoConfigureRestDocs;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
+import org.springframework.restdocs.payload.JsonFieldType;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+@ActiveProfiles("test")
+@Import(RestDocsMockMvcConfiguration.class)
+@SpringBootTest(webEnvironment = WebEnvironment.RANDOM_PORT)
+@AutoConfigureMockMvc
+@AutoConfigureRestDocs
+public class InventoryItemReservationControllerTest {
+
+  private static final String COLLECTION_ENDPOINT = "/inventoryItemReservations";
+  private static final String ITEM_ENDPOINT = "/inventoryItems/{id}";
+  private static final String APPLICATION_HAL = "application/hal+json";
+  private static final String SCOPE_INVENTORY_READ = "SCOPE_inventory.read";
+  private static final String SCOPE_INVENTORY_WRITE = "SCOPE_inventory.write";
+
+  @Autowired
+  private MockMvc mvc;
+  @Autowired
+  private InventoryItemRepository itemRepository;
+  @Autowired
+  private InventoryItemReservationRepository reservationRepository;
+  @Autowired
+  private InventoryItemQuantityChangeRepository quantityChangeRepository;
+
+  private String itemId;
+
+  @BeforeEach
+  public void setUp() {
+    InventoryItem item = new InventoryItem();
+    item.setProductId("productA");
+    item.setUnitPrice(BigDecimal.valueOf(123.45));
+    item.setQuantity(100);
+    itemId = itemRepository.save(item).getId();
+  }
+
+  @AfterEach
+  public void tearDown() {
+    reservationRepository.deleteAll();
+    quantityChangeRepository.deleteAll();
+    itemRepository.deleteAll();
+  }
+
+  @Test
+  @WithMockUser(username = "inventory_write", authorities = {SCOPE_INVENTORY_READ,
+      SCOPE_INVENTORY_WRITE})
+  public void testReserveAndConfirm() throws Exception {
+    mvc.perform(post(COLLECTION_ENDPOINT).accept(APPLICATION_HAL)
+        .contentType(MediaType.APPLICATION_JSON)
+        .content(String.format(
+            "{\"id\":\"cart-4711\",\"inventoryItemId\":\"%s\",\"quantity\":30,\"ttl\":900}",
+            itemId)))
+        .andExpect(status().isCreated())
+        .andExpect(jsonPath("$.status", is("RESERVED")))
+        .andDo(document("inventoryItemReservation/create", responseFields(
+            fieldWithPath("id").type(JsonFieldType.STRING)
+                .description("reservation id chosen by the client"),
+            fieldWithPath("inventoryItemId").type(JsonFieldType.STRING)
+                .description("reserved inventory item"),
+            fieldWithPath("quantity").type(JsonFieldType.NUMBER).description("reserved units"),
+            fieldWithPath("status").type(JsonFieldType.STRING)
+                .description("RESERVED, CONFIRMED, RELEASED or EXPIRED"),
+            fieldWithPath("expiresAt").type("Date")
+                .description("when the units become available again unless confirmed"),
+            fieldWithPath("createdAt").type("Date").description("when the units were reserved"),
+            fieldWithPath("updatedAt").type("Date").description("when the status last changed"),
+            subsectionWithPath("_links").description("links to other resources"))));
+    mvc.perform(get(ITEM_ENDPOINT, itemId).accept(APPLICATION_HAL))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.reservedQuantity", is(30)))
+        .andExpect(jsonPath("$.availableQuantity", is(70)));
+
+    mvc.perform(post(COLLECTION_ENDPOINT + "/{id}/confirm", "cart-4711").accept(APPLICATION_HAL))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.status", is("CONFIRMED")))
+        .andDo(document("inventoryItemReservation/confirm"));
+    mvc.perform(get(ITEM_ENDPOINT, itemId).accept(APPLICATION_HAL))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.quantity", is(70)))
+        .andExpect(jsonPath("$.reservedQuantity", is(0)));
+  }
+
+  @Test
+  @WithMockUser(username = "inventory_write", authorities = {SCOPE_INVENTORY_READ,
+      SCOPE_INVENTORY_WRITE})
+  public void testReserveAndRelease() throws Exception {
+    mvc.perform(post(COLLECTION_ENDPOINT).accept(APPLICATION_HAL)
+        .contentType(MediaType.APPLICATION_JSON)
+        .content(String.format(
+            "{\"id\":\"cart-4712\",\"inventoryItemId\":\"%s\",\"quantity\":30}", itemId)))
+        .andExpect(status().isCreated());
+
+    mvc.perform(post(COLLECTION_ENDPOINT + "/{id}/release", "cart-4712").accept(APPLICATION_HAL))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.status", is("RELEASED")))
+        .andDo(document("inventoryItemReservation/release"));
+    mvc.perform(get(ITEM_ENDPOINT, itemId).accept(APPLICATION_HAL))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.quantity", is(100)))
+        .andExpect(jsonPath("$.availableQuantity", is(100)));
+  }
+
+  @Test
+  @WithMockUser(username = "inventory_write", authorities = {SCOPE_INVENTORY_READ,
+      SCOPE_INVENTORY_WRITE})
+  public void testReservationBeyondAvailableQuantityIsRejected() throws Exception {
+    mvc.perform(post(COLLECTION_ENDPOINT).accept(APPLICATION_HAL)
+        .contentType(MediaType.APPLICATION_JSON)
+        .content(String.format(
+            "{\"id\":\"cart-4713\",\"inventoryItemId\":\"%s\",\"quantity\":101}", itemId)))
+        .andExpect(status().isConflict());
+    mvc.perform(get(COLLECTION_ENDPOINT + "/{id}", "cart-4713").accept(APPLICATION_HAL))
+        .andExpect(status().isNotFound());
+  }
+}
@@ -0,0 +1,55 @@
+package io.github.rscai.microservices.inventory.model;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.startsWith;
+
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+
+public class TimeOrderedIdsTest {
+
+  @Test
+  public void testIdsAreVersion7UuidsOfTheirTime() {
+    TimeOrderedIds ids = new TimeOrderedIds(() -> 0x0123456789abL);
+
+    String id = ids.next();
+
+    assertThat(id.length(), is(32));
+    assertThat(id, startsWith("0123456789ab7000"));
+    UUID uuid = UUID.fromString(id.replaceFirst(
+        "(\\p{XDigit}{8})(\\p{XDigit}{4})(\\p{XDigit}{4})(\\p{XDigit}{4})(\\p{XDigit}+)",
+        "$1-$2-$3-$4-$5"));
+    assertThat(uuid.version(), is(7));
+    assertThat(uuid.variant(), is(2));
+  }
+
+  @Test
+  public void testIdsIncreaseWithinAndAcrossMilliseconds() {
+    AtomicLong clock = new AtomicLong(1000);
+    TimeOrderedIds ids = new TimeOrderedIds(clock::get);
+
+    String previous = ids.next();
+    for (int index = 0; index < 10000; index++) {
+      if (index % 1000 == 0) {
+        clock.incrementAndGet();
+      }
+      String next = ids.next();
+      assertThat(next.compareTo(previous), greaterThan(0));
+      previous = next;
+    }
+  }
+
+  @Test
+  public void testIdsIncreaseWhenClockGoesBack() {
+    AtomicLong clock = new AtomicLong(1000);
+    TimeOrderedIds ids = new TimeOrderedIds(clock::get);
+
+    String previous = ids.next();
+    clock.set(900);
+
+    assertThat(ids.next().compareTo(previous), greaterThan(0));
+  }
+}
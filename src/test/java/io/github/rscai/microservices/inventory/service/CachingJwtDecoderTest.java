@@ -0,0 +1,72 @@
+package io.github.rscai.microservices.inventory.service;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtException;
+
+public class CachingJwtDecoderTest {
+
+  private final AtomicInteger decodes = new AtomicInteger();
+  private CachingJwtDecoder decoder;
+
+  @BeforeEach
+  public void setUp() {
+    decoder = new CachingJwtDecoder(token -> {
+      decodes.incrementAndGet();
+      if (token.startsWith("invalid")) {
+        throw new JwtException("invalid signature");
+      }
+      long lifetime = token.startsWith("expired") ? -1 : 3600;
+      if (token.startsWith("distant")) {
+        // ten thousand years, beyond a long of nanoseconds
+        lifetime = TimeUnit.DAYS.toSeconds(365L * 10_000);
+      }
+      return Jwt.withTokenValue(token).header("alg", "RS256").subject("client")
+          .issuedAt(Instant.now().minusSeconds(60))
+          .expiresAt(Instant.now().plusSeconds(lifetime)).build();
+    }, new JwtCacheProperties(), new SimpleMeterRegistry());
+  }
+
+  @Test
+  public void testValidTokenIsDecodedOnce() {
+    Jwt first = decoder.decode("tokenA");
+    Jwt second = decoder.decode("tokenA");
+    decoder.decode("tokenB");
+
+    assertThat(second, is(first));
+    assertThat(decodes.get(), is(2));
+  }
+
+  @Test
+  public void testRejectedTokenIsNotCached() {
+    assertThrows(JwtException.class, () -> decoder.decode("invalidA"));
+    assertThrows(JwtException.class, () -> decoder.decode("invalidA"));
+
+    assertThat(decodes.get(), is(2));
+  }
+
+  @Test
+  public void testExpiredTokenIsNotCached() {
+    decoder.decode("expiredA");
+    decoder.decode("expiredA");
+
+    assertThat(decodes.get(), is(2));
+  }
+
+  @Test
+  public void testTokenExpiringInTheDistantFutureIsCached() {
+    decoder.decode("distantA");
+    decoder.decode("distantA");
+
+    assertThat(decodes.get(), is(1));
+  }
+}
@@ -0,0 +1,122 @@
+package io.github.rscai.microservices.inventory.service;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+import io.github.rscai.microservices.inventory.repository.InventoryItemRepository;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+/**
+ * Throughput and peak heap of a one million row import and export. Enabled with
+ * INVENTORY_PERF=true; the embedded H2 database lives in the same heap, so peak heap includes the
+ * imported table itself.
+ */
+@ActiveProfiles("test")
+@SpringBootTest
+@EnabledIfEnvironmentVariable(named = "INVENTORY_PERF", matches = "true")
+public class InventoryItemBulkServiceTest {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(InventoryItemBulkServiceTest.class);
+  private static final int ROWS = 1_000_000;
+
+  @Autowired
+  private InventoryItemBulkService bulkService;
+  @Autowired
+  private InventoryItemRepository inventoryItemRepository;
+
+  @AfterEach
+  public void tearDown() {
+    inventoryItemRepository.deleteAllInBatch();
+  }
+
+  @Test
+  public void testMillionRows() throws IOException {
+    resetPeakHeap();
+    long start = System.nanoTime();
+    long imported = bulkService.importItems(new SyntheticItemStream(ROWS));
+    report("import", imported, System.nanoTime() - start);
+    assertThat(imported, is((long) ROWS));
+
+    CountingOutputStream output = new CountingOutputStream();
+    resetPeakHeap();
+    start = System.nanoTime();
+    bulkService.exportItems(output);
+    report("export", output.lines, System.nanoTime() - start);
+    assertThat(output.lines, is((long) ROWS));
+  }
+
+  private static void resetPeakHeap() {
+    System.gc();
+    for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+      pool.resetPeakUsage();
+    }
+  }
+
+  private static void report(String operation, long rows, long elapsedNanos) {
+    long peakHeap = 0;
+    for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+      if (pool.getType() == MemoryType.HEAP) {
+        peakHeap += pool.getPeakUsage().getUsed();
+      }
+    }
+    double seconds = elapsedNanos / (double) TimeUnit.SECONDS.toNanos(1);
+    LOGGER.info("{} {} rows in {} s: {} rows/s, peak heap {} MiB", operation, rows,
+        String.format("%.1f", seconds), Math.round(rows / seconds), peakHeap >> 20);
+  }
+
+  /**
+   * Generates NDJSON lines on the fly, so the input never exists as a whole.
+   */
+  private static class SyntheticItemStream extends InputStream {
+
+    private final int rows;
+    private int row;
+    private byte[] line = new byte[0];
+    private int position;
+
+    SyntheticItemStream(int rows) {
+      this.rows = rows;
+    }
+
+    @Override
+    public int read() {
+      if (position == line.length) {
+        if (row == rows) {
+          return -1;
+        }
+        line = String.format("{\"productId\":\"bulk-%d\",\"quantity\":%d,\"unitPrice\":%d.99}\n",
+            row, row % 1000, row % 100).getBytes(StandardCharsets.UTF_8);
+        position = 0;
+        row++;
+      }
+      return line[position++];
+    }
+  }
+
+  private static class CountingOutputStream extends OutputStream {
+
+    private long lines;
+
+    @Override
+    public void write(int b) {
+      if (b == '\n') {
+        lines++;
+      }
+    }
+  }
+}
@@ -0,0 +1,140 @@
+package io.github.rscai.microservices.inventory.service;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+import io.github.rscai.microservices.inventory.StatementCountingDataSource;
+import io.github.rscai.microservices.inventory.model.InventoryItem;
+import io.github.rscai.microservices.inventory.model.InventoryItemQuantityChange;
+import io.github.rscai.microservices.inventory.repository.InventoryItemQuantityChangeRepository;
+import io.github.rscai.microservices.inventory.repository.InventoryItemRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.test.context.ActiveProfiles;
+
+@ActiveProfiles("test")
+@SpringBootTest
+public class InventoryItemCacheTest {
+
+  @Autowired
+  private InventoryItemCache cache;
+  @Autowired
+  private InventoryItemQuantityChangeService quantityChangeService;
+  @Autowired
+  private InventoryItemRepository itemRepository;
+  @Autowired
+  private InventoryItemQuantityChangeRepository quantityChangeRepository;
+  @Autowired
+  private MeterRegistry meterRegistry;
+
+  private InventoryItem itemA;
+  private InventoryItem itemB;
+
+  @BeforeEach
+  public void setUp() {
+    itemA = new InventoryItem();
+    itemA.setProductId("productA");
+    itemA.setUnitPrice(BigDecimal.valueOf(123.45));
+    itemA.setQuantity(100);
+    itemA = itemRepository.save(itemA);
+
+    itemB = new InventoryItem();
+    itemB.setProductId("productB");
+    itemB.setUnitPrice(BigDecimal.valueOf(456.78));
+    itemB.setQuantity(200);
+    itemB = itemRepository.save(itemB);
+  }
+
+  @AfterEach
+  public void tearDown() {
+    cache.evict(itemA);
+    cache.evict(itemB);
+    itemRepository.deleteAll();
+    quantityChangeRepository.deleteAll();
+  }
+
+  @Test
+  public void testReadThroughAndEvictOnQuantityChange() {
+    double hitsBefore = meterRegistry.get("cache.gets").tag("cache", "inventoryItems")
+        .tag("result", "hit").functionCounter().count();
+
+    StatementCountingDataSource.reset();
+    assertThat(cache.findById(itemA.getId()).map(InventoryItem::getQuantity).orElse(-1), is(100));
+    assertThat(cache.findById(itemA.getId()).map(InventoryItem::getQuantity).orElse(-1), is(100));
+    assertThat(StatementCountingDataSource.executions(), is(1L));
+    assertThat(meterRegistry.get("cache.gets").tag("cache", "inventoryItems").tag("result", "hit")
+        .functionCounter().count(), is(hitsBefore + 1));
+
+    quantityChangeService.applyChanges(Collections.singletonList(
+        new InventoryItemQuantityChange("order1-a", itemA.getId(), -10, null)));
+
+    assertThat(cache.findById(itemA.getId()).map(InventoryItem::getQuantity).orElse(-1), is(90));
+  }
+
+  @Test
+  public void testLoadByProductIdWithOneStatement() {
+    cache.evict(itemA);
+
+    StatementCountingDataSource.reset();
+    assertThat(cache.findByProductId("productA").map(InventoryItem::getId).orElse(null),
+        is(itemA.getId()));
+    assertThat(StatementCountingDataSource.executions(), is(1L));
+    assertThat(cache.findByProductId("productA").map(InventoryItem::getId).orElse(null),
+        is(itemA.getId()));
+    assertThat(StatementCountingDataSource.executions(), is(1L));
+  }
+
+  @Test
+  public void testServeProductIdSearchFromCache() {
+    PageRequest pageable = PageRequest.of(0, 10, Sort.by(Sort.Order.desc("productId")));
+    cache.findByProductIdIn(Arrays.asList("productA", "productB"), pageable);
+    cache.findById(itemA.getId());
+    cache.findById(itemB.getId());
+
+    StatementCountingDataSource.reset();
+    Page<InventoryItem> page = cache
+        .findByProductIdIn(Arrays.asList("productA", "productB"), pageable);
+
+    assertThat(StatementCountingDataSource.executions(), is(0L));
+    assertThat(page.getTotalElements(), is(2L));
+    assertThat(page.getContent().get(0).getProductId(), is("productB"));
+    assertThat(page.getContent().get(1).getProductId(), is("productA"));
+  }
+
+  @Test
+  public void testBulkLoadOverlappingAnEvictionIsNotCached() {
+    AtomicReference<InventoryItemCache> racingCache = new AtomicReference<>();
+    InventoryItemRepository racingRepository = (InventoryItemRepository) Proxy.newProxyInstance(
+        getClass().getClassLoader(), new Class<?>[]{InventoryItemRepository.class},
+        (proxy, method, args) -> {
+          Object result = method.invoke(itemRepository, args);
+          if ("findAllById".equals(method.getName())) {
+            // the item is changed, and evicted, right after being read
+            racingCache.get().evict(itemA);
+          }
+          return result;
+        });
+    racingCache.set(new InventoryItemCache(racingRepository, new InventoryItemCacheProperties(),
+        null, null, new SimpleMeterRegistry()));
+
+    assertThat(racingCache.get().findAllById(Collections.singletonList(itemA.getId())).size(),
+        is(1));
+    StatementCountingDataSource.reset();
+    racingCache.get().findAllById(Collections.singletonList(itemA.getId()));
+
+    assertThat(StatementCountingDataSource.executions(), is(1L));
+  }
+}
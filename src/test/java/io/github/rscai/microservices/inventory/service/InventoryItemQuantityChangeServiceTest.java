@@ -0,0 +1,230 @@
+package io.github.rscai.microservices.inventory.service;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import io.github.rscai.microservices.inventory.StatementCountingDataSource;
+import io.github.rscai.microservices.inventory.model.InventoryItem;
+import io.github.rscai.microservices.inventory.model.InventoryItemQuantityChange;
+import io.github.rscai.microservices.inventory.repository.InventoryItemQuantityChangeRepository;
+import io.github.rscai.microservices.inventory.repository.InventoryItemRepository;
+import io.github.rscai.microservices.inventory.repository.InventoryItemRepositoryCustom.OversellGuard;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.web.server.ResponseStatusException;
+
+@ActiveProfiles("test")
+@SpringBootTest
+public class InventoryItemQuantityChangeServiceTest {
+
+  private static final Logger LOGGER = LoggerFactory
+      .getLogger(InventoryItemQuantityChangeServiceTest.class);
+  private static final int ITEM_COUNT = 10;
+
+  @Autowired
+  private InventoryItemQuantityChangeService quantityChangeService;
+  @Autowired
+  private InventoryItemRepository itemRepository;
+  @Autowired
+  private InventoryItemQuantityChangeRepository quantityChangeRepository;
+  @Autowired
+  private MeterRegistry meterRegistry;
+
+  private List<String> itemIds;
+
+  @BeforeEach
+  public void setUp() {
+    itemIds = new ArrayList<>();
+    for (int i = 0; i < ITEM_COUNT; i++) {
+      InventoryItem item = new InventoryItem();
+      item.setProductId("product" + i);
+      item.setUnitPrice(BigDecimal.valueOf(10.5));
+      item.setQuantity(10000);
+      itemIds.add(itemRepository.save(item).getId());
+    }
+  }
+
+  @AfterEach
+  public void tearDown() {
+    itemRepository.deleteAll();
+    quantityChangeRepository.deleteAll();
+  }
+
+  @Test
+  public void testAggregateDeltasAndSkipProcessedChanges() {
+    String itemId = itemIds.get(0);
+    quantityChangeService.applyChanges(Arrays.asList(
+        new InventoryItemQuantityChange("order1-a", itemId, -10, null),
+        new InventoryItemQuantityChange("order1-b", itemId, -20, null),
+        new InventoryItemQuantityChange("order1-a", itemId, -10, null)));
+
+    assertThat(quantityOf(itemId), is(9970));
+
+    quantityChangeService.applyChanges(Arrays.asList(
+        new InventoryItemQuantityChange("order1-b", itemId, -20, null),
+        new InventoryItemQuantityChange("order2-a", itemId, 5, null)));
+
+    assertThat(quantityOf(itemId), is(9975));
+    assertThat(quantityChangeRepository.count(), is(3L));
+  }
+
+  @Test
+  public void testRejectWholeBatchWhenItemNotFound() {
+    String itemId = itemIds.get(0);
+    assertThrows(ResponseStatusException.class, () -> quantityChangeService.applyChanges(
+        Arrays.asList(
+            new InventoryItemQuantityChange("order1-a", itemId, -10, null),
+            new InventoryItemQuantityChange("order1-b", "not-existed", -20, null))));
+
+    assertThat(quantityOf(itemId), is(10000));
+    assertThat(quantityChangeRepository.count(), is(0L));
+  }
+
+  @Test
+  public void testStatementCountIsIndependentOfBatchSize() {
+    for (int batchSize : new int[]{1, 10, 100, 1000}) {
+      List<InventoryItemQuantityChange> changes = new ArrayList<>(batchSize);
+      for (int i = 0; i < batchSize; i++) {
+        changes.add(new InventoryItemQuantityChange(
+            String.format("batch%d-%d", batchSize, i), itemIds.get(i % ITEM_COUNT), -1, null));
+      }
+
+      StatementCountingDataSource.reset();
+      long start = System.nanoTime();
+      quantityChangeService.applyChanges(changes);
+      long elapsed = System.nanoTime() - start;
+
+      LOGGER.info("batch size {}: {} statements, {} ms", batchSize,
+          StatementCountingDataSource.executions(), TimeUnit.NANOSECONDS.toMillis(elapsed));
+      // select items, batch update items, batch insert changes; the id filter knows all ids are
+      // new, so processed ids are not looked up
+      assertThat(StatementCountingDataSource.executions(), is(3L));
+    }
+  }
+
+  @Test
+  public void testConcurrentChangesOnHotItemsLoseNoUpdate() throws Exception {
+    final int threads = 8;
+    final int batchesPerThread = 50;
+    final String hotItemA = itemIds.get(0);
+    final String hotItemB = itemIds.get(1);
+
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      for (int t = 0; t < threads; t++) {
+        final int thread = t;
+        futures.add(executor.submit(() -> {
+          for (int b = 0; b < batchesPerThread; b++) {
+            String prefix = String.format("stress-%d-%d", thread, b);
+            quantityChangeService.applyChanges(Arrays.asList(
+                new InventoryItemQuantityChange(prefix + "-a", hotItemA, -1, null),
+                new InventoryItemQuantityChange(prefix + "-b", hotItemB, 2, null)));
+          }
+        }));
+      }
+      for (Future<?> future : futures) {
+        future.get(1, TimeUnit.MINUTES);
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+
+    assertThat(quantityOf(hotItemA), is(10000 - threads * batchesPerThread));
+    assertThat(quantityOf(hotItemB), is(10000 + 2 * threads * batchesPerThread));
+    assertThat(quantityChangeRepository.count(), is(2L * threads * batchesPerThread));
+  }
+
+  @Test
+  public void testOverlappingBatchesInOppositeOrderDoNotDeadlock() throws Exception {
+    final int threads = 8;
+    final int batchesPerThread = 50;
+    final List<String> sharedItemIds = itemIds.subList(0, 4);
+    double retries = meterRegistry.counter("inventory.quantity_change.lock.retries").count();
+
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      for (int t = 0; t < threads; t++) {
+        final int thread = t;
+        futures.add(executor.submit(() -> {
+          List<String> order = new ArrayList<>(sharedItemIds);
+          if (thread % 2 == 1) {
+            Collections.reverse(order);
+          }
+          for (int b = 0; b < batchesPerThread; b++) {
+            List<InventoryItemQuantityChange> changes = new ArrayList<>();
+            for (String itemId : order) {
+              changes.add(new InventoryItemQuantityChange(
+                  String.format("overlap-%d-%d-%s", thread, b, itemId), itemId, -1, null));
+            }
+            quantityChangeService.applyChanges(changes);
+          }
+        }));
+      }
+      for (Future<?> future : futures) {
+        future.get(1, TimeUnit.MINUTES);
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+
+    for (String itemId : sharedItemIds) {
+      assertThat(quantityOf(itemId), is(10000 - threads * batchesPerThread));
+    }
+    // no batch failed on a lock, so none was retried
+    assertThat(meterRegistry.counter("inventory.quantity_change.lock.retries").count(),
+        is(retries));
+  }
+
+  @Test
+  public void testGuardedIncrementSkipsOversell() {
+    String itemId = itemIds.get(0);
+    assertThat(itemRepository.reserveQuantity(itemId, 100, new Date()), is(1));
+    Map<String, Integer> deltas = new LinkedHashMap<>();
+    deltas.put(itemId, -9901);
+
+    // the reserved units are not available to anyone but their confirmation
+    assertThat(itemRepository.addQuantities(deltas, new Date(), OversellGuard.AVAILABLE)[0],
+        is(0));
+    assertThat(quantityOf(itemId), is(10000));
+
+    deltas.put(itemId, -9900);
+    assertThat(itemRepository.addQuantities(deltas, new Date(), OversellGuard.AVAILABLE)[0],
+        is(1));
+    assertThat(quantityOf(itemId), is(100));
+
+    deltas.put(itemId, -101);
+    assertThat(itemRepository.addQuantities(deltas, new Date(), OversellGuard.ON_HAND)[0],
+        is(0));
+    deltas.put(itemId, -100);
+    assertThat(itemRepository.addQuantities(deltas, new Date(), OversellGuard.ON_HAND)[0],
+        is(1));
+    assertThat(quantityOf(itemId), is(0));
+  }
+
+  private int quantityOf(String itemId) {
+    return itemRepository.findById(itemId)
+        .orElseThrow(() -> new AssertionError("inventoryItem not found")).getQuantity();
+  }
+}
@@ -0,0 +1,215 @@
+package io.github.rscai.microservices.inventory.service;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import io.github.rscai.microservices.inventory.model.InventoryItem;
+import io.github.rscai.microservices.inventory.model.InventoryItemQuantityChange;
+import io.github.rscai.microservices.inventory.model.InventoryItemReservation;
+import io.github.rscai.microservices.inventory.model.InventoryItemReservation.Status;
+import io.github.rscai.microservices.inventory.repository.InventoryItemQuantityChangeRepository;
+import io.github.rscai.microservices.inventory.repository.InventoryItemRepository;
+import io.github.rscai.microservices.inventory.repository.InventoryItemReservationRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.Date;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.web.server.ResponseStatusException;
+
+@ActiveProfiles("test")
+@SpringBootTest(properties = {"inventory.reservation.tick=10ms",
+    "inventory.quantity-change.prevent-oversell=true"})
+public class InventoryItemReservationServiceTest {
+
+  private static final long TIMEOUT_MILLIS = 5000;
+
+  @Autowired
+  private InventoryItemReservationService reservationService;
+  @Autowired
+  private InventoryItemRepository itemRepository;
+  @Autowired
+  private InventoryItemReservationRepository reservationRepository;
+  @Autowired
+  private InventoryItemQuantityChangeRepository quantityChangeRepository;
+  @Autowired
+  private InventoryItemQuantityChangeService quantityChangeService;
+  @Autowired
+  private MeterRegistry meterRegistry;
+
+  private String itemId;
+
+  @BeforeEach
+  public void setUp() {
+    InventoryItem item = new InventoryItem();
+    item.setProductId("productA");
+    item.setUnitPrice(BigDecimal.valueOf(123.45));
+    item.setQuantity(100);
+    itemId = itemRepository.save(item).getId();
+  }
+
+  @AfterEach
+  public void tearDown() {
+    reservationRepository.deleteAll();
+    quantityChangeRepository.deleteAll();
+    itemRepository.deleteAll();
+  }
+
+  @Test
+  public void testReservationHoldsAvailableQuantity() {
+    InventoryItemReservation reservation = reservationService
+        .reserve(new InventoryItemReservation("cart1", itemId, 30, null));
+    // a retry holds nothing more
+    InventoryItemReservation retried = reservationService
+        .reserve(new InventoryItemReservation("cart1", itemId, 30, null));
+
+    assertThat(reservation.getStatus(), is(Status.RESERVED));
+    assertThat(retried.getExpiresAt().getTime(), is(reservation.getExpiresAt().getTime()));
+    assertThat(item().getQuantity(), is(100));
+    assertThat(item().getReservedQuantity(), is(30));
+    assertThat(item().getAvailableQuantity(), is(70));
+
+    ResponseStatusException e = assertThrows(ResponseStatusException.class,
+        () -> reservationService.reserve(new InventoryItemReservation("cart2", itemId, 71, null)));
+    assertThat(e.getStatus(), is(HttpStatus.CONFLICT));
+    assertThat(reservationRepository.existsById("cart2"), is(false));
+    assertThat(item().getReservedQuantity(), is(30));
+  }
+
+  @Test
+  public void testConfirmTakesReservedUnitsOffQuantity() {
+    reservationService.reserve(new InventoryItemReservation("cart1", itemId, 30, null));
+
+    assertThat(reservationService.confirm("cart1").getStatus(), is(Status.CONFIRMED));
+    assertThat(reservationService.confirm("cart1").getStatus(), is(Status.CONFIRMED));
+
+    assertThat(item().getQuantity(), is(70));
+    assertThat(item().getReservedQuantity(), is(0));
+    String changeId = InventoryItemReservationService.CHANGE_ID_PREFIX + "cart1";
+    assertThat(quantityChangeRepository.findExistingIds(Collections.singletonList(changeId)),
+        contains(changeId));
+    ResponseStatusException e = assertThrows(ResponseStatusException.class,
+        () -> reservationService.release("cart1"));
+    assertThat(e.getStatus(), is(HttpStatus.CONFLICT));
+  }
+
+  @Test
+  public void testConfirmTakesReservedUnitsDespiteCompetingChanges() {
+    reservationService.reserve(new InventoryItemReservation("cart1", itemId, 30, null));
+
+    ResponseStatusException e = assertThrows(ResponseStatusException.class,
+        () -> quantityChangeService.applyChanges(Collections.singletonList(
+            new InventoryItemQuantityChange("change1", itemId, -71, null))));
+    assertThat(e.getStatus(), is(HttpStatus.CONFLICT));
+    quantityChangeService.applyChanges(Collections.singletonList(
+        new InventoryItemQuantityChange("change2", itemId, -70, null)));
+    assertThat(item().getAvailableQuantity(), is(0));
+
+    assertThat(reservationService.confirm("cart1").getStatus(), is(Status.CONFIRMED));
+    assertThat(item().getQuantity(), is(0));
+    assertThat(item().getReservedQuantity(), is(0));
+  }
+
+  @Test
+  public void testUpsertKeepsQuantityOfReservedUnits() {
+    reservationService.reserve(new InventoryItemReservation("cart1", itemId, 30, null));
+    InventoryItem upserted = new InventoryItem();
+    upserted.setProductId("productA");
+    upserted.setUnitPrice(BigDecimal.valueOf(123.45));
+    upserted.setQuantity(29);
+
+    assertThat(itemRepository.upsertByProductId(Collections.singletonList(upserted), new Date()),
+        contains("productA"));
+    assertThat(item().getQuantity(), is(100));
+  }
+
+  @Test
+  public void testReleaseMakesReservedUnitsAvailable() {
+    reservationService.reserve(new InventoryItemReservation("cart1", itemId, 30, null));
+
+    assertThat(reservationService.release("cart1").getStatus(), is(Status.RELEASED));
+
+    assertThat(item().getQuantity(), is(100));
+    assertThat(item().getReservedQuantity(), is(0));
+    ResponseStatusException e = assertThrows(ResponseStatusException.class,
+        () -> reservationService.confirm("cart1"));
+    assertThat(e.getStatus(), is(HttpStatus.CONFLICT));
+  }
+
+  @Test
+  public void testReservationExpiresAfterTtl() throws Exception {
+    double expired = meterRegistry.get("inventory.reservation.transitions")
+        .tag("status", "expired").counter().count();
+    reservationService.reserve(
+        new InventoryItemReservation("cart1", itemId, 30, Duration.ofMillis(50)));
+
+    long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+    while (reservation("cart1").getStatus() == Status.RESERVED
+        && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+
+    assertThat(reservation("cart1").getStatus(), is(Status.EXPIRED));
+    assertThat(item().getReservedQuantity(), is(0));
+    assertThat(meterRegistry.get("inventory.reservation.transitions").tag("status", "expired")
+        .counter().count(), greaterThan(expired));
+    ResponseStatusException e = assertThrows(ResponseStatusException.class,
+        () -> reservationService.confirm("cart1"));
+    assertThat(e.getStatus(), is(HttpStatus.CONFLICT));
+  }
+
+  @Test
+  public void testSweepExpiresUntrackedReservations() {
+    // as left by an instance which went down before it expired
+    Date now = new Date();
+    InventoryItemReservation untracked = new InventoryItemReservation("cart1", itemId, 30, null);
+    untracked.setStatus(Status.RESERVED);
+    untracked.setExpiresAt(new Date(now.getTime() - 1000));
+    untracked.setCreatedAt(now);
+    untracked.setUpdatedAt(now);
+    reservationRepository.insert(untracked);
+    itemRepository.reserveQuantity(itemId, 30, now);
+
+    assertThat(reservationService.sweep(), is(1));
+
+    assertThat(reservation("cart1").getStatus(), is(Status.EXPIRED));
+    assertThat(item().getReservedQuantity(), is(0));
+    assertThat(reservationService.sweep(), is(0));
+  }
+
+  @Test
+  public void testItemUpdateKeepsQuantitiesChangedSinceItWasLoaded() {
+    // loaded as by an update request, before reservations change the item
+    InventoryItem loaded = item();
+    reservationService.reserve(new InventoryItemReservation("cart1", itemId, 30, null));
+    reservationService.confirm("cart1");
+    reservationService.reserve(new InventoryItemReservation("cart2", itemId, 20, null));
+
+    loaded.setUnitPrice(BigDecimal.valueOf(99.99));
+    itemRepository.save(loaded);
+
+    assertThat(item().getUnitPrice().doubleValue(), is(99.99));
+    assertThat(item().getQuantity(), is(70));
+    assertThat(item().getReservedQuantity(), is(20));
+  }
+
+  private InventoryItem item() {
+    return itemRepository.findById(itemId)
+        .orElseThrow(() -> new AssertionError("inventoryItem not found"));
+  }
+
+  private InventoryItemReservation reservation(String id) {
+    return reservationRepository.findById(id)
+        .orElseThrow(() -> new AssertionError("reservation not found"));
+  }
+}
@@ -0,0 +1,118 @@
+package io.github.rscai.microservices.inventory.service;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+import io.github.rscai.microservices.inventory.model.InventoryItem;
+import io.github.rscai.microservices.inventory.model.InventoryItemQuantityChange;
+import io.github.rscai.microservices.inventory.model.InventoryItemSnapshot;
+import io.github.rscai.microservices.inventory.repository.InventoryItemQuantityChangeRepository;
+import io.github.rscai.microservices.inventory.repository.InventoryItemRepository;
+import io.github.rscai.microservices.inventory.repository.InventoryItemSnapshotRepository;
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collections;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+@ActiveProfiles("test")
+@SpringBootTest(properties = {"inventory.compaction.retention=0s",
+    "inventory.compaction.idempotency-window=0s", "inventory.compaction.chunk-size=2",
+    "inventory.compaction.chunk-pause=0s"})
+public class QuantityChangeCompactionServiceTest {
+
+  @Autowired
+  private QuantityChangeCompactionService compactionService;
+  @Autowired
+  private InventoryItemQuantityChangeService quantityChangeService;
+  @Autowired
+  private InventoryItemRepository itemRepository;
+  @Autowired
+  private InventoryItemQuantityChangeRepository quantityChangeRepository;
+  @Autowired
+  private InventoryItemSnapshotRepository snapshotRepository;
+  @Autowired
+  private JdbcTemplate jdbcTemplate;
+
+  private String itemIdA;
+  private String itemIdB;
+
+  @BeforeEach
+  public void setUp() {
+    itemIdA = createItem("productA", 100);
+    itemIdB = createItem("productB", 200);
+  }
+
+  @AfterEach
+  public void tearDown() {
+    itemRepository.deleteAll();
+    quantityChangeRepository.deleteAll();
+    snapshotRepository.deleteAll();
+    jdbcTemplate.update("delete from inventory_item_quantity_change_tombstone");
+  }
+
+  @Test
+  public void testCompactAndRebuild() throws InterruptedException {
+    quantityChangeService.applyChanges(Arrays.asList(
+        new InventoryItemQuantityChange("order1-a", itemIdA, -10, null),
+        new InventoryItemQuantityChange("order1-b", itemIdB, -20, null),
+        new InventoryItemQuantityChange("order2-a", itemIdA, 5, null)));
+    // retention is 0s, changes of the current millisecond are not old enough yet
+    Thread.sleep(10);
+
+    assertThat(compactionService.compact(), is(3L));
+
+    assertThat(quantityChangeRepository.count(), is(0L));
+    assertThat(snapshotOf(itemIdA).getQuantity(), is(95));
+    assertThat(snapshotOf(itemIdB).getQuantity(), is(180));
+
+    // compacted ids are still recognized as processed
+    quantityChangeService.applyChanges(Arrays.asList(
+        new InventoryItemQuantityChange("order1-a", itemIdA, -10, null),
+        new InventoryItemQuantityChange("order3-a", itemIdA, -5, null)));
+    assertThat(quantityOf(itemIdA), is(90));
+
+    jdbcTemplate.update("update inventory_item set quantity = 0");
+    assertThat(compactionService.rebuildQuantities(), is(2L));
+    assertThat(quantityOf(itemIdA), is(90));
+    assertThat(quantityOf(itemIdB), is(180));
+  }
+
+  @Test
+  public void testPurgeTombstones() throws InterruptedException {
+    quantityChangeService.applyChanges(Collections.singletonList(
+        new InventoryItemQuantityChange("order1-a", itemIdA, -10, null)));
+    Thread.sleep(10);
+    compactionService.compact();
+
+    assertThat(compactionService.purgeTombstones(), is(1L));
+
+    // beyond the idempotency window a retried change is applied again
+    quantityChangeService.applyChanges(Collections.singletonList(
+        new InventoryItemQuantityChange("order1-a", itemIdA, -10, null)));
+    assertThat(quantityOf(itemIdA), is(80));
+  }
+
+  private InventoryItemSnapshot snapshotOf(String itemId) {
+    return snapshotRepository.findById(itemId)
+        .orElseThrow(() -> new AssertionError("snapshot not found"));
+  }
+
+  private int quantityOf(String itemId) {
+    return itemRepository.findById(itemId)
+        .orElseThrow(() -> new AssertionError("inventoryItem not found")).getQuantity();
+  }
+
+  private String createItem(String productId, int quantity) {
+    InventoryItem item = new InventoryItem();
+    item.setProductId(productId);
+    item.setUnitPrice(BigDecimal.valueOf(123.45));
+    item.setQuantity(quantity);
+    return itemRepository.save(item).getId();
+  }
+}
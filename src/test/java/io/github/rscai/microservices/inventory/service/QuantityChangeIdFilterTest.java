@@ -0,0 +1,109 @@
+package io.github.rscai.microservices.inventory.service;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+
+import io.github.rscai.microservices.inventory.model.InventoryItem;
+import io.github.rscai.microservices.inventory.model.InventoryItemQuantityChange;
+import io.github.rscai.microservices.inventory.repository.InventoryItemQuantityChangeRepository;
+import io.github.rscai.microservices.inventory.repository.InventoryItemRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+@ActiveProfiles("test")
+@SpringBootTest
+public class QuantityChangeIdFilterTest {
+
+  @Autowired
+  private InventoryItemQuantityChangeService quantityChangeService;
+  @Autowired
+  private QuantityChangeIdFilter idFilter;
+  @Autowired
+  private InventoryItemRepository itemRepository;
+  @Autowired
+  private InventoryItemQuantityChangeRepository quantityChangeRepository;
+  @Autowired
+  private MeterRegistry meterRegistry;
+
+  private String itemId;
+
+  @BeforeEach
+  public void setUp() {
+    InventoryItem item = new InventoryItem();
+    item.setProductId("productA");
+    item.setUnitPrice(BigDecimal.valueOf(123.45));
+    item.setQuantity(100);
+    itemId = itemRepository.save(item).getId();
+  }
+
+  @AfterEach
+  public void tearDown() {
+    itemRepository.deleteAll();
+    quantityChangeRepository.deleteAll();
+  }
+
+  @Test
+  public void testBloomFilterHasNoFalseNegatives() {
+    BloomFilter filter = new BloomFilter(10000, 0.01);
+    for (int i = 0; i < 10000; i++) {
+      filter.put("change-" + i);
+    }
+    int falsePositives = 0;
+    for (int i = 0; i < 10000; i++) {
+      assertThat(filter.mightContain("change-" + i), is(true));
+      if (filter.mightContain("other-" + i)) {
+        falsePositives++;
+      }
+    }
+    assertThat(falsePositives, lessThan(200));
+    assertThat(filter.expectedFalsePositiveProbability(), lessThan(0.02));
+  }
+
+  @Test
+  public void testSkipIdProcessedBehindTheFilter() {
+    // written by another instance, unknown to this filter
+    quantityChangeRepository.insertAll(Collections.singletonList(
+        new InventoryItemQuantityChange("skip-1", itemId, -10, new Date())));
+    double misses = meterRegistry.get("inventory.idfilter.misses").counter().count();
+
+    quantityChangeService.applyChanges(Arrays.asList(
+        new InventoryItemQuantityChange("skip-1", itemId, -10, null),
+        new InventoryItemQuantityChange("skip-2", itemId, -20, null)));
+
+    assertThat(quantityOf(itemId), is(80));
+    assertThat(quantityChangeRepository.count(), is(2L));
+    assertThat(meterRegistry.get("inventory.idfilter.misses").counter().count(), is(misses + 1));
+  }
+
+  @Test
+  public void testRebuildPicksUpProcessedIds() {
+    quantityChangeRepository.insertAll(Collections.singletonList(
+        new InventoryItemQuantityChange("rebuild-1", itemId, -10, new Date())));
+    idFilter.rebuild();
+    double negatives = meterRegistry.get("inventory.idfilter.checks").tag("result", "negative")
+        .counter().count();
+
+    quantityChangeService.applyChanges(Arrays.asList(
+        new InventoryItemQuantityChange("rebuild-1", itemId, -10, null),
+        new InventoryItemQuantityChange("rebuild-2", itemId, -20, null)));
+
+    assertThat(quantityOf(itemId), is(80));
+    assertThat(meterRegistry.get("inventory.idfilter.checks").tag("result", "negative")
+        .counter().count(), is(negatives + 1));
+  }
+
+  private int quantityOf(String itemId) {
+    return itemRepository.findById(itemId)
+        .orElseThrow(() -> new AssertionError("inventoryItem not found")).getQuantity();
+  }
+}
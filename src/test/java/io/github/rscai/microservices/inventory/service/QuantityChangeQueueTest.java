@@ -0,0 +1,230 @@
+package io.github.rscai.microservices.inventory.service;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.github.rscai.microservices.inventory.model.InventoryItem;
+import io.github.rscai.microservices.inventory.model.InventoryItemQuantityChange;
+import io.github.rscai.microservices.inventory.model.InventoryItemQuantityChangeBatch;
+import io.github.rscai.microservices.inventory.model.InventoryItemQuantityChangeBatch.Status;
+import io.github.rscai.microservices.inventory.repository.InventoryItemQuantityChangeBatchRepository;
+import io.github.rscai.microservices.inventory.repository.InventoryItemQuantityChangeRepository;
+import io.github.rscai.microservices.inventory.repository.InventoryItemRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+@ActiveProfiles("test")
+@SpringBootTest(properties = {"inventory.quantity-change-queue.enabled=true",
+    "inventory.quantity-change-queue.directory=build/quantity-change-queue-test",
+    "inventory.quantity-change-queue.workers=2"})
+public class QuantityChangeQueueTest {
+
+  private static final long TIMEOUT_MILLIS = 10000;
+
+  @Autowired
+  private QuantityChangeQueue quantityChangeQueue;
+  @Autowired
+  private InventoryItemQuantityChangeService quantityChangeService;
+  @Autowired
+  private ObjectMapper objectMapper;
+  @Autowired
+  private InventoryItemRepository itemRepository;
+  @Autowired
+  private InventoryItemQuantityChangeRepository quantityChangeRepository;
+  @Autowired
+  private InventoryItemQuantityChangeBatchRepository batchRepository;
+  @Autowired
+  private MeterRegistry meterRegistry;
+  @TempDir
+  Path directory;
+
+  private String itemIdA;
+  private String itemIdB;
+
+  @BeforeEach
+  public void setUp() {
+    itemIdA = createItem("productA");
+    itemIdB = createItem("productB");
+  }
+
+  @AfterEach
+  public void tearDown() {
+    itemRepository.deleteAll();
+    quantityChangeRepository.deleteAll();
+    batchRepository.deleteAll();
+  }
+
+  @Test
+  public void testQueuedBatchesAreAppliedOnce() throws Exception {
+    InventoryItemQuantityChangeBatch first = quantityChangeQueue.submit(Arrays.asList(
+        new InventoryItemQuantityChange("order1-a", itemIdA, -10, null),
+        new InventoryItemQuantityChange("order1-b", itemIdB, -20, null)));
+    InventoryItemQuantityChangeBatch second = quantityChangeQueue.submit(Arrays.asList(
+        new InventoryItemQuantityChange("order1-a", itemIdA, -10, null),
+        new InventoryItemQuantityChange("order2-a", itemIdA, 5, null)));
+
+    first = processed(quantityChangeQueue, first.getId());
+    second = processed(quantityChangeQueue, second.getId());
+
+    assertThat(first.getStatus(), is(Status.COMPLETED));
+    assertThat(first.getApplied(), is(2));
+    assertThat(second.getStatus(), is(Status.COMPLETED));
+    assertThat(second.getApplied(), is(1));
+    assertThat(second.getDuplicates(), is(1));
+    assertThat(quantityOf(itemIdA), is(95));
+    assertThat(quantityOf(itemIdB), is(80));
+    assertThat(meterRegistry.get("inventory.quantity_change.queue.depth").gauge().value(),
+        is(0.0));
+  }
+
+  @Test
+  public void testFailedBatchLeavesOthersApplied() throws Exception {
+    InventoryItemQuantityChangeBatch failing = quantityChangeQueue.submit(Collections
+        .singletonList(new InventoryItemQuantityChange("order3-x", "unknown-item", -1, null)));
+    InventoryItemQuantityChangeBatch passing = quantityChangeQueue.submit(Collections
+        .singletonList(new InventoryItemQuantityChange("order3-a", itemIdA, -1, null)));
+
+    failing = processed(quantityChangeQueue, failing.getId());
+    passing = processed(quantityChangeQueue, passing.getId());
+
+    assertThat(failing.getStatus(), is(Status.FAILED));
+    assertThat(failing.getFailed(), is(1));
+    assertThat(failing.getFailure(), containsString("unknown-item"));
+    assertThat(passing.getStatus(), is(Status.COMPLETED));
+    assertThat(quantityOf(itemIdA), is(99));
+  }
+
+  @Test
+  public void testFailedBatchIsNotAppliedInPart() throws Exception {
+    InventoryItemQuantityChangeBatch failing = quantityChangeQueue.submit(Arrays.asList(
+        new InventoryItemQuantityChange("order5-a", itemIdA, -1, null),
+        new InventoryItemQuantityChange("order5-b", itemIdB, -1, null),
+        new InventoryItemQuantityChange("order5-x", "unknown-item", -1, null)));
+
+    failing = processed(quantityChangeQueue, failing.getId());
+
+    assertThat(failing.getStatus(), is(Status.FAILED));
+    assertThat(failing.getApplied(), is(0));
+    assertThat(failing.getFailed(), is(3));
+    assertThat(quantityOf(itemIdA), is(100));
+    assertThat(quantityOf(itemIdB), is(100));
+  }
+
+  @Test
+  public void testStatusIsReadByAnyInstance() throws Exception {
+    InventoryItemQuantityChangeBatch batch = quantityChangeQueue.submit(Collections
+        .singletonList(new InventoryItemQuantityChange("order6-a", itemIdA, -1, null)));
+    processed(quantityChangeQueue, batch.getId());
+    QuantityChangeQueueProperties properties = new QuantityChangeQueueProperties();
+    properties.setDirectory(directory.toString());
+    QuantityChangeQueue other = new QuantityChangeQueue(quantityChangeService, batchRepository,
+        objectMapper, properties, new SimpleMeterRegistry());
+
+    assertThat(other.status(batch.getId()).map(InventoryItemQuantityChangeBatch::getStatus)
+        .orElseThrow(() -> new AssertionError("batch not found")), is(Status.COMPLETED));
+  }
+
+  @Test
+  public void testBatchFailingRepeatedlyIsDeadLettered() throws Exception {
+    InventoryItemQuantityChangeService failingService = mock(
+        InventoryItemQuantityChangeService.class);
+    when(failingService.applyNewChanges(anyList()))
+        .thenThrow(new IllegalStateException("database unavailable"));
+    QuantityChangeQueueProperties properties = new QuantityChangeQueueProperties();
+    properties.setDirectory(directory.toString());
+    properties.setWorkers(1);
+    properties.setMaxAttempts(2);
+    properties.setRetryInterval(Duration.ofMillis(10));
+    QuantityChangeQueue failingQueue = new QuantityChangeQueue(failingService, batchRepository,
+        objectMapper, properties, new SimpleMeterRegistry());
+
+    failingQueue.start();
+    try {
+      InventoryItemQuantityChangeBatch batch = processed(failingQueue, failingQueue.submit(
+          Collections.singletonList(new InventoryItemQuantityChange("order7-a", itemIdA, -1,
+              null))).getId());
+
+      assertThat(batch.getStatus(), is(Status.FAILED));
+      assertThat(batch.getFailure(), containsString("database unavailable"));
+      assertThat(new String(Files.readAllBytes(directory.resolve("dead-letters.ndjson")),
+          StandardCharsets.UTF_8), containsString("order7-a"));
+    } finally {
+      failingQueue.close();
+    }
+  }
+
+  @Test
+  public void testBatchesLeftInTheLogAreAppliedOnStart() throws Exception {
+    Path segment = directory.resolve("segment-00000000000000000000.ndjson");
+    String entry = objectMapper.writeValueAsString(new QuantityChangeQueue.Entry("left", new Date(),
+        Collections.singletonList(new InventoryItemQuantityChange("order4-a", itemIdA, -10,
+            null))));
+    // the last entry was torn by a crash before being acknowledged
+    Files.write(segment, (entry + "\n{\"batchId\":\"torn\",\"chan").getBytes(
+        StandardCharsets.UTF_8));
+    QuantityChangeQueueProperties properties = new QuantityChangeQueueProperties();
+    properties.setDirectory(directory.toString());
+    properties.setWorkers(1);
+    QuantityChangeQueue restarted = new QuantityChangeQueue(quantityChangeService,
+        batchRepository, objectMapper, properties, new SimpleMeterRegistry());
+
+    restarted.start();
+    try {
+      assertThat(processed(restarted, "left").getStatus(), is(Status.COMPLETED));
+      assertThat(restarted.status("torn").isPresent(), is(false));
+      assertThat(quantityOf(itemIdA), is(90));
+      long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+      while (Files.exists(segment) && System.currentTimeMillis() < deadline) {
+        Thread.sleep(20);
+      }
+      assertThat(Files.exists(segment), is(false));
+    } finally {
+      restarted.close();
+    }
+  }
+
+  private InventoryItemQuantityChangeBatch processed(QuantityChangeQueue queue, String batchId)
+      throws InterruptedException {
+    long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+    InventoryItemQuantityChangeBatch batch = queue.status(batchId)
+        .orElseThrow(() -> new AssertionError("batch not found"));
+    while (batch.getStatus() == Status.QUEUED && System.currentTimeMillis() < deadline) {
+      Thread.sleep(20);
+      batch = queue.status(batchId).orElseThrow(() -> new AssertionError("batch not found"));
+    }
+    return batch;
+  }
+
+  private String createItem(String productId) {
+    InventoryItem item = new InventoryItem();
+    item.setProductId(productId);
+    item.setUnitPrice(BigDecimal.valueOf(123.45));
+    item.setQuantity(100);
+    return itemRepository.save(item).getId();
+  }
+
+  private int quantityOf(String itemId) {
+    return itemRepository.findById(itemId)
+        .orElseThrow(() -> new AssertionError("inventoryItem not found")).getQuantity();
+  }
+}
@@ -0,0 +1,98 @@
+package io.github.rscai.microservices.inventory.service;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+import io.github.rscai.microservices.inventory.model.InventoryItem;
+import io.github.rscai.microservices.inventory.model.InventoryItemQuantityChange;
+import io.github.rscai.microservices.inventory.repository.InventoryItemQuantityChangeRepository;
+import io.github.rscai.microservices.inventory.repository.InventoryItemRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+@ActiveProfiles("test")
+@SpringBootTest(properties = {"inventory.ledger.enabled=true",
+    "inventory.ledger.flush-interval=1h"})
+public class QuantityLedgerTest {
+
+  @Autowired
+  private InventoryItemQuantityChangeService quantityChangeService;
+  @Autowired
+  private QuantityLedger quantityLedger;
+  @Autowired
+  private InventoryItemRepository itemRepository;
+  @Autowired
+  private InventoryItemQuantityChangeRepository quantityChangeRepository;
+  @Autowired
+  private MeterRegistry meterRegistry;
+
+  private String itemId;
+
+  @BeforeEach
+  public void setUp() {
+    InventoryItem item = new InventoryItem();
+    item.setProductId("productA");
+    item.setUnitPrice(BigDecimal.valueOf(123.45));
+    item.setQuantity(100);
+    itemId = itemRepository.save(item).getId();
+  }
+
+  @AfterEach
+  public void tearDown() {
+    quantityLedger.flush();
+    itemRepository.deleteAll();
+    quantityChangeRepository.deleteAll();
+  }
+
+  @Test
+  public void testWriteBehind() {
+    quantityChangeService.applyChanges(Arrays.asList(
+        new InventoryItemQuantityChange("order1-a", itemId, -10, null),
+        new InventoryItemQuantityChange("order2-a", itemId, -20, null)));
+    quantityChangeService.applyChanges(Arrays.asList(
+        new InventoryItemQuantityChange("order2-a", itemId, -20, null),
+        new InventoryItemQuantityChange("order3-a", itemId, 5, null)));
+
+    assertThat(quantityChangeRepository.count(), is(3L));
+    assertThat(quantityOf(itemId), is(100));
+    assertThat(quantityChangeRepository.countUnapplied(), is(3L));
+
+    quantityLedger.flush();
+
+    assertThat(quantityOf(itemId), is(75));
+    assertThat(quantityChangeRepository.countUnapplied(), is(0L));
+    assertThat(meterRegistry.get("inventory.ledger.pending.changes").gauge().value(), is(0.0));
+  }
+
+  @Test
+  public void testFlushAppliesChangesLeftUnappliedByAnotherRun() {
+    // as logged by an instance which went down before its flush
+    quantityChangeRepository.insertAll(Arrays.asList(
+        new InventoryItemQuantityChange("order1-a", itemId, -10, new Date(), null, null, false),
+        new InventoryItemQuantityChange("order2-a", itemId, -20, new Date(), null, null, false)));
+
+    quantityLedger.flush();
+
+    assertThat(quantityOf(itemId), is(70));
+    assertThat(quantityChangeRepository.countUnapplied(), is(0L));
+    // acknowledged changes stay processed, a retry is not applied again
+    quantityChangeService.applyChanges(Collections.singletonList(
+        new InventoryItemQuantityChange("order1-a", itemId, -10, null)));
+    quantityLedger.flush();
+    assertThat(quantityOf(itemId), is(70));
+  }
+
+  private int quantityOf(String itemId) {
+    return itemRepository.findById(itemId)
+        .orElseThrow(() -> new AssertionError("inventoryItem not found")).getQuantity();
+  }
+}
@@ -0,0 +1,101 @@
+package io.github.rscai.microservices.inventory.service;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.JWKMatcher;
+import com.nimbusds.jose.jwk.JWKSelector;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
+import com.sun.net.httpserver.HttpServer;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class RefreshingJwkSourceTest {
+
+  private final AtomicReference<JWKSet> served = new AtomicReference<>();
+  private final AtomicInteger fetches = new AtomicInteger();
+  private final AtomicBoolean available = new AtomicBoolean(true);
+  private HttpServer server;
+  private RefreshingJwkSource jwkSource;
+
+  @BeforeEach
+  public void setUp() throws Exception {
+    served.set(new JWKSet(new RSAKeyGenerator(2048).keyID("key1").generate()));
+    server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    server.createContext("/token_keys", exchange -> {
+      fetches.incrementAndGet();
+      if (!available.get()) {
+        exchange.sendResponseHeaders(503, -1);
+        exchange.close();
+        return;
+      }
+      byte[] body = served.get().toString().getBytes(StandardCharsets.UTF_8);
+      exchange.sendResponseHeaders(200, body.length);
+      try (OutputStream output = exchange.getResponseBody()) {
+        output.write(body);
+      }
+    });
+    server.start();
+  }
+
+  @AfterEach
+  public void tearDown() {
+    jwkSource.close();
+    server.stop(0);
+  }
+
+  @Test
+  public void testUnknownKeyIsFetchedByTheRequest() throws Exception {
+    start(Duration.ZERO);
+    served.set(new JWKSet(new RSAKeyGenerator(2048).keyID("key2").generate()));
+
+    List<JWK> keys = jwkSource.get(selectorOf("key2"), null);
+
+    assertThat(keys.size(), is(1));
+    assertThat(fetches.get(), is(2));
+  }
+
+  @Test
+  public void testUnknownKeyIsFetchedAtMostOncePerMinimumRefreshInterval() throws Exception {
+    start(Duration.ofMinutes(1));
+    served.set(new JWKSet(new RSAKeyGenerator(2048).keyID("key2").generate()));
+
+    assertThat(jwkSource.get(selectorOf("key2"), null), is(empty()));
+    assertThat(fetches.get(), is(1));
+  }
+
+  @Test
+  public void testFailedFetchCountsAgainstMinimumRefreshInterval() throws Exception {
+    available.set(false);
+    start(Duration.ofMinutes(1));
+
+    assertThat(jwkSource.get(selectorOf("key1"), null), is(empty()));
+    assertThat(jwkSource.get(selectorOf("key2"), null), is(empty()));
+    assertThat(fetches.get(), is(1));
+  }
+
+  private void start(Duration minimumRefreshInterval) {
+    JwtCacheProperties properties = new JwtCacheProperties();
+    properties.setJwkSetMinimumRefreshInterval(minimumRefreshInterval);
+    jwkSource = new RefreshingJwkSource(
+        String.format("http://localhost:%d/token_keys", server.getAddress().getPort()),
+        properties);
+    jwkSource.start();
+  }
+
+  private static JWKSelector selectorOf(String keyId) {
+    return new JWKSelector(new JWKMatcher.Builder().keyID(keyId).build());
+  }
+}
@@ -0,0 +1,64 @@
+package io.github.rscai.microservices.inventory.service;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+public class TimerWheelTest {
+
+  @Test
+  public void testValuesExpireAtTheirTickAcrossWheels() {
+    // 4 slots of 10ms: the wheels span 40ms, 160ms, 640ms, ...
+    TimerWheel<String, String> wheel = new TimerWheel<>(10, 4, 0);
+    wheel.schedule("a", "a", 25);
+    wheel.schedule("b", "b", 170);
+    wheel.schedule("c", "c", 1000);
+    wheel.schedule("d", "d", 39);
+
+    assertThat(wheel.advance(20), is(empty()));
+    assertThat(wheel.advance(30), contains("a"));
+    assertThat(wheel.advance(39), is(empty()));
+    assertThat(wheel.advance(40), contains("d"));
+    assertThat(wheel.advance(169), is(empty()));
+    assertThat(wheel.advance(170), contains("b"));
+    assertThat(wheel.advance(999), is(empty()));
+    assertThat(wheel.advance(1000), contains("c"));
+    assertThat(wheel.size(), is(0));
+  }
+
+  @Test
+  public void testEveryDeadlineIsMetOnceAndNeverEarly() {
+    TimerWheel<Integer, Integer> wheel = new TimerWheel<>(1, 8, 3);
+    for (int deadline = 0; deadline < 2000; deadline += 7) {
+      wheel.schedule(deadline, deadline, deadline);
+    }
+    List<Integer> expired = new ArrayList<>();
+    for (long now = 3; now <= 2000; now += 3) {
+      for (int deadline : wheel.advance(now)) {
+        assertThat(deadline <= now, is(true));
+        assertThat(deadline > now - 3 || deadline < 3, is(true));
+        expired.add(deadline);
+      }
+    }
+    assertThat(expired.size(), is(286));
+    assertThat(wheel.size(), is(0));
+  }
+
+  @Test
+  public void testCancelledAndRescheduledValues() {
+    TimerWheel<String, String> wheel = new TimerWheel<>(10, 4, 0);
+    wheel.schedule("a", "a", 50);
+    wheel.schedule("b", "b", 50);
+    wheel.schedule("b", "b", 300);
+
+    assertThat(wheel.cancel("a"), is(true));
+    assertThat(wheel.cancel("a"), is(false));
+    assertThat(wheel.advance(290), is(empty()));
+    assertThat(wheel.advance(300), contains("b"));
+  }
+}